@@ -0,0 +1,110 @@
+package benchmark;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.database.RelationCursor;
+
+/**
+ * Runs the hot paths of the generated classes over the synthetic sales table:
+ * binding the rows of the cursor to the generated entities and a scan updating
+ * the aggregates of the grouping variables, i.e. computeGroups and the
+ * incrementAggregates methods, or the update methods of the vectorized engine.
+ * The MF-Table is built once per trial, every invocation scans the table once.
+ * The results are reported per scan, the rows per second follow from the rows
+ * parameter.
+ *
+ * @author R&B
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({ "default", "offHeap", "vectorized" })
+    public String engineMode;
+
+    @Param({ "32768" })
+    public int rows;
+
+    // Groups in the MF-Table, one per customer
+    @Param({ "16", "256", "2048" })
+    public int groups;
+
+    @Param({ "1", "4" })
+    public int variables;
+
+    // Equal conditions look the group of a row up, unequal ones compare the row
+    // with every group
+    @Param({ "true", "false" })
+    public boolean equal;
+
+    private Object dao;
+
+    private Method getRows;
+
+    private Method streamTableBlocks;
+
+    private Object mfTable;
+
+    @Setup
+    public void generateEngine() throws Exception {
+        SyntheticWorkload.writeProperties(engineMode);
+        SyntheticWorkload.writeSales(rows, groups);
+        SyntheticWorkload.generate(SyntheticWorkload.query(variables, equal));
+
+        dao = SyntheticWorkload.newDataAccessObject();
+        getRows = SyntheticWorkload.getRowsMethod(dao);
+        streamTableBlocks = SyntheticWorkload.getStreamTableBlocksMethod();
+        mfTable = SyntheticWorkload.newMFTable(streamTableBlocks);
+
+        try (RelationCursor cursor = SyntheticWorkload.openCursor(dao)) {
+            streamTableBlocks.invoke(null, dao, mfTable, 0, cursor);
+        }
+    }
+
+    @TearDown
+    public void closeMFTable() throws Exception {
+        if (mfTable instanceof AutoCloseable) {
+            ((AutoCloseable) mfTable).close();
+        }
+    }
+
+    @Benchmark
+    public long bindRows() throws Exception {
+        long bound = 0;
+        try (RelationCursor cursor = SyntheticWorkload.openCursor(dao)) {
+            List<?> block;
+            while (!(block = (List<?>) getRows.invoke(dao, cursor)).isEmpty()) {
+                bound += block.size();
+            }
+        }
+        return bound;
+    }
+
+    @Benchmark
+    public Object computeGroups() throws Exception {
+        try (RelationCursor cursor = SyntheticWorkload.openCursor(dao)) {
+            streamTableBlocks.invoke(null, dao, mfTable, 1, cursor);
+        }
+        return mfTable;
+    }
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.parser.ParsedQuery;
+
+/**
+ * Generates and compiles the classes of a query, from the metadata lookup to
+ * the evaluation engine. Every invocation runs javac several times, so every
+ * iteration is a single invocation.
+ *
+ * @author R&B
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({ "default", "offHeap", "vectorized" })
+    public String engineMode;
+
+    @Param({ "1", "4" })
+    public int variables;
+
+    private String sql;
+
+    @Setup
+    public void writeWorkload() throws IOException {
+        SyntheticWorkload.writeProperties(engineMode);
+        SyntheticWorkload.writeSales(1024, 16);
+        sql = SyntheticWorkload.query(variables, true);
+    }
+
+    @Benchmark
+    public ParsedQuery generate() {
+        return SyntheticWorkload.generate(sql);
+    }
+}
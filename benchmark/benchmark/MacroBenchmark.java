@@ -0,0 +1,202 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import main.utils.CommonUtils;
+
+/**
+ * Runs every query of the resources directory end to end over the synthetic
+ * sales table at several scales and compares the runs with a baseline. Every
+ * run is a JVM of its own running MacroWorkload, every workload is run a few
+ * times and the run with the median latency is kept. The measurements are
+ * written to benchmark-work/macro-result.properties, keyed by
+ * "&lt;query&gt;.&lt;rows&gt;.".
+ *
+ * A workload regresses when its total latency grows, or its rows per second
+ * drop, by more than the threshold percentage compared to the baseline. The
+ * report is printed and written to benchmark-work/macro-report.txt, and the
+ * benchmark fails if a workload regressed. The settings are system properties:
+ *
+ * <pre>
+ * macro.scales      rows of the sales table, default 10000,100000,1000000
+ * macro.customers   distinct customers, default 10
+ * macro.queries     default MonthAvg,MonthCompare,MonthPctg,CompareStates,CompareOthers,NoAggs
+ * macro.engineMode  default default
+ * macro.repetitions default 3
+ * macro.threshold   percentage, default 10
+ * macro.baseline    default benchmark/baseline.properties
+ * macro.record      true to replace the baseline with this run instead of comparing
+ * </pre>
+ *
+ * @author R&B
+ *
+ */
+public class MacroBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(MacroBenchmark.class.getCanonicalName());
+
+    private static final Path RESULT = Paths.get(SyntheticWorkload.DIRECTORY, "macro-result.properties");
+
+    private static final Path REPORT = Paths.get(SyntheticWorkload.DIRECTORY, "macro-report.txt");
+
+    private static final Path RUN = Paths.get(SyntheticWorkload.DIRECTORY, "macro-run.properties");
+
+    private static final Path LOG_FILE = Paths.get(SyntheticWorkload.DIRECTORY, "macro.log");
+
+    private static final String TOTAL = "totalMillis";
+
+    private static final String ROWS_PER_SECOND = "rowsPerSecond";
+
+    private MacroBenchmark() {
+        // Private constructor to prevent object creation
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String[] scales = System.getProperty("macro.scales", "10000,100000,1000000").split(",");
+        String[] queries = System
+                .getProperty("macro.queries", "MonthAvg,MonthCompare,MonthPctg,CompareStates,CompareOthers,NoAggs")
+                .split(",");
+        int customers = Integer.getInteger("macro.customers", 10);
+        int repetitions = Integer.getInteger("macro.repetitions", 3);
+        double threshold = Double.parseDouble(System.getProperty("macro.threshold", "10"));
+        Path baseline = Paths.get(System.getProperty("macro.baseline", "benchmark/baseline.properties"));
+
+        SyntheticWorkload.writeProperties(System.getProperty("macro.engineMode", "default"));
+        Files.deleteIfExists(LOG_FILE);
+
+        Properties results = new Properties();
+        for (String scale : scales) {
+            int rows = Integer.parseInt(scale.trim());
+            SyntheticWorkload.writeSales(rows, customers);
+
+            for (String query : queries) {
+                String workload = query.trim() + "." + rows + ".";
+                Properties median = runMedian(query.trim(), repetitions);
+                for (String key : median.stringPropertyNames()) {
+                    results.setProperty(workload + key, median.getProperty(key));
+                }
+                System.out.println(String.format(Locale.ROOT, "%-30s %12.1f ms %14.0f rows/s %8d MB heap",
+                        workload + TOTAL, getDouble(median, TOTAL), getDouble(median, ROWS_PER_SECOND),
+                        (long) getDouble(median, "peakHeapBytes") >> 20));
+            }
+        }
+
+        store(results, RESULT);
+
+        if (Boolean.getBoolean("macro.record") || !Files.isRegularFile(baseline)) {
+            store(results, baseline);
+            System.out.println("Recorded the baseline " + baseline);
+            return;
+        }
+
+        if (!compare(results, load(baseline), threshold)) {
+            CommonUtils.exit(1);
+        }
+    }
+
+    /**
+     * Runs the workload the given number of times and returns the run with the
+     * median total latency.
+     */
+    private static Properties runMedian(String query, int repetitions) throws IOException, InterruptedException {
+        List<Properties> runs = new ArrayList<>();
+        for (int i = 0; i < repetitions; i++) {
+            Files.deleteIfExists(RUN);
+            Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-DpropertiesFile=" + SyntheticWorkload.PROPERTIES, "-cp", System.getProperty("java.class.path"),
+                    MacroWorkload.class.getName(), query, RUN.toString()).redirectErrorStream(true)
+                            .redirectOutput(ProcessBuilder.Redirect.appendTo(LOG_FILE.toFile())).start();
+
+            if (process.waitFor() != 0 || !Files.isRegularFile(RUN)) {
+                LOG.log(Level.SEVERE, "Workload {0} failed, see {1}", new Object[] { query, LOG_FILE });
+                CommonUtils.exit(1);
+            }
+            runs.add(load(RUN));
+        }
+
+        runs.sort(Comparator.comparingDouble(run -> getDouble(run, TOTAL)));
+        return runs.get(runs.size() / 2);
+    }
+
+    /**
+     * Prints and writes the comparison of every workload with the baseline.
+     *
+     * @return false if a workload regressed
+     */
+    private static boolean compare(Properties results, Properties baseline, double threshold) throws IOException {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "%-24s %12s %12s %8s %14s %14s %8s%n",
+                "workload", "ms", "baseline ms", "change", "rows/s", "baseline", "change"));
+        boolean passed = true;
+
+        List<String> keys = new ArrayList<>(results.stringPropertyNames());
+        keys.sort(null);
+        for (String key : keys) {
+            if (!key.endsWith("." + TOTAL)) {
+                continue;
+            }
+
+            String workload = key.substring(0, key.length() - TOTAL.length() - 1);
+            if (baseline.getProperty(key) == null) {
+                report.append(String.format("%-24s not in the baseline%n", workload));
+                continue;
+            }
+
+            double latency = getDouble(results, key);
+            double baselineLatency = getDouble(baseline, key);
+            double latencyChange = percentage(latency, baselineLatency);
+            double speed = getDouble(results, workload + "." + ROWS_PER_SECOND);
+            double baselineSpeed = getDouble(baseline, workload + "." + ROWS_PER_SECOND);
+            double speedChange = percentage(speed, baselineSpeed);
+
+            boolean regressed = latencyChange > threshold || speedChange < -threshold;
+            passed &= !regressed;
+            report.append(String.format(Locale.ROOT, "%-24s %12.1f %12.1f %+7.1f%% %14.0f %14.0f %+7.1f%%%s%n",
+                    workload, latency, baselineLatency, latencyChange, speed, baselineSpeed, speedChange,
+                    regressed ? "  REGRESSION" : ""));
+        }
+
+        report.append(passed ? "No workload regressed by more than " : "Workloads regressed by more than ")
+                .append(threshold).append("%").append(System.lineSeparator());
+        System.out.print(report);
+        Files.write(REPORT, report.toString().getBytes(StandardCharsets.UTF_8));
+        return passed;
+    }
+
+    private static double percentage(double value, double baseline) {
+        return baseline == 0 ? 0 : (value - baseline) * 100 / baseline;
+    }
+
+    private static double getDouble(Properties properties, String key) {
+        return Double.parseDouble(properties.getProperty(key, "0"));
+    }
+
+    private static Properties load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static void store(Properties properties, Path path) throws IOException {
+        File parent = path.toAbsolutePath().getParent().toFile();
+        parent.mkdirs();
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            properties.store(writer, "EMF macro benchmark");
+        }
+    }
+}
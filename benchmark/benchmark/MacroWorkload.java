@@ -0,0 +1,117 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import main.database.MetaDataAccessObject;
+import main.parser.ParsedQuery;
+import main.readwrite.ReadWrite;
+import main.utils.CodeGenerator;
+import main.utils.PhaseMetrics;
+import main.utils.QueryPlan;
+import main.utils.RunMetrics;
+
+/**
+ * Runs one query of the resources directory from parsing to output in a JVM of
+ * its own, as started by MacroBenchmark, and writes the measurements of the run
+ * to a properties file. The result of the query is not printed.
+ *
+ * <pre>
+ * usage: MacroWorkload &lt;query&gt; &lt;result file&gt;
+ * </pre>
+ *
+ * @author R&B
+ *
+ */
+public class MacroWorkload {
+
+    private static final String PASS = "pass ";
+
+    private MacroWorkload() {
+        // Private constructor to prevent object creation
+    }
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+
+        PhaseMetrics phase = RunMetrics.begin("parse");
+        ParsedQuery parsedQuery = ReadWrite.readSQLFromFile("resources/" + args[0] + ".sql");
+        phase.end();
+
+        MetaDataAccessObject dao = new MetaDataAccessObject();
+        CodeGenerator.cleanDirectory();
+        phase = RunMetrics.begin("createEntities");
+        CodeGenerator.createEntities(parsedQuery, dao);
+        phase.end();
+        phase = RunMetrics.begin("createCompositeEntity");
+        CodeGenerator.createCompositeEntity(parsedQuery);
+        phase.end();
+        phase = RunMetrics.begin("createDataAccessObject");
+        CodeGenerator.createDataAccessObject(parsedQuery);
+        phase.end();
+        phase = RunMetrics.begin("createEvaluationEngine");
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
+        phase.end();
+
+        Method engine = Class.forName("main.generated.EvaluationEngine").getMethod("main", String[].class);
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            engine.invoke(null, (Object) new String[] { "noCsv" });
+        } finally {
+            System.setOut(console);
+        }
+
+        writeResult(args[1], System.nanoTime() - start);
+    }
+
+    private static void writeResult(String resultFile, long totalNanos) throws IOException {
+        Properties result = new Properties();
+        long rows = 0;
+        double scanMillis = 0;
+
+        for (PhaseMetrics metrics : RunMetrics.getPhases()) {
+            String prefix = "phase." + metrics.getName().replace(' ', '_') + ".";
+            result.setProperty(prefix + "wallMillis", String.valueOf(metrics.getWallMillis()));
+            result.setProperty(prefix + "allocatedBytes", String.valueOf(metrics.getAllocatedBytes()));
+            result.setProperty(prefix + "gcMillis", String.valueOf(metrics.getGcMillis()));
+            if (metrics.getName().startsWith(PASS)) {
+                rows += metrics.getRows();
+                scanMillis += metrics.getWallMillis();
+            }
+        }
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        result.setProperty("totalMillis", String.valueOf(totalNanos / 1_000_000.0));
+        result.setProperty("rows", String.valueOf(rows));
+        result.setProperty("rowsPerSecond", String.valueOf(scanMillis > 0 ? rows * 1000 / scanMillis : 0));
+        result.setProperty("peakHeapBytes", String.valueOf(peakHeap));
+        result.setProperty("gcMillis", String.valueOf(gcMillis));
+
+        try (Writer writer = Files.newBufferedWriter(Paths.get(resultFile), StandardCharsets.UTF_8)) {
+            result.store(writer, null);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.parser.ParsedQuery;
+import main.readwrite.ReadWrite;
+
+/**
+ * Parses the sample queries of the resources directory.
+ *
+ * @author R&B
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({ "MonthAvg", "MonthCompare", "MonthPctg", "CompareStates", "CompareOthers", "NoAggs" })
+    public String query;
+
+    private String sql;
+
+    @Setup
+    public void readQuery() {
+        sql = ReadWrite.readFile(new File("resources/" + query + ".sql"));
+    }
+
+    @Benchmark
+    public ParsedQuery processSQL() {
+        ParsedQuery parsedQuery = new ParsedQuery();
+        parsedQuery.processSQL(sql);
+        return parsedQuery;
+    }
+}
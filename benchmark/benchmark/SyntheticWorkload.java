@@ -0,0 +1,185 @@
+package benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import main.database.MetaDataAccessObject;
+import main.database.RelationCursor;
+import main.database.SalesGenerator;
+import main.database.ZoneMapFilter;
+import main.parser.ParsedQuery;
+import main.utils.CodeGenerator;
+import main.utils.CommonUtils;
+import main.utils.QueryPlan;
+
+/**
+ * Synthetic workload of the benchmarks. The sales table is written as a typed
+ * CSV file and read through the flat file data source, so that the benchmarks
+ * run without a database. The benchmarks have to run with
+ * -DpropertiesFile=benchmark-work/benchmark.properties, as the "benchmark"
+ * target of build.xml does.
+ *
+ * @author R&B
+ *
+ */
+public class SyntheticWorkload {
+
+    public static final String DIRECTORY = "benchmark-work";
+
+    public static final String PROPERTIES = DIRECTORY + "/benchmark.properties";
+
+    public static final String TABLE = "sales";
+
+    private static final String[] VARIABLES = { "x", "y", "z", "w" };
+
+    private SyntheticWorkload() {
+        // Private constructor to prevent object creation
+    }
+
+    /**
+     * Writes the properties file read by the code generator and the generated
+     * classes.
+     *
+     * @param engineMode
+     * @throws IOException
+     */
+    public static void writeProperties(String engineMode) throws IOException {
+        if (!Paths.get(CommonUtils.DB_PROPERTIES).equals(Paths.get(PROPERTIES))) {
+            throw new IllegalStateException("Run the benchmarks with -DpropertiesFile=" + PROPERTIES);
+        }
+
+        Files.createDirectories(Paths.get(DIRECTORY));
+        Files.write(Paths.get(PROPERTIES),
+                String.join(System.lineSeparator(), "blockSize=1024", "engineMode=" + engineMode,
+                        "dataSource=file", "dataDirectory=" + DIRECTORY + "/data",
+                        "snapshotDirectory=" + DIRECTORY + "/snapshots",
+                        "statisticsDirectory=" + DIRECTORY + "/statistics", "collectStatistics=false",
+                        "metricsDirectory=" + DIRECTORY + "/metrics")
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the sales table with the given number of rows drawn uniformly over
+     * the customers and ten products. The seed only depends on the arguments, so
+     * every run reads the same table.
+     *
+     * @param rows
+     * @param customers
+     * @throws IOException
+     */
+    public static void writeSales(int rows, int customers) throws IOException {
+        new SalesGenerator(rows, customers, 10, 0, 0, rows * 31L + customers)
+                .writeFile(Paths.get(DIRECTORY, "data", TABLE + ".csv"));
+    }
+
+    /**
+     * Returns a query grouping the sales by customer with the given number of
+     * grouping variables. With equal conditions every grouping variable only
+     * matches the rows of its own customer and the engine looks the group up,
+     * otherwise every row is compared with every group.
+     *
+     * @param variables 1 to 4
+     * @param equal
+     * @return query
+     */
+    public static String query(int variables, boolean equal) {
+        StringBuilder select = new StringBuilder("select S.cust");
+        StringBuilder suchThat = new StringBuilder();
+        for (int i = 0; i < variables; i++) {
+            String variable = VARIABLES[i];
+            select.append(", sum(").append(variable).append(".S.quant), count(").append(variable)
+                    .append(".S.quant)");
+            suchThat.append(i == 0 ? " such that " : ", ").append(variable).append(".S.cust")
+                    .append(equal ? "=" : "<>").append("S.cust and ").append(variable).append(".S.quant>")
+                    .append(200 * i);
+        }
+
+        return select.append(" from ").append(TABLE).append(" S group by S.cust ; ")
+                .append(String.join(", ", Arrays.copyOf(VARIABLES, variables))).append(suchThat)
+                .toString();
+    }
+
+    /**
+     * Parses the query and generates and compiles the classes evaluating it.
+     *
+     * @param sql
+     * @return parsed query
+     */
+    public static ParsedQuery generate(String sql) {
+        ParsedQuery parsedQuery = new ParsedQuery();
+        parsedQuery.processSQL(sql);
+
+        CodeGenerator.cleanDirectory();
+        CodeGenerator.createEntities(parsedQuery, new MetaDataAccessObject());
+        CodeGenerator.createCompositeEntity(parsedQuery);
+        CodeGenerator.createDataAccessObject(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
+        return parsedQuery;
+    }
+
+    /**
+     * Loads the generated data access object.
+     *
+     * @return data access object
+     * @throws ReflectiveOperationException
+     */
+    public static Object newDataAccessObject() throws ReflectiveOperationException {
+        return Class.forName("main.generated.DataAccessObject").getConstructor().newInstance();
+    }
+
+    public static RelationCursor openCursor(Object dao) throws ReflectiveOperationException {
+        Method openCursor = dao.getClass().getMethod("openCursor", Connection.class, String.class,
+                ZoneMapFilter.class);
+        return (RelationCursor) openCursor.invoke(dao, null, TABLE, null);
+    }
+
+    /**
+     * Returns the method of the generated data access object binding a block of
+     * rows of the sales table.
+     */
+    public static Method getRowsMethod(Object dao) throws ReflectiveOperationException {
+        for (Method method : dao.getClass().getMethods()) {
+            if (method.getName().startsWith("get") && method.getName().endsWith("Rows")
+                    && method.getParameterCount() == 1) {
+                return method;
+            }
+        }
+        throw new NoSuchMethodException("get<Table>Rows");
+    }
+
+    /**
+     * Returns the private method of the generated evaluation engine running one
+     * scan.
+     */
+    public static Method getStreamTableBlocksMethod() throws ReflectiveOperationException {
+        for (Method method : Class.forName("main.generated.EvaluationEngine").getDeclaredMethods()) {
+            if (method.getName().equals("streamTableBlocks")) {
+                method.setAccessible(true);
+                return method;
+            }
+        }
+        throw new NoSuchMethodException("streamTableBlocks");
+    }
+
+    /**
+     * Creates an empty MF-Table of the type taken by the scan of the generated
+     * evaluation engine.
+     */
+    public static Object newMFTable(Method streamTableBlocks) throws ReflectiveOperationException {
+        Class<?> type = streamTableBlocks.getParameterTypes()[1];
+        if (type.isAssignableFrom(HashMap.class)) {
+            return new HashMap<>();
+        }
+        if (type.isAssignableFrom(TreeSet.class)) {
+            return new TreeSet<>();
+        }
+        return type.getConstructor().newInstance();
+    }
+}
@@ -0,0 +1,12 @@
+/*
+Customers and products whose average quantity is above 100, with the number
+of sales of other customers in the month of the first sale of the group
+*/
+
+select S.cust as CUST, S.prod as PROD, S.month as MONTH, avg(x.S.quant) as AVG, count(z.S.quant) as COUNT
+from sales S
+group by S.cust, S.prod ; x, z
+such that x.S.cust = S.cust and x.S.prod = S.prod,
+z.S.cust != S.cust and z.S.month = S.month
+having avg(x.S.quant) > 100 and count(z.S.quant) > 0
+order by S.cust desc
\ No newline at end of file
@@ -1,15 +1,27 @@
 package main;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
 import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import main.database.MetaDataAccessObject;
+import main.database.SnapshotStore;
 import main.parser.ParsedQuery;
+import main.parser.TableInformation;
 import main.readwrite.ReadWrite;
 import main.utils.CodeGenerator;
 import main.utils.CommonUtils;
+import main.utils.FlightEvents;
+import main.utils.PhaseMetrics;
+import main.utils.PlanExplainer;
+import main.utils.QueryPlan;
+import main.utils.RunMetrics;
 
 /**
  * Stating point for the program. Must use a JDK to run and other classes and
@@ -25,19 +37,50 @@ public class Application {
     public static void main(String[] args) {
         try (Scanner sc = new Scanner(System.in)) {
             ParsedQuery parsedQuery = ReadWrite.acceptUserInput(sc);
+
+            if (args.length > 0 && args[0].equals("snapshot")) {
+                createSnapshots(parsedQuery);
+                CommonUtils.exit(0);
+            }
+
             MetaDataAccessObject dao = new MetaDataAccessObject();
 
+            if (args.length > 0 && args[0].equals("explain")) {
+                CodeGenerator.resolveMetadata(parsedQuery, dao);
+                System.out.println(PlanExplainer.explain(parsedQuery, QueryPlan.of(parsedQuery)));
+                CommonUtils.exit(0);
+            }
+
             CodeGenerator.cleanDirectory();
-            CodeGenerator.createEntities(parsedQuery, dao);
-            CodeGenerator.createCompositeEntity(parsedQuery);
-            CodeGenerator.createDataAccessObject(parsedQuery);
-            CodeGenerator.createEvaluationEngine(parsedQuery);
+            generate("createEntities", () -> CodeGenerator.createEntities(parsedQuery, dao));
+            generate("createCompositeEntity", () -> CodeGenerator.createCompositeEntity(parsedQuery));
+            generate("createDataAccessObject", () -> CodeGenerator.createDataAccessObject(parsedQuery));
+            QueryPlan plan = QueryPlan.of(parsedQuery);
+            // Compiles counters into the engine, reported with the plan after the result
+            plan.setAnalyze(args.length > 0 && args[0].equals("analyze"));
+            generate("createEvaluationEngine", () -> CodeGenerator.createEvaluationEngine(parsedQuery, plan));
 
             if (ReadWrite.isExecute(sc)) {
+                if (parsedQuery.getParameterCount() > 0) {
+                    Object[] values = ReadWrite.readParameters(sc, parsedQuery.getParameterCount());
+                    Class.forName("main.generated.CompositeEntity").getMethod("bind", Object[].class).invoke(null,
+                            (Object) values);
+                }
+
                 Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
                 Method method = clazz.getMethod("main", String[].class);
                 method.invoke(null, (Object) null);
             }
+            RunMetrics.writeReport(parsedQuery, plan.getEngineMode());
+        } catch (InvocationTargetException e) {
+            // The engine ends a query it can not complete, e.g. once its groups
+            // exceed the memory budget
+            if (e.getCause() instanceof IllegalStateException) {
+                LOG.log(Level.SEVERE, "Could not execute query: {0}", e.getCause().getMessage());
+            } else {
+                LOG.log(Level.SEVERE, "Could not execute evaluation engine.", e);
+            }
+            CommonUtils.exit(1);
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "Could not execute evaluation engine.", e);
             CommonUtils.exit(1);
@@ -46,4 +89,40 @@ public class Application {
         CommonUtils.exit(0);
     }
 
+    /**
+     * Runs a create step of the code generator as a phase of the run metrics and
+     * a code generation event of the flight recorder.
+     *
+     * @param step
+     * @param generator
+     */
+    private static void generate(String step, Runnable generator) {
+        PhaseMetrics phase = RunMetrics.begin(step);
+        FlightEvents.CodeGeneration event = new FlightEvents.CodeGeneration();
+        event.begin();
+        generator.run();
+        event.record(step);
+        phase.end();
+    }
+
+    /**
+     * Takes a local snapshot of every table referenced in the query. Later runs
+     * read the snapshots instead of the tables until the tables are modified.
+     *
+     * @param parsedQuery
+     */
+    private static void createSnapshots(ParsedQuery parsedQuery) {
+        Properties credentials = ReadWrite.readProperties(CommonUtils.DB_PROPERTIES);
+        SnapshotStore store = new SnapshotStore(credentials);
+
+        try (Connection connection = DriverManager.getConnection(credentials.getProperty("url"), credentials)) {
+            for (TableInformation information : parsedQuery.getRelations().values()) {
+                store.createSnapshot(connection, information.getTableName());
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.SEVERE, "Could not create snapshot.", e);
+            CommonUtils.exit(1);
+        }
+    }
+
 }
@@ -0,0 +1,194 @@
+package main.database;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SplittableRandom;
+
+import main.parser.ColumnStatistics;
+import main.utils.HyperLogLog;
+
+/**
+ * Collects statistics of a column from the values read by a scan: the number of
+ * values and nulls, the minimum and maximum value, an estimate of the distinct
+ * values and a uniform sample of the values. The sample is a reservoir, every
+ * value read so far has the same chance to be in it.
+ *
+ * @author R&B
+ *
+ */
+public class ColumnProfile {
+
+    public static final int SAMPLE_SIZE = 100;
+
+    private static final byte NULL = 0;
+
+    private static final byte INT = 1;
+
+    private static final byte LONG = 2;
+
+    private static final byte DOUBLE = 3;
+
+    private static final byte STRING = 4;
+
+    private final String columnName;
+
+    private final HyperLogLog distinct;
+
+    private final List<Object> sample;
+
+    // Seeded so that repeated scans of the same rows keep the same sample
+    private final SplittableRandom random;
+
+    private long values;
+
+    private long nulls;
+
+    private Comparable<Object> min;
+
+    private Comparable<Object> max;
+
+    public ColumnProfile(String columnName) {
+        this.columnName = columnName;
+        this.distinct = new HyperLogLog();
+        this.sample = new ArrayList<>(SAMPLE_SIZE);
+        this.random = new SplittableRandom(columnName.hashCode());
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Adds a value read from the column.
+     *
+     * @param value
+     */
+    @SuppressWarnings("unchecked")
+    public void add(Object value) {
+        if (value == null) {
+            nulls++;
+            return;
+        }
+
+        values++;
+        distinct.add(value);
+
+        Comparable<Object> comparable = (Comparable<Object>) value;
+        if (min == null || comparable.compareTo(min) < 0) {
+            min = comparable;
+        }
+        if (max == null || comparable.compareTo(max) > 0) {
+            max = comparable;
+        }
+
+        if (sample.size() < SAMPLE_SIZE) {
+            sample.add(value);
+        } else {
+            long slot = random.nextLong(values);
+            if (slot < SAMPLE_SIZE) {
+                sample.set((int) slot, value);
+            }
+        }
+    }
+
+    /**
+     * Writes the statistics of the column. The distinct values are written as
+     * their estimate.
+     *
+     * @param output
+     * @throws IOException
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeUTF(columnName);
+        output.writeLong(values);
+        output.writeLong(nulls);
+        output.writeDouble(Math.min(values, distinct.estimate()));
+        writeValue(output, min);
+        writeValue(output, max);
+        output.writeInt(sample.size());
+        for (Object value : sample) {
+            writeValue(output, value);
+        }
+    }
+
+    /**
+     * Reads the statistics of a column written by write.
+     *
+     * @param input
+     * @param columnStatistics receives the statistics by column name
+     * @throws IOException
+     */
+    public static void read(DataInput input, Map<String, ColumnStatistics> columnStatistics) throws IOException {
+        String name = input.readUTF();
+        long values = input.readLong();
+        long nulls = input.readLong();
+        double distinctValues = input.readDouble();
+        Object min = readValue(input);
+        Object max = readValue(input);
+
+        int sampleSize = input.readInt();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < sampleSize; i++) {
+            counts.merge(String.valueOf(readValue(input)), 1, Integer::sum);
+        }
+
+        double nullFraction = values + nulls > 0 ? (double) nulls / (values + nulls) : 0;
+
+        // As in ANALYZE, a value is common if it is seen more than once in the
+        // sample and clearly more often than the average value
+        double averageCount = 1.25 * sampleSize / Math.max(1, distinctValues);
+        List<String> mostCommonValues = new ArrayList<>();
+        List<Double> mostCommonFrequencies = new ArrayList<>();
+        for (Entry<String, Integer> count : counts.entrySet()) {
+            if (count.getValue() > 1 && count.getValue() > averageCount) {
+                mostCommonValues.add(count.getKey());
+                mostCommonFrequencies.add((1 - nullFraction) * count.getValue() / sampleSize);
+            }
+        }
+
+        columnStatistics.put(name, new ColumnStatistics(nullFraction, Math.max(1, distinctValues), mostCommonValues,
+                mostCommonFrequencies, min, max));
+    }
+
+    private static void writeValue(DataOutput output, Object value) throws IOException {
+        if (value instanceof Integer) {
+            output.writeByte(INT);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value != null) {
+            output.writeByte(STRING);
+            output.writeUTF(value.toString());
+        } else {
+            output.writeByte(NULL);
+        }
+    }
+
+    private static Object readValue(DataInput input) throws IOException {
+        byte type = input.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case INT:
+                return input.readInt();
+            case LONG:
+                return input.readLong();
+            case DOUBLE:
+                return input.readDouble();
+            case STRING:
+                return input.readUTF();
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+}
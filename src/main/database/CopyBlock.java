@@ -0,0 +1,299 @@
+package main.database;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Rows decoded from a binary copy, read as a cursor. Every value has a slot per
+ * row and column, numbers, dates and timestamps are held as primitives and text
+ * as bytes, and only become objects when read. The slots are reused once the
+ * block is cleared, so rows are handed from the reading thread to the engine
+ * without creating objects.
+ *
+ * @author R&B
+ *
+ */
+class CopyBlock implements RelationCursor {
+
+    static final byte INT = 0;
+
+    static final byte LONG = 1;
+
+    static final byte DOUBLE = 2;
+
+    static final byte DATE = 3;
+
+    static final byte TIMESTAMP = 4;
+
+    static final byte TEXT = 5;
+
+    // Blank padded text, compared ignoring trailing blanks by the database
+    static final byte CHAR = 6;
+
+    // Any other type, copied as text
+    static final byte OTHER = 7;
+
+    // Dates and timestamps are copied relative to 2000-01-01
+    private static final int EPOCH_DAYS = 10957;
+
+    private static final long EPOCH_MILLIS = EPOCH_DAYS * 86400000L;
+
+    private final String[] columnNames;
+
+    private final byte[] types;
+
+    private final int capacity;
+
+    // The slot of a column of a row is at row * columns + column
+    private final boolean[] nulls;
+
+    private final long[] longs;
+
+    private final double[] doubles;
+
+    private final byte[][] texts;
+
+    private final int[] textLengths;
+
+    private int size;
+
+    private int row;
+
+    /**
+     * @param columnNames
+     * @param types       type of every column as decoded
+     * @param capacity    rows the block holds
+     */
+    CopyBlock(String[] columnNames, byte[] types, int capacity) {
+        this.columnNames = columnNames;
+        this.types = types;
+        this.capacity = capacity;
+
+        int slots = capacity * types.length;
+        this.nulls = new boolean[slots];
+        this.longs = new long[slots];
+        this.doubles = new double[slots];
+        this.texts = new byte[slots][];
+        this.textLengths = new int[slots];
+        clear();
+    }
+
+    /**
+     * Empties the block, the slots are overwritten by the next rows.
+     */
+    void clear() {
+        size = 0;
+        row = -1;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Decodes a row of the copy into the next free row of the block.
+     *
+     * @param input  copy positioned after the field count of the row
+     * @param fields field count of the row
+     * @throws IOException
+     */
+    void read(DataInputStream input, int fields) throws IOException {
+        int slot = size * types.length;
+        for (int column = 0; column < fields; column++, slot++) {
+            int length = input.readInt();
+            nulls[slot] = length == -1;
+            if (length != -1) {
+                readValue(input, column, slot, length);
+            }
+        }
+        size++;
+    }
+
+    private void readValue(DataInputStream input, int column, int slot, int length) throws IOException {
+        switch (types[column]) {
+            case INT:
+                longs[slot] = input.readInt();
+                break;
+            case LONG:
+                longs[slot] = input.readLong();
+                break;
+            case DOUBLE:
+                doubles[slot] = input.readDouble();
+                break;
+            case DATE:
+                longs[slot] = input.readInt() + (long) EPOCH_DAYS;
+                break;
+            case TIMESTAMP:
+                longs[slot] = Math.floorDiv(input.readLong(), 1000L) + EPOCH_MILLIS;
+                break;
+            default:
+                input.readFully(reserveText(slot, length), 0, length);
+                break;
+        }
+    }
+
+    private byte[] reserveText(int slot, int length) {
+        if (texts[slot] == null || texts[slot].length < length) {
+            texts[slot] = new byte[Math.max(length, 16)];
+        }
+        textLengths[slot] = length;
+        return texts[slot];
+    }
+
+    /**
+     * Copies the current row of a block of the same columns into the next free
+     * row of this block.
+     *
+     * @param source
+     */
+    void add(CopyBlock source) {
+        int columns = types.length;
+        int from = source.row * columns;
+        int to = size * columns;
+        System.arraycopy(source.nulls, from, nulls, to, columns);
+        System.arraycopy(source.longs, from, longs, to, columns);
+        System.arraycopy(source.doubles, from, doubles, to, columns);
+        for (int column = 0; column < columns; column++) {
+            if (types[column] >= TEXT && !nulls[to + column]) {
+                int length = source.textLengths[from + column];
+                System.arraycopy(source.texts[from + column], 0, reserveText(to + column, length), 0, length);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Moves to a row of the block.
+     *
+     * @param position row starting from 0
+     */
+    void moveTo(int position) {
+        row = position;
+    }
+
+    @Override
+    public boolean next() {
+        if (row + 1 < size) {
+            row++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column - 1];
+    }
+
+    @Override
+    public Object getObject(int column) {
+        int slot = row * types.length + column - 1;
+        if (nulls[slot]) {
+            return null;
+        }
+
+        switch (types[column - 1]) {
+            case INT:
+                return (int) longs[slot];
+            case LONG:
+                return longs[slot];
+            case DOUBLE:
+                return doubles[slot];
+            case DATE:
+                return Date.valueOf(LocalDate.ofEpochDay(longs[slot]));
+            case TIMESTAMP:
+                return Timestamp.valueOf(LocalDateTime.ofEpochSecond(Math.floorDiv(longs[slot], 1000L),
+                        (int) Math.floorMod(longs[slot], 1000L) * 1000000, ZoneOffset.UTC));
+            default:
+                return new String(texts[slot], 0, textLengths[slot], StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public Integer getInteger(int column) throws SQLException {
+        int slot = row * types.length + column - 1;
+        if (nulls[slot]) {
+            return null;
+        }
+        return types[column - 1] == INT ? (int) longs[slot] : RelationCursor.super.getInteger(column);
+    }
+
+    @Override
+    public Long getLong(int column) throws SQLException {
+        int slot = row * types.length + column - 1;
+        if (nulls[slot]) {
+            return null;
+        }
+
+        byte type = types[column - 1];
+        return type == INT || type == LONG ? longs[slot] : RelationCursor.super.getLong(column);
+    }
+
+    @Override
+    public Double getDouble(int column) throws SQLException {
+        int slot = row * types.length + column - 1;
+        if (nulls[slot]) {
+            return null;
+        }
+
+        byte type = types[column - 1];
+        if (type == DOUBLE) {
+            return doubles[slot];
+        }
+        return type == INT || type == LONG ? (double) longs[slot] : RelationCursor.super.getDouble(column);
+    }
+
+    @Override
+    public Integer getEpochDay(int column) throws SQLException {
+        int slot = row * types.length + column - 1;
+        if (nulls[slot]) {
+            return null;
+        }
+        return types[column - 1] == DATE ? (int) longs[slot] : RelationCursor.super.getEpochDay(column);
+    }
+
+    @Override
+    public Long getEpochMillis(int column) throws SQLException {
+        int slot = row * types.length + column - 1;
+        if (nulls[slot]) {
+            return null;
+        }
+
+        byte type = types[column - 1];
+        if (type == TIMESTAMP) {
+            return longs[slot];
+        }
+        return type == DATE ? longs[slot] * 86400000L : RelationCursor.super.getEpochMillis(column);
+    }
+
+    @Override
+    public String getString(int column) throws SQLException {
+        String value = RelationCursor.super.getString(column);
+        // Whole seconds are printed without a fraction, as by the database
+        return types[column - 1] == TIMESTAMP && value != null && value.endsWith(".0")
+                ? value.substring(0, value.length() - 2)
+                : value;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return row + 1L;
+    }
+
+    @Override
+    public void close() {
+        // Nothing is held but the slots
+    }
+}
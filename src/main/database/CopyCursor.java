@@ -0,0 +1,312 @@
+package main.database;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
+
+import main.parser.ColumnPredicate;
+
+/**
+ * Reads the rows of a relation with COPY ... TO STDOUT in the binary format of
+ * PostgreSQL instead of a result set. Only the given columns are copied and the
+ * predicates of the filter that the database evaluates exactly as the engine
+ * are added as a where clause. Every row is decoded into a CopyBlock of one
+ * row, numbers, dates and timestamps into primitives and text as bytes, which
+ * is reused for the next row. Objects are only created when a value is read.
+ * Columns of other types are copied as text. The connection is busy until the
+ * cursor is closed.
+ *
+ * @author R&B
+ *
+ */
+public class CopyCursor implements RelationCursor {
+
+    private static final byte[] SIGNATURE = "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final String DESCRIBE_QUERY = "select %s from %s limit 0";
+
+    private static final String COPY_QUERY = "copy (select %s from %s%s) to stdout with (format binary)";
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final String[] columnNames;
+
+    private final byte[] types;
+
+    private final CopyBlock row;
+
+    private final boolean filtered;
+
+    private final DataInputStream input;
+
+    private long rowsRead;
+
+    private boolean exhausted;
+
+    /**
+     * Starts copying the rows of the table.
+     *
+     * @param connection connection used by this cursor alone until it is closed
+     * @param tableName
+     * @param columns    columns to copy, all columns if empty
+     * @param filter     predicates the copied rows may be restricted to or null
+     * @param range      condition limiting the copy to part of the table or null
+     * @throws SQLException
+     */
+    public CopyCursor(Connection connection, String tableName, List<String> columns, ZoneMapFilter filter,
+            String range) throws SQLException {
+        String selection = columns.isEmpty() ? "*" : String.join(", ", columns);
+        StringBuilder copied = new StringBuilder();
+
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(String.format(DESCRIBE_QUERY, selection, tableName))) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            columnNames = new String[columnCount];
+            types = new byte[columnCount];
+            for (int column = 0; column < columnCount; column++) {
+                columnNames[column] = metaData.getColumnName(column + 1);
+                String typeName = metaData.getColumnTypeName(column + 1).toLowerCase(Locale.ROOT);
+                types[column] = getType(typeName);
+                if (column > 0) {
+                    copied.append(", ");
+                }
+                copied.append(columnNames[column]).append(getCast(typeName));
+            }
+        }
+
+        row = new CopyBlock(columnNames, types, 1);
+
+        String condition = filter == null ? null : filter.toSql(this::isExact);
+        filtered = condition != null;
+        StringBuilder where = new StringBuilder();
+        if (range != null) {
+            where.append(" where ").append(range);
+        }
+        if (condition != null) {
+            where.append(range == null ? " where " : " and ").append(condition);
+        }
+
+        String sql = String.format(COPY_QUERY, copied, tableName, where);
+        input = new DataInputStream(new BufferedInputStream(
+                new PGCopyInputStream(connection.unwrap(PGConnection.class), sql), BUFFER_BYTES));
+        readHeader(input);
+    }
+
+    private static byte getType(String typeName) {
+        switch (typeName) {
+            case "int2":
+            case "int4":
+                return CopyBlock.INT;
+            case "int8":
+                return CopyBlock.LONG;
+            case "float4":
+            case "float8":
+                return CopyBlock.DOUBLE;
+            case "date":
+                return CopyBlock.DATE;
+            case "timestamp":
+            case "timestamptz":
+                return CopyBlock.TIMESTAMP;
+            case "text":
+            case "varchar":
+                return CopyBlock.TEXT;
+            case "bpchar":
+                return CopyBlock.CHAR;
+            default:
+                return CopyBlock.OTHER;
+        }
+    }
+
+    /**
+     * Returns the cast that makes the database send the column in the format
+     * decoded for its type. Timestamps with time zone are sent in the time zone
+     * of the session, as the driver reads them.
+     */
+    private static String getCast(String typeName) {
+        switch (typeName) {
+            case "int2":
+                return "::int4";
+            case "float4":
+                return "::float8";
+            case "timestamptz":
+                return "::timestamp";
+            default:
+                return getType(typeName) == CopyBlock.OTHER ? "::text" : "";
+        }
+    }
+
+    /**
+     * Tells whether the database can evaluate the predicate without leaving out
+     * rows the engine matches: comparisons of numeric columns with numbers and
+     * equality of text columns with strings. Ordering of text depends on the
+     * collation, and blank padded columns compare equal ignoring trailing
+     * blanks, so those are left to the engine.
+     */
+    private boolean isExact(ColumnPredicate predicate) {
+        int column = findColumn(predicate.getColumn());
+        if (column == -1 || predicate.getParameter() != null) {
+            return false;
+        }
+
+        byte type = types[column];
+        if (predicate.isString()) {
+            return (type == CopyBlock.TEXT && predicate.getOperator().matches("!?="))
+                    || (type == CopyBlock.CHAR && predicate.getOperator().equals("="));
+        }
+        return (type == CopyBlock.INT || type == CopyBlock.LONG || type == CopyBlock.DOUBLE)
+                && Double.isFinite(Double.parseDouble(predicate.getValue()));
+    }
+
+    private int findColumn(String name) {
+        for (int column = 0; column < columnNames.length; column++) {
+            if (columnNames[column].equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the signature and the header of a binary copy.
+     *
+     * @param input
+     * @throws SQLException if the copy does not start with the signature
+     */
+    static void readHeader(DataInputStream input) throws SQLException {
+        try {
+            byte[] signature = new byte[SIGNATURE.length];
+            input.readFully(signature);
+            for (int i = 0; i < SIGNATURE.length; i++) {
+                if (signature[i] != SIGNATURE[i]) {
+                    throw new SQLException("Unexpected start of binary copy.");
+                }
+            }
+            input.readInt();
+            input.skipBytes(input.readInt());
+        } catch (IOException e) {
+            throw new SQLException("Could not read binary copy.", e);
+        }
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (exhausted) {
+            return false;
+        }
+
+        try {
+            short fields = input.readShort();
+            if (fields == -1) {
+                exhausted = true;
+                return false;
+            }
+
+            row.clear();
+            row.read(input, fields);
+            row.next();
+        } catch (IOException e) {
+            throw new SQLException("Could not read binary copy.", e);
+        }
+
+        rowsRead++;
+        return true;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column - 1];
+    }
+
+    @Override
+    public Object getObject(int column) {
+        return row.getObject(column);
+    }
+
+    @Override
+    public Integer getInteger(int column) throws SQLException {
+        return row.getInteger(column);
+    }
+
+    @Override
+    public Long getLong(int column) throws SQLException {
+        return row.getLong(column);
+    }
+
+    @Override
+    public Double getDouble(int column) throws SQLException {
+        return row.getDouble(column);
+    }
+
+    @Override
+    public Integer getEpochDay(int column) throws SQLException {
+        return row.getEpochDay(column);
+    }
+
+    @Override
+    public Long getEpochMillis(int column) throws SQLException {
+        return row.getEpochMillis(column);
+    }
+
+    @Override
+    public String getString(int column) throws SQLException {
+        return row.getString(column);
+    }
+
+    /**
+     * Returns an empty block for rows of this copy.
+     *
+     * @param capacity rows the block holds
+     * @return block
+     */
+    CopyBlock newBlock(int capacity) {
+        return new CopyBlock(columnNames, types, capacity);
+    }
+
+    /**
+     * Copies the current row into the next free row of a block of this copy.
+     *
+     * @param block
+     */
+    void copyRowTo(CopyBlock block) {
+        block.add(row);
+    }
+
+    @Override
+    public boolean hasSkippedRows() {
+        return filtered;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Closes the stream, cancelling the copy if not all rows were read.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            input.close();
+        } catch (IOException e) {
+            throw new SQLException("Could not close binary copy.", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package main.database;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Where the rows of the tables are read from. The source is read from the
+ * "dataSource" property of the properties file.
+ *
+ * @author R&B
+ *
+ */
+public enum DataSource {
+
+    /**
+     * Tables are read from PostgreSQL, or from up to date local snapshots.
+     */
+    DATABASE("database"),
+
+    /**
+     * Every table is read from a CSV file with a typed header. No database
+     * connection is made.
+     */
+    FILE("file");
+
+    private static final Logger LOG = Logger.getLogger(DataSource.class.getCanonicalName());
+
+    private final String propertyValue;
+
+    private DataSource(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    public String getPropertyValue() {
+        return propertyValue;
+    }
+
+    /**
+     * Resolves the data source from the properties. Defaults to DATABASE if the
+     * property is missing or unknown.
+     *
+     * @param properties
+     * @return DataSource
+     */
+    public static DataSource fromProperties(Properties properties) {
+        String value = properties.getProperty("dataSource", DATABASE.propertyValue).trim();
+        for (DataSource source : values()) {
+            if (source.propertyValue.equalsIgnoreCase(value)) {
+                return source;
+            }
+        }
+
+        LOG.log(Level.WARNING, "Unknown data source \"{0}\". Using database.", value);
+        return DATABASE;
+    }
+}
@@ -0,0 +1,344 @@
+package main.database;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Parses one chunk of a CSV file into column arrays. Numbers are parsed straight
+ * from the bytes of the file, only text columns create String objects. Quoted
+ * numbers are parsed from their text. Empty fields of text columns are read as
+ * null if unquoted, empty fields of number columns always. A number that does
+ * not fit its column fails the chunk with the position of its row.
+ *
+ * @author R&B
+ *
+ */
+class FlatFileChunk {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Longer numbers may overflow a long and are parsed by Long.parseLong
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final byte[] types;
+
+    private final Object[] columns;
+
+    private final BitSet[] nulls;
+
+    private final ByteBuffer buffer;
+
+    private final long offset;
+
+    private byte[] text;
+
+    private int position;
+
+    private int rowStart;
+
+    private int rows;
+
+    /**
+     * Creates a chunk of the file.
+     *
+     * @param buffer records of the chunk
+     * @param offset position of the chunk in the file, used in messages
+     * @param types  column types
+     */
+    FlatFileChunk(ByteBuffer buffer, long offset, byte[] types) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.types = types;
+        this.columns = new Object[types.length];
+        this.nulls = new BitSet[types.length];
+        this.text = new byte[64];
+
+        for (int column = 0; column < types.length; column++) {
+            columns[column] = newArray(types[column], INITIAL_CAPACITY);
+            nulls[column] = new BitSet();
+        }
+    }
+
+    /**
+     * Parses all records of the chunk.
+     *
+     * @return this chunk
+     */
+    FlatFileChunk parse() {
+        int limit = buffer.limit();
+        while (position < limit) {
+            byte first = buffer.get(position);
+            if (first == '\n' || first == '\r') {
+                position++;
+                continue;
+            }
+
+            ensureCapacity();
+            rowStart = position;
+            for (int column = 0; column < types.length; column++) {
+                parseField(column);
+                // Skips the delimiter, a missing trailing field is read as null.
+                if (position < limit && buffer.get(position) == ',') {
+                    position++;
+                } else if (column < types.length - 1) {
+                    for (int missing = column + 1; missing < types.length; missing++) {
+                        nulls[missing].set(rows);
+                    }
+                    break;
+                }
+            }
+
+            while (position < limit && buffer.get(position) != '\n') {
+                position++;
+            }
+            rows++;
+        }
+        return this;
+    }
+
+    private void parseField(int column) {
+        int limit = buffer.limit();
+        if (position < limit && buffer.get(position) == '"') {
+            int length = parseQuoted();
+            if (types[column] == SnapshotFile.STRING) {
+                setText(column, length);
+            } else if (length == 0) {
+                nulls[column].set(rows);
+            } else {
+                setQuotedNumber(column, length);
+            }
+            return;
+        }
+
+        int start = position;
+        while (position < limit) {
+            byte current = buffer.get(position);
+            if (current == ',' || current == '\n' || current == '\r') {
+                break;
+            }
+            position++;
+        }
+
+        if (start == position) {
+            nulls[column].set(rows);
+            return;
+        }
+
+        switch (types[column]) {
+            case SnapshotFile.INT:
+                ((int[]) columns[column])[rows] = toInt(column, parseLong(column, start, position));
+                break;
+            case SnapshotFile.LONG:
+                ((long[]) columns[column])[rows] = parseLong(column, start, position);
+                break;
+            case SnapshotFile.DOUBLE:
+                ((double[]) columns[column])[rows] = parseDouble(column, start, position);
+                break;
+            default:
+                copyText(start, position);
+                setText(column, position - start);
+        }
+    }
+
+    private int parseQuoted() {
+        int limit = buffer.limit();
+        int length = 0;
+        position++;
+
+        while (position < limit) {
+            byte current = buffer.get(position++);
+            if (current == '"') {
+                if (position < limit && buffer.get(position) == '"') {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            growText(length + 1);
+            text[length++] = current;
+        }
+        return length;
+    }
+
+    private void setText(int column, int length) {
+        ((String[]) columns[column])[rows] = new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a quoted number from the text it was copied to.
+     */
+    private void setQuotedNumber(int column, int length) {
+        String value = new String(text, 0, length, StandardCharsets.UTF_8).trim();
+        try {
+            switch (types[column]) {
+                case SnapshotFile.INT:
+                    ((int[]) columns[column])[rows] = toInt(column, Long.parseLong(value));
+                    break;
+                case SnapshotFile.LONG:
+                    ((long[]) columns[column])[rows] = Long.parseLong(value);
+                    break;
+                default:
+                    ((double[]) columns[column])[rows] = Double.parseDouble(value);
+            }
+        } catch (NumberFormatException e) {
+            throw invalidNumber(column, value);
+        }
+    }
+
+    private int toInt(int column, long value) {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalidNumber(column, String.valueOf(value));
+        }
+        return (int) value;
+    }
+
+    private NumberFormatException invalidNumber(int column, String value) {
+        String type = types[column] == SnapshotFile.INT ? "integer" : types[column] == SnapshotFile.LONG ? "bigint"
+                : "double";
+        return new NumberFormatException(String.format("Invalid %s \"%s\" in column %d of the row at byte %d", type,
+                value, column + 1, offset + rowStart));
+    }
+
+    private void copyText(int start, int end) {
+        growText(end - start);
+        for (int i = start; i < end; i++) {
+            text[i - start] = buffer.get(i);
+        }
+    }
+
+    private void growText(int length) {
+        if (length > text.length) {
+            text = Arrays.copyOf(text, Math.max(length, text.length * 2));
+        }
+    }
+
+    private long parseLong(int column, int start, int end) {
+        boolean negative = buffer.get(start) == '-';
+        int first = negative || buffer.get(start) == '+' ? start + 1 : start;
+        if (first == end || end - first > MAX_LONG_DIGITS) {
+            return parseLongText(column, start, end);
+        }
+
+        long value = 0;
+        for (int i = first; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return parseLongText(column, start, end);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private long parseLongText(int column, int start, int end) {
+        copyText(start, end);
+        String value = new String(text, 0, end - start, StandardCharsets.US_ASCII);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw invalidNumber(column, value);
+        }
+    }
+
+    /**
+     * Parses plain decimal numbers with up to 15 significant digits without
+     * creating a string, which is exact for such numbers. Anything else is left
+     * to Double.parseDouble.
+     */
+    private double parseDouble(int column, int start, int end) {
+        boolean negative = buffer.get(start) == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+
+        for (int i = negative || buffer.get(start) == '+' ? start + 1 : start; i < end; i++) {
+            byte current = buffer.get(i);
+            if (current == '.' && scale == -1) {
+                scale = 0;
+                continue;
+            }
+
+            int digit = current - '0';
+            if (digit < 0 || digit > 9 || digits == 15 || scale == POWERS_OF_TEN.length - 1) {
+                return parseDoubleText(column, start, end);
+            }
+
+            mantissa = mantissa * 10 + digit;
+            digits += mantissa == 0 ? 0 : 1;
+            scale += scale == -1 ? 0 : 1;
+        }
+
+        double value = scale <= 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleText(int column, int start, int end) {
+        copyText(start, end);
+        String value = new String(text, 0, end - start, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw invalidNumber(column, value);
+        }
+    }
+
+    private void ensureCapacity() {
+        int capacity = capacityOf(types[0], columns[0]);
+        if (rows < capacity) {
+            return;
+        }
+
+        for (int column = 0; column < types.length; column++) {
+            columns[column] = copyOf(types[column], columns[column], capacity * 2);
+        }
+    }
+
+    static Object newArray(byte type, int length) {
+        switch (type) {
+            case SnapshotFile.INT:
+                return new int[length];
+            case SnapshotFile.LONG:
+                return new long[length];
+            case SnapshotFile.DOUBLE:
+                return new double[length];
+            default:
+                return new String[length];
+        }
+    }
+
+    private static int capacityOf(byte type, Object array) {
+        switch (type) {
+            case SnapshotFile.INT:
+                return ((int[]) array).length;
+            case SnapshotFile.LONG:
+                return ((long[]) array).length;
+            case SnapshotFile.DOUBLE:
+                return ((double[]) array).length;
+            default:
+                return ((String[]) array).length;
+        }
+    }
+
+    private static Object copyOf(byte type, Object array, int length) {
+        Object copy = newArray(type, length);
+        System.arraycopy(array, 0, copy, 0, Math.min(length, capacityOf(type, array)));
+        return copy;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    Object getColumn(int column) {
+        return columns[column];
+    }
+
+    BitSet getNulls(int column) {
+        return nulls[column];
+    }
+}
@@ -0,0 +1,49 @@
+package main.database;
+
+/**
+ * Iterates over the rows of a table read from a CSV file.
+ *
+ * @author R&B
+ *
+ */
+public class FlatFileCursor implements RelationCursor {
+
+    private final FlatFileTable table;
+
+    private int row;
+
+    public FlatFileCursor(FlatFileTable table) {
+        this.table = table;
+        this.row = -1;
+    }
+
+    @Override
+    public boolean next() {
+        return ++row < table.getRowCount();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return Math.min(row + 1, table.getRowCount());
+    }
+
+    @Override
+    public int getColumnCount() {
+        return table.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return table.getColumnName(column - 1);
+    }
+
+    @Override
+    public Object getObject(int column) {
+        return table.getObject(column - 1, row);
+    }
+
+    @Override
+    public void close() {
+        // Rows stay in memory for the following scans of the table.
+    }
+}
@@ -0,0 +1,126 @@
+package main.database;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import main.utils.CommonUtils;
+import main.utils.MemoryBudget;
+
+/**
+ * Maps table names to CSV files in the "dataDirectory" directory, e.g. the table
+ * sales is read from sales.csv. A file is parsed on the first scan of the table
+ * and kept in memory for the following scans if it fits into the memory budget,
+ * else it is parsed again by every scan. The kept tables are released when the
+ * store is closed.
+ *
+ * @author R&B
+ *
+ */
+public class FlatFileStore implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(FlatFileStore.class.getCanonicalName());
+
+    private static final String DEFAULT_DIRECTORY = "./data";
+
+    private static final String EXTENSION = ".csv";
+
+    private final Path directory;
+
+    private final Map<String, FlatFileTable> tables;
+
+    private final MemoryBudget memory;
+
+    private long cachedBytes;
+
+    public FlatFileStore(Properties properties) {
+        directory = Paths.get(properties.getProperty("dataDirectory", DEFAULT_DIRECTORY));
+        tables = new HashMap<>();
+        memory = new MemoryBudget("cached tables", 0);
+    }
+
+    public Path getPath(String tableName) {
+        return directory.resolve(tableName + EXTENSION);
+    }
+
+    public boolean exists(String tableName) {
+        return Files.isRegularFile(getPath(tableName));
+    }
+
+    /**
+     * Reads the column types from the header of the file.
+     *
+     * @param tableName
+     * @return column names in camel case and their java types
+     * @throws IOException
+     */
+    public Map<String, Class<?>> getColumnTypes(String tableName) throws IOException {
+        FlatFileTable header = FlatFileTable.readHeader(getPath(tableName));
+        Map<String, Class<?>> columnTypes = new LinkedHashMap<>();
+        for (int column = 0; column < header.getColumnCount(); column++) {
+            columnTypes.put(CommonUtils.toCamelCase(header.getColumnName(column), false),
+                    FlatFileTable.javaTypeOf(header.getColumnType(column)));
+        }
+        return columnTypes;
+    }
+
+    /**
+     * Estimates the number of rows from the file size and the length of the
+     * first record, so that the file need not be read to plan the scans.
+     *
+     * @param tableName
+     * @return estimated number of rows
+     * @throws IOException
+     */
+    public int estimateRowCount(String tableName) throws IOException {
+        Path path = getPath(tableName);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            String record = reader.readLine();
+            if (header == null || record == null) {
+                return 0;
+            }
+
+            long dataSize = Files.size(path) - header.length() - 1;
+            return (int) Math.min(Integer.MAX_VALUE, dataSize / (record.length() + 1));
+        }
+    }
+
+    public RelationCursor open(String tableName) throws SQLException {
+        FlatFileTable table = tables.get(tableName);
+        if (table == null) {
+            try {
+                table = FlatFileTable.load(getPath(tableName));
+            } catch (IOException | RuntimeException e) {
+                throw new SQLException("Could not read " + getPath(tableName), e);
+            }
+
+            long tableBytes = table.getMemoryBytes();
+            if (memory.reserve(cachedBytes + tableBytes)) {
+                cachedBytes += tableBytes;
+                tables.put(tableName, table);
+            } else {
+                LOG.log(Level.WARNING, "{0} does not fit into the memory budget, it is read again by every scan: {1}",
+                        new Object[] { getPath(tableName), memory });
+            }
+        }
+        return new FlatFileCursor(table);
+    }
+
+    @Override
+    public void close() {
+        tables.clear();
+        cachedBytes = 0;
+        memory.release();
+    }
+}
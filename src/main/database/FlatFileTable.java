@@ -0,0 +1,269 @@
+package main.database;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A table read from a CSV file into column arrays. The first line of the file
+ * names the columns and their types, e.g. "cust:string,quant:integer". Columns
+ * without a type are read as text. The rest of the file is memory mapped, split
+ * into chunks at line breaks and the chunks are parsed in parallel. Quoted
+ * fields must not contain line breaks.
+ *
+ * @author R&B
+ *
+ */
+public class FlatFileTable {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+    private static final int REFERENCE_BYTES = 4;
+
+    // Headers of a string and of its array
+    private static final int STRING_BYTES = 40;
+
+    private final List<String> columnNames;
+
+    private final byte[] columnTypes;
+
+    private final Object[] columns;
+
+    private final BitSet[] nulls;
+
+    private int rowCount;
+
+    private FlatFileTable(List<String> columnNames, byte[] columnTypes) {
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.columns = new Object[columnTypes.length];
+        this.nulls = new BitSet[columnTypes.length];
+    }
+
+    /**
+     * Reads the typed header of the file.
+     *
+     * @param path
+     * @return table without rows
+     * @throws IOException
+     */
+    public static FlatFileTable readHeader(Path path) throws IOException {
+        String header;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            header = reader.readLine();
+        }
+
+        if (header == null || header.trim().isEmpty()) {
+            throw new IOException("Missing header in " + path);
+        }
+
+        List<String> names = new ArrayList<>();
+        String[] fields = header.trim().split(",");
+        byte[] types = new byte[fields.length];
+
+        for (int i = 0; i < fields.length; i++) {
+            String[] nameAndType = fields[i].trim().split(":");
+            names.add(nameAndType[0].trim());
+            types[i] = nameAndType.length > 1 ? typeOf(nameAndType[1].trim()) : SnapshotFile.STRING;
+        }
+
+        return new FlatFileTable(names, types);
+    }
+
+    private static byte typeOf(String typeName) {
+        switch (typeName.toLowerCase()) {
+            case "integer":
+            case "int":
+            case "smallint":
+                return SnapshotFile.INT;
+            case "bigint":
+            case "long":
+                return SnapshotFile.LONG;
+            case "double":
+            case "float":
+            case "real":
+            case "numeric":
+                return SnapshotFile.DOUBLE;
+            default:
+                return SnapshotFile.STRING;
+        }
+    }
+
+    /**
+     * Returns the java type used in the generated classes for a column type.
+     *
+     * @param type
+     * @return java type
+     */
+    public static Class<?> javaTypeOf(byte type) {
+        switch (type) {
+            case SnapshotFile.INT:
+                return Integer.class;
+            case SnapshotFile.LONG:
+                return Long.class;
+            case SnapshotFile.DOUBLE:
+                return Double.class;
+            default:
+                return String.class;
+        }
+    }
+
+    /**
+     * Reads all rows of the file.
+     *
+     * @param path
+     * @return table
+     * @throws IOException
+     */
+    public static FlatFileTable load(Path path) throws IOException {
+        FlatFileTable table = readHeader(path);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                    Math.max(MIN_CHUNK_SIZE, size / (4L * Runtime.getRuntime().availableProcessors())));
+
+            long start = nextLine(channel, 0);
+            while (start < size) {
+                long end = nextLine(channel, Math.min(size, start + chunkSize));
+                buffers.add(channel.map(MapMode.READ_ONLY, start, end - start));
+                offsets.add(start);
+                start = end;
+            }
+        }
+
+        List<FlatFileChunk> chunks = IntStream.range(0, buffers.size()).parallel()
+                .mapToObj(chunk -> new FlatFileChunk(buffers.get(chunk), offsets.get(chunk), table.columnTypes)
+                        .parse())
+                .collect(Collectors.toList());
+
+        table.merge(chunks);
+        return table;
+    }
+
+    /**
+     * Finds the position after the next line break at or after the given
+     * position.
+     */
+    private static long nextLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        long current = position;
+
+        while (current < channel.size()) {
+            window.clear();
+            int read = channel.read(window, current);
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return channel.size();
+    }
+
+    private void merge(List<FlatFileChunk> chunks) {
+        for (FlatFileChunk chunk : chunks) {
+            rowCount += chunk.getRows();
+        }
+
+        for (int column = 0; column < columnTypes.length; column++) {
+            columns[column] = FlatFileChunk.newArray(columnTypes[column], rowCount);
+            nulls[column] = new BitSet();
+
+            int offset = 0;
+            for (FlatFileChunk chunk : chunks) {
+                System.arraycopy(chunk.getColumn(column), 0, columns[column], offset, chunk.getRows());
+                BitSet chunkNulls = chunk.getNulls(column);
+                for (int row = chunkNulls.nextSetBit(0); row >= 0; row = chunkNulls.nextSetBit(row + 1)) {
+                    nulls[column].set(offset + row);
+                }
+                offset += chunk.getRows();
+            }
+        }
+    }
+
+    /**
+     * Estimates the bytes held by the rows, a string by its characters and the
+     * headers of the string and its array.
+     *
+     * @return bytes
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (int column = 0; column < columnTypes.length; column++) {
+            switch (columnTypes[column]) {
+                case SnapshotFile.INT:
+                    bytes += (long) Integer.BYTES * rowCount;
+                    break;
+                case SnapshotFile.LONG:
+                case SnapshotFile.DOUBLE:
+                    bytes += (long) Long.BYTES * rowCount;
+                    break;
+                default:
+                    for (String value : (String[]) columns[column]) {
+                        bytes += REFERENCE_BYTES + (value == null ? 0 : STRING_BYTES + value.length());
+                    }
+                    break;
+            }
+            bytes += nulls[column].size() / Byte.SIZE;
+        }
+        return bytes;
+    }
+
+    public int getColumnCount() {
+        return columnNames.size();
+    }
+
+    public String getColumnName(int column) {
+        return columnNames.get(column);
+    }
+
+    public byte getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isNull(int column, int row) {
+        return nulls[column].get(row);
+    }
+
+    public Object getColumn(int column) {
+        return columns[column];
+    }
+
+    public Object getObject(int column, int row) {
+        if (nulls[column].get(row)) {
+            return null;
+        }
+
+        switch (columnTypes[column]) {
+            case SnapshotFile.INT:
+                return ((int[]) columns[column])[row];
+            case SnapshotFile.LONG:
+                return ((long[]) columns[column])[row];
+            case SnapshotFile.DOUBLE:
+                return ((double[]) columns[column])[row];
+            default:
+                return ((String[]) columns[column])[row];
+        }
+    }
+}
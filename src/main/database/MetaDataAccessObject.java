@@ -1,22 +1,35 @@
 package main.database;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import main.parser.ColumnStatistics;
+import main.parser.ColumnType;
 import main.parser.TableInformation;
 import main.readwrite.ReadWrite;
 import main.utils.CommonUtils;
 
 /**
  * The class connects to the database using properties defined in the properties
- * file to fetch metadata for tables.
+ * file to fetch metadata for tables. If the tables are read from files, the
+ * metadata is taken from the file headers instead. Statistics collected by the
+ * evaluation engine replace those of the database or the estimates of a file
+ * if they were collected after the table was last analyzed or the file was
+ * last modified.
  *
  * @author R&B
  *
@@ -25,33 +38,53 @@ public class MetaDataAccessObject {
 
     private static final Logger LOG = Logger.getLogger(MetaDataAccessObject.class.getCanonicalName());
 
-    private static final String INFO_QUERY = "select column_name, data_type from information_schema.columns where table_name=?";
+    private static final String INFO_QUERY = "select column_name, data_type, numeric_scale from information_schema.columns where table_name=?";
 
-    private static final String ROW_COUNT_QUERY = "select n_live_tup from pg_stat_user_tables where relname=?";
+    private static final String ROW_COUNT_QUERY = "select n_live_tup, extract(epoch from greatest(last_analyze, last_autoanalyze)) * 1000 from pg_stat_user_tables where relname=?";
+
+    private static final String STATISTICS_QUERY = "select attname, null_frac, n_distinct, most_common_vals::text::text[], most_common_freqs from pg_stats where tablename=?";
 
     private final Properties credentials;
 
+    private final DataSource dataSource;
+
+    private final StatisticsStore statistics;
+
     public MetaDataAccessObject() {
         credentials = ReadWrite.readProperties(CommonUtils.DB_PROPERTIES);
+        dataSource = DataSource.fromProperties(credentials);
+        statistics = new StatisticsStore(credentials);
     }
 
     public void populateTableMetadata(TableInformation information) {
+        if (dataSource == DataSource.FILE) {
+            populateFileMetadata(information);
+            return;
+        }
+
         String tableName = information.getTableName();
-        Map<String, Class<?>> columns = information.getRequiredColumns();
 
         try (Connection connection = DriverManager.getConnection(credentials.getProperty("url"), credentials);
                 PreparedStatement columnInfoStatement = connection.prepareStatement(INFO_QUERY);
-                PreparedStatement rowCountStatement = connection.prepareStatement(ROW_COUNT_QUERY)) {
+                PreparedStatement rowCountStatement = connection.prepareStatement(ROW_COUNT_QUERY);
+                PreparedStatement statisticsStatement = connection.prepareStatement(STATISTICS_QUERY)) {
 
             // Fetches column data type
             columnInfoStatement.setString(1, tableName);
             ResultSet columnInfoResult = columnInfoStatement.executeQuery();
-            transformResultSet(tableName, columnInfoResult, columns);
+            transformResultSet(columnInfoResult, information);
 
             // Fetches the row count statistic
             rowCountStatement.setString(1, tableName);
             ResultSet rowCountResult = rowCountStatement.executeQuery();
-            processRowCount(rowCountResult, information);
+            long analyzed = processRowCount(rowCountResult, information);
+
+            // Fetches the column statistics used by the planner
+            statisticsStatement.setString(1, tableName);
+            ResultSet statisticsResult = statisticsStatement.executeQuery();
+            processStatistics(statisticsResult, information);
+
+            statistics.load(information, analyzed);
 
         } catch (SQLException e) {
             LOG.log(Level.SEVERE, "Could not execute query.", e);
@@ -59,25 +92,80 @@ public class MetaDataAccessObject {
         }
     }
 
-    private void transformResultSet(String tableName, ResultSet resultSet, Map<String, Class<?>> result)
-            throws SQLException {
+    private void populateFileMetadata(TableInformation information) {
+        String tableName = information.getTableName();
+        Map<String, Class<?>> columns = information.getRequiredColumns();
+        FlatFileStore store = new FlatFileStore(credentials);
+
+        if (!store.exists(tableName)) {
+            LOG.log(Level.SEVERE, "File for table \"{0}\" does not exist", tableName);
+            CommonUtils.exit(1);
+        }
+
+        try {
+            // Only populates data type for columns used in the query.
+            for (Entry<String, Class<?>> column : store.getColumnTypes(tableName).entrySet()) {
+                if (columns.containsKey(column.getKey())) {
+                    columns.put(column.getKey(), column.getValue());
+                }
+            }
+            information.setNumberOfRows(store.estimateRowCount(tableName));
+            statistics.load(information, Files.getLastModifiedTime(store.getPath(tableName)).toMillis());
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Could not read table file.", e);
+            CommonUtils.exit(1);
+        }
+    }
+
+    private void transformResultSet(ResultSet resultSet, TableInformation information) throws SQLException {
         if (!resultSet.next()) {
-            LOG.log(Level.SEVERE, "Table with name \"{0}\" does not exist", tableName);
+            LOG.log(Level.SEVERE, "Table with name \"{0}\" does not exist", information.getTableName());
             CommonUtils.exit(1);
         }
         // Only populates data type for columns used in the query.
         do {
             String name = CommonUtils.toCamelCase(resultSet.getString(1), false);
-            if ("integer".equalsIgnoreCase(resultSet.getString(2)) && result.containsKey(name)) {
-                result.put(name, Integer.class);
+            if (information.getRequiredColumns().containsKey(name)) {
+                int scale = resultSet.getInt(3);
+                Integer numericScale = resultSet.wasNull() ? null : scale;
+                information.setColumnType(name, ColumnType.fromSqlType(resultSet.getString(2), numericScale));
             }
 
         } while (resultSet.next());
     }
 
-    private void processRowCount(ResultSet resultSet, TableInformation information) throws SQLException {
+    /**
+     * Sets the row count and returns the time the table was last analyzed, 0 if
+     * it never was.
+     */
+    private long processRowCount(ResultSet resultSet, TableInformation information) throws SQLException {
         if (resultSet.next()) {
             information.setNumberOfRows(resultSet.getInt(1));
+            return resultSet.getLong(2);
+        }
+        return 0;
+    }
+
+    private void processStatistics(ResultSet resultSet, TableInformation information) throws SQLException {
+        while (resultSet.next()) {
+            String name = CommonUtils.toCamelCase(resultSet.getString(1), false);
+            if (!information.getRequiredColumns().containsKey(name)) {
+                continue;
+            }
+
+            List<String> mostCommonValues = new ArrayList<>();
+            List<Double> mostCommonFrequencies = new ArrayList<>();
+            Array values = resultSet.getArray(4);
+            Array frequencies = resultSet.getArray(5);
+            if (values != null && frequencies != null) {
+                mostCommonValues.addAll(Arrays.asList((String[]) values.getArray()));
+                for (Object frequency : (Object[]) frequencies.getArray()) {
+                    mostCommonFrequencies.add(((Number) frequency).doubleValue());
+                }
+            }
+
+            information.setStatistics(name, new ColumnStatistics(resultSet.getDouble(2), resultSet.getDouble(3),
+                    mostCommonValues, mostCommonFrequencies));
         }
     }
 }
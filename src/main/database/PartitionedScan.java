@@ -0,0 +1,307 @@
+package main.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads a large table through several connections at once. The pages of the
+ * table are split into disjoint ranges of ctid, each read by its own cursor
+ * and thread. A range of ctid is only read by a TID range scan from PostgreSQL
+ * 14 on, older servers would scan the whole table for every range, so tables
+ * are not split there, nor when no blocks are read ahead, as the ranges are
+ * read by threads of their own. When columns are given, every table is read with binary
+ * COPY, in one range if it is too small to be split. One snapshot is exported
+ * by the first scan and kept until this object is closed, every cursor opened
+ * by it reads that snapshot, so the rows of all scans of a query are consistent
+ * as if read by a single cursor. The connections are kept for the following
+ * scans and closed along with this object.
+ *
+ * @author R&B
+ *
+ */
+public class PartitionedScan implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(PartitionedScan.class.getCanonicalName());
+
+    private static final String VERSION_QUERY = "select current_setting('server_version_num')::int";
+
+    // First version scanning a range of ctid without reading the whole table
+    private static final int TID_RANGE_SCAN_VERSION = 140000;
+
+    private static final String PAGES_QUERY = "select pg_relation_size(?::regclass)"
+            + " / current_setting('block_size')::int";
+
+    private static final String RANGE_QUERY = "select * from %s where %s";
+
+    private static final String RANGE = "ctid >= '(%d,0)'::tid and ctid < '(%d,0)'::tid";
+
+    private static final String LAST_RANGE = "ctid >= '(%d,0)'::tid";
+
+    private static final int DEFAULT_PARTITIONS = 4;
+
+    private static final long DEFAULT_MIN_PAGES = 1024;
+
+    // Rows fetched per round trip, the driver only streams rows inside a transaction
+    public static final int FETCH_ROWS = 10000;
+
+    /**
+     * A cursor over one range of the table. Hands its connection back when
+     * closed.
+     */
+    private class RangeCursor extends ResultSetCursor {
+
+        private final Connection connection;
+
+        RangeCursor(PreparedStatement statement, Connection connection) throws SQLException {
+            super(statement);
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                super.close();
+            } finally {
+                release(connection);
+            }
+        }
+    }
+
+    /**
+     * A binary copy of one range of the table. Hands its connection back when
+     * closed.
+     */
+    private class CopyRangeCursor extends CopyCursor {
+
+        private final Connection connection;
+
+        CopyRangeCursor(Connection connection, String tableName, List<String> columns, ZoneMapFilter filter,
+                String range) throws SQLException {
+            super(connection, tableName, columns, filter, range);
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                super.close();
+            } finally {
+                release(connection);
+            }
+        }
+    }
+
+    private final Properties credentials;
+
+    private final int partitions;
+
+    private final long minPages;
+
+    private final Deque<Connection> idle;
+
+    private Boolean tidRangeScans;
+
+    // Connection whose open transaction keeps the exported snapshot valid
+    private Connection exporter;
+
+    private String snapshot;
+
+    public PartitionedScan(Properties credentials) {
+        this.credentials = credentials;
+        this.partitions = Integer.parseInt(credentials.getProperty("scanPartitions",
+                String.valueOf(DEFAULT_PARTITIONS)));
+        this.minPages = Long.parseLong(credentials.getProperty("partitionMinPages",
+                String.valueOf(DEFAULT_MIN_PAGES)));
+        this.idle = new ArrayDeque<>();
+    }
+
+    /**
+     * Opens a cursor reading the table through several connections, or returns
+     * null if the table is too small to be split and is not copied.
+     *
+     * @param connection connection used to look up the size of the table
+     * @param tableName
+     * @param columns    columns to copy with binary COPY, null to read all
+     *                   columns through result sets
+     * @param filter     predicates the copied rows may be restricted to or null
+     * @param blockRows  rows per block handed to the engine
+     * @param blocks     blocks read ahead of the block being evaluated, 0 to read
+     *                   the table on the calling thread in one range
+     * @return cursor or null
+     * @throws SQLException
+     */
+    public RelationCursor open(Connection connection, String tableName, List<String> columns, ZoneMapFilter filter,
+            int blockRows, int blocks) throws SQLException {
+        long pages = partitions < 2 || blocks == 0 || !hasTidRangeScans(connection) ? 0
+                : getPages(connection, tableName);
+        int ranges = pages < minPages ? 1 : partitions;
+        if (ranges == 1 && columns == null) {
+            return null;
+        }
+
+        if (ranges == 1) {
+            Connection worker = acquire();
+            try {
+                importSnapshot(worker, getSnapshot());
+                RelationCursor cursor = new CopyRangeCursor(worker, tableName, columns, filter, null);
+                return blocks > 0 ? new PrefetchingCursor(cursor, blockRows, blocks, "copy-" + tableName) : cursor;
+            } catch (SQLException e) {
+                release(worker);
+                throw e;
+            }
+        }
+
+        List<RelationCursor> cursors = new ArrayList<>();
+        try {
+            String snapshot = getSnapshot();
+            long pagesPerRange = (pages + ranges - 1) / ranges;
+
+            for (int partition = 0; partition < ranges; partition++) {
+                Connection worker = acquire();
+                try {
+                    importSnapshot(worker, snapshot);
+                    // The last range is open, pages may have been added since the size was read
+                    String range = partition == ranges - 1 ? String.format(LAST_RANGE, partition * pagesPerRange)
+                            : String.format(RANGE, partition * pagesPerRange, (partition + 1) * pagesPerRange);
+                    cursors.add(columns == null ? openRange(worker, tableName, range)
+                            : new CopyRangeCursor(worker, tableName, columns, filter, range));
+                } catch (SQLException e) {
+                    release(worker);
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            for (RelationCursor cursor : cursors) {
+                cursor.close();
+            }
+            throw e;
+        }
+
+        LOG.log(Level.FINE, "Reading {0} pages of {1} in {2} ranges", new Object[] { pages, tableName, ranges });
+        return new PrefetchingCursor(cursors, blockRows, blocks, "scan-" + tableName);
+    }
+
+    private RelationCursor openRange(Connection worker, String tableName, String range) throws SQLException {
+        PreparedStatement statement = worker.prepareStatement(String.format(RANGE_QUERY, tableName, range));
+        statement.setFetchSize(FETCH_ROWS);
+        return new RangeCursor(statement, worker);
+    }
+
+    /**
+     * Tells whether the server reads a range of ctid by a TID range scan. Asked
+     * once, the server does not change while a query runs.
+     */
+    private boolean hasTidRangeScans(Connection connection) throws SQLException {
+        if (tidRangeScans == null) {
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(VERSION_QUERY)) {
+                tidRangeScans = resultSet.next() && resultSet.getInt(1) >= TID_RANGE_SCAN_VERSION;
+            }
+            if (!tidRangeScans) {
+                LOG.log(Level.INFO, "Tables are read in one range, the server does not scan ranges of ctid.");
+            }
+        }
+        return tidRangeScans;
+    }
+
+    /**
+     * Returns the snapshot all cursors read, exporting it on first use. The
+     * exporting transaction stays open until this object is closed.
+     */
+    private String getSnapshot() throws SQLException {
+        if (snapshot == null) {
+            Connection connection = acquire();
+            try {
+                snapshot = exportSnapshot(connection);
+            } catch (SQLException e) {
+                release(connection);
+                throw e;
+            }
+            exporter = connection;
+        }
+        return snapshot;
+    }
+
+    private static long getPages(Connection connection, String tableName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(PAGES_QUERY)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static String exportSnapshot(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("select pg_export_snapshot()")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    /**
+     * Starts a transaction of the connection on the exported snapshot. Must be
+     * the first statement of the transaction.
+     */
+    private static void importSnapshot(Connection connection, String snapshot) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set transaction snapshot '" + snapshot.replace("'", "''") + "'");
+        }
+    }
+
+    private synchronized Connection acquire() throws SQLException {
+        Connection connection = idle.poll();
+        if (connection == null) {
+            connection = DriverManager.getConnection(credentials.getProperty("url"), credentials);
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        }
+        return connection;
+    }
+
+    /**
+     * Ends the transaction of the connection, which only read rows, and keeps
+     * the connection for the next scan.
+     */
+    private synchronized void release(Connection connection) {
+        try {
+            connection.rollback();
+            idle.push(connection);
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Could not end transaction, closing connection.", e);
+            try {
+                connection.close();
+            } catch (SQLException closeException) {
+                e.addSuppressed(closeException);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (exporter != null) {
+            release(exporter);
+            exporter = null;
+            snapshot = null;
+        }
+        for (Connection connection : idle) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Could not close connection.", e);
+            }
+        }
+        idle.clear();
+    }
+}
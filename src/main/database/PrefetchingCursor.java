@@ -0,0 +1,323 @@
+package main.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the rows of a cursor ahead on a background thread, so that the next
+ * block of rows is fetched and decoded while the engine evaluates the current
+ * one. Filled blocks are handed over through a bounded queue and returned for
+ * reuse once read, so at most the queued blocks, the blocks being filled and
+ * the block being read are held in memory. The readers wait while the queue is
+ * full. Several cursors over disjoint parts of a relation are read by one
+ * thread each and their blocks are returned in the order they are filled. Rows
+ * of binary copies are handed over as decoded, in a CopyBlock, and read with
+ * the getters of the copy, other rows as the objects of their values.
+ *
+ * @author R&B
+ *
+ */
+public class PrefetchingCursor implements RelationCursor {
+
+    /**
+     * Rows of the cursor, a block without rows marks the end of the relation.
+     */
+    private static class Block {
+
+        // Values of the rows, null if they are copied
+        private final Object[][] values;
+
+        // Decoded rows of a copy or null
+        private final CopyBlock copies;
+
+        private int size;
+
+        private SQLException error;
+
+        Block(int rows, int columns, CopyCursor copy) {
+            values = copy == null ? new Object[rows][columns] : null;
+            copies = copy == null ? null : copy.newBlock(rows);
+        }
+
+        void clear() {
+            size = 0;
+            error = null;
+            if (copies != null) {
+                copies.clear();
+            }
+        }
+
+        boolean isFull() {
+            return copies == null ? size == values.length : copies.isFull();
+        }
+
+        void add(RelationCursor cursor, int columnCount) throws SQLException {
+            if (copies != null) {
+                ((CopyCursor) cursor).copyRowTo(copies);
+            } else {
+                Object[] row = values[size];
+                for (int column = 0; column < columnCount; column++) {
+                    row[column] = cursor.getObject(column + 1);
+                }
+            }
+            size++;
+        }
+    }
+
+    private final List<RelationCursor> cursors;
+
+    private final int columnCount;
+
+    private final String[] columnNames;
+
+    private final BlockingQueue<Block> filled;
+
+    private final BlockingQueue<Block> free;
+
+    private final List<Thread> readers;
+
+    private volatile boolean closed;
+
+    private Block current;
+
+    private int position;
+
+    private long rowsRead;
+
+    private boolean exhausted;
+
+    // Cursors whose last block has not been read yet
+    private int remaining;
+
+    /**
+     * Starts reading the cursor ahead.
+     *
+     * @param cursor
+     * @param blockRows rows per block
+     * @param blocks    blocks read ahead of the block being evaluated
+     * @param name      name of the reading thread
+     * @throws SQLException
+     */
+    public PrefetchingCursor(RelationCursor cursor, int blockRows, int blocks, String name) throws SQLException {
+        this(Collections.singletonList(cursor), blockRows, blocks, name);
+    }
+
+    /**
+     * Starts reading the cursors ahead, each on its own thread. The cursors must
+     * return the same columns.
+     *
+     * @param cursors
+     * @param blockRows rows per block
+     * @param blocks    blocks read ahead of the block being evaluated
+     * @param name      name of the reading threads, suffixed with their number
+     * @throws SQLException
+     */
+    public PrefetchingCursor(List<RelationCursor> cursors, int blockRows, int blocks, String name)
+            throws SQLException {
+        this.cursors = cursors;
+        this.columnCount = cursors.get(0).getColumnCount();
+        this.columnNames = new String[columnCount];
+        for (int column = 1; column <= columnCount; column++) {
+            columnNames[column - 1] = cursors.get(0).getColumnName(column);
+        }
+
+        // Every reader may hold a block while filling it
+        int capacity = blocks + cursors.size();
+        filled = new ArrayBlockingQueue<>(capacity);
+        free = new ArrayBlockingQueue<>(capacity);
+        // Copies hand over their decoded rows, the cursors copy the same columns
+        CopyCursor copy = cursors.stream().allMatch(CopyCursor.class::isInstance) ? (CopyCursor) cursors.get(0)
+                : null;
+        for (int i = 0; i < capacity; i++) {
+            free.add(new Block(Math.max(1, blockRows), columnCount, copy));
+        }
+
+        remaining = cursors.size();
+        readers = new ArrayList<>();
+        for (RelationCursor cursor : cursors) {
+            String threadName = cursors.size() == 1 ? name : name + "-" + readers.size();
+            // A platform thread, the build targets Java 11 which has no
+            // virtual threads
+            Thread reader = new Thread(() -> readAhead(cursor), threadName);
+            reader.setDaemon(true);
+            readers.add(reader);
+        }
+        readers.forEach(Thread::start);
+    }
+
+    private void readAhead(RelationCursor cursor) {
+        try {
+            boolean hasRows = true;
+            while (hasRows && !closed) {
+                Block block = free.take();
+                block.clear();
+                try {
+                    while (!block.isFull() && (hasRows = cursor.next())) {
+                        block.add(cursor, columnCount);
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    // Rethrown by next, as this thread has no caller
+                    block.size = 0;
+                    block.error = e instanceof SQLException ? (SQLException) e : new SQLException(e);
+                    hasRows = false;
+                }
+
+                // The block may be refilled by another reader once it is queued
+                boolean marked = block.size == 0;
+                filled.put(block);
+                // The end of the relation is marked by an empty block
+                if (!hasRows && !marked) {
+                    Block end = free.take();
+                    end.clear();
+                    filled.put(end);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed before the relation was read to the end
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (exhausted) {
+            return false;
+        }
+
+        if (current != null && ++position < current.size) {
+            moveToPosition();
+            rowsRead++;
+            return true;
+        }
+
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+
+        while (current == null) {
+            Block block = take();
+            if (block.error != null) {
+                exhausted = true;
+                throw block.error;
+            }
+
+            if (block.size > 0) {
+                current = block;
+            } else if (--remaining == 0) {
+                exhausted = true;
+                return false;
+            } else {
+                free.add(block);
+            }
+        }
+
+        position = 0;
+        moveToPosition();
+        rowsRead++;
+        return true;
+    }
+
+    private void moveToPosition() {
+        if (current.copies != null) {
+            current.copies.moveTo(position);
+        }
+    }
+
+    private Block take() throws SQLException {
+        try {
+            return filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the next block of rows.", e);
+        }
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column - 1];
+    }
+
+    @Override
+    public Object getObject(int column) {
+        return current.copies != null ? current.copies.getObject(column) : current.values[position][column - 1];
+    }
+
+    @Override
+    public Integer getInteger(int column) throws SQLException {
+        return current.copies != null ? current.copies.getInteger(column) : RelationCursor.super.getInteger(column);
+    }
+
+    @Override
+    public Long getLong(int column) throws SQLException {
+        return current.copies != null ? current.copies.getLong(column) : RelationCursor.super.getLong(column);
+    }
+
+    @Override
+    public Double getDouble(int column) throws SQLException {
+        return current.copies != null ? current.copies.getDouble(column) : RelationCursor.super.getDouble(column);
+    }
+
+    @Override
+    public Integer getEpochDay(int column) throws SQLException {
+        return current.copies != null ? current.copies.getEpochDay(column) : RelationCursor.super.getEpochDay(column);
+    }
+
+    @Override
+    public Long getEpochMillis(int column) throws SQLException {
+        return current.copies != null ? current.copies.getEpochMillis(column)
+                : RelationCursor.super.getEpochMillis(column);
+    }
+
+    @Override
+    public String getString(int column) throws SQLException {
+        return current.copies != null ? current.copies.getString(column) : RelationCursor.super.getString(column);
+    }
+
+    @Override
+    public boolean hasSkippedRows() {
+        return cursors.stream().anyMatch(RelationCursor::hasSkippedRows);
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        readers.forEach(Thread::interrupt);
+        try {
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Closes every cursor, rethrowing the first failure
+        SQLException failure = null;
+        for (RelationCursor cursor : cursors) {
+            try {
+                cursor.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package main.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes the rows of a cursor through and profiles every column value read.
+ * Only the columns the query reads are profiled. The statistics are saved when
+ * the cursor is closed after all rows of the relation have been read, a scan
+ * stopped early or a scan skipping blocks would describe only part of the rows.
+ *
+ * @author R&B
+ *
+ */
+public class ProfilingCursor implements RelationCursor {
+
+    private final RelationCursor cursor;
+
+    private final StatisticsStore store;
+
+    private final String tableName;
+
+    // Profiles by column index, created on the first read of the column
+    private final List<ColumnProfile> columns;
+
+    private long rows;
+
+    private boolean exhausted;
+
+    public ProfilingCursor(RelationCursor cursor, StatisticsStore store, String tableName) {
+        this.cursor = cursor;
+        this.store = store;
+        this.tableName = tableName;
+        this.columns = new ArrayList<>();
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (cursor.next()) {
+            rows++;
+            return true;
+        }
+        exhausted = true;
+        return false;
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+        return cursor.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        return cursor.getColumnName(column);
+    }
+
+    @Override
+    public Object getObject(int column) throws SQLException {
+        return profile(column, cursor.getObject(column));
+    }
+
+    @Override
+    public Integer getInteger(int column) throws SQLException {
+        return profile(column, cursor.getInteger(column));
+    }
+
+    @Override
+    public Long getLong(int column) throws SQLException {
+        return profile(column, cursor.getLong(column));
+    }
+
+    @Override
+    public Double getDouble(int column) throws SQLException {
+        return profile(column, cursor.getDouble(column));
+    }
+
+    @Override
+    public String getString(int column) throws SQLException {
+        return profile(column, cursor.getString(column));
+    }
+
+    @Override
+    public Integer getEpochDay(int column) throws SQLException {
+        return profile(column, cursor.getEpochDay(column));
+    }
+
+    @Override
+    public Long getEpochMillis(int column) throws SQLException {
+        return profile(column, cursor.getEpochMillis(column));
+    }
+
+    @Override
+    public boolean hasSkippedRows() {
+        return cursor.hasSkippedRows();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rows;
+    }
+
+    private <T> T profile(int column, T value) throws SQLException {
+        while (columns.size() <= column) {
+            columns.add(null);
+        }
+
+        ColumnProfile profile = columns.get(column);
+        if (profile == null) {
+            profile = new ColumnProfile(cursor.getColumnName(column));
+            columns.set(column, profile);
+        }
+        profile.add(value);
+        return value;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        cursor.close();
+
+        if (exhausted && !cursor.hasSkippedRows()) {
+            List<ColumnProfile> profiled = new ArrayList<>();
+            for (ColumnProfile profile : columns) {
+                if (profile != null) {
+                    profiled.add(profile);
+                }
+            }
+            store.save(tableName, rows, profiled);
+        }
+    }
+}
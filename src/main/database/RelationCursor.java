@@ -0,0 +1,85 @@
+package main.database;
+
+import java.sql.SQLException;
+
+import main.parser.ColumnType;
+
+/**
+ * Iterates over the rows of a relation. The generated data access object reads
+ * rows through this interface so that the rows can come from the database or
+ * from a local snapshot. Column indices start at 1 as in JDBC.
+ *
+ * The typed getters return null for a null value. By default they convert the
+ * object of the column, cursors over typed storage override them to read the
+ * value directly.
+ *
+ * @author R&B
+ *
+ */
+public interface RelationCursor extends AutoCloseable {
+
+    boolean next() throws SQLException;
+
+    int getColumnCount() throws SQLException;
+
+    String getColumnName(int column) throws SQLException;
+
+    Object getObject(int column) throws SQLException;
+
+    default Integer getInteger(int column) throws SQLException {
+        Object value = getObject(column);
+        if (value == null || value instanceof Integer) {
+            return (Integer) value;
+        }
+        return value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString().trim());
+    }
+
+    default Long getLong(int column) throws SQLException {
+        Object value = getObject(column);
+        if (value == null || value instanceof Long) {
+            return (Long) value;
+        }
+        return value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString().trim());
+    }
+
+    default Double getDouble(int column) throws SQLException {
+        Object value = getObject(column);
+        if (value == null || value instanceof Double) {
+            return (Double) value;
+        }
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(value.toString().trim());
+    }
+
+    default String getString(int column) throws SQLException {
+        Object value = getObject(column);
+        return value == null ? null : value.toString();
+    }
+
+    default Integer getEpochDay(int column) throws SQLException {
+        return ColumnType.toEpochDay(getObject(column));
+    }
+
+    default Long getEpochMillis(int column) throws SQLException {
+        return ColumnType.toEpochMillis(getObject(column));
+    }
+
+    /**
+     * Tells whether rows of the relation were left out without being returned,
+     * e.g. blocks skipped by a zone map filter.
+     *
+     * @return true if rows were skipped
+     */
+    default boolean hasSkippedRows() {
+        return false;
+    }
+
+    /**
+     * Returns the number of rows returned by next so far.
+     *
+     * @return rows read
+     */
+    long getRowsRead();
+
+    @Override
+    void close() throws SQLException;
+}
@@ -0,0 +1,106 @@
+package main.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import main.parser.ColumnType;
+
+/**
+ * Reads the rows of a relation from the database. The statement is owned by the
+ * cursor and is closed along with it. Values are read with the typed getters of
+ * the result set, so that numbers and dates are not converted from strings.
+ *
+ * @author R&B
+ *
+ */
+public class ResultSetCursor implements RelationCursor {
+
+    private final PreparedStatement statement;
+
+    private final ResultSet resultSet;
+
+    private final ResultSetMetaData metaData;
+
+    private long rowsRead;
+
+    public ResultSetCursor(PreparedStatement statement) throws SQLException {
+        this.statement = statement;
+        this.resultSet = statement.executeQuery();
+        this.metaData = resultSet.getMetaData();
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (resultSet.next()) {
+            rowsRead++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+        return metaData.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        return metaData.getColumnName(column);
+    }
+
+    @Override
+    public Object getObject(int column) throws SQLException {
+        return resultSet.getObject(column);
+    }
+
+    @Override
+    public Integer getInteger(int column) throws SQLException {
+        int value = resultSet.getInt(column);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public Long getLong(int column) throws SQLException {
+        long value = resultSet.getLong(column);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public Double getDouble(int column) throws SQLException {
+        double value = resultSet.getDouble(column);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public String getString(int column) throws SQLException {
+        return resultSet.getString(column);
+    }
+
+    @Override
+    public Integer getEpochDay(int column) throws SQLException {
+        return ColumnType.toEpochDay(resultSet.getDate(column));
+    }
+
+    @Override
+    public Long getEpochMillis(int column) throws SQLException {
+        Timestamp value = resultSet.getTimestamp(column);
+        return value == null ? null : ColumnType.toEpochMillis(value);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            resultSet.close();
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package main.database;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import main.readwrite.ReadWrite;
+import main.utils.CommonUtils;
+import main.utils.ZipfDistribution;
+
+/**
+ * Generates a sales table like the one the sample queries of resources/ are
+ * written for. The customers and products are drawn from Zipf distributions,
+ * the day, month, year, state and quantity uniformly. The rows only depend on
+ * the settings and the seed, so every run produces the same table. The table
+ * is either written as a CSV file read by the "file" data source or copied into
+ * the database of the properties file.
+ *
+ * The first customers and products are named like those of the sample data,
+ * e.g. Sam and Eggs, the others are numbered, e.g. C000007.
+ *
+ * <pre>
+ * usage: SalesGenerator file|database
+ *
+ * sales.rows          default 100000
+ * sales.customers     distinct customers, default 1000
+ * sales.products      distinct products, default 100
+ * sales.customerSkew  Zipf exponent of the customers, 0 is uniform, default 1
+ * sales.productSkew   Zipf exponent of the products, default 0
+ * sales.seed          default 1
+ * sales.table         table or file name, default sales
+ * </pre>
+ *
+ * @author R&B
+ *
+ */
+public class SalesGenerator {
+
+    private static final Logger LOG = Logger.getLogger(SalesGenerator.class.getCanonicalName());
+
+    private static final String HEADER = "cust:string,prod:string,day:integer,month:integer,year:integer,state:string,quant:integer";
+
+    private static final String CREATE_TABLE = "create table if not exists %s (cust varchar(20), prod varchar(20), day integer, month integer, year integer, state character(2), quant integer)";
+
+    private static final String[] CUSTOMERS = { "Sam", "Helen", "Knuth", "Emily", "Wally", "Bloom" };
+
+    private static final String[] PRODUCTS = { "Eggs", "Bread", "Apple", "Milk", "Cola" };
+
+    private static final String[] STATES = { "NY", "NJ", "CT", "PA" };
+
+    private static final int FIRST_YEAR = 1996;
+
+    private static final int YEARS = 3;
+
+    private static final int MAX_QUANTITY = 1000;
+
+    // Rows are written and copied in batches of about this many characters
+    private static final int BATCH_SIZE = 1 << 20;
+
+    private final long rows;
+
+    private final long seed;
+
+    private final String[] customerNames;
+
+    private final String[] productNames;
+
+    private final ZipfDistribution customers;
+
+    private final ZipfDistribution products;
+
+    public SalesGenerator(long rows, int customers, int products, double customerSkew, double productSkew,
+            long seed) {
+        this.rows = rows;
+        this.seed = seed;
+        this.customerNames = names(CUSTOMERS, "C%06d", customers);
+        this.productNames = names(PRODUCTS, "P%06d", products);
+        this.customers = new ZipfDistribution(customers, customerSkew);
+        this.products = new ZipfDistribution(products, productSkew);
+    }
+
+    /**
+     * Creates a generator from the sales.* properties, with the defaults of the
+     * class comment for missing ones.
+     *
+     * @param properties
+     * @return generator
+     */
+    public static SalesGenerator fromProperties(Properties properties) {
+        return new SalesGenerator(Long.parseLong(properties.getProperty("sales.rows", "100000")),
+                Integer.parseInt(properties.getProperty("sales.customers", "1000")),
+                Integer.parseInt(properties.getProperty("sales.products", "100")),
+                Double.parseDouble(properties.getProperty("sales.customerSkew", "1")),
+                Double.parseDouble(properties.getProperty("sales.productSkew", "0")),
+                Long.parseLong(properties.getProperty("sales.seed", "1")));
+    }
+
+    private static String[] names(String[] known, String format, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = i < known.length ? known[i] : String.format(format, i + 1);
+        }
+        return names;
+    }
+
+    /**
+     * Writes the table as a CSV file with the typed header of the flat file data
+     * source.
+     *
+     * @param path
+     * @throws IOException
+     */
+    public void writeFile(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder batch = new StringBuilder(BATCH_SIZE + 128);
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (long row = 0; row < rows; row++) {
+                appendRow(batch, random);
+                if (batch.length() >= BATCH_SIZE) {
+                    writer.append(batch);
+                    batch.setLength(0);
+                }
+            }
+            writer.append(batch);
+        }
+    }
+
+    /**
+     * Creates the table if it does not exist, replaces its rows with COPY and
+     * analyzes it, so that the planner statistics match the new rows.
+     *
+     * @param connection
+     * @param tableName
+     * @throws SQLException
+     */
+    public void load(Connection connection, String tableName) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format(CREATE_TABLE, tableName));
+            statement.execute(String.format("truncate %s", tableName));
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder batch = new StringBuilder(BATCH_SIZE + 128);
+        CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn(String.format("copy %s from stdin with (format csv)", tableName));
+        try {
+            for (long row = 0; row < rows; row++) {
+                appendRow(batch, random);
+                if (batch.length() >= BATCH_SIZE) {
+                    writeToCopy(copy, batch);
+                }
+            }
+            writeToCopy(copy, batch);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format("analyze %s", tableName));
+        }
+    }
+
+    private static void writeToCopy(CopyIn copy, StringBuilder batch) throws SQLException {
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        batch.setLength(0);
+    }
+
+    private void appendRow(StringBuilder batch, SplittableRandom random) {
+        batch.append(customerNames[customers.sample(random)]).append(',')
+                .append(productNames[products.sample(random)]).append(',')
+                .append(1 + random.nextInt(28)).append(',')
+                .append(1 + random.nextInt(12)).append(',')
+                .append(FIRST_YEAR + random.nextInt(YEARS)).append(',')
+                .append(STATES[random.nextInt(STATES.length)]).append(',')
+                .append(1 + random.nextInt(MAX_QUANTITY)).append('\n');
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1 || !(args[0].equals("file") || args[0].equals("database"))) {
+            LOG.log(Level.SEVERE, "usage: SalesGenerator file|database");
+            CommonUtils.exit(1);
+        }
+
+        Properties properties = ReadWrite.readProperties(CommonUtils.DB_PROPERTIES);
+        SalesGenerator generator = fromProperties(System.getProperties());
+        String tableName = System.getProperty("sales.table", "sales");
+
+        try {
+            if (args[0].equals("file")) {
+                Path path = new FlatFileStore(properties).getPath(tableName);
+                generator.writeFile(path);
+                LOG.log(Level.INFO, "Wrote {0} rows to {1}", new Object[] { generator.rows, path });
+            } else {
+                try (Connection connection = DriverManager.getConnection(properties.getProperty("url"),
+                        properties)) {
+                    generator.load(connection, tableName);
+                }
+                LOG.log(Level.INFO, "Copied {0} rows into {1}", new Object[] { generator.rows, tableName });
+            }
+        } catch (IOException | SQLException e) {
+            LOG.log(Level.SEVERE, "Could not generate the sales table.", e);
+            CommonUtils.exit(1);
+        }
+
+        CommonUtils.exit(0);
+    }
+}
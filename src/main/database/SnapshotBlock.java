@@ -0,0 +1,79 @@
+package main.database;
+
+/**
+ * Location and zone map of one block of a snapshot file. For every column the
+ * block records where its values start, where its null bitmap starts (-1 if the
+ * block has no nulls in the column) and the minimum and maximum non null value.
+ *
+ * @author R&B
+ *
+ */
+public class SnapshotBlock {
+
+    private final long offset;
+
+    private final int length;
+
+    private final int rows;
+
+    private final int[] positions;
+
+    private final int[] nullPositions;
+
+    private final int[] nullCounts;
+
+    private final Object[] mins;
+
+    private final Object[] maxs;
+
+    public SnapshotBlock(long offset, int length, int rows, int columnCount) {
+        this.offset = offset;
+        this.length = length;
+        this.rows = rows;
+        this.positions = new int[columnCount];
+        this.nullPositions = new int[columnCount];
+        this.nullCounts = new int[columnCount];
+        this.mins = new Object[columnCount];
+        this.maxs = new Object[columnCount];
+    }
+
+    void setColumn(int column, int position, int nullPosition, int nullCount, Object min, Object max) {
+        positions[column] = position;
+        nullPositions[column] = nullPosition;
+        nullCounts[column] = nullCount;
+        mins[column] = min;
+        maxs[column] = max;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getPosition(int column) {
+        return positions[column];
+    }
+
+    public int getNullPosition(int column) {
+        return nullPositions[column];
+    }
+
+    public int getNullCount(int column) {
+        return nullCounts[column];
+    }
+
+    public Object getMin(int column) {
+        return mins[column];
+    }
+
+    public Object getMax(int column) {
+        return maxs[column];
+    }
+}
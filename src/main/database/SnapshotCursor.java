@@ -0,0 +1,144 @@
+package main.database;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * Reads the rows of a snapshot file. Blocks are memory mapped one at a time and
+ * blocks whose zone map rules out all rows of interest are skipped without
+ * being read.
+ *
+ * @author R&B
+ *
+ */
+public class SnapshotCursor implements RelationCursor {
+
+    private final SnapshotFile file;
+
+    private final ZoneMapFilter filter;
+
+    private final FileChannel channel;
+
+    private final Iterator<SnapshotBlock> blocks;
+
+    private SnapshotBlock block;
+
+    private MappedByteBuffer buffer;
+
+    private int row;
+
+    private boolean skippedRows;
+
+    private long rowsRead;
+
+    public SnapshotCursor(SnapshotFile file, ZoneMapFilter filter) throws SQLException {
+        this.file = file;
+        this.filter = filter;
+        this.blocks = file.getBlocks().iterator();
+        try {
+            this.channel = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new SQLException("Could not open snapshot " + file.getPath(), e);
+        }
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (block != null && ++row < block.getRows()) {
+            rowsRead++;
+            return true;
+        }
+
+        while (blocks.hasNext()) {
+            SnapshotBlock candidate = blocks.next();
+            if (filter == null || filter.mayMatch(file, candidate)) {
+                mapBlock(candidate);
+                rowsRead++;
+                return true;
+            }
+            skippedRows = true;
+        }
+
+        block = null;
+        buffer = null;
+        return false;
+    }
+
+    private void mapBlock(SnapshotBlock candidate) throws SQLException {
+        try {
+            buffer = channel.map(MapMode.READ_ONLY, candidate.getOffset(), candidate.getLength());
+        } catch (IOException e) {
+            throw new SQLException("Could not read snapshot " + file.getPath(), e);
+        }
+        block = candidate;
+        row = 0;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return file.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return file.getColumnName(column - 1);
+    }
+
+    @Override
+    public Object getObject(int column) {
+        int index = column - 1;
+        int nullPosition = block.getNullPosition(index);
+        if (nullPosition != -1 && (buffer.get(nullPosition + (row >> 3)) & (1 << (row & 7))) != 0) {
+            return null;
+        }
+
+        int position = block.getPosition(index);
+        switch (file.getColumnType(index)) {
+            case SnapshotFile.INT:
+                return buffer.getInt(position + row * Integer.BYTES);
+            case SnapshotFile.LONG:
+                return buffer.getLong(position + row * Long.BYTES);
+            case SnapshotFile.DOUBLE:
+                return buffer.getDouble(position + row * Double.BYTES);
+            default:
+                return getText(position);
+        }
+    }
+
+    private String getText(int position) {
+        int start = buffer.getInt(position + row * Integer.BYTES);
+        int end = buffer.getInt(position + (row + 1) * Integer.BYTES);
+        byte[] text = new byte[end - start];
+
+        int textPosition = position + (block.getRows() + 1) * Integer.BYTES + start;
+        for (int i = 0; i < text.length; i++) {
+            text[i] = buffer.get(textPosition + i);
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean hasSkippedRows() {
+        return skippedRows;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new SQLException("Could not close snapshot " + file.getPath(), e);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package main.database;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.utils.CommonUtils;
+
+/**
+ * Describes the contents of a snapshot file. The file starts with a header,
+ * followed by the column blocks and a footer describing the columns and the
+ * blocks. The last twelve bytes hold the position of the footer and the magic
+ * number again.
+ *
+ * <pre>
+ * header : magic, version
+ * block  : per column the values, then the null bitmap if there are nulls
+ * footer : columns, modification count, row count, block directory
+ * trailer: footer position, magic
+ * </pre>
+ *
+ * Integer, bigint and double precision columns are stored as fixed width values.
+ * All other columns are stored as text: an offset array of rows + 1 entries
+ * followed by the UTF-8 bytes.
+ *
+ * @author R&B
+ *
+ */
+public class SnapshotFile {
+
+    public static final int MAGIC = 0x454D4653;
+
+    public static final int VERSION = 1;
+
+    public static final byte INT = 0;
+
+    public static final byte LONG = 1;
+
+    public static final byte DOUBLE = 2;
+
+    public static final byte STRING = 3;
+
+    private static final int TRAILER_SIZE = 12;
+
+    private final Path path;
+
+    private final List<String> columnNames;
+
+    private final List<Byte> columnTypes;
+
+    private final List<SnapshotBlock> blocks;
+
+    private long modificationCount;
+
+    private long rowCount;
+
+    public SnapshotFile(Path path) {
+        this.path = path;
+        this.columnNames = new ArrayList<>();
+        this.columnTypes = new ArrayList<>();
+        this.blocks = new ArrayList<>();
+    }
+
+    /**
+     * Reads the footer of an existing snapshot file.
+     *
+     * @param path
+     * @return snapshot description
+     * @throws IOException
+     *             if the file is not a snapshot file
+     */
+    public static SnapshotFile read(Path path) throws IOException {
+        SnapshotFile file = new SnapshotFile(path);
+
+        try (RandomAccessFile input = new RandomAccessFile(path.toFile(), "r")) {
+            input.seek(input.length() - TRAILER_SIZE);
+            long footerPosition = input.readLong();
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file : " + path);
+            }
+
+            input.seek(0);
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Unsupported snapshot file : " + path);
+            }
+
+            input.seek(footerPosition);
+            file.readFooter(new DataInputStream(Channels.newInputStream(input.getChannel())));
+        }
+
+        return file;
+    }
+
+    private void readFooter(DataInput input) throws IOException {
+        int columnCount = input.readInt();
+        for (int i = 0; i < columnCount; i++) {
+            columnNames.add(input.readUTF());
+            columnTypes.add(input.readByte());
+        }
+
+        modificationCount = input.readLong();
+        rowCount = input.readLong();
+
+        int blockCount = input.readInt();
+        for (int i = 0; i < blockCount; i++) {
+            SnapshotBlock block = new SnapshotBlock(input.readLong(), input.readInt(), input.readInt(), columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                byte type = columnTypes.get(column);
+                block.setColumn(column, input.readInt(), input.readInt(), input.readInt(), readValue(input, type),
+                        readValue(input, type));
+            }
+            blocks.add(block);
+        }
+    }
+
+    void writeFooter(DataOutput output) throws IOException {
+        output.writeInt(columnNames.size());
+        for (int i = 0; i < columnNames.size(); i++) {
+            output.writeUTF(columnNames.get(i));
+            output.writeByte(columnTypes.get(i));
+        }
+
+        output.writeLong(modificationCount);
+        output.writeLong(rowCount);
+
+        output.writeInt(blocks.size());
+        for (SnapshotBlock block : blocks) {
+            output.writeLong(block.getOffset());
+            output.writeInt(block.getLength());
+            output.writeInt(block.getRows());
+            for (int column = 0; column < columnNames.size(); column++) {
+                byte type = columnTypes.get(column);
+                output.writeInt(block.getPosition(column));
+                output.writeInt(block.getNullPosition(column));
+                output.writeInt(block.getNullCount(column));
+                writeValue(output, type, block.getMin(column));
+                writeValue(output, type, block.getMax(column));
+            }
+        }
+    }
+
+    private static Object readValue(DataInput input, byte type) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+
+        switch (type) {
+            case INT:
+                return input.readInt();
+            case LONG:
+                return input.readLong();
+            case DOUBLE:
+                return input.readDouble();
+            default:
+                return input.readUTF();
+        }
+    }
+
+    private static void writeValue(DataOutput output, byte type, Object value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value == null) {
+            return;
+        }
+
+        switch (type) {
+            case INT:
+                output.writeInt((Integer) value);
+                break;
+            case LONG:
+                output.writeLong((Long) value);
+                break;
+            case DOUBLE:
+                output.writeDouble((Double) value);
+                break;
+            default:
+                output.writeUTF((String) value);
+        }
+    }
+
+    void addColumn(String name, byte type) {
+        columnNames.add(name);
+        columnTypes.add(type);
+    }
+
+    void addBlock(SnapshotBlock block) {
+        blocks.add(block);
+        rowCount += block.getRows();
+    }
+
+    void setModificationCount(long modificationCount) {
+        this.modificationCount = modificationCount;
+    }
+
+    /**
+     * Finds a column by the name used in the generated code.
+     *
+     * @param variableName
+     *            column name in camel case
+     * @return zero based column index or -1 if the column is not present
+     */
+    public int findColumn(String variableName) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (CommonUtils.toCamelCase(columnNames.get(i), false).equals(variableName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getColumnCount() {
+        return columnNames.size();
+    }
+
+    public String getColumnName(int column) {
+        return columnNames.get(column);
+    }
+
+    public byte getColumnType(int column) {
+        return columnTypes.get(column);
+    }
+
+    public List<SnapshotBlock> getBlocks() {
+        return blocks;
+    }
+
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+}
@@ -0,0 +1,147 @@
+package main.database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps local columnar copies of tables so that repeated scans of a table do not
+ * have to go through the database. A snapshot records the number of rows
+ * inserted, updated and deleted as reported by pg_stat_user_tables when it was
+ * taken. A snapshot is only used while that number has not changed, otherwise
+ * the table is read from the database.
+ *
+ * @author R&B
+ *
+ */
+public class SnapshotStore {
+
+    private static final Logger LOG = Logger.getLogger(SnapshotStore.class.getCanonicalName());
+
+    private static final String MODIFICATION_QUERY = "select n_tup_ins + n_tup_upd + n_tup_del from pg_stat_user_tables where relname=?";
+
+    private static final String DEFAULT_DIRECTORY = "./snapshots";
+
+    private static final int DEFAULT_BLOCK_ROWS = 65536;
+
+    private static final String EXTENSION = ".emfs";
+
+    private final Path directory;
+
+    private final int blockRows;
+
+    // Snapshots found usable, null if a table has no usable snapshot.
+    private final Map<String, SnapshotFile> snapshots;
+
+    public SnapshotStore(Properties properties) {
+        directory = Paths.get(properties.getProperty("snapshotDirectory", DEFAULT_DIRECTORY));
+        blockRows = Integer.parseInt(properties.getProperty("snapshotBlockRows", String.valueOf(DEFAULT_BLOCK_ROWS)));
+        snapshots = new HashMap<>();
+    }
+
+    /**
+     * Copies all rows of the table into a new snapshot, replacing the previous
+     * snapshot of the table once the copy is complete.
+     *
+     * @param connection
+     * @param tableName
+     * @throws SQLException
+     */
+    public void createSnapshot(Connection connection, String tableName) throws SQLException {
+        Path path = directory.resolve(tableName + EXTENSION);
+        Path temporary = directory.resolve(tableName + EXTENSION + ".tmp");
+        long modificationCount = getModificationCount(connection, tableName);
+
+        boolean autoCommit = connection.getAutoCommit();
+        // The driver only streams rows with a fetch size inside a transaction.
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement statement = connection.prepareStatement(String.format("select * from %s", tableName))) {
+            statement.setFetchSize(blockRows);
+            Files.createDirectories(directory);
+
+            SnapshotFile file;
+            try (ResultSet resultSet = statement.executeQuery();
+                    SnapshotWriter writer = new SnapshotWriter(temporary, resultSet.getMetaData(), modificationCount,
+                            blockRows)) {
+                while (resultSet.next()) {
+                    writer.addRow(resultSet);
+                }
+                file = writer.finish();
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            snapshots.remove(tableName);
+            LOG.log(Level.INFO, "Created snapshot of \"{0}\" with {1} rows in {2} blocks",
+                    new Object[] { tableName, file.getRowCount(), file.getBlocks().size() });
+        } catch (IOException e) {
+            throw new SQLException("Could not write snapshot of " + tableName, e);
+        } finally {
+            connection.commit();
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Opens a cursor over the snapshot of the table if the snapshot is up to
+     * date.
+     *
+     * @param connection
+     * @param tableName
+     * @param filter
+     *            used to skip blocks, may be null
+     * @return cursor or null if there is no usable snapshot
+     * @throws SQLException
+     */
+    public RelationCursor open(Connection connection, String tableName, ZoneMapFilter filter) throws SQLException {
+        if (!snapshots.containsKey(tableName)) {
+            snapshots.put(tableName, findUsableSnapshot(connection, tableName));
+        }
+
+        SnapshotFile file = snapshots.get(tableName);
+        return file == null ? null : new SnapshotCursor(file, filter);
+    }
+
+    private SnapshotFile findUsableSnapshot(Connection connection, String tableName) throws SQLException {
+        Path path = directory.resolve(tableName + EXTENSION);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        SnapshotFile file;
+        try {
+            file = SnapshotFile.read(path);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Ignoring unreadable snapshot " + path, e);
+            return null;
+        }
+
+        long modificationCount = getModificationCount(connection, tableName);
+        if (modificationCount == -1 || modificationCount != file.getModificationCount()) {
+            LOG.log(Level.INFO, "Snapshot of \"{0}\" is stale, reading from the database", tableName);
+            return null;
+        }
+
+        return file;
+    }
+
+    private static long getModificationCount(Connection connection, String tableName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(MODIFICATION_QUERY)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package main.database;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Writes the rows of a result set into a snapshot file, one block of rows at a
+ * time. The zone map of a block is computed while the block is encoded.
+ *
+ * @author R&B
+ *
+ */
+class SnapshotWriter implements AutoCloseable {
+
+    private final SnapshotFile file;
+
+    private final DataOutputStream output;
+
+    private final int blockRows;
+
+    private final Object[][] values;
+
+    private long position;
+
+    private int rows;
+
+    SnapshotWriter(Path path, ResultSetMetaData metaData, long modificationCount, int blockRows)
+            throws IOException, SQLException {
+        this.file = new SnapshotFile(path);
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        this.blockRows = blockRows;
+        this.values = new Object[metaData.getColumnCount()][blockRows];
+
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            file.addColumn(metaData.getColumnName(i), typeOf(metaData.getColumnType(i)));
+        }
+        file.setModificationCount(modificationCount);
+
+        output.writeInt(SnapshotFile.MAGIC);
+        output.writeInt(SnapshotFile.VERSION);
+        position = output.size();
+    }
+
+    private static byte typeOf(int sqlType) {
+        switch (sqlType) {
+            case Types.INTEGER:
+            case Types.SMALLINT:
+                return SnapshotFile.INT;
+            case Types.BIGINT:
+                return SnapshotFile.LONG;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return SnapshotFile.DOUBLE;
+            default:
+                return SnapshotFile.STRING;
+        }
+    }
+
+    /**
+     * Copies the current row of the result set.
+     *
+     * @param resultSet
+     * @throws SQLException
+     * @throws IOException
+     */
+    void addRow(ResultSet resultSet) throws SQLException, IOException {
+        for (int column = 0; column < values.length; column++) {
+            if (file.getColumnType(column) == SnapshotFile.STRING) {
+                values[column][rows] = resultSet.getString(column + 1);
+            } else {
+                values[column][rows] = resultSet.getObject(column + 1);
+            }
+        }
+
+        if (++rows == blockRows) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream block = new DataOutputStream(bytes);
+        int[][] columns = new int[values.length][];
+        Object[][] bounds = new Object[values.length][];
+
+        for (int column = 0; column < values.length; column++) {
+            int start = block.size();
+            bounds[column] = writeValues(block, file.getColumnType(column), values[column]);
+
+            int nullStart = -1;
+            int nullCount = countNulls(values[column]);
+            if (nullCount > 0) {
+                nullStart = block.size();
+                writeNullBitmap(block, values[column]);
+            }
+            columns[column] = new int[] { start, nullStart, nullCount };
+        }
+
+        block.flush();
+        SnapshotBlock description = new SnapshotBlock(position, bytes.size(), rows, values.length);
+        for (int column = 0; column < values.length; column++) {
+            description.setColumn(column, columns[column][0], columns[column][1], columns[column][2],
+                    bounds[column][0], bounds[column][1]);
+        }
+
+        bytes.writeTo(output);
+        position += bytes.size();
+        file.addBlock(description);
+        rows = 0;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object[] writeValues(DataOutputStream block, byte type, Object[] column) throws IOException {
+        Comparable min = null;
+        Comparable max = null;
+        byte[][] encoded = type == SnapshotFile.STRING ? new byte[rows][] : null;
+        int textOffset = 0;
+
+        for (int row = 0; row < rows; row++) {
+            Comparable value = (Comparable) column[row];
+            if (value != null) {
+                min = min == null || value.compareTo(min) < 0 ? value : min;
+                max = max == null || value.compareTo(max) > 0 ? value : max;
+            }
+
+            switch (type) {
+                case SnapshotFile.INT:
+                    block.writeInt(value == null ? 0 : ((Number) value).intValue());
+                    break;
+                case SnapshotFile.LONG:
+                    block.writeLong(value == null ? 0 : ((Number) value).longValue());
+                    break;
+                case SnapshotFile.DOUBLE:
+                    block.writeDouble(value == null ? 0 : ((Number) value).doubleValue());
+                    break;
+                default:
+                    block.writeInt(textOffset);
+                    encoded[row] = value == null ? new byte[0] : ((String) value).getBytes(StandardCharsets.UTF_8);
+                    textOffset += encoded[row].length;
+            }
+        }
+
+        if (encoded != null) {
+            block.writeInt(textOffset);
+            for (byte[] text : encoded) {
+                block.write(text);
+            }
+        }
+
+        return new Object[] { min, max };
+    }
+
+    private int countNulls(Object[] column) {
+        int nullCount = 0;
+        for (int row = 0; row < rows; row++) {
+            if (column[row] == null) {
+                nullCount++;
+            }
+        }
+        return nullCount;
+    }
+
+    private void writeNullBitmap(DataOutputStream block, Object[] column) throws IOException {
+        byte[] bitmap = new byte[(rows + 7) / 8];
+        for (int row = 0; row < rows; row++) {
+            if (column[row] == null) {
+                bitmap[row >> 3] |= 1 << (row & 7);
+            }
+        }
+        block.write(bitmap);
+    }
+
+    /**
+     * Writes the last block, the footer and the trailer.
+     *
+     * @return description of the written file
+     * @throws IOException
+     */
+    SnapshotFile finish() throws IOException {
+        if (rows > 0) {
+            writeBlock();
+        }
+
+        long footerPosition = position;
+        file.writeFooter(output);
+        output.writeLong(footerPosition);
+        output.writeInt(SnapshotFile.MAGIC);
+        output.flush();
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,192 @@
+package main.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import main.parser.ColumnStatistics;
+import main.parser.TableInformation;
+import main.utils.CommonUtils;
+
+/**
+ * Keeps the column statistics collected by the evaluation engine while scanning
+ * a table, one file per table in the "statisticsDirectory" directory. The first
+ * scan of every query profiles the columns it reads and replaces the statistics
+ * of those columns once all rows have been read. The other columns keep the
+ * statistics of earlier scans. Collection is turned off by setting
+ * "collectStatistics" to false.
+ *
+ * <pre>
+ * file  : magic, version, collection time, row count, column count, columns
+ * column: name, length, statistics as written by ColumnProfile
+ * </pre>
+ *
+ * @author R&B
+ *
+ */
+public class StatisticsStore {
+
+    private static final Logger LOG = Logger.getLogger(StatisticsStore.class.getCanonicalName());
+
+    private static final int MAGIC = 0x454D5354;
+
+    private static final int VERSION = 1;
+
+    private static final String DEFAULT_DIRECTORY = "./statistics";
+
+    private static final String EXTENSION = ".stats";
+
+    private final Path directory;
+
+    private final boolean enabled;
+
+    public StatisticsStore(Properties properties) {
+        directory = Paths.get(properties.getProperty("statisticsDirectory", DEFAULT_DIRECTORY));
+        enabled = Boolean.parseBoolean(properties.getProperty("collectStatistics", "true").trim());
+    }
+
+    /**
+     * Wraps the cursor so that the values read from it are profiled, unless
+     * collection is turned off.
+     *
+     * @param cursor
+     * @param tableName
+     * @return cursor
+     */
+    public RelationCursor profile(RelationCursor cursor, String tableName) {
+        return enabled ? new ProfilingCursor(cursor, this, tableName) : cursor;
+    }
+
+    /**
+     * Replaces the statistics of the table. A failure is logged and does not
+     * stop the query.
+     *
+     * @param tableName
+     * @param rows
+     * @param columns
+     */
+    void save(String tableName, long rows, List<ColumnProfile> columns) {
+        Path path = directory.resolve(tableName + EXTENSION);
+        Path temporary = directory.resolve(tableName + EXTENSION + ".tmp");
+
+        try {
+            Map<String, byte[]> records = new TreeMap<>();
+            if (Files.isRegularFile(path)) {
+                try {
+                    readRecords(path, records);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Replacing unreadable statistics " + path, e);
+                    records.clear();
+                }
+            }
+
+            for (ColumnProfile column : columns) {
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                try (DataOutputStream output = new DataOutputStream(record)) {
+                    column.write(output);
+                }
+                records.put(column.getColumnName(), record.toByteArray());
+            }
+
+            Files.createDirectories(directory);
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(System.currentTimeMillis());
+                output.writeLong(rows);
+                output.writeInt(records.size());
+                for (Entry<String, byte[]> record : records.entrySet()) {
+                    output.writeUTF(record.getKey());
+                    output.writeInt(record.getValue().length);
+                    output.write(record.getValue());
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            LOG.log(Level.FINE, "Collected statistics of \"{0}\" over {1} rows", new Object[] { tableName, rows });
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not save statistics of " + tableName, e);
+        }
+    }
+
+    /**
+     * Sets the row count and the statistics of the required columns of the
+     * table from the collected statistics, if they were collected after the
+     * given time.
+     *
+     * @param information
+     * @param notBefore   time in milliseconds since 1970-01-01
+     * @return true if collected statistics were used
+     */
+    public boolean load(TableInformation information, long notBefore) {
+        Path path = directory.resolve(information.getTableName() + EXTENSION);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+
+        try {
+            Map<String, byte[]> records = new HashMap<>();
+            long[] header = readRecords(path, records);
+            if (header[0] <= notBefore) {
+                return false;
+            }
+
+            long rows = header[1];
+            Map<String, ColumnStatistics> columns = new HashMap<>();
+            for (byte[] record : records.values()) {
+                ColumnProfile.read(new DataInputStream(new ByteArrayInputStream(record)), columns);
+            }
+
+            information.setNumberOfRows((int) Math.min(Integer.MAX_VALUE, rows));
+            for (Entry<String, ColumnStatistics> column : columns.entrySet()) {
+                String name = CommonUtils.toCamelCase(column.getKey(), false);
+                if (information.getRequiredColumns().containsKey(name)) {
+                    information.setStatistics(name, column.getValue());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Ignoring unreadable statistics " + path, e);
+            return false;
+        }
+    }
+
+    /**
+     * Reads the column records of a file.
+     *
+     * @return collection time and row count
+     */
+    private static long[] readRecords(Path path, Map<String, byte[]> records) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a statistics file");
+            }
+
+            long[] header = { input.readLong(), input.readLong() };
+            int columnCount = input.readInt();
+            for (int i = 0; i < columnCount; i++) {
+                String name = input.readUTF();
+                byte[] record = new byte[input.readInt()];
+                input.readFully(record);
+                records.put(name, record);
+            }
+            return header;
+        }
+    }
+}
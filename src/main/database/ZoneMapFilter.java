@@ -0,0 +1,115 @@
+package main.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import main.parser.ColumnPredicate;
+
+/**
+ * Decides from the minimum and maximum values of a block whether the block can
+ * contain rows of interest. A block is read if it may satisfy all required
+ * predicates and, when alternatives are present, all predicates of at least one
+ * alternative.
+ *
+ * @author R&B
+ *
+ */
+public class ZoneMapFilter {
+
+    private final List<ColumnPredicate> required;
+
+    private final List<List<ColumnPredicate>> alternatives;
+
+    public ZoneMapFilter() {
+        required = new ArrayList<>();
+        alternatives = new ArrayList<>();
+    }
+
+    public ZoneMapFilter require(ColumnPredicate... predicates) {
+        required.addAll(Arrays.asList(predicates));
+        return this;
+    }
+
+    public ZoneMapFilter addAlternative(ColumnPredicate... predicates) {
+        alternatives.add(Arrays.asList(predicates));
+        return this;
+    }
+
+    public boolean mayMatch(SnapshotFile file, SnapshotBlock block) {
+        if (!mayMatchAll(required, file, block)) {
+            return false;
+        }
+
+        if (alternatives.isEmpty()) {
+            return true;
+        }
+
+        for (List<ColumnPredicate> alternative : alternatives) {
+            if (mayMatchAll(alternative, file, block)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the predicates as an SQL condition which every row of interest
+     * satisfies, for the database to leave out the other rows. Predicates that
+     * can not be evaluated exactly by the database are left out, which only
+     * widens the condition.
+     *
+     * @param exact tells whether a predicate can be written in SQL
+     * @return condition or null if no predicate can be written
+     */
+    public String toSql(Predicate<ColumnPredicate> exact) {
+        List<String> conditions = new ArrayList<>();
+        String required = toSql(this.required, exact);
+        if (required != null) {
+            conditions.add(required);
+        }
+
+        List<String> options = new ArrayList<>();
+        for (List<ColumnPredicate> alternative : alternatives) {
+            String option = toSql(alternative, exact);
+            // An alternative without conditions admits every row
+            if (option == null) {
+                options.clear();
+                break;
+            }
+            options.add(option);
+        }
+        if (!options.isEmpty()) {
+            conditions.add("(" + String.join(" or ", options) + ")");
+        }
+
+        return conditions.isEmpty() ? null : String.join(" and ", conditions);
+    }
+
+    private static String toSql(List<ColumnPredicate> predicates, Predicate<ColumnPredicate> exact) {
+        List<String> conditions = new ArrayList<>();
+        for (ColumnPredicate predicate : predicates) {
+            if (exact.test(predicate)) {
+                conditions.add(predicate.toSql());
+            }
+        }
+        return conditions.isEmpty() ? null : "(" + String.join(" and ", conditions) + ")";
+    }
+
+    private static boolean mayMatchAll(List<ColumnPredicate> predicates, SnapshotFile file, SnapshotBlock block) {
+        for (ColumnPredicate predicate : predicates) {
+            int column = file.findColumn(predicate.getColumn());
+
+            // Columns missing from the snapshot can not be used to skip blocks.
+            if (column == -1) {
+                continue;
+            }
+
+            if (!predicate.mayMatch(block.getMin(column), block.getMax(column), block.getNullCount(column) > 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,165 @@
+package main.parser;
+
+/**
+ * A comparison of a column with a constant, e.g. S.year=1997 or
+ * x.S.state="NY". Used to decide whether a range of rows can contain matches
+ * without looking at the individual rows. A comparison with a parameter, e.g.
+ * S.year=?, names the parameter instead; the generated engine creates the
+ * predicate with the bound value when it opens a scan.
+ *
+ * @author R&B
+ *
+ */
+public class ColumnPredicate {
+
+    private final String alias;
+
+    private final String column;
+
+    private final String operator;
+
+    private final String value;
+
+    private final boolean isString;
+
+    private final double numericValue;
+
+    private final String parameter;
+
+    public ColumnPredicate(String alias, String column, String operator, String value, boolean isString) {
+        this.alias = alias;
+        this.column = column;
+        this.operator = operator.equals("<>") ? "!=" : operator;
+        this.value = value;
+        this.isString = isString;
+        this.numericValue = isString ? Double.NaN : Double.parseDouble(value);
+        this.parameter = null;
+    }
+
+    /**
+     * Creates a comparison of a column with a parameter. It can not be checked
+     * until the value of the parameter is bound.
+     *
+     * @param alias
+     * @param column
+     * @param operator
+     * @param parameter name of the field holding the bound value
+     */
+    public ColumnPredicate(String alias, String column, String operator, String parameter) {
+        this.alias = alias;
+        this.column = column;
+        this.operator = operator.equals("<>") ? "!=" : operator;
+        this.value = "?";
+        this.isString = false;
+        this.numericValue = Double.NaN;
+        this.parameter = parameter;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isString() {
+        return isString;
+    }
+
+    /**
+     * Returns the name of the field holding the value of the parameter, or null
+     * for a comparison with a constant.
+     *
+     * @return parameter
+     */
+    public String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * Checks whether any value between min and max (both inclusive) can satisfy
+     * the predicate. A null min means that every value in the range is null. If
+     * the bounds can not be compared with the constant, the range is assumed to
+     * match.
+     *
+     * @param min
+     * @param max
+     * @param hasNulls
+     * @return false if no value in the range can match
+     */
+    public boolean mayMatch(Object min, Object max, boolean hasNulls) {
+        // Objects.equals in the generated code treats null as different from
+        // every constant.
+        if (hasNulls && operator.equals("!=")) {
+            return true;
+        }
+
+        if (min == null || max == null) {
+            return false;
+        }
+
+        Integer lower = compareWith(min);
+        Integer upper = compareWith(max);
+
+        if (lower == null || upper == null) {
+            return true;
+        }
+
+        switch (operator) {
+            case "=":
+                return lower <= 0 && upper >= 0;
+            case "!=":
+                return lower != 0 || upper != 0;
+            case "<":
+                return lower < 0;
+            case "<=":
+                return lower <= 0;
+            case ">":
+                return upper > 0;
+            case ">=":
+                return upper >= 0;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Writes the predicate as an SQL condition on the column. As in the
+     * generated code, a null value is different from every constant.
+     *
+     * @return condition
+     */
+    public String toSql() {
+        String literal = isString ? "'" + value.replace("'", "''") + "'" : value;
+        String operator = this.operator.equals("!=") ? "<>" : this.operator;
+        String condition = column + " " + operator + " " + literal;
+        return this.operator.equals("!=") ? "(" + condition + " or " + column + " is null)" : condition;
+    }
+
+    private Integer compareWith(Object bound) {
+        if (isString && bound instanceof String) {
+            return Integer.signum(((String) bound).compareTo(value));
+        }
+
+        if (!isString && bound instanceof Number) {
+            return Double.compare(((Number) bound).doubleValue(), numericValue);
+        }
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        String literal = isString ? "\"" + value + "\"" : value;
+        return alias + "." + column + operator + literal;
+    }
+}
@@ -0,0 +1,125 @@
+package main.parser;
+
+import java.util.List;
+
+/**
+ * Statistics of a column as kept in pg_stats: the fraction of nulls, the number
+ * of distinct values and the most common values with their frequencies. A
+ * negative number of distinct values is the negated fraction of the row count,
+ * used by PostgreSQL when the number grows with the table. Statistics observed
+ * by the evaluation engine also know the minimum and maximum value.
+ *
+ * @author R&B
+ *
+ */
+public class ColumnStatistics {
+
+    private final double nullFraction;
+
+    private final double distinctValues;
+
+    private final List<String> mostCommonValues;
+
+    private final List<Double> mostCommonFrequencies;
+
+    private final Object min;
+
+    private final Object max;
+
+    public ColumnStatistics(double nullFraction, double distinctValues, List<String> mostCommonValues,
+            List<Double> mostCommonFrequencies) {
+        this(nullFraction, distinctValues, mostCommonValues, mostCommonFrequencies, null, null);
+    }
+
+    public ColumnStatistics(double nullFraction, double distinctValues, List<String> mostCommonValues,
+            List<Double> mostCommonFrequencies, Object min, Object max) {
+        this.nullFraction = nullFraction;
+        this.distinctValues = distinctValues;
+        this.mostCommonValues = mostCommonValues;
+        this.mostCommonFrequencies = mostCommonFrequencies;
+        this.min = min;
+        this.max = max;
+    }
+
+    public double getNullFraction() {
+        return nullFraction;
+    }
+
+    public double getDistinctValues() {
+        return distinctValues;
+    }
+
+    public List<String> getMostCommonValues() {
+        return mostCommonValues;
+    }
+
+    public List<Double> getMostCommonFrequencies() {
+        return mostCommonFrequencies;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the number of distinct non null values in a table of the given
+     * size.
+     *
+     * @param rows
+     * @return distinct values, at least 1
+     */
+    public double estimateDistinct(double rows) {
+        double distinct = distinctValues >= 0 ? distinctValues : -distinctValues * rows;
+        return Math.max(1, Math.min(distinct, rows));
+    }
+
+    /**
+     * Returns the fraction of rows equal to the value. A most common value has
+     * its own frequency, every other value gets an equal share of the rows not
+     * taken by nulls and most common values.
+     *
+     * @param value
+     * @param rows
+     * @return selectivity between 0 and 1
+     */
+    public double estimateEquality(String value, double rows) {
+        int index = mostCommonValues.indexOf(value);
+        if (index != -1) {
+            return mostCommonFrequencies.get(index);
+        }
+
+        double remaining = 1 - nullFraction;
+        for (double frequency : mostCommonFrequencies) {
+            remaining -= frequency;
+        }
+
+        double others = estimateDistinct(rows) - mostCommonValues.size();
+        return others >= 1 ? Math.max(0, remaining) / others : 1 / Math.max(1, rows);
+    }
+
+    /**
+     * Returns the fraction of rows passing a range comparison with the value,
+     * assuming the values are spread evenly between the minimum and the maximum.
+     *
+     * @param operator one of <, <=, > and >=
+     * @param value
+     * @return selectivity between 0 and 1 or -1 if the range is not known
+     */
+    public double estimateRange(String operator, double value) {
+        if (!(min instanceof Number) || !(max instanceof Number)) {
+            return -1;
+        }
+
+        double lower = ((Number) min).doubleValue();
+        double upper = ((Number) max).doubleValue();
+        double below = upper > lower ? (value - lower) / (upper - lower) : (value < lower ? 0 : 1);
+        below = Math.max(0, Math.min(1, below));
+
+        double fraction = operator.startsWith("<") ? below : 1 - below;
+        return fraction * (1 - nullFraction);
+    }
+}
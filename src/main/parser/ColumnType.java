@@ -0,0 +1,187 @@
+package main.parser;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The data types a column is read as. Every type is stored in a Java type that
+ * can be compared and grouped without parsing: dates are stored as the number
+ * of days and timestamps as the number of milliseconds since 1970-01-01.
+ * Timestamps are taken as UTC so that no time zone is applied when reading or
+ * printing them.
+ *
+ * @author R&B
+ *
+ */
+public enum ColumnType {
+
+    INTEGER(Integer.class, "getInteger"),
+
+    BIGINT(Long.class, "getLong"),
+
+    DOUBLE(Double.class, "getDouble"),
+
+    DATE(Integer.class, "getEpochDay"),
+
+    TIMESTAMP(Long.class, "getEpochMillis"),
+
+    TEXT(String.class, "getString");
+
+    private final Class<?> javaType;
+
+    private final String cursorGetter;
+
+    private ColumnType(Class<?> javaType, String cursorGetter) {
+        this.javaType = javaType;
+        this.cursorGetter = cursorGetter;
+    }
+
+    public Class<?> getJavaType() {
+        return javaType;
+    }
+
+    /**
+     * Returns the name of the RelationCursor method reading the column.
+     *
+     * @return method name
+     */
+    public String getCursorGetter() {
+        return cursorGetter;
+    }
+
+    public boolean isTemporal() {
+        return this == DATE || this == TIMESTAMP;
+    }
+
+    /**
+     * Resolves the type of a column from the data type of the
+     * information_schema.columns view. Decimals without fraction digits are read
+     * as longs and other decimals as doubles. Unknown types are read as text.
+     *
+     * @param dataType
+     * @param scale    number of fraction digits of a decimal or null
+     * @return ColumnType
+     */
+    public static ColumnType fromSqlType(String dataType, Integer scale) {
+        switch (dataType.toLowerCase()) {
+            case "smallint":
+            case "integer":
+                return INTEGER;
+            case "bigint":
+                return BIGINT;
+            case "real":
+            case "double precision":
+                return DOUBLE;
+            case "numeric":
+            case "decimal":
+                return scale != null && scale == 0 ? BIGINT : DOUBLE;
+            case "date":
+                return DATE;
+            case "timestamp without time zone":
+            case "timestamp with time zone":
+                return TIMESTAMP;
+            default:
+                return TEXT;
+        }
+    }
+
+    /**
+     * Resolves the type of a column which is only known by its Java type, e.g.
+     * a column of a file.
+     *
+     * @param javaType
+     * @return ColumnType
+     */
+    public static ColumnType fromJavaType(Class<?> javaType) {
+        for (ColumnType type : values()) {
+            if (type.javaType.equals(javaType)) {
+                return type;
+            }
+        }
+        return TEXT;
+    }
+
+    /**
+     * Writes a string constant compared with a column of this type as a Java
+     * literal of the stored type.
+     *
+     * @param value constant without quotes
+     * @return literal
+     */
+    public String toLiteral(String value) {
+        if (this == DATE) {
+            return String.valueOf(toEpochDay(value));
+        }
+
+        if (this == TIMESTAMP) {
+            return toEpochMillis(value) + "L";
+        }
+
+        return value;
+    }
+
+    /**
+     * Converts a date, read as an object or as ISO text, to the number of days
+     * since 1970-01-01.
+     *
+     * @param value
+     * @return epoch day or null
+     */
+    public static Integer toEpochDay(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (value instanceof java.sql.Date) {
+            return (int) ((java.sql.Date) value).toLocalDate().toEpochDay();
+        }
+
+        if (value instanceof LocalDate) {
+            return (int) ((LocalDate) value).toEpochDay();
+        }
+
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+
+        return (int) LocalDate.parse(value.toString().trim()).toEpochDay();
+    }
+
+    /**
+     * Converts a timestamp, read as an object or as ISO text, to the number of
+     * milliseconds since 1970-01-01 UTC. A date is taken as its start of day.
+     *
+     * @param value
+     * @return epoch milliseconds or null
+     */
+    public static Long toEpochMillis(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (value instanceof Timestamp) {
+            return toEpochMillis(((Timestamp) value).toLocalDateTime());
+        }
+
+        if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toInstant().toEpochMilli();
+        }
+
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+
+        String text = value.toString().trim().replace(' ', 'T');
+        if (text.indexOf('T') == -1) {
+            return toEpochMillis(LocalDate.parse(text).atStartOfDay());
+        }
+        return toEpochMillis(LocalDateTime.parse(text));
+    }
+}
@@ -0,0 +1,523 @@
+package main.parser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * A condition of the query with the data types of its operands resolved. The
+ * tree is built from the syntax tree of the query by ExpressionBuilder, once
+ * the column types are known, and generates code specialized for those types.
+ * Numbers are compared with primitive operators, strings with equals or
+ * compareTo and constants are written in the type of the value they are
+ * compared with.
+ *
+ * Values that can be null in the generated code are guarded so that a null
+ * never matches, except for != which is true for a null as with
+ * Objects.equals. Whether the columns of the scanned row and of the group can
+ * be null depends on the engine, hence it is passed when generating code.
+ *
+ * @author R&B
+ *
+ */
+public abstract class Expression {
+
+    /**
+     * Returns the data type of the value or null for conditions and values of
+     * unknown type.
+     *
+     * @return data type
+     */
+    abstract Class<?> getType();
+
+    abstract boolean isNullable(boolean rowNullable, boolean groupNullable);
+
+    /**
+     * Generates the Java code of the expression.
+     *
+     * @param rowNullable   true if the getters of the scanned row return objects
+     * @param groupNullable true if the getters of the group return objects
+     * @return code
+     */
+    public abstract String toJava(boolean rowNullable, boolean groupNullable);
+
+    abstract void collectFields(boolean rowSide, Set<String> fields);
+
+    /**
+     * Returns a copy of the expression whose getters are replaced by the code
+     * returned by the naming function.
+     *
+     * @param naming receives the field and true for a getter of the scanned row
+     * @return expression
+     */
+    public abstract Expression renameGetters(BiFunction<String, Boolean, String> naming);
+
+    /**
+     * Returns the fields read by the getters of the scanned row or of the group,
+     * in the order they appear.
+     *
+     * @param rowSide true for the fields of the scanned row
+     * @return field names
+     */
+    public Set<String> getFields(boolean rowSide) {
+        Set<String> fields = new LinkedHashSet<>();
+        collectFields(rowSide, fields);
+        return fields;
+    }
+
+    /**
+     * Checks whether the condition only holds if the field of the scanned row
+     * equals the same field of the group.
+     *
+     * @param field
+     * @return boolean
+     */
+    public boolean requiresEquality(String field) {
+        return false;
+    }
+
+    static boolean isNumeric(Class<?> type) {
+        return Integer.class.equals(type) || Long.class.equals(type) || Double.class.equals(type);
+    }
+
+    static String primitiveName(Class<?> type) {
+        if (Long.class.equals(type)) {
+            return "long";
+        }
+
+        if (Double.class.equals(type)) {
+            return "double";
+        }
+
+        return "int";
+    }
+
+    /**
+     * The result type of an arithmetic operation on the two types.
+     */
+    static Class<?> promote(Class<?> lhs, Class<?> rhs) {
+        if (Double.class.equals(lhs) || Double.class.equals(rhs)) {
+            return Double.class;
+        }
+
+        if (Long.class.equals(lhs) || Long.class.equals(rhs)) {
+            return Long.class;
+        }
+
+        return Integer.class;
+    }
+
+    /**
+     * The condition of grouping variable 0, which holds for the rows with the
+     * grouping attributes of the group.
+     */
+    static class KeyEquals extends Expression {
+
+        @Override
+        Class<?> getType() {
+            return null;
+        }
+
+        @Override
+        boolean isNullable(boolean rowNullable, boolean groupNullable) {
+            return false;
+        }
+
+        @Override
+        public String toJava(boolean rowNullable, boolean groupNullable) {
+            return "keyEquals(newRow)";
+        }
+
+        @Override
+        void collectFields(boolean rowSide, Set<String> fields) {
+            // The grouping attributes are compared by the generated method
+        }
+
+        @Override
+        public Expression renameGetters(BiFunction<String, Boolean, String> naming) {
+            return this;
+        }
+    }
+
+    /**
+     * A getter of a column or an aggregate, e.g. newRow.getMonth_S() or
+     * getAvg_quant_S_x().
+     */
+    static class Getter extends Expression {
+
+        private final String field;
+
+        private final String code;
+
+        private final Class<?> type;
+
+        private final boolean rowSide;
+
+        private final boolean neverNull;
+
+        Getter(String field, String code, Class<?> type, boolean rowSide, boolean neverNull) {
+            this.field = field;
+            this.code = code;
+            this.type = type;
+            this.rowSide = rowSide;
+            this.neverNull = neverNull;
+        }
+
+        boolean isRowSide() {
+            return rowSide;
+        }
+
+        String getField() {
+            return field;
+        }
+
+        @Override
+        Class<?> getType() {
+            return type;
+        }
+
+        @Override
+        boolean isNullable(boolean rowNullable, boolean groupNullable) {
+            if (!isNumeric(type)) {
+                return true;
+            }
+
+            if (neverNull) {
+                return false;
+            }
+
+            return rowSide ? rowNullable : groupNullable;
+        }
+
+        @Override
+        public String toJava(boolean rowNullable, boolean groupNullable) {
+            return code;
+        }
+
+        @Override
+        void collectFields(boolean rowSide, Set<String> fields) {
+            if (this.rowSide == rowSide) {
+                fields.add(field);
+            }
+        }
+
+        @Override
+        public Expression renameGetters(BiFunction<String, Boolean, String> naming) {
+            return new Getter(field, naming.apply(field, rowSide), type, rowSide, neverNull);
+        }
+    }
+
+    /**
+     * A number or string literal, a dictionary id of a string, a date or
+     * timestamp converted to a number or a parameter bound before execution.
+     */
+    static class Constant extends Expression {
+
+        private final String code;
+
+        private final Class<?> type;
+
+        Constant(String code, Class<?> type) {
+            this.code = code;
+            this.type = type;
+        }
+
+        @Override
+        Class<?> getType() {
+            return type;
+        }
+
+        @Override
+        boolean isNullable(boolean rowNullable, boolean groupNullable) {
+            return false;
+        }
+
+        @Override
+        public String toJava(boolean rowNullable, boolean groupNullable) {
+            return code;
+        }
+
+        @Override
+        void collectFields(boolean rowSide, Set<String> fields) {
+            // A constant reads no field
+        }
+
+        @Override
+        public Expression renameGetters(BiFunction<String, Boolean, String> naming) {
+            return this;
+        }
+
+        /**
+         * Writes an integral constant in the type of the value it is compared
+         * with.
+         */
+        String toJava(Class<?> targetType) {
+            // Constants held in fields keep the type of their field
+            if (!Integer.class.equals(type) || !code.matches("-?\\d+")) {
+                return code;
+            }
+
+            if (Long.class.equals(targetType)) {
+                return code + "L";
+            }
+
+            if (Double.class.equals(targetType)) {
+                return code + "D";
+            }
+
+            return code;
+        }
+    }
+
+    /**
+     * An arithmetic operation. Division is done in double precision.
+     */
+    static class Arithmetic extends Expression {
+
+        private final String operator;
+
+        private final Expression lhs;
+
+        private final Expression rhs;
+
+        Arithmetic(String operator, Expression lhs, Expression rhs) {
+            this.operator = operator;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        Class<?> getType() {
+            if (!isNumeric(lhs.getType()) || !isNumeric(rhs.getType())) {
+                return null;
+            }
+            return operator.equals("/") ? Double.class : promote(lhs.getType(), rhs.getType());
+        }
+
+        @Override
+        boolean isNullable(boolean rowNullable, boolean groupNullable) {
+            return false;
+        }
+
+        @Override
+        public String toJava(boolean rowNullable, boolean groupNullable) {
+            String cast = operator.equals("/") ? "(double) " : "";
+            return String.format("(%s%s %s %s)", cast, lhs.toJava(rowNullable, groupNullable), operator,
+                    rhs.toJava(rowNullable, groupNullable));
+        }
+
+        @Override
+        void collectFields(boolean rowSide, Set<String> fields) {
+            lhs.collectFields(rowSide, fields);
+            rhs.collectFields(rowSide, fields);
+        }
+
+        @Override
+        public Expression renameGetters(BiFunction<String, Boolean, String> naming) {
+            return new Arithmetic(operator, lhs.renameGetters(naming), rhs.renameGetters(naming));
+        }
+    }
+
+    /**
+     * A comparison of two values with one of =, !=, <, <=, > and >=.
+     */
+    static class Comparison extends Expression {
+
+        private final String operator;
+
+        private final Expression lhs;
+
+        private final Expression rhs;
+
+        Comparison(String operator, Expression lhs, Expression rhs) {
+            this.operator = operator;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        Class<?> getType() {
+            return null;
+        }
+
+        @Override
+        boolean isNullable(boolean rowNullable, boolean groupNullable) {
+            return false;
+        }
+
+        @Override
+        public String toJava(boolean rowNullable, boolean groupNullable) {
+            Class<?> lhsType = lhs.getType();
+            Class<?> rhsType = rhs.getType();
+            boolean isEquality = operator.equals("=") || operator.equals("!=");
+
+            if (isNumeric(lhsType) && isNumeric(rhsType)) {
+                return toNumericJava(rowNullable, groupNullable);
+            }
+
+            if (String.class.equals(lhsType) && String.class.equals(rhsType)) {
+                return toStringJava(rowNullable, groupNullable);
+            }
+
+            // Mixed types are generated as before resolving the types
+            String lhsCode = lhs.toJava(rowNullable, groupNullable);
+            String rhsCode = rhs.toJava(rowNullable, groupNullable);
+            if (isEquality) {
+                return String.format("%sObjects.equals(%s, %s)", operator.equals("=") ? "" : "!", lhsCode, rhsCode);
+            }
+            return String.format("Double.compare((double) %s, (double) %s) %s 0", lhsCode, rhsCode, operator);
+        }
+
+        @Override
+        void collectFields(boolean rowSide, Set<String> fields) {
+            lhs.collectFields(rowSide, fields);
+            rhs.collectFields(rowSide, fields);
+        }
+
+        @Override
+        public Expression renameGetters(BiFunction<String, Boolean, String> naming) {
+            return new Comparison(operator, lhs.renameGetters(naming), rhs.renameGetters(naming));
+        }
+
+        @Override
+        public boolean requiresEquality(String field) {
+            return operator.equals("=") && lhs instanceof Getter && rhs instanceof Getter
+                    && ((Getter) lhs).isRowSide() && !((Getter) rhs).isRowSide()
+                    && ((Getter) lhs).getField().equals(field) && ((Getter) rhs).getField().equals(field);
+        }
+
+        private String toNumericJava(boolean rowNullable, boolean groupNullable) {
+            boolean lhsNullable = lhs.isNullable(rowNullable, groupNullable);
+            boolean rhsNullable = rhs.isNullable(rowNullable, groupNullable);
+
+            // Both are objects of the same type, equals does not need to box
+            if (lhsNullable && rhsNullable && lhs.getType().equals(rhs.getType()) && isEqualityOperator()) {
+                return String.format("%sObjects.equals(%s, %s)", operator.equals("=") ? "" : "!",
+                        lhs.toJava(rowNullable, groupNullable), rhs.toJava(rowNullable, groupNullable));
+            }
+
+            List<String> guards = new ArrayList<>();
+            addGuard(guards, lhs, lhsNullable, rowNullable, groupNullable);
+            addGuard(guards, rhs, rhsNullable, rowNullable, groupNullable);
+
+            String comparison = String.format("%s %s %s", toPrimitive(lhs, rhs, rowNullable, groupNullable),
+                    operator.equals("=") ? "==" : operator, toPrimitive(rhs, lhs, rowNullable, groupNullable));
+            guards.add(comparison);
+
+            return "(" + String.join(operator.equals("!=") ? " || " : " && ", guards) + ")";
+        }
+
+        private String toStringJava(boolean rowNullable, boolean groupNullable) {
+            String lhsCode = lhs.toJava(rowNullable, groupNullable);
+            String rhsCode = rhs.toJava(rowNullable, groupNullable);
+            String negation = operator.equals("!=") ? "!" : "";
+
+            if (isEqualityOperator()) {
+                if (rhs instanceof Constant) {
+                    return String.format("%s%s.equals(%s)", negation, rhsCode, lhsCode);
+                }
+                if (lhs instanceof Constant) {
+                    return String.format("%s%s.equals(%s)", negation, lhsCode, rhsCode);
+                }
+                return String.format("%sObjects.equals(%s, %s)", negation, lhsCode, rhsCode);
+            }
+
+            List<String> guards = new ArrayList<>();
+            addGuard(guards, lhs, !(lhs instanceof Constant), rowNullable, groupNullable);
+            addGuard(guards, rhs, !(rhs instanceof Constant), rowNullable, groupNullable);
+            guards.add(String.format("%s.compareTo(%s) %s 0", lhsCode, rhsCode, operator));
+
+            return "(" + String.join(" && ", guards) + ")";
+        }
+
+        private boolean isEqualityOperator() {
+            return operator.equals("=") || operator.equals("!=");
+        }
+
+        private void addGuard(List<String> guards, Expression value, boolean nullable, boolean rowNullable,
+                boolean groupNullable) {
+            if (nullable) {
+                guards.add(value.toJava(rowNullable, groupNullable) + (operator.equals("!=") ? " == null" : " != null"));
+            }
+        }
+
+        private static String toPrimitive(Expression value, Expression other, boolean rowNullable,
+                boolean groupNullable) {
+            if (value instanceof Constant) {
+                return ((Constant) value).toJava(other.getType());
+            }
+
+            String code = value.toJava(rowNullable, groupNullable);
+            if (value instanceof Getter) {
+                return String.format("(%s) %s", primitiveName(value.getType()), code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Conditions joined by && and ||, optionally in brackets.
+     */
+    static class Logical extends Expression {
+
+        private final List<Expression> operands;
+
+        private final List<String> operators;
+
+        private final boolean bracketed;
+
+        Logical(List<Expression> operands, List<String> operators, boolean bracketed) {
+            this.operands = operands;
+            this.operators = operators;
+            this.bracketed = bracketed;
+        }
+
+        @Override
+        Class<?> getType() {
+            return null;
+        }
+
+        @Override
+        boolean isNullable(boolean rowNullable, boolean groupNullable) {
+            return false;
+        }
+
+        @Override
+        public String toJava(boolean rowNullable, boolean groupNullable) {
+            StringBuilder builder = new StringBuilder(bracketed ? "(" : "");
+            for (int index = 0; index < operands.size(); index++) {
+                if (index > 0) {
+                    builder.append(' ').append(operators.get(index - 1)).append(' ');
+                }
+                builder.append(operands.get(index).toJava(rowNullable, groupNullable));
+            }
+            return builder.append(bracketed ? ")" : "").toString();
+        }
+
+        @Override
+        void collectFields(boolean rowSide, Set<String> fields) {
+            for (Expression operand : operands) {
+                operand.collectFields(rowSide, fields);
+            }
+        }
+
+        @Override
+        public Expression renameGetters(BiFunction<String, Boolean, String> naming) {
+            List<Expression> renamed = new ArrayList<>();
+            for (Expression operand : operands) {
+                renamed.add(operand.renameGetters(naming));
+            }
+            return new Logical(renamed, operators, bracketed);
+        }
+
+        @Override
+        public boolean requiresEquality(String field) {
+            if (operators.contains("||")) {
+                return false;
+            }
+            return operands.stream().anyMatch(operand -> operand.requiresEquality(field));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package main.parser;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import main.utils.CommonUtils;
+
+/**
+ * Builds the Expression of a condition from its syntax tree. Columns and
+ * aggregates become getters, of the scanned row on the left of a such that
+ * comparison and in the where clause, of the group on the right of a such that
+ * comparison and in the having clause. String constants compared with a date or
+ * timestamp are converted to the number it is stored as, and those compared
+ * for equality with a dictionary encoded field to the constant holding their
+ * id.
+ *
+ * @author R&B
+ *
+ */
+class ExpressionBuilder {
+
+    static final String ROW_PREFIX = "newRow.";
+
+    static final String GROUP_PREFIX = "";
+
+    static final String VALUE_PREFIX = "value.";
+
+    private static final String ENTITY_PREFIX = "CompositeEntity.";
+
+    private final Map<String, Class<?>> columnTypes;
+
+    private final Map<String, Class<?>> aggregateTypes;
+
+    private final Set<String> nonNullFields;
+
+    private final Set<String> encodedFields;
+
+    private final Map<String, String> encodedConstants;
+
+    private final Map<String, ColumnType> temporalFields;
+
+    private final Map<String, ColumnType> parameterTypes;
+
+    /**
+     * @param columnTypes      data types of the columns by field name
+     * @param aggregateTypes   data types of the aggregates by field name
+     * @param nonNullFields    fields which are never null
+     * @param encodedFields    fields holding dictionary ids
+     * @param encodedConstants names of the constants holding dictionary ids
+     * @param temporalFields   fields holding dates or timestamps as numbers
+     * @param parameterTypes   data types of the parameters by name
+     */
+    ExpressionBuilder(Map<String, Class<?>> columnTypes, Map<String, Class<?>> aggregateTypes,
+            Set<String> nonNullFields, Set<String> encodedFields, Map<String, String> encodedConstants,
+            Map<String, ColumnType> temporalFields, Map<String, ColumnType> parameterTypes) {
+        this.columnTypes = columnTypes;
+        this.aggregateTypes = aggregateTypes;
+        this.nonNullFields = nonNullFields;
+        this.encodedFields = encodedFields;
+        this.temporalFields = temporalFields;
+        this.parameterTypes = parameterTypes;
+
+        this.encodedConstants = new HashMap<>();
+        for (Entry<String, String> constant : encodedConstants.entrySet()) {
+            this.encodedConstants.put(constant.getValue(), constant.getKey());
+        }
+    }
+
+    /**
+     * Builds the expression of a condition.
+     *
+     * @param condition
+     * @param lhsPrefix prefix of the getters on the left of the comparisons
+     * @param rhsPrefix prefix of the getters on the right of the comparisons
+     * @return expression
+     */
+    Expression build(SqlNode condition, String lhsPrefix, String rhsPrefix) {
+        if (condition instanceof SqlNode.Logical) {
+            SqlNode.Logical logical = (SqlNode.Logical) condition;
+            List<Expression> operands = new ArrayList<>();
+            List<String> operators = new ArrayList<>();
+            for (SqlNode operand : logical.getOperands()) {
+                operands.add(build(operand, lhsPrefix, rhsPrefix));
+            }
+            for (String operator : logical.getOperators()) {
+                operators.add(operator.equals("and") ? "&&" : "||");
+            }
+            return new Expression.Logical(operands, operators, logical.isBracketed());
+        }
+
+        SqlNode.Comparison comparison = (SqlNode.Comparison) condition;
+        String operator = comparison.getOperator().equals("<>") ? "!=" : comparison.getOperator();
+        boolean isEquality = operator.equals("=") || operator.equals("!=");
+        return new Expression.Comparison(operator,
+                toOperand(comparison.getLhs(), comparison.getRhs(), lhsPrefix, isEquality),
+                toOperand(comparison.getRhs(), comparison.getLhs(), rhsPrefix, isEquality));
+    }
+
+    /**
+     * Builds the expression of conditions that must all hold, e.g. the such that
+     * conditions given for one grouping variable.
+     *
+     * @param conditions
+     * @param lhsPrefix
+     * @param rhsPrefix
+     * @return expression or null if there are no conditions
+     */
+    Expression buildAll(List<SqlNode> conditions, String lhsPrefix, String rhsPrefix) {
+        Expression expression = null;
+        for (SqlNode condition : conditions) {
+            Expression next = build(condition, lhsPrefix, rhsPrefix);
+            expression = expression == null ? next
+                    : new Expression.Logical(Arrays.asList(bracket(expression), bracket(next)),
+                            Collections.singletonList("&&"), false);
+        }
+        return expression;
+    }
+
+    private static Expression bracket(Expression expression) {
+        return new Expression.Logical(Collections.singletonList(expression), Collections.emptyList(), true);
+    }
+
+    /**
+     * Builds an operand of a comparison, converting a string constant to the
+     * representation of the field it is compared with.
+     */
+    private Expression toOperand(SqlNode value, SqlNode other, String prefix, boolean isEquality) {
+        String otherField = ParsedQuery.toField(other);
+        if (!(value instanceof SqlNode.Constant) || !((SqlNode.Constant) value).isString() || otherField == null) {
+            return toValue(value, prefix);
+        }
+
+        SqlNode.Constant constant = (SqlNode.Constant) value;
+        if (isEquality && encodedFields.contains(otherField) && encodedConstants.containsKey(constant.getValue())) {
+            return new Expression.Constant(ENTITY_PREFIX + encodedConstants.get(constant.getValue()), Integer.class);
+        }
+
+        ColumnType columnType = temporalFields.get(otherField);
+        if (columnType == null) {
+            return toValue(value, prefix);
+        }
+
+        try {
+            return new Expression.Constant(columnType.toLiteral(constant.getValue()), columnType.getJavaType());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + columnType + " constant " + constant, e);
+        }
+    }
+
+    private Expression toValue(SqlNode value, String prefix) {
+        if (value instanceof SqlNode.Constant) {
+            SqlNode.Constant constant = (SqlNode.Constant) value;
+            if (constant.isString()) {
+                return new Expression.Constant(constant.toJava(), String.class);
+            }
+            return new Expression.Constant(constant.toJava(),
+                    constant.getValue().contains(".") ? Double.class : Integer.class);
+        }
+
+        if (value instanceof SqlNode.Parameter) {
+            String name = ParsedQuery.PARAMETER_PREFIX + ((SqlNode.Parameter) value).getIndex();
+            return new Expression.Constant(ENTITY_PREFIX + name, parameterTypes.get(name).getJavaType());
+        }
+
+        if (value instanceof SqlNode.Arithmetic) {
+            SqlNode.Arithmetic arithmetic = (SqlNode.Arithmetic) value;
+            return new Expression.Arithmetic(arithmetic.getOperator(), toValue(arithmetic.getLhs(), prefix),
+                    toValue(arithmetic.getRhs(), prefix));
+        }
+
+        String field = ParsedQuery.toField(value);
+        Class<?> type = aggregateTypes.containsKey(field) ? aggregateTypes.get(field) : columnTypes.get(field);
+        return new Expression.Getter(field, CommonUtils.firstLetterToUpper(field, prefix + "get", "()"), type,
+                prefix.equals(ROW_PREFIX), nonNullFields.contains(field));
+    }
+}
@@ -1,6 +1,8 @@
 package main.parser;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import main.utils.CommonUtils;
@@ -17,21 +19,29 @@ public class GroupingInformation {
 
     private final String name;
 
-    private final StringBuilder boundryConditions;
+    private final List<SqlNode> boundryConditions;
+
+    private Expression boundryExpression;
 
     private final Set<String> dependentOn;
 
     private final Set<String> aggregates;
 
+    private final List<ColumnPredicate> predicates;
+
+    private boolean conjunctive;
+
     public GroupingInformation(String variableName) {
         name = variableName;
-        boundryConditions = new StringBuilder();
+        boundryConditions = new ArrayList<>();
         dependentOn = new HashSet<>();
         aggregates = new HashSet<>();
+        predicates = new ArrayList<>();
+        conjunctive = true;
     }
 
-    public void addBoundryConditions(String conditions) {
-        boundryConditions.append(conditions);
+    public void addBoundryCondition(SqlNode condition) {
+        boundryConditions.add(condition);
     }
 
     public void addAggregates(String aggregateName, String variableFullName, boolean forceAdd) {
@@ -49,6 +59,18 @@ public class GroupingInformation {
         aggregates.add(CommonUtils.append(variableFullName, aggregateName, name, "_"));
     }
 
+    public void addPredicate(ColumnPredicate predicate) {
+        predicates.add(predicate);
+    }
+
+    public void setConjunctive(boolean conjunctive) {
+        this.conjunctive = conjunctive;
+    }
+
+    public boolean isConjunctive() {
+        return conjunctive;
+    }
+
     public void addDependentOn(String variableName) {
         dependentOn.add(variableName);
     }
@@ -57,8 +79,28 @@ public class GroupingInformation {
         return name;
     }
 
-    public String getBoundryConditions() {
-        return boundryConditions.toString();
+    /**
+     * Returns the such that conditions given for the grouping variable, all of
+     * which must hold.
+     *
+     * @return conditions
+     */
+    public List<SqlNode> getBoundryConditions() {
+        return boundryConditions;
+    }
+
+    /**
+     * Returns the such that condition, null for a grouping variable without
+     * one. Must be called after ParsedQuery.resolveTypes.
+     *
+     * @return expression
+     */
+    public Expression getBoundryExpression() {
+        return boundryExpression;
+    }
+
+    public void setBoundryExpression(Expression boundryExpression) {
+        this.boundryExpression = boundryExpression;
     }
 
     public Set<String> getDependentOn() {
@@ -68,4 +110,15 @@ public class GroupingInformation {
     public Set<String> getAggregates() {
         return aggregates;
     }
+
+    /**
+     * Returns the comparisons of row columns with constants that every row of
+     * the grouping variable must satisfy. Empty if the such that condition
+     * contains a disjunction.
+     *
+     * @return predicates
+     */
+    public List<ColumnPredicate> getPredicates() {
+        return conjunctive ? predicates : new ArrayList<>();
+    }
 }
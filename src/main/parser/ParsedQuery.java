@@ -1,10 +1,11 @@
 package main.parser;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -14,10 +15,13 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import main.utils.CommonUtils;
+import main.utils.FlightEvents;
 
 /**
  * A Parser that converts input query from SQL language to JAVA programming
- * language. Used REGEX to split the input and parses each component.
+ * language. The query is parsed into a syntax tree by SqlParser, the
+ * projections and conditions of the generated classes are derived from the
+ * nodes of the tree.
  *
  * @author R&B
  *
@@ -26,19 +30,9 @@ public class ParsedQuery {
 
     private static final Logger LOG = Logger.getLogger(ParsedQuery.class.getCanonicalName());
 
-    private static final String SQL_REGEX = "(?i)(select\\s|from\\s|where\\s|group by\\s|such that\\s|having\\s|order by\\s|a\\sasc|\\sdesc)";
-
-    private static final String OPERATORS_REGEX = "[-+*/]";
-
-    private static final String PROJECTION_ELEMENT_REGEX = "(?i)\\sas\\s";
-
-    private static final String PROJECTION_OPERATORS_REGEX = "(?<=[-+*/])|(?=[-+*/])";
-
-    private static final String SQL_EXPRESSION_REGEX = "(?<=[!=<>])|(?=[!=<>])";
-
     private static final String AGGREGATE_REGEX = "^(?i)(avg|max|min|sum|count).+";
 
-    private static final String CONDITION_SPLIT_REGEX = "(?i)(?<=\\sand\\s|\\sor\\s)|(?i)(?=\\sand\\s|\\sor\\s)|,";
+    static final String PARAMETER_PREFIX = "PARAMETER_";
 
     private final Map<String, TableInformation> relations;
 
@@ -54,9 +48,23 @@ public class ParsedQuery {
 
     private final List<String> orderByAttributes;
 
-    private String selectConditions;
+    private final List<ColumnPredicate> wherePredicates;
+
+    private final Set<String> encodedFields;
+
+    private final Map<String, String> encodedConstants;
+
+    private final Map<String, ColumnType> temporalFields;
 
-    private String havingCondition;
+    private final List<String> parameterFields;
+
+    private final Map<String, ColumnType> parameterTypes;
+
+    private SqlStatement statement;
+
+    private Expression selectExpression;
+
+    private Expression havingExpression;
 
     private int orderMultiplier;
 
@@ -68,99 +76,124 @@ public class ParsedQuery {
         headers = new ArrayList<>();
         groupingAttributes = new ArrayList<>();
         orderByAttributes = new ArrayList<>();
+        wherePredicates = new ArrayList<>();
+        encodedFields = new HashSet<>();
+        encodedConstants = new LinkedHashMap<>();
+        temporalFields = new HashMap<>();
+        parameterFields = new ArrayList<>();
+        parameterTypes = new LinkedHashMap<>();
         orderMultiplier = 1;
     }
 
     public void processSQL(String sql) {
-        sql = sql.replaceAll(System.lineSeparator(), "");
-        processSqlKeywords(sql.split(String.format("(?<=%s)|(?=%s)", SQL_REGEX, SQL_REGEX)));
-    }
+        FlightEvents.QueryParse event = new FlightEvents.QueryParse();
+        event.begin();
 
-    public void processSqlKeywords(String[] components) {
-        int index = 0;
-        String projectionStatement = "";
-
-        while (index < components.length) {
-            String keyword = components[index].trim();
-            switch (keyword) {
-                case "select":
-                    projectionStatement = components[++index].trim();
-                    break;
-                case "from":
-                    processRelations(components[++index].trim());
-                    break;
-                case "where":
-                    processWhereConditions(components[++index].trim());
-                    break;
-                case "group by":
-                    processGroupingParameters(components[++index].trim());
-                    break;
-                case "such that":
-                    processGroupBoundries(components[++index].trim());
-                    break;
-                case "having":
-                    processHavingConditions(components[++index].trim());
-                    break;
-                case "order by":
-                    processOrderByConditions(components[++index].trim());
-                    break;
-                case "asc":
-                    orderMultiplier = 1;
-                    break;
-                case "desc":
-                    orderMultiplier = -1;
-                    break;
-                default:
-                    LOG.log(Level.SEVERE, "Invalid SQL keyword : {0}", keyword);
-                    CommonUtils.exit(1);
+        try {
+            statement = new SqlParser(sql).parse();
+            parameterFields.addAll(Collections.nCopies(statement.getParameterCount(), null));
+
+            processRelations();
+            if (statement.getWhereCondition() != null) {
+                processWhereConditions(statement.getWhereCondition());
             }
-            index++;
+            processGroupingParameters();
+            processGroupBoundries();
+            if (statement.getHavingCondition() != null) {
+                processHavingConditions(statement.getHavingCondition());
+            }
+            processOrderByConditions();
+            processPojections();
+        } catch (IllegalArgumentException e) {
+            LOG.log(Level.SEVERE, "Invalid SQL : {0}", e.getMessage());
+            CommonUtils.exit(1);
         }
 
-        processPojections(projectionStatement);
-        processGroupZeroBoundryCondition();
         processGroupDependency();
+        event.record(relations.size(), groups.size());
     }
 
-    private void processPojections(String statement) {
-        String[] elements = statement.split(",");
-        for (String element : elements) {
-            processProjectionElement(element);
+    /**
+     * Processes a query given clause by clause, every keyword followed by its
+     * clause, e.g. "select", "S.cust", "from", "sales S". Keywords followed by an
+     * empty clause are left out.
+     *
+     * @param components
+     */
+    public void processSqlKeywords(String[] components) {
+        StringBuilder sql = new StringBuilder();
+        for (int index = 0; index < components.length; index++) {
+            if (index + 1 < components.length && components[index + 1].trim().isEmpty()) {
+                index++;
+                continue;
+            }
+            sql.append(components[index]).append(' ');
         }
+
+        processSQL(sql.toString());
+    }
+
+    /**
+     * Returns the syntax tree of the query.
+     *
+     * @return statement
+     */
+    public SqlStatement getStatement() {
+        return statement;
     }
 
-    private void processProjectionElement(String element) {
-        String[] components = element.split(PROJECTION_ELEMENT_REGEX);
+    /**
+     * Processes the select clause. Columns of grouping variables and aggregates
+     * are added to their grouping variable. Example : sum(x.S.quant)/count(S.quant)
+     * is converted to sum_quant_S_x/count_quant_S_0.
+     */
+    private void processPojections() {
+        for (SqlStatement.Projection projection : statement.getProjections()) {
+            String expression = toProjection(projection.getValue());
+            projections.add(expression);
+            headers.add(projection.getHeader() != null ? projection.getHeader() : expression);
+        }
+    }
 
-        String[] projectionComponents = components[0].split(PROJECTION_OPERATORS_REGEX);
-        StringBuilder expression = new StringBuilder();
+    private String toProjection(SqlNode value) {
+        if (value instanceof SqlNode.Arithmetic) {
+            SqlNode.Arithmetic arithmetic = (SqlNode.Arithmetic) value;
+            String lhs = toProjection(arithmetic.getLhs());
+            String rhs = toProjection(arithmetic.getRhs());
 
-        for (String projection : projectionComponents) {
-            projection = projection.trim();
-            if (projection.matches(OPERATORS_REGEX) || projection.indexOf('.') == -1) {
-                expression.append(projection);
-                continue;
+            // Brackets keep the order of the tree, e.g. a*(b+c) and a-(b-c)
+            if (precedence(arithmetic.getLhs()) < precedence(arithmetic)) {
+                lhs = "(" + lhs + ")";
+            }
+            if (precedence(arithmetic.getRhs()) <= precedence(arithmetic)) {
+                rhs = "(" + rhs + ")";
             }
+            return lhs + arithmetic.getOperator() + rhs;
+        }
 
-            String[] variables = getComponents(projection);
-            String columnName = CommonUtils.toCamelCase(variables[0], false);
-            String variableName = CommonUtils.append(columnName, "", variables[1], "_");
-            String fullVariableName = CommonUtils.append(variableName, variables[2], variables[3], "_");
+        if (value instanceof SqlNode.Constant) {
+            return ((SqlNode.Constant) value).toJava();
+        }
 
-            TableInformation info = relations.computeIfAbsent(variables[1], k -> new TableInformation(k));
-            info.addColumn(columnName);
+        SqlNode.Column column = toColumn(value);
+        String aggregateFunction = value instanceof SqlNode.Aggregate ? ((SqlNode.Aggregate) value).getFunction()
+                : "";
+        String groupingVariable = value instanceof SqlNode.Aggregate
+                ? ((SqlNode.Aggregate) value).getGroupingVariable()
+                : column.getGroupingVariable();
+        String variableName = addColumn(column);
 
-            if (!variables[3].isEmpty()) {
-                GroupingInformation group = addGroupingVariable(variables[3]);
-                group.addAggregates(variables[2], variableName, true);
-            }
-            expression.append(fullVariableName);
+        if (!groupingVariable.isEmpty()) {
+            addGroupingVariable(groupingVariable).addAggregates(aggregateFunction, variableName, true);
         }
+        return CommonUtils.append(variableName, aggregateFunction, groupingVariable, "_");
+    }
 
-        String header = components.length > 1 && !components[1].isEmpty() ? components[1] : expression.toString();
-
-        projections.add(expression.toString());
-        headers.add(header);
+    private static int precedence(SqlNode value) {
+        if (!(value instanceof SqlNode.Arithmetic)) {
+            return Integer.MAX_VALUE;
+        }
+        return ((SqlNode.Arithmetic) value).isMultiplicative() ? 2 : 1;
     }
 
     private GroupingInformation addGroupingVariable(String variable) {
@@ -168,370 +201,338 @@ public class ParsedQuery {
     }
 
     /**
-     * Parses the variable string to return individual components.
+     * Returns the column of a column or an aggregate.
      *
-     * @param element
-     * @return Array of columnName, tableAlias, aggregateFunction, groupingVariable
+     * @param value
+     * @return column
      */
-    private String[] getComponents(String element) {
-        String columnReference = element;
-        String aggregateFunction = "";
-        String groupingVariable = "";
+    private static SqlNode.Column toColumn(SqlNode value) {
+        if (value instanceof SqlNode.Aggregate) {
+            return ((SqlNode.Aggregate) value).getColumn();
+        }
 
-        if (element.matches(AGGREGATE_REGEX)) {
-            String[] aggElements = element.split("[()]");
-            aggregateFunction = aggElements[0];
-            columnReference = aggElements[1];
-            groupingVariable = "0";
+        if (value instanceof SqlNode.Column) {
+            return (SqlNode.Column) value;
         }
 
-        int firstDot = columnReference.indexOf('.');
-        int secondDot = columnReference.lastIndexOf('.');
+        throw new IllegalArgumentException("Column or aggregate expected, found " + value);
+    }
 
-        if (firstDot == secondDot) {
-            firstDot = -1;
+    /**
+     * Adds the column to the columns read from its table.
+     *
+     * @param column
+     * @return name of the column suffixed with the table alias, e.g. quant_S
+     */
+    private String addColumn(SqlNode.Column column) {
+        TableInformation info = relations.get(column.getAlias());
+        if (info == null) {
+            throw new IllegalArgumentException("Unknown table alias " + column.getAlias() + " in " + column);
         }
 
-        String columnName = columnReference.substring(secondDot + 1);
-        String tableAlias = columnReference.substring(firstDot + 1, secondDot);
-        groupingVariable = firstDot > 0 ? columnReference.substring(0, firstDot) : groupingVariable;
-
-        return new String[] { columnName, tableAlias, aggregateFunction, groupingVariable };
+        String columnName = CommonUtils.toCamelCase(column.getName(), false);
+        info.addColumn(columnName);
+        return CommonUtils.append(columnName, "", column.getAlias(), "_");
     }
 
     /**
      * Processes the from condition in the query. The input query must provide a
      * table alias for all referenced tables.
-     *
-     * @param component
      */
-    private void processRelations(String component) {
-        String[] tables = component.trim().split(",");
-        String splitRegex = "\\s+";
-
-        for (String table : tables) {
-            // Splits the table name and alias
-            String[] tableAndAlias = table.trim().split(splitRegex);
-            TableInformation tableInfo = relations.computeIfAbsent(tableAndAlias[1], k -> new TableInformation(k));
-            tableInfo.setTableName(tableAndAlias[0]);
+    private void processRelations() {
+        for (SqlStatement.Relation relation : statement.getRelations()) {
+            TableInformation tableInfo = relations.computeIfAbsent(relation.getAlias(), k -> new TableInformation(k));
+            tableInfo.setTableName(relation.getTableName());
         }
     }
 
     /**
      * Processes the where conditions in the query. The input query must provide a
      * table alias for all referenced tables. IN, NOT IN, EXISTS, IS NULL operators
-     * are not supported. Converts to syntax that can be used in Java code Example :
-     * S.month=1 is converted to Objects.equals(newRow.getMonth_S(), 1).
+     * are not supported. The columns are read from the scanned row, e.g.
+     * S.month=1 is evaluated as newRow.getMonth_S() == 1.
      *
-     * @param component
+     * @param condition
      */
-    private void processWhereConditions(String statement) {
-        String[] elements = statement.split(CONDITION_SPLIT_REGEX);
-        StringBuilder conditionBuilder = new StringBuilder();
-        for (String element : elements) {
-            element = element.trim();
-            processConditionElement(conditionBuilder, element, "newRow.");
-        }
+    private void processWhereConditions(SqlNode condition) {
+        addCondition(condition, null, wherePredicates);
 
-        selectConditions = conditionBuilder.toString();
+        // A predicate of a disjunction can not rule out rows on its own.
+        if (!isConjunctive(condition)) {
+            wherePredicates.clear();
+        }
     }
 
     /**
      * Processes the grouping attributes and grouping variables. The input query
      * must provide a table alias for all referenced tables.
-     *
-     * @param component
      */
-    private void processGroupingParameters(String statement) {
-        // Splits grouping attributes and grouping variables
-        String[] elements = statement.split(";");
-        // Splits individual grouping attributes
-        String[] groupingAttibutes = elements[0].split(",");
-        // Splits individual grouping variables
-        String[] variables = elements[1].split(",");
-
-        for (String groupingAttibute : groupingAttibutes) {
-            String[] components = getComponents(groupingAttibute.trim());
-            String columnName = CommonUtils.toCamelCase(components[0], false);
-            relations.get(components[1]).addColumn(columnName);
-            addGroupingAttributes(CommonUtils.toCamelCase(columnName, false, true, components[1]));
+    private void processGroupingParameters() {
+        for (SqlNode.Column groupingAttibute : statement.getGroupingAttributes()) {
+            String columnName = CommonUtils.toCamelCase(groupingAttibute.getName(), false);
+            addColumn(groupingAttibute);
+            addGroupingAttributes(CommonUtils.toCamelCase(columnName, false, true, groupingAttibute.getAlias()));
         }
 
-        for (String variable : variables) {
-            addGroupingVariable(variable.trim());
+        for (String variable : statement.getGroupingVariables()) {
+            addGroupingVariable(variable);
         }
-
     }
 
     /**
      * Processes the such that conditions in the query. The input query must provide
      * a table alias for all referenced tables. IN, NOT IN, EXISTS, IS NULL
-     * operators are not supported. Converts to syntax that can be used in Java code
-     * Example : x.S.month=S.month is converted to
-     * Objects.equals(newRow.getMonth_S_X(), getMonth_S()).
-     *
-     * @param component
+     * operators are not supported. Every comma separated condition belongs to the
+     * grouping variable on the left of its comparisons. The left sides are read
+     * from the scanned row and the right sides from the group, e.g.
+     * x.S.month=S.month is evaluated as newRow.getMonth_S() == getMonth_S().
      */
-    private void processGroupBoundries(String statement) {
-        String[] elements = statement.split(CONDITION_SPLIT_REGEX);
-        GroupingInformation currentGroup = null;
-        for (String element : elements) {
-            element = element.trim();
-            currentGroup = processBoundryConditionElement(currentGroup, element);
-        }
-    }
-
-    private GroupingInformation processBoundryConditionElement(GroupingInformation currentGroup, String element) {
-        if (element.equalsIgnoreCase("AND")) {
-            currentGroup.addBoundryConditions(" && ");
-            return currentGroup;
-        }
-
-        if (element.equalsIgnoreCase("OR")) {
-            currentGroup.addBoundryConditions(" || ");
-            return currentGroup;
-        }
-
-        String[] sqlExpressionElement = getSqlExpressionElement(element);
-
-        String lhs = sqlExpressionElement[0].trim();
-        String[] lhsComponents = getComponents(lhs);
-
-        String columnName = CommonUtils.toCamelCase(lhsComponents[0], false);
-        String variableName = CommonUtils.append(columnName, "", lhsComponents[1], "_");
-        String fullVariableName = CommonUtils.append(variableName, lhsComponents[2], "", "_");
-
-        String lhsExpression = CommonUtils.firstLetterToUpper(fullVariableName, "newRow.get", "()");
-
-        relations.get(lhsComponents[1]).addColumn(columnName);
-
-        currentGroup = groups.get(lhsComponents[3]);
-        currentGroup.addAggregates(lhsComponents[2], variableName, false);
+    private void processGroupBoundries() {
+        for (SqlNode condition : statement.getSuchThatConditions()) {
+            String variable = getGroupingVariable(condition);
+            GroupingInformation currentGroup = groups.get(variable);
+            if (currentGroup == null) {
+                throw new IllegalArgumentException("Undeclared grouping variable " + variable + " in " + condition);
+            }
 
-        String rhs = sqlExpressionElement[2].trim();
-        String operator = sqlExpressionElement[1].trim();
+            List<ColumnPredicate> predicates = new ArrayList<>();
+            addCondition(condition, currentGroup, predicates);
+            predicates.forEach(currentGroup::addPredicate);
 
-        // The RHS can be a complex expression. Hence it is treated like an expression.
-        Deque<String> rhsParts = new LinkedList<>();
-        rhsParts.addAll(Arrays.asList(rhs.split(String.format("(?<=%s)|(?=%s)", OPERATORS_REGEX, OPERATORS_REGEX))));
+            if (!isConjunctive(condition)) {
+                currentGroup.setConjunctive(false);
+            }
 
-        currentGroup.addBoundryConditions(
-                buildExpression(operator, lhsExpression, processRHS(rhsParts, currentGroup, "", false)));
-        return currentGroup;
+            // Every condition given for the grouping variable must hold
+            currentGroup.addBoundryCondition(condition);
+        }
     }
 
     /**
-     * Processes all the operation in the RHS. The RHS can be 1 or S.month or
-     * S.month-1. In case of the later this processing becomes mandatory.
+     * Returns the grouping variable of the columns on the left of the comparisons
+     * of a such that condition.
      *
-     * @param rhs
-     * @param currentGroup
-     * @param prefix
-     * @param computePrefix
-     * @return rhsExpression
+     * @param condition
+     * @return grouping variable
      */
-    private String processRHS(Deque<String> rhs, GroupingInformation currentGroup, String prefix,
-            boolean computePrefix) {
-        String lhs = rhs.poll();
-
-        if (lhs == null) {
-            return "";
-        }
-
-        if (rhs.isEmpty() && lhs.indexOf('.') == -1) {
-            return lhs;
+    private static String getGroupingVariable(SqlNode condition) {
+        if (condition instanceof SqlNode.Logical) {
+            String variable = null;
+            for (SqlNode operand : ((SqlNode.Logical) condition).getOperands()) {
+                String operandVariable = getGroupingVariable(operand);
+                if (variable != null && !variable.equals(operandVariable)) {
+                    throw new IllegalArgumentException(
+                            "Conditions of different grouping variables must be separated by commas : " + condition);
+                }
+                variable = operandVariable;
+            }
+            return variable;
         }
 
-        String operator = rhs.poll();
-
-        if (lhs.indexOf('.') == -1) {
-            return buildExpression(operator, lhs, processRHS(rhs, currentGroup, prefix, computePrefix));
+        SqlNode lhs = ((SqlNode.Comparison) condition).getLhs();
+        if (!(lhs instanceof SqlNode.Column) || ((SqlNode.Column) lhs).getGroupingVariable().isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Column of a grouping variable expected on the left of " + condition);
         }
+        return ((SqlNode.Column) lhs).getGroupingVariable();
+    }
 
-        String[] partComponents = getComponents(lhs);
-
-        String columnName = CommonUtils.toCamelCase(partComponents[0], false);
-        String variableName = CommonUtils.append(columnName, "", partComponents[1], "_");
-        String fullVariableName = CommonUtils.append(variableName, partComponents[2], "", "_");
-
-        if (!partComponents[2].isEmpty()) {
-            GroupingInformation parentGroup = groups.getOrDefault(partComponents[3],
-                    new GroupingInformation(partComponents[3]));
-            parentGroup.addAggregates(partComponents[2], variableName, false);
-            fullVariableName = CommonUtils.append(fullVariableName, "", partComponents[3], "_");
-            groups.put(parentGroup.getName(), parentGroup);
-
-            if (currentGroup != null && !parentGroup.getName().equals("0")) {
-                currentGroup.addDependentOn(parentGroup.getName());
-            }
+    private static boolean isConjunctive(SqlNode condition) {
+        if (!(condition instanceof SqlNode.Logical)) {
+            return true;
         }
 
-        String generatedPrefix = prefix.isEmpty() && computePrefix ? partComponents[1] : prefix;
-
-        relations.get(partComponents[1]).addColumn(columnName);
-
-        String lhsExpression = CommonUtils.firstLetterToUpper(fullVariableName, generatedPrefix + "get", "()");
-
-        return buildExpression(operator, lhsExpression, processRHS(rhs, currentGroup, prefix, computePrefix));
+        SqlNode.Logical logical = (SqlNode.Logical) condition;
+        return !logical.getOperators().contains("or") && logical.getOperands().stream()
+                .allMatch(ParsedQuery::isConjunctive);
     }
 
     /**
-     * Converts SQL equations to java compatible equations. Example : LHS=RHS is
-     * converted to Objects.equals(LHS, RHS).
+     * Adds the columns and aggregates of a condition to their tables and
+     * grouping variables. The condition itself is turned into an Expression by
+     * resolveTypes, once the data types are known.
      *
-     * @param operator
-     * @param lhsExpression
-     * @param rhsExpression
-     * @return expression
+     * @param condition
+     * @param currentGroup grouping variable of a such that condition
+     * @param predicates   receives the comparisons of columns with constants
      */
-    private String buildExpression(String operator, String lhsExpression, String rhsExpression) {
-        if (operator == null) {
-            return lhsExpression;
-        }
-
-        if (operator.equals("=")) {
-            return String.format("Objects.equals(%1$s, %2$s)", lhsExpression, rhsExpression);
-        }
-
-        if (operator.equals("!=") || operator.equals("<>")) {
-            return String.format("!Objects.equals(%1$s, %2$s)", lhsExpression, rhsExpression);
-        }
-
-        String comparisonTemplate = "Double.compare((double) %1$s, (double) %2$s) %3$s 0";
-
-        if (operator.equals(">")) {
-            return String.format(comparisonTemplate, lhsExpression, rhsExpression, ">");
-        }
-
-        if (operator.equals(">=")) {
-            return String.format(comparisonTemplate, lhsExpression, rhsExpression, ">=");
-        }
-
-        if (operator.equals("<")) {
-            return String.format(comparisonTemplate, lhsExpression, rhsExpression, "<");
+    private void addCondition(SqlNode condition, GroupingInformation currentGroup,
+            List<ColumnPredicate> predicates) {
+        if (condition instanceof SqlNode.Logical) {
+            for (SqlNode operand : ((SqlNode.Logical) condition).getOperands()) {
+                addCondition(operand, currentGroup, predicates);
+            }
+            return;
         }
 
-        if (operator.equals("<=")) {
-            return String.format(comparisonTemplate, lhsExpression, rhsExpression, "<=");
+        SqlNode.Comparison comparison = (SqlNode.Comparison) condition;
+        addParameterFields(comparison, getField(comparison));
+        ColumnPredicate predicate = extractColumnPredicate(comparison);
+        if (predicate != null && predicates != null) {
+            predicates.add(predicate);
         }
 
-        String arithmaticTemplate = "(%4$s%1$s %3$s %2$s)";
+        addValue(comparison.getLhs(), null);
+        addValue(comparison.getRhs(), currentGroup);
+    }
 
-        if (operator.equals("+")) {
-            return String.format(arithmaticTemplate, lhsExpression, rhsExpression, "+", "");
+    /**
+     * Adds the columns and aggregates of a value. Aggregates are added to their
+     * grouping variable, which the current grouping variable then depends on.
+     *
+     * @param value
+     * @param currentGroup
+     */
+    private void addValue(SqlNode value, GroupingInformation currentGroup) {
+        if (value instanceof SqlNode.Constant || value instanceof SqlNode.Parameter) {
+            return;
         }
 
-        if (operator.equals("-")) {
-            return String.format(arithmaticTemplate, lhsExpression, rhsExpression, "-", "");
+        if (value instanceof SqlNode.Arithmetic) {
+            SqlNode.Arithmetic arithmetic = (SqlNode.Arithmetic) value;
+            addValue(arithmetic.getLhs(), currentGroup);
+            addValue(arithmetic.getRhs(), currentGroup);
+            return;
         }
 
-        if (operator.equals("*")) {
-            return String.format(arithmaticTemplate, lhsExpression, rhsExpression, "*", "");
-        }
+        String fullVariableName = addColumn(toColumn(value));
+        if (value instanceof SqlNode.Aggregate) {
+            SqlNode.Aggregate aggregate = (SqlNode.Aggregate) value;
+            String groupingVariable = aggregate.getGroupingVariable();
+            addGroupingVariable(groupingVariable).addAggregates(aggregate.getFunction(), fullVariableName, false);
 
-        if (operator.equals("/")) {
-            return String.format(arithmaticTemplate, lhsExpression, rhsExpression, "/", "(double) ");
+            if (currentGroup != null && !groupingVariable.equals("0")
+                    && !groupingVariable.equals(currentGroup.getName())) {
+                currentGroup.addDependentOn(groupingVariable);
+            }
         }
-
-        return "";
     }
 
-    private String[] getSqlExpressionElement(String element) {
-        String[] sqlExpressionElement = element.split(SQL_EXPRESSION_REGEX);
-        if (sqlExpressionElement.length == 3) {
-            return sqlExpressionElement;
+    /**
+     * Records the field the parameters of a value are compared with.
+     *
+     * @param value
+     * @param field field name or null
+     */
+    private void addParameterFields(SqlNode value, String field) {
+        if (value instanceof SqlNode.Parameter) {
+            parameterFields.set(((SqlNode.Parameter) value).getIndex() - 1, field);
+        } else if (value instanceof SqlNode.Comparison) {
+            addParameterFields(((SqlNode.Comparison) value).getLhs(), field);
+            addParameterFields(((SqlNode.Comparison) value).getRhs(), field);
+        } else if (value instanceof SqlNode.Arithmetic) {
+            addParameterFields(((SqlNode.Arithmetic) value).getLhs(), field);
+            addParameterFields(((SqlNode.Arithmetic) value).getRhs(), field);
         }
-
-        return new String[] { sqlExpressionElement[0], sqlExpressionElement[1] + sqlExpressionElement[2],
-                sqlExpressionElement[3] };
     }
 
     /**
-     * Processes the where conditions in the query. The input query must provide a
-     * table alias for all referenced tables. IN, NOT IN, EXISTS, IS NULL operators
-     * are not supported. Converts to syntax that can be used in Java code Example :
-     * AVG(x.S.quant) > 0 is converted to Double.compare(value.getMonth_S(), 0) > 0.
+     * Returns the field read for a column or an aggregate in a condition.
+     * Example : x.S.quant is quant_S and avg(x.S.quant) is avg_quant_S_x.
      *
-     * @param component
+     * @param value
+     * @return field name or null for any other value
      */
-    private void processHavingConditions(String statement) {
-        String[] elements = statement.split(CONDITION_SPLIT_REGEX);
-        StringBuilder conditionBuilder = new StringBuilder();
-        for (String element : elements) {
-            element = element.trim();
-            processConditionElement(conditionBuilder, element, "value.");
+    public static String toField(SqlNode value) {
+        if (!(value instanceof SqlNode.Column) && !(value instanceof SqlNode.Aggregate)) {
+            return null;
         }
 
-        havingCondition = conditionBuilder.toString();
-    }
-
-    private void processConditionElement(StringBuilder conditionBuilder, String element, String prefix) {
-        boolean startsWithBracket = false;
-        if (element.charAt(0) == '(') {
-            conditionBuilder.append("(");
-            element = element.substring(1).trim();
-            startsWithBracket = true;
+        SqlNode.Column column = toColumn(value);
+        String field = CommonUtils.append(CommonUtils.toCamelCase(column.getName(), false), "", column.getAlias(),
+                "_");
+        if (value instanceof SqlNode.Aggregate) {
+            SqlNode.Aggregate aggregate = (SqlNode.Aggregate) value;
+            field = CommonUtils.append(field, aggregate.getFunction(), aggregate.getGroupingVariable(), "_");
         }
+        return field;
+    }
 
-        if (element.equalsIgnoreCase("AND")) {
-            conditionBuilder.append(" && ");
-            return;
+    /**
+     * Returns the field of the first column or aggregate of a value. Example :
+     * avg(x.S.quant) + S.month is avg_quant_S_x.
+     *
+     * @param value
+     * @return field name or null
+     */
+    private static String getField(SqlNode value) {
+        if (value instanceof SqlNode.Column || value instanceof SqlNode.Aggregate) {
+            return toField(value);
         }
 
-        if (element.equalsIgnoreCase("OR")) {
-            conditionBuilder.append(" || ");
-            return;
+        SqlNode lhs = null;
+        SqlNode rhs = null;
+        if (value instanceof SqlNode.Comparison) {
+            lhs = ((SqlNode.Comparison) value).getLhs();
+            rhs = ((SqlNode.Comparison) value).getRhs();
+        } else if (value instanceof SqlNode.Arithmetic) {
+            lhs = ((SqlNode.Arithmetic) value).getLhs();
+            rhs = ((SqlNode.Arithmetic) value).getRhs();
+        } else {
+            return null;
         }
 
-        String[] sqlExpressionElement = getSqlExpressionElement(element);
-
-        String lhs = sqlExpressionElement[0].trim();
-        String[] lhsComponents = getComponents(lhs);
-
-        String generatedPrefix = prefix.isEmpty() ? lhsComponents[1] : prefix;
-
-        String columnName = CommonUtils.toCamelCase(lhsComponents[0], false);
-        String variableName = CommonUtils.append(columnName, "", lhsComponents[1], "_");
-        String fullVariableName = CommonUtils.append(variableName, lhsComponents[2], "", "_");
+        String field = getField(lhs);
+        return field != null ? field : getField(rhs);
+    }
 
-        if (!lhsComponents[2].isEmpty()) {
-            GroupingInformation group = groups.get(lhsComponents[3]);
-            group.addAggregates(lhsComponents[2], variableName, false);
-            fullVariableName = CommonUtils.append(fullVariableName, "", lhsComponents[3], "_");
+    /**
+     * Extracts a comparison of a column of the scanned row with a constant or a
+     * parameter. Example : x.S.state="NY" is extracted as S.state = NY. Returns
+     * null for any other kind of condition.
+     *
+     * @param comparison
+     * @return predicate or null
+     */
+    private static ColumnPredicate extractColumnPredicate(SqlNode.Comparison comparison) {
+        if (comparison.getLhs() instanceof SqlNode.Column && comparison.getRhs() instanceof SqlNode.Parameter) {
+            SqlNode.Column column = (SqlNode.Column) comparison.getLhs();
+            return new ColumnPredicate(column.getAlias(), CommonUtils.toCamelCase(column.getName(), false),
+                    comparison.getOperator(), PARAMETER_PREFIX + ((SqlNode.Parameter) comparison.getRhs()).getIndex());
         }
 
-        String lhsExpression = CommonUtils.firstLetterToUpper(fullVariableName, generatedPrefix + "get", "()");
-
-        relations.get(lhsComponents[1]).addColumn(columnName);
-
-        String rhs = sqlExpressionElement[2].trim();
-        String operator = sqlExpressionElement[1].trim();
-
-        String closingParanthesis = "";
-
-        if (rhs.endsWith(")") && startsWithBracket) {
-            closingParanthesis = ")";
-            rhs = rhs.substring(0, rhs.length() - 1).trim();
+        if (!(comparison.getLhs() instanceof SqlNode.Column) || !(comparison.getRhs() instanceof SqlNode.Constant)) {
+            return null;
         }
 
-        Deque<String> rhsParts = new LinkedList<>();
-        rhsParts.addAll(Arrays.asList(rhs.split(OPERATORS_REGEX)));
-
-        conditionBuilder.append(buildExpression(operator, lhsExpression, processRHS(rhsParts, null, prefix, true)))
-                .append(closingParanthesis);
+        SqlNode.Column column = (SqlNode.Column) comparison.getLhs();
+        SqlNode.Constant constant = (SqlNode.Constant) comparison.getRhs();
+        return new ColumnPredicate(column.getAlias(), CommonUtils.toCamelCase(column.getName(), false),
+                comparison.getOperator(), constant.getValue(), constant.isString());
     }
 
     /**
-     * Adds group 0 condition.
+     * Processes the having conditions in the query. The input query must provide
+     * a table alias for all referenced tables. IN, NOT IN, EXISTS, IS NULL
+     * operators are not supported. The values are read from the group in the
+     * MF-Table, e.g. AVG(x.S.quant) > 0 is evaluated as
+     * value.getAvg_quant_S_x() > 0.
      *
+     * @param condition
      */
-    private void processGroupZeroBoundryCondition() {
-        GroupingInformation groupZero = groups.getOrDefault("0", null);
-        if (groupZero == null) {
-            return;
+    private void processHavingConditions(SqlNode condition) {
+        addCondition(condition, null, null);
+    }
+
+    /**
+     * Processes order by conditions. If order by is specified, the MF-Table is a
+     * TreeSet, else it is a HashMap. Presence of values in order by also determines
+     * the implementation of compareTo method in the CompositeEntity.
+     */
+    private void processOrderByConditions() {
+        for (SqlNode value : statement.getOrderByValues()) {
+            SqlNode.Column column = toColumn(value);
+            String columnName = CommonUtils.toCamelCase(column.getName(), false);
+            String variableName = CommonUtils.append(columnName, "", column.getAlias(), "_");
+            String fullVariableName = value instanceof SqlNode.Aggregate
+                    ? CommonUtils.append(variableName, ((SqlNode.Aggregate) value).getFunction(),
+                            ((SqlNode.Aggregate) value).getGroupingVariable(), "_")
+                    : CommonUtils.append(variableName, "", column.getGroupingVariable(), "_");
+
+            orderByAttributes.add(CommonUtils.firstLetterToUpper(fullVariableName, "get", ""));
         }
 
-        groupZero.addBoundryConditions(String.format("Objects.equals(%1$s, %2$s)", "this", "newRow"));
+        orderMultiplier = statement.isDescending() ? -1 : 1;
     }
 
     /**
@@ -595,25 +596,6 @@ public class ParsedQuery {
         return ++executionIndex;
     }
 
-    /**
-     * Processes order by conditions. If order by is specified, the MF-Table is a
-     * TreeSet, else it is a HashMap. Presence of values in order by also determines
-     * the implementation of compareTo method in the CompositeEntity.
-     *
-     * @param statement
-     */
-    private void processOrderByConditions(String statement) {
-        String[] elements = statement.split(",");
-        for (String element : elements) {
-            String[] variables = getComponents(element.trim());
-            String columnName = CommonUtils.toCamelCase(variables[0], false);
-            String variableName = CommonUtils.append(columnName, "", variables[1], "_");
-            String fullVariableName = CommonUtils.append(variableName, variables[2], variables[3], "_");
-
-            orderByAttributes.add(CommonUtils.firstLetterToUpper(fullVariableName, "get", ""));
-        }
-    }
-
     public void addGroupingAttributes(String attribute) {
         groupingAttributes.add(attribute);
     }
@@ -630,12 +612,148 @@ public class ParsedQuery {
         return headers;
     }
 
-    public String getSelectConditions() {
-        return selectConditions;
+    public void addEncodedField(String field) {
+        encodedFields.add(field);
+    }
+
+    public void addEncodedConstant(String name, String value) {
+        encodedConstants.put(name, value);
     }
 
-    public String getHavingCondition() {
-        return havingCondition;
+    public void addTemporalField(String field, ColumnType columnType) {
+        temporalFields.put(field, columnType);
+    }
+
+    /**
+     * Builds the typed expressions of the where, such that and having conditions
+     * from their syntax trees. Must be called once the data types of the columns
+     * are resolved and the encoded fields are known. Grouping variable 0 holds
+     * for the rows with the grouping attributes of its group.
+     *
+     * @param aggregateTypes data types of the aggregates by field name
+     */
+    public void resolveTypes(Map<String, Class<?>> aggregateTypes) {
+        Map<String, Class<?>> columnTypes = new HashMap<>();
+        for (Entry<String, TableInformation> relation : relations.entrySet()) {
+            for (Entry<String, Class<?>> column : relation.getValue().getRequiredColumns().entrySet()) {
+                columnTypes.put(CommonUtils.append(column.getKey(), "", relation.getKey(), "_"), column.getValue());
+            }
+        }
+
+        // A parameter takes the type of the field it is compared with
+        for (int index = 0; index < parameterFields.size(); index++) {
+            String field = parameterFields.get(index);
+            ColumnType parameterType = ColumnType.DOUBLE;
+            if (field != null && temporalFields.containsKey(field)) {
+                parameterType = temporalFields.get(field);
+            } else if (field != null) {
+                parameterType = ColumnType.fromJavaType(
+                        aggregateTypes.containsKey(field) ? aggregateTypes.get(field) : columnTypes.get(field));
+            }
+            parameterTypes.put(PARAMETER_PREFIX + (index + 1), parameterType);
+        }
+
+        // Dictionary ids use 0 for null and computed aggregates start at 0
+        Set<String> nonNullFields = new HashSet<>(encodedFields);
+        for (String aggregate : aggregateTypes.keySet()) {
+            if (aggregate.matches(AGGREGATE_REGEX)) {
+                nonNullFields.add(aggregate);
+            }
+        }
+
+        ExpressionBuilder builder = new ExpressionBuilder(columnTypes, aggregateTypes, nonNullFields,
+                encodedFields, encodedConstants, temporalFields, parameterTypes);
+        try {
+            if (statement.getWhereCondition() != null) {
+                selectExpression = builder.build(statement.getWhereCondition(), ExpressionBuilder.ROW_PREFIX,
+                        ExpressionBuilder.ROW_PREFIX);
+            }
+
+            if (statement.getHavingCondition() != null) {
+                havingExpression = builder.build(statement.getHavingCondition(), ExpressionBuilder.VALUE_PREFIX,
+                        ExpressionBuilder.VALUE_PREFIX);
+            }
+
+            for (GroupingInformation group : groups.values()) {
+                group.setBoundryExpression(group.getName().equals("0") ? new Expression.KeyEquals()
+                        : builder.buildAll(group.getBoundryConditions(), ExpressionBuilder.ROW_PREFIX,
+                                ExpressionBuilder.GROUP_PREFIX));
+            }
+        } catch (IllegalArgumentException e) {
+            LOG.log(Level.SEVERE, "Invalid SQL : {0}", e.getMessage());
+            CommonUtils.exit(1);
+        }
+    }
+
+    /**
+     * Returns the fields holding dictionary ids instead of strings.
+     *
+     * @return field names
+     */
+    public Set<String> getEncodedFields() {
+        return encodedFields;
+    }
+
+    /**
+     * Returns the string constants compared with dictionary encoded fields.
+     *
+     * @return constant names and their values
+     */
+    public Map<String, String> getEncodedConstants() {
+        return encodedConstants;
+    }
+
+    /**
+     * Returns the fields holding dates or timestamps as numbers, including the
+     * aggregates copying their values.
+     *
+     * @return field names and their column types
+     */
+    public Map<String, ColumnType> getTemporalFields() {
+        return temporalFields;
+    }
+
+    /**
+     * Returns the data types of the parameters in the order they are written.
+     * Must be called after resolveTypes.
+     *
+     * @return parameter names and their column types
+     */
+    public Map<String, ColumnType> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * Returns the number of parameters written as ? in the query.
+     *
+     * @return parameter count
+     */
+    public int getParameterCount() {
+        return parameterFields.size();
+    }
+
+    public List<ColumnPredicate> getWherePredicates() {
+        return wherePredicates;
+    }
+
+    /**
+     * Returns the where condition, null if there is none. Must be called after
+     * resolveTypes.
+     *
+     * @return expression
+     */
+    public Expression getSelectExpression() {
+        return selectExpression;
+    }
+
+    /**
+     * Returns the having condition, null if there is none. Must be called after
+     * resolveTypes.
+     *
+     * @return expression
+     */
+    public Expression getHavingExpression() {
+        return havingExpression;
     }
 
     public List<String> getGroupingAttributes() {
@@ -0,0 +1,150 @@
+package main.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a query into tokens in a single pass over its characters. Keywords
+ * are returned as words, the parser tells them apart from names. String
+ * constants are kept with their quotes, in single or double quotes. A question
+ * mark is a parameter whose value is bound when the query is executed. Throws
+ * an IllegalArgumentException for characters that can not start a token.
+ *
+ * @author R&B
+ *
+ */
+class SqlLexer {
+
+    enum TokenType {
+        WORD, NUMBER, STRING, OPERATOR, DOT, COMMA, SEMICOLON, LEFT_BRACKET, RIGHT_BRACKET, PARAMETER, END
+    }
+
+    static class Token {
+
+        private final TokenType type;
+
+        private final String text;
+
+        private final int position;
+
+        Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+
+        TokenType getType() {
+            return type;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        boolean is(TokenType tokenType, String tokenText) {
+            return type == tokenType && text.equalsIgnoreCase(tokenText);
+        }
+
+        @Override
+        public String toString() {
+            return type == TokenType.END ? "end of query" : "\"" + text + "\"";
+        }
+    }
+
+    private SqlLexer() {
+        // Private constructor to prevent object creation
+    }
+
+    /**
+     * Returns the tokens of the query, ending with a token of type END.
+     *
+     * @param sql
+     * @return tokens
+     */
+    static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int length = sql.length();
+        int position = 0;
+
+        while (position < length) {
+            char ch = sql.charAt(position);
+            int start = position;
+
+            if (Character.isWhitespace(ch)) {
+                position++;
+                continue;
+            }
+
+            if (Character.isLetter(ch) || ch == '_') {
+                while (position < length && (Character.isLetterOrDigit(sql.charAt(position))
+                        || sql.charAt(position) == '_')) {
+                    position++;
+                }
+                tokens.add(new Token(TokenType.WORD, sql.substring(start, position), start));
+            } else if (Character.isDigit(ch)) {
+                position = skipDigits(sql, position);
+                // A dot followed by a digit continues the number, otherwise it is a
+                // separator
+                if (position + 1 < length && sql.charAt(position) == '.'
+                        && Character.isDigit(sql.charAt(position + 1))) {
+                    position = skipDigits(sql, position + 1);
+                }
+                tokens.add(new Token(TokenType.NUMBER, sql.substring(start, position), start));
+            } else if (ch == '"' || ch == '\'') {
+                int end = sql.indexOf(ch, position + 1);
+                if (end == -1) {
+                    throw new IllegalArgumentException("Unterminated string at " + start);
+                }
+                position = end + 1;
+                tokens.add(new Token(TokenType.STRING, sql.substring(start, position), start));
+            } else if (ch == '<' || ch == '>' || ch == '!') {
+                char next = position + 1 < length ? sql.charAt(position + 1) : ' ';
+                boolean twoCharacters = next == '=' || (ch == '<' && next == '>');
+                if (ch == '!' && !twoCharacters) {
+                    throw new IllegalArgumentException("Unexpected \"!\" at " + start);
+                }
+                position += twoCharacters ? 2 : 1;
+                tokens.add(new Token(TokenType.OPERATOR, sql.substring(start, position), start));
+            } else if ("=+-*/".indexOf(ch) != -1) {
+                position++;
+                tokens.add(new Token(TokenType.OPERATOR, String.valueOf(ch), start));
+            } else {
+                position++;
+                tokens.add(new Token(punctuation(ch, start), String.valueOf(ch), start));
+            }
+        }
+
+        tokens.add(new Token(TokenType.END, "", length));
+        return tokens;
+    }
+
+    private static int skipDigits(String sql, int position) {
+        while (position < sql.length() && Character.isDigit(sql.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static TokenType punctuation(char ch, int position) {
+        switch (ch) {
+            case '.':
+                return TokenType.DOT;
+            case ',':
+                return TokenType.COMMA;
+            case ';':
+                return TokenType.SEMICOLON;
+            case '(':
+                return TokenType.LEFT_BRACKET;
+            case ')':
+                return TokenType.RIGHT_BRACKET;
+            case '?':
+                return TokenType.PARAMETER;
+            default:
+                throw new IllegalArgumentException("Unexpected \"" + ch + "\" at " + position);
+        }
+    }
+}
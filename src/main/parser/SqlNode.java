@@ -0,0 +1,297 @@
+package main.parser;
+
+import java.util.List;
+
+/**
+ * A node of the syntax tree of a query: a value, e.g. x.S.quant or
+ * avg(x.S.quant) + 1, or a condition, e.g. x.S.cust = S.cust and
+ * x.S.state = "NY". The tree is built by SqlParser, the Java code of the
+ * generated classes is derived from it by ParsedQuery.
+ *
+ * @author R&B
+ *
+ */
+public abstract class SqlNode {
+
+    /**
+     * Returns the node as SQL, with brackets around operations that are
+     * evaluated first.
+     *
+     * @return SQL
+     */
+    @Override
+    public abstract String toString();
+
+    /**
+     * A column of a table alias, optionally of a grouping variable, e.g. S.cust
+     * or x.S.cust.
+     */
+    public static class Column extends SqlNode {
+
+        private final String groupingVariable;
+
+        private final String alias;
+
+        private final String name;
+
+        Column(String groupingVariable, String alias, String name) {
+            this.groupingVariable = groupingVariable;
+            this.alias = alias;
+            this.name = name;
+        }
+
+        /**
+         * Returns the grouping variable or an empty string for a column of the
+         * scanned row or the group.
+         *
+         * @return grouping variable
+         */
+        public String getGroupingVariable() {
+            return groupingVariable;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return (groupingVariable.isEmpty() ? "" : groupingVariable + ".") + alias + "." + name;
+        }
+    }
+
+    /**
+     * An aggregate of a column, e.g. avg(x.S.quant). Aggregates of a column
+     * without a grouping variable belong to grouping variable 0.
+     */
+    public static class Aggregate extends SqlNode {
+
+        private final String function;
+
+        private final Column column;
+
+        Aggregate(String function, Column column) {
+            this.function = function;
+            this.column = column;
+        }
+
+        /**
+         * Returns the function in lower case, one of avg, max, min, sum and
+         * count.
+         *
+         * @return function
+         */
+        public String getFunction() {
+            return function;
+        }
+
+        public Column getColumn() {
+            return column;
+        }
+
+        public String getGroupingVariable() {
+            return column.getGroupingVariable().isEmpty() ? "0" : column.getGroupingVariable();
+        }
+
+        @Override
+        public String toString() {
+            return function + "(" + column + ")";
+        }
+    }
+
+    /**
+     * A number or a string in quotes.
+     */
+    public static class Constant extends SqlNode {
+
+        private final String text;
+
+        Constant(String text) {
+            this.text = text;
+        }
+
+        public boolean isString() {
+            return text.charAt(0) == '"' || text.charAt(0) == '\'';
+        }
+
+        /**
+         * Returns the number or the string without quotes.
+         *
+         * @return value
+         */
+        public String getValue() {
+            return isString() ? text.substring(1, text.length() - 1) : text;
+        }
+
+        /**
+         * Returns the constant as a Java literal, strings in double quotes.
+         *
+         * @return literal
+         */
+        public String toJava() {
+            return isString() ? "\"" + getValue() + "\"" : text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * A parameter written as ?, whose value is bound when the query is executed.
+     * Parameters are numbered from 1 in the order they are written.
+     */
+    public static class Parameter extends SqlNode {
+
+        private final int index;
+
+        Parameter(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return "?";
+        }
+    }
+
+    /**
+     * One of +, -, * and / applied to two values.
+     */
+    public static class Arithmetic extends SqlNode {
+
+        private final String operator;
+
+        private final SqlNode lhs;
+
+        private final SqlNode rhs;
+
+        Arithmetic(String operator, SqlNode lhs, SqlNode rhs) {
+            this.operator = operator;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public SqlNode getLhs() {
+            return lhs;
+        }
+
+        public SqlNode getRhs() {
+            return rhs;
+        }
+
+        /**
+         * Returns true for * and /, which are evaluated before + and -.
+         *
+         * @return boolean
+         */
+        public boolean isMultiplicative() {
+            return operator.equals("*") || operator.equals("/");
+        }
+
+        @Override
+        public String toString() {
+            return "(" + lhs + " " + operator + " " + rhs + ")";
+        }
+    }
+
+    /**
+     * A comparison of two values. The operator is one of =, &lt;&gt;, !=, &lt;,
+     * &lt;=, &gt; and &gt;=.
+     */
+    public static class Comparison extends SqlNode {
+
+        private final String operator;
+
+        private final SqlNode lhs;
+
+        private final SqlNode rhs;
+
+        Comparison(String operator, SqlNode lhs, SqlNode rhs) {
+            this.operator = operator;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public SqlNode getLhs() {
+            return lhs;
+        }
+
+        public SqlNode getRhs() {
+            return rhs;
+        }
+
+        @Override
+        public String toString() {
+            return lhs + " " + operator + " " + rhs;
+        }
+    }
+
+    /**
+     * Conditions joined by and and or, evaluated with and before or. Operator i
+     * joins operand i and i + 1.
+     */
+    public static class Logical extends SqlNode {
+
+        private final List<SqlNode> operands;
+
+        private final List<String> operators;
+
+        private final boolean bracketed;
+
+        Logical(List<SqlNode> operands, List<String> operators, boolean bracketed) {
+            this.operands = operands;
+            this.operators = operators;
+            this.bracketed = bracketed;
+        }
+
+        public List<SqlNode> getOperands() {
+            return operands;
+        }
+
+        /**
+         * Returns the operators in lower case, and or or.
+         *
+         * @return operators
+         */
+        public List<String> getOperators() {
+            return operators;
+        }
+
+        /**
+         * Returns true if the conditions were written in brackets.
+         *
+         * @return boolean
+         */
+        public boolean isBracketed() {
+            return bracketed;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sql = new StringBuilder(bracketed ? "(" : "");
+            sql.append(operands.get(0));
+            for (int i = 0; i < operators.size(); i++) {
+                sql.append(' ').append(operators.get(i)).append(' ').append(operands.get(i + 1));
+            }
+            return sql.append(bracketed ? ")" : "").toString();
+        }
+    }
+}
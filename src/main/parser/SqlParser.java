@@ -0,0 +1,300 @@
+package main.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import main.parser.SqlLexer.Token;
+import main.parser.SqlLexer.TokenType;
+
+/**
+ * Builds the syntax tree of an EMF query from the tokens of SqlLexer by
+ * recursive descent. The clauses must be written in the order select, from,
+ * where, group by, such that, having and order by. Columns must be qualified
+ * with their table alias. Keywords are not case sensitive. Parameters are
+ * numbered from 1 in the order they are written. Throws an
+ * IllegalArgumentException naming the position of the first token that does
+ * not fit.
+ *
+ * @author R&B
+ *
+ */
+class SqlParser {
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("select", "from", "where", "group",
+            "by", "such", "that", "having", "order", "asc", "desc", "and", "or", "as"));
+
+    private static final Set<String> AGGREGATES = new HashSet<>(Arrays.asList("avg", "max", "min", "sum", "count"));
+
+    private static final Set<String> COMPARISON_OPERATORS = new HashSet<>(
+            Arrays.asList("=", "<>", "!=", "<", "<=", ">", ">="));
+
+    private final List<Token> tokens;
+
+    private int index;
+
+    private int parameterCount;
+
+    SqlParser(String sql) {
+        tokens = SqlLexer.tokenize(sql);
+    }
+
+    SqlStatement parse() {
+        SqlStatement statement = new SqlStatement();
+
+        expectKeyword("select");
+        do {
+            SqlNode value = parseValue();
+            String header = acceptKeyword("as") ? expectName() : null;
+            statement.getProjections().add(new SqlStatement.Projection(value, header));
+        } while (accept(TokenType.COMMA));
+
+        expectKeyword("from");
+        do {
+            String tableName = expectName();
+            acceptKeyword("as");
+            statement.getRelations().add(new SqlStatement.Relation(tableName, expectName()));
+        } while (accept(TokenType.COMMA));
+
+        if (acceptKeyword("where")) {
+            statement.setWhereCondition(parseCondition(false));
+        }
+
+        if (acceptKeyword("group")) {
+            expectKeyword("by");
+            do {
+                statement.getGroupingAttributes().add(parseColumn());
+            } while (accept(TokenType.COMMA));
+
+            // The grouping variables follow a semicolon, which may also end the query
+            if (accept(TokenType.SEMICOLON) && isName(peek())) {
+                do {
+                    statement.getGroupingVariables().add(expectName());
+                } while (accept(TokenType.COMMA));
+            }
+        }
+
+        if (acceptKeyword("such")) {
+            expectKeyword("that");
+            do {
+                statement.getSuchThatConditions().add(parseCondition(false));
+            } while (accept(TokenType.COMMA));
+        }
+
+        if (acceptKeyword("having")) {
+            statement.setHavingCondition(parseCondition(false));
+        }
+
+        if (acceptKeyword("order")) {
+            expectKeyword("by");
+            do {
+                statement.getOrderByValues().add(parseValue());
+                if (acceptKeyword("desc")) {
+                    statement.setDescending(true);
+                } else if (acceptKeyword("asc")) {
+                    statement.setDescending(false);
+                }
+            } while (accept(TokenType.COMMA));
+        }
+
+        accept(TokenType.SEMICOLON);
+        if (peek().getType() != TokenType.END) {
+            throw unexpected("End of query");
+        }
+        statement.setParameterCount(parameterCount);
+        return statement;
+    }
+
+    /**
+     * condition := term (("and" | "or") term)*
+     */
+    private SqlNode parseCondition(boolean bracketed) {
+        List<SqlNode> operands = new ArrayList<>();
+        List<String> operators = new ArrayList<>();
+        operands.add(parseConditionTerm());
+
+        while (peek().is(TokenType.WORD, "and") || peek().is(TokenType.WORD, "or")) {
+            operators.add(next().getText().toLowerCase(Locale.ROOT));
+            operands.add(parseConditionTerm());
+        }
+
+        if (operands.size() == 1 && !bracketed) {
+            return operands.get(0);
+        }
+        return new SqlNode.Logical(operands, operators, bracketed);
+    }
+
+    /**
+     * term := comparison | "(" condition ")"
+     */
+    private SqlNode parseConditionTerm() {
+        if (peek().getType() == TokenType.LEFT_BRACKET) {
+            // A bracket opens either a value, e.g. (S.quant + 1) > 5, or conditions
+            int start = index;
+            try {
+                return parseComparison();
+            } catch (IllegalArgumentException e) {
+                index = start;
+            }
+
+            next();
+            SqlNode condition = parseCondition(true);
+            expect(TokenType.RIGHT_BRACKET, ")");
+            return condition;
+        }
+
+        return parseComparison();
+    }
+
+    private SqlNode parseComparison() {
+        SqlNode lhs = parseValue();
+        if (peek().getType() != TokenType.OPERATOR || !COMPARISON_OPERATORS.contains(peek().getText())) {
+            throw unexpected("Comparison operator");
+        }
+        String operator = next().getText();
+        return new SqlNode.Comparison(operator, lhs, parseValue());
+    }
+
+    /**
+     * value := product (("+" | "-") product)*
+     */
+    private SqlNode parseValue() {
+        SqlNode value = parseProduct();
+        while (peek().is(TokenType.OPERATOR, "+") || peek().is(TokenType.OPERATOR, "-")) {
+            String operator = next().getText();
+            value = new SqlNode.Arithmetic(operator, value, parseProduct());
+        }
+        return value;
+    }
+
+    /**
+     * product := factor (("*" | "/") factor)*
+     */
+    private SqlNode parseProduct() {
+        SqlNode value = parseFactor();
+        while (peek().is(TokenType.OPERATOR, "*") || peek().is(TokenType.OPERATOR, "/")) {
+            String operator = next().getText();
+            value = new SqlNode.Arithmetic(operator, value, parseFactor());
+        }
+        return value;
+    }
+
+    /**
+     * factor := number | "-" number | string | "?" | "(" value ")" | aggregate
+     * "(" column ")" | column
+     */
+    private SqlNode parseFactor() {
+        Token token = peek();
+        switch (token.getType()) {
+            case NUMBER:
+            case STRING:
+                return new SqlNode.Constant(next().getText());
+            case PARAMETER:
+                next();
+                return new SqlNode.Parameter(++parameterCount);
+            case OPERATOR:
+                if (token.getText().equals("-") && peek(1).getType() == TokenType.NUMBER) {
+                    next();
+                    return new SqlNode.Constant("-" + next().getText());
+                }
+                break;
+            case LEFT_BRACKET:
+                next();
+                SqlNode value = parseValue();
+                expect(TokenType.RIGHT_BRACKET, ")");
+                return value;
+            case WORD:
+                String function = token.getText().toLowerCase(Locale.ROOT);
+                if (AGGREGATES.contains(function) && peek(1).getType() == TokenType.LEFT_BRACKET) {
+                    next();
+                    next();
+                    SqlNode.Column column = parseColumn();
+                    expect(TokenType.RIGHT_BRACKET, ")");
+                    return new SqlNode.Aggregate(function, column);
+                }
+                return parseColumn();
+            default:
+                break;
+        }
+        throw unexpected("Value");
+    }
+
+    /**
+     * column := [groupingVariable "."] alias "." name
+     */
+    private SqlNode.Column parseColumn() {
+        String first = expectName();
+        if (!accept(TokenType.DOT)) {
+            throw unexpected("Column qualified with its table alias");
+        }
+        String second = expectName();
+        if (accept(TokenType.DOT)) {
+            return new SqlNode.Column(first, second, expectName());
+        }
+        return new SqlNode.Column("", first, second);
+    }
+
+    private Token peek() {
+        return tokens.get(index);
+    }
+
+    private Token peek(int ahead) {
+        return tokens.get(Math.min(index + ahead, tokens.size() - 1));
+    }
+
+    private Token next() {
+        Token token = tokens.get(index);
+        if (token.getType() != TokenType.END) {
+            index++;
+        }
+        return token;
+    }
+
+    private boolean accept(TokenType type) {
+        if (peek().getType() == type) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(TokenType type, String text) {
+        if (!accept(type)) {
+            throw unexpected("\"" + text + "\"");
+        }
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (peek().is(TokenType.WORD, keyword)) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    private void expectKeyword(String keyword) {
+        if (!acceptKeyword(keyword)) {
+            throw unexpected("\"" + keyword + "\"");
+        }
+    }
+
+    private static boolean isName(Token token) {
+        return token.getType() == TokenType.WORD && !KEYWORDS.contains(token.getText().toLowerCase(Locale.ROOT));
+    }
+
+    private String expectName() {
+        if (!isName(peek())) {
+            throw unexpected("Name");
+        }
+        return next().getText();
+    }
+
+    private IllegalArgumentException unexpected(String expected) {
+        Token token = peek();
+        return new IllegalArgumentException(
+                String.format("%s expected at %d, found %s", expected, token.getPosition(), token));
+    }
+}
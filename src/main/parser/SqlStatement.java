@@ -0,0 +1,166 @@
+package main.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The syntax tree of an EMF query as built by SqlParser. Every clause is kept
+ * as written: the such that clause as one condition per comma separated part,
+ * the conditions and values as SqlNode trees.
+ *
+ * @author R&B
+ *
+ */
+public class SqlStatement {
+
+    /**
+     * A value of the select clause with its optional name given by as.
+     */
+    public static class Projection {
+
+        private final SqlNode value;
+
+        private final String header;
+
+        Projection(SqlNode value, String header) {
+            this.value = value;
+            this.header = header;
+        }
+
+        public SqlNode getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the name given by as or null.
+         *
+         * @return header
+         */
+        public String getHeader() {
+            return header;
+        }
+    }
+
+    /**
+     * A table of the from clause with its alias.
+     */
+    public static class Relation {
+
+        private final String tableName;
+
+        private final String alias;
+
+        Relation(String tableName, String alias) {
+            this.tableName = tableName;
+            this.alias = alias;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+    }
+
+    private final List<Projection> projections;
+
+    private final List<Relation> relations;
+
+    private final List<SqlNode.Column> groupingAttributes;
+
+    private final List<String> groupingVariables;
+
+    private final List<SqlNode> suchThatConditions;
+
+    private final List<SqlNode> orderByValues;
+
+    private SqlNode whereCondition;
+
+    private SqlNode havingCondition;
+
+    private boolean descending;
+
+    private int parameterCount;
+
+    SqlStatement() {
+        projections = new ArrayList<>();
+        relations = new ArrayList<>();
+        groupingAttributes = new ArrayList<>();
+        groupingVariables = new ArrayList<>();
+        suchThatConditions = new ArrayList<>();
+        orderByValues = new ArrayList<>();
+    }
+
+    public List<Projection> getProjections() {
+        return projections;
+    }
+
+    public List<Relation> getRelations() {
+        return relations;
+    }
+
+    /**
+     * Returns the condition of the where clause or null.
+     *
+     * @return condition
+     */
+    public SqlNode getWhereCondition() {
+        return whereCondition;
+    }
+
+    void setWhereCondition(SqlNode whereCondition) {
+        this.whereCondition = whereCondition;
+    }
+
+    public List<SqlNode.Column> getGroupingAttributes() {
+        return groupingAttributes;
+    }
+
+    public List<String> getGroupingVariables() {
+        return groupingVariables;
+    }
+
+    public List<SqlNode> getSuchThatConditions() {
+        return suchThatConditions;
+    }
+
+    /**
+     * Returns the condition of the having clause or null.
+     *
+     * @return condition
+     */
+    public SqlNode getHavingCondition() {
+        return havingCondition;
+    }
+
+    void setHavingCondition(SqlNode havingCondition) {
+        this.havingCondition = havingCondition;
+    }
+
+    public List<SqlNode> getOrderByValues() {
+        return orderByValues;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+
+    /**
+     * Returns the number of parameters written as ? in the query.
+     *
+     * @return parameter count
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    void setParameterCount(int parameterCount) {
+        this.parameterCount = parameterCount;
+    }
+}
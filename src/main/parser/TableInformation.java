@@ -1,7 +1,9 @@
 package main.parser;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Contains information pertaining to individual tables name, associated entity
@@ -22,9 +24,18 @@ public class TableInformation implements Comparable<TableInformation> {
 
     private final Map<String, Class<?>> requiredColumns;
 
+    private final Map<String, ColumnType> columnTypes;
+
+    private final Set<String> encodedColumns;
+
+    private final Map<String, ColumnStatistics> statistics;
+
     public TableInformation(String variableName) {
         alias = variableName;
         requiredColumns = new HashMap<>();
+        columnTypes = new HashMap<>();
+        encodedColumns = new HashSet<>();
+        statistics = new HashMap<>();
     }
 
     public void setTableName(String tableName) {
@@ -43,6 +54,58 @@ public class TableInformation implements Comparable<TableInformation> {
         requiredColumns.computeIfAbsent(columnName, k -> String.class);
     }
 
+    /**
+     * Sets the type the column is read as, along with the Java type of its
+     * field.
+     *
+     * @param columnName
+     * @param columnType
+     */
+    public void setColumnType(String columnName, ColumnType columnType) {
+        requiredColumns.put(columnName, columnType.getJavaType());
+        columnTypes.put(columnName, columnType);
+    }
+
+    /**
+     * Returns the type the column is read as. Columns without a type from the
+     * database are resolved from the Java type of their field.
+     *
+     * @param columnName
+     * @return ColumnType
+     */
+    public ColumnType getColumnType(String columnName) {
+        ColumnType columnType = columnTypes.get(columnName);
+        return columnType != null ? columnType : ColumnType.fromJavaType(requiredColumns.get(columnName));
+    }
+
+    /**
+     * Marks a string column to be read as a dictionary id.
+     *
+     * @param columnName
+     */
+    public void encodeColumn(String columnName) {
+        requiredColumns.put(columnName, Integer.class);
+        encodedColumns.add(columnName);
+    }
+
+    public boolean isEncoded(String columnName) {
+        return encodedColumns.contains(columnName);
+    }
+
+    public void setStatistics(String columnName, ColumnStatistics columnStatistics) {
+        statistics.put(columnName, columnStatistics);
+    }
+
+    /**
+     * Returns the statistics of the column or null if there are none.
+     *
+     * @param columnName
+     * @return ColumnStatistics
+     */
+    public ColumnStatistics getStatistics(String columnName) {
+        return statistics.get(columnName);
+    }
+
     public String getTableName() {
         return tableName;
     }
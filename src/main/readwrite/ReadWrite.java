@@ -152,7 +152,13 @@ public class ReadWrite {
         return parsedQuery;
     }
 
-    private static String readFile(File input) {
+    /**
+     * Reads the query in the file, leaving out comments and empty lines.
+     *
+     * @param input
+     * @return query
+     */
+    public static String readFile(File input) {
         StringBuilder sqlBuilder = new StringBuilder();
         String line = "";
         try (BufferedReader reader = Files.newBufferedReader(input.toPath())) {
@@ -251,6 +257,31 @@ public class ReadWrite {
         return line;
     }
 
+    /**
+     * Accepts the values of the parameters of the query from the user, one per
+     * line in the order the parameters are written.
+     *
+     * @param sc
+     * @param parameterCount
+     * @return values
+     */
+    public static String[] readParameters(Scanner sc, int parameterCount) {
+        String[] values = new String[parameterCount];
+        for (int index = 0; index < parameterCount; index++) {
+            String line = "";
+            while (line == null || line.isEmpty()) {
+                System.out.print("Value of parameter " + (index + 1) + " : ");
+                line = sc.nextLine();
+
+                if (line == null || line.isEmpty()) {
+                    System.out.println(INVALID_INPUT);
+                }
+            }
+            values[index] = line.trim();
+        }
+        return values;
+    }
+
     /**
      * Asks user whether to execute the query.
      *
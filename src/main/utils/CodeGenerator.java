@@ -8,9 +8,10 @@ import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -22,6 +23,7 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,7 +50,19 @@ import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
+import main.database.DataSource;
+import main.database.FlatFileStore;
 import main.database.MetaDataAccessObject;
+import main.database.PartitionedScan;
+import main.database.PrefetchingCursor;
+import main.database.RelationCursor;
+import main.database.ResultSetCursor;
+import main.database.SnapshotStore;
+import main.database.StatisticsStore;
+import main.database.ZoneMapFilter;
+import main.parser.ColumnPredicate;
+import main.parser.ColumnType;
+import main.parser.Expression;
 import main.parser.GroupingInformation;
 import main.parser.ParsedQuery;
 import main.parser.TableInformation;
@@ -66,9 +80,9 @@ public class CodeGenerator {
 
     private static final Logger LOG = Logger.getLogger(CodeGenerator.class.getCanonicalName());
 
-    private static final String PACKAGE = "main.generated";
+    static final String PACKAGE = "main.generated";
 
-    private static final String INDENT = "    ";
+    static final String INDENT = "    ";
 
     // Gets the system compiler. Required JDK
     private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
@@ -86,29 +100,43 @@ public class CodeGenerator {
 
     private static final String GENERATED_TARGET = TARGET.getAbsolutePath() + "/main/generated/";
 
-    private static final String AGGREGATE_REGEX = "avg|max|min|sum|count";
+    static final String AGGREGATE_REGEX = "avg|max|min|sum|count";
 
-    private static final String COMPOSITE_ENTITY_NAME = "CompositeEntity";
+    static final String COMPOSITE_ENTITY_NAME = "CompositeEntity";
+
+    static final String GROUP_STATE_NAME = "GroupState";
+
+    // Dictionary of the strings encoded by the current run of the engine
+    static final String DICTIONARY = COMPOSITE_ENTITY_NAME + ".dictionary";
 
     private static final String UTILS_PACKAGE = "java.util";
 
-    private static final String AVG = "avg";
+    static final String AVG = "avg";
+
+    static final String MAX = "max";
 
-    private static final String MAX = "max";
+    static final String MIN = "min";
 
-    private static final String MIN = "min";
+    static final String SUM = "sum";
 
-    private static final String SUM = "sum";
+    static final String COUNT = "count";
 
-    private static final String COUNT = "count";
+    static final String MF_TABLE = "mfTable";
 
-    private static final String MF_TABLE = "mfTable";
+    static final String DAO_NAME = "DataAccessObject";
 
-    private static final String DAO_NAME = "DataAccessObject";
+    static final String ENGINE_NAME = "EvaluationEngine";
 
     private static final String IS_CSV = "if (isCsv)";
 
-    private static final String NEW_ROW = "newRow";
+    // Rows are filtered by the evaluation engine, every scan reads the whole table
+    static final String SCAN_QUERY = "select * from %s";
+
+    static final String NEW_ROW = "newRow";
+
+    private static final String DEFAULT_PREFETCH_BLOCKS = "2";
+
+    private static final String DEFAULT_COPY_SCAN = "false";
 
     private CodeGenerator() {
         // Private constructor to prevent object creation
@@ -151,47 +179,341 @@ public class CodeGenerator {
      * @return name of the generated java file
      */
     public static void createEntities(ParsedQuery parsedQuery, MetaDataAccessObject dao) {
+        resolveMetadata(parsedQuery, dao);
+
         for (Entry<String, TableInformation> entrySet : parsedQuery.getRelations().entrySet()) {
-            TableInformation information = entrySet.getValue();
+            generateEntity(entrySet.getKey(), entrySet.getValue());
+        }
+    }
+
+    /**
+     * Fetches the metadata of the tables and resolves the data types of the
+     * columns, aggregates and conditions of the query, without generating any
+     * code.
+     *
+     * @param parsedQuery
+     * @param dao
+     */
+    public static void resolveMetadata(ParsedQuery parsedQuery, MetaDataAccessObject dao) {
+        PhaseMetrics metadata = RunMetrics.begin("metadata");
+        for (TableInformation information : parsedQuery.getRelations().values()) {
             dao.populateTableMetadata(information);
+            metadata.addRows(information.getNumberOfRows());
+        }
+        metadata.end();
+
+        // Needs the data types of all tables
+        DictionaryEncoding.apply(parsedQuery);
 
-            generateEntity(entrySet.getKey(), information);
+        addTemporalFields(parsedQuery);
+
+        Map<String, Class<?>> aggregateTypes = new HashMap<>();
+        for (GroupingInformation group : parsedQuery.getGroups().values()) {
+            for (String aggregate : group.getAggregates()) {
+                aggregateTypes.put(aggregate, resolveDataTypeOfAggregate(aggregate, parsedQuery.getRelations()));
+            }
+        }
+        parsedQuery.resolveTypes(aggregateTypes);
+    }
+
+    /**
+     * Records the fields holding dates or timestamps, so that constants compared
+     * with them are converted and their values are printed as dates. Max, min and
+     * plain values of such a column hold dates as well.
+     *
+     * @param parsedQuery
+     */
+    private static void addTemporalFields(ParsedQuery parsedQuery) {
+        for (Entry<String, TableInformation> relation : parsedQuery.getRelations().entrySet()) {
+            for (String column : relation.getValue().getRequiredColumns().keySet()) {
+                ColumnType columnType = relation.getValue().getColumnType(column);
+                if (columnType.isTemporal()) {
+                    parsedQuery.addTemporalField(CommonUtils.append(column, "", relation.getKey(), "_"), columnType);
+                }
+            }
+        }
+
+        for (GroupingInformation group : parsedQuery.getGroups().values()) {
+            for (String aggregate : group.getAggregates()) {
+                String[] components = extractComponents(aggregate);
+                ColumnType columnType = parsedQuery.getRelations().get(components[0]).getColumnType(components[1]);
+                boolean isCopied = components[2].isEmpty() || components[2].equalsIgnoreCase(MAX)
+                        || components[2].equalsIgnoreCase(MIN);
+                if (isCopied && columnType.isTemporal()) {
+                    parsedQuery.addTemporalField(aggregate, columnType);
+                }
+            }
         }
     }
 
     /**
      * Creates a POJO file which represents the Java equivalent of the joined
-     * tables. This class object is also used as the values in E/MF-Table.
+     * tables. The evaluation engine reuses one object of this class as a view of
+     * the row being scanned. The class also holds the values bound to the
+     * parameters of the query, so that one compiled engine can be executed with
+     * different values.
      *
      * @param parsedQuery
      * @return
      */
     public static void createCompositeEntity(ParsedQuery parsedQuery) {
         TypeSpec.Builder entity = TypeSpec.classBuilder(COMPOSITE_ENTITY_NAME).addModifiers(Modifier.PUBLIC);
+
+        if (!parsedQuery.getEncodedFields().isEmpty()) {
+            addDictionary(entity, parsedQuery);
+        }
+
+        if (parsedQuery.getParameterCount() > 0) {
+            addParameters(entity, parsedQuery);
+        }
+
+        addFieldsAndConstructor(entity, parsedQuery.getRelations());
+
+        createAndCompileJavaFile(entity.build());
+    }
+
+    /**
+     * Adds the dictionary of the encoded strings, which every run of the engine
+     * creates and releases at its end. The constants of the query are encoded
+     * first, so their ids are fixed when the classes are generated.
+     *
+     * @param entity
+     * @param parsedQuery
+     */
+    private static void addDictionary(TypeSpec.Builder entity, ParsedQuery parsedQuery) {
+        entity.addField(FieldSpec.builder(StringDictionary.class, "dictionary")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).build());
+
+        List<CodeBlock> constants = new ArrayList<>();
+        for (Entry<String, String> constant : parsedQuery.getEncodedConstants().entrySet()) {
+            constants.add(CodeBlock.of("$S", constant.getValue()));
+            entity.addField(FieldSpec.builder(int.class, constant.getKey())
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$L", constants.size()).build());
+        }
+
+        entity.addMethod(MethodSpec.methodBuilder("newDictionary").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(void.class)
+                .addStatement("dictionary = new $T($L)", StringDictionary.class, CodeBlock.join(constants, ", "))
+                .build());
+    }
+
+    /**
+     * Adds a field per parameter of the query in the data type of the value it
+     * is compared with, and the bind method converting the values to these
+     * types. Values are given as objects or as text, dates and timestamps as in
+     * SQL.
+     *
+     * @param entity
+     * @param parsedQuery
+     */
+    private static void addParameters(TypeSpec.Builder entity, ParsedQuery parsedQuery) {
+        MethodSpec.Builder bind = MethodSpec.methodBuilder("bind").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Object[].class, "parameters").varargs().returns(void.class)
+                .beginControlFlow("if (parameters.length != $L)", parsedQuery.getParameterCount())
+                .addStatement("throw new $T($S + parameters.length)", IllegalArgumentException.class,
+                        "Expected " + parsedQuery.getParameterCount() + " parameters, found ")
+                .endControlFlow()
+                .beginControlFlow("for (int index = 0; index < parameters.length; index++)")
+                .beginControlFlow("if (parameters[index] == null)")
+                .addStatement("throw new $T(\"Parameter \" + (index + 1) + \" is null\")",
+                        IllegalArgumentException.class)
+                .endControlFlow().endControlFlow();
+
+        int index = 0;
+        for (Entry<String, ColumnType> parameter : parsedQuery.getParameterTypes().entrySet()) {
+            Class<?> javaType = parameter.getValue().getJavaType();
+            TypeName fieldType = String.class.equals(javaType) ? TypeName.get(javaType)
+                    : TypeName.get(javaType).unbox();
+            entity.addField(FieldSpec.builder(fieldType, parameter.getKey())
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC).build());
+            bind.addStatement("$L = $L", parameter.getKey(), toBindValue(parameter.getValue(), index++));
+        }
+
+        entity.addField(FieldSpec.builder(boolean.class, "bound").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .build());
+        entity.addMethod(bind.addStatement("bound = true").build());
+        entity.addMethod(MethodSpec.methodBuilder("isBound").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(boolean.class).addStatement("return bound").build());
+
+        // The composite entity is created before the query plan decides on
+        // sharding, the bound values are only read by a sharded engine
+        addGetParametersMethod(entity, parsedQuery);
+    }
+
+    /**
+     * Adds the method returning the bound values as text accepted by bind, which
+     * the coordinator passes to the worker processes.
+     *
+     * @param entity
+     * @param parsedQuery
+     */
+    private static void addGetParametersMethod(TypeSpec.Builder entity, ParsedQuery parsedQuery) {
+        List<CodeBlock> values = new ArrayList<>();
+        for (Entry<String, ColumnType> parameter : parsedQuery.getParameterTypes().entrySet()) {
+            String name = parameter.getKey();
+            switch (parameter.getValue()) {
+                case DATE:
+                    values.add(CodeBlock.of("$T.ofEpochDay($L).toString()", LocalDate.class, name));
+                    break;
+                case TIMESTAMP:
+                    values.add(CodeBlock.of("$T.ofEpochSecond(Math.floorDiv($L, 1000L), "
+                            + "(int) Math.floorMod($L, 1000L) * 1000000, $T.UTC).toString()", LocalDateTime.class,
+                            name, name, ZoneOffset.class));
+                    break;
+                default:
+                    values.add(CodeBlock.of("String.valueOf($L)", name));
+                    break;
+            }
+        }
+
+        entity.addMethod(MethodSpec.methodBuilder("getParameters").addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(String[].class).addStatement("return new String[] { $L }", CodeBlock.join(values, ", "))
+                .build());
+    }
+
+    private static CodeBlock toBindValue(ColumnType columnType, int index) {
+        switch (columnType) {
+            case INTEGER:
+                return CodeBlock.of("$T.parseInt(String.valueOf(parameters[$L]).trim())", Integer.class, index);
+            case BIGINT:
+                return CodeBlock.of("$T.parseLong(String.valueOf(parameters[$L]).trim())", Long.class, index);
+            case DOUBLE:
+                return CodeBlock.of("$T.parseDouble(String.valueOf(parameters[$L]).trim())", Double.class, index);
+            case DATE:
+                return CodeBlock.of("$T.toEpochDay(parameters[$L])", ColumnType.class, index);
+            case TIMESTAMP:
+                return CodeBlock.of("$T.toEpochMillis(parameters[$L])", ColumnType.class, index);
+            default:
+                return CodeBlock.of("String.valueOf(parameters[$L])", index);
+        }
+    }
+
+    /**
+     * Creates the class of the values in the E/MF-Table. A group only holds the
+     * columns read from the group, i.e. the grouping attributes and the columns
+     * used in projections, having, order by and on the group side of such that
+     * conditions, and the aggregates of all grouping variables. The values of the
+     * scanned row are passed to the aggregate updates.
+     *
+     * @param parsedQuery
+     * @param plan
+     */
+    private static void createGroupState(ParsedQuery parsedQuery, QueryPlan plan) {
+        TypeSpec.Builder entity = TypeSpec.classBuilder(GROUP_STATE_NAME).addModifiers(Modifier.PUBLIC);
         TypeName compositeType = ClassName.get(PACKAGE, COMPOSITE_ENTITY_NAME);
+        TypeName groupStateType = ClassName.get(PACKAGE, GROUP_STATE_NAME);
         Map<String, Class<?>> allFields = new HashMap<>();
 
-        addFieldsAndConstructor(entity, compositeType, allFields, parsedQuery.getRelations(), parsedQuery.getGroups());
-        addEqualsAndHashCodeMethod(entity, compositeType, parsedQuery.getGroupingAttributes());
-        addCompareToMetod(entity, compositeType, parsedQuery.getOrderByAttributes(), parsedQuery.getOrderMultiplier());
-        addToStringMethod(entity, allFields, parsedQuery.getProjections(), parsedQuery.getHeaders());
+        MethodSpec.Builder copyFrom = MethodSpec.methodBuilder("copyFrom").addModifiers(Modifier.PUBLIC)
+                .returns(void.class).addParameter(compositeType, "row");
+
+        for (Entry<String, Class<?>> column : RecordLayout.getGroupColumns(parsedQuery).entrySet()) {
+            String attributeName = column.getKey();
+            entity.addField(FieldSpec.builder(column.getValue(), attributeName).addModifiers(Modifier.PRIVATE)
+                    .build());
+            entity.addMethod(createGetter(attributeName, column.getValue()));
+            copyFrom.addStatement("this.$L = row.$L()", attributeName,
+                    CommonUtils.firstLetterToUpper(attributeName, "get", ""));
+            allFields.put(attributeName, column.getValue());
+        }
+
+        entity.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC).build());
+        entity.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addParameter(compositeType, "row").addStatement("copyFrom(row)").build());
+        entity.addMethod(copyFrom.build());
+
+        List<CodeBlock> keyComparisons = new ArrayList<>();
+        for (String groupingAttribute : parsedQuery.getGroupingAttributes()) {
+            keyComparisons.add(CodeBlock.of("$T.equals($L, newRow.$L())", Objects.class, groupingAttribute,
+                    CommonUtils.firstLetterToUpper(groupingAttribute, "get", "")));
+        }
+        entity.addMethod(MethodSpec.methodBuilder("keyEquals").addModifiers(Modifier.PUBLIC).returns(boolean.class)
+                .addParameter(compositeType, NEW_ROW).addStatement("return $L", CodeBlock.join(keyComparisons, " && "))
+                .build());
+
+        for (Entry<String, GroupingInformation> group : parsedQuery.getGroups().entrySet()) {
+            Map<String, Class<?>> variables = new HashMap<>();
+            for (String attributeName : group.getValue().getAggregates()) {
+                Class<?> dataType = resolveDataTypeOfAggregate(attributeName, parsedQuery.getRelations());
+                entity.addField(createAggregateField(attributeName, dataType));
+                entity.addMethod(createGetter(attributeName, dataType));
+                variables.put(attributeName, dataType);
+                allFields.put(attributeName, dataType);
+            }
+            entity.addMethod(createAggregateSetter(variables, compositeType, "_" + group.getKey(), group.getValue(),
+                    plan.isAnalyze()));
+        }
+
+        if (plan.isSharded()) {
+            addValuesMethods(entity, allFields, parsedQuery.getEncodedFields());
+        }
+
+        addEqualsAndHashCodeMethod(entity, groupStateType, parsedQuery.getGroupingAttributes());
+        addCompareToMetod(entity, groupStateType, getSortAttributes(parsedQuery),
+                parsedQuery.getOrderMultiplier(), parsedQuery.getEncodedFields());
+        addToStringMethod(entity, allFields, parsedQuery.getProjections(), parsedQuery.getHeaders(),
+                CodeBlock.builder().build(), parsedQuery.getEncodedFields(), parsedQuery.getTemporalFields());
 
         createAndCompileJavaFile(entity.build());
     }
 
+    /**
+     * Adds the conversion of a group to the values a worker process sends to the
+     * coordinator and the constructor creating the group from them. Dictionary
+     * encoded fields are sent as strings, as every process assigns its own ids.
+     *
+     * @param entity
+     * @param allFields
+     * @param encodedFields
+     */
+    private static void addValuesMethods(TypeSpec.Builder entity, Map<String, Class<?>> allFields,
+            Set<String> encodedFields) {
+        MethodSpec.Builder toValues = MethodSpec.methodBuilder("toValues").addModifiers(Modifier.PUBLIC)
+                .returns(Object[].class).addStatement("Object[] values = new Object[$L]", allFields.size());
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addParameter(Object[].class, "values");
+
+        int index = 0;
+        for (Entry<String, Class<?>> field : new TreeMap<>(allFields).entrySet()) {
+            String name = field.getKey();
+            if (encodedFields.contains(name)) {
+                toValues.addStatement("values[$L] = $L == null ? null : $L.decode($L)", index, name, DICTIONARY,
+                        name);
+                constructor.addStatement("this.$L = values[$L] == null ? null : $L.encode((String) values[$L])",
+                        name, index, DICTIONARY, index);
+            } else {
+                toValues.addStatement("values[$L] = $L", index, name);
+                constructor.addStatement("this.$L = ($T) values[$L]", name, field.getValue(), index);
+            }
+            index++;
+        }
+
+        entity.addMethod(constructor.build());
+        entity.addMethod(toValues.addStatement("return values").build());
+    }
+
     /**
      * Create a class to connect to the database and fetch rows for all involved
      * tables. The blockSize parameter in the properties file determines the number
-     * of rows fetched at one time.
+     * of rows fetched at one time. If the dataSource property is "file", the class
+     * reads the tables from CSV files instead and makes no connection.
      *
      * @param parsedQuery
      * @return
      */
     public static void createDataAccessObject(ParsedQuery parsedQuery) {
-        TypeSpec.Builder entityBuilder = TypeSpec.classBuilder(DAO_NAME).addModifiers(Modifier.PUBLIC);
+        TypeSpec.Builder entityBuilder = TypeSpec.classBuilder(DAO_NAME).addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(AutoCloseable.class);
+        DataSource dataSource = DataSource.fromProperties(ReadWrite.readProperties(CommonUtils.DB_PROPERTIES));
 
-        addClassFieldsAndConstructor(entityBuilder);
-        addMethods(entityBuilder);
+        if (dataSource == DataSource.FILE) {
+            addFileFieldsAndMethods(entityBuilder);
+        } else {
+            addClassFieldsAndConstructor(entityBuilder);
+            addMethods(entityBuilder, parsedQuery);
+        }
+        addProfileMethod(entityBuilder);
         addReadRowMethods(entityBuilder, parsedQuery);
 
         createAndCompileJavaFile(entityBuilder.build());
@@ -200,37 +522,145 @@ public class CodeGenerator {
     /**
      * Create a class to maintain the MF-Table, fetch rows and update aggregate
      * values. The loops are generated based on the dependencies between the
-     * grouping variables.
+     * grouping variables, the scan order and the MF-Table sizing on the plan.
      *
      * @param parsedQuery
+     * @param plan
      * @return
      */
-    public static void createEvaluationEngine(ParsedQuery parsedQuery) {
-        TypeSpec.Builder entityBuilder = TypeSpec.classBuilder("EvaluationEngine").addModifiers(Modifier.PUBLIC);
+    public static void createEvaluationEngine(ParsedQuery parsedQuery, QueryPlan plan) {
+        EngineMode mode = resolveEngineMode(parsedQuery, plan);
+        plan.setEngineMode(mode);
+
+        if (mode == EngineMode.OFF_HEAP) {
+            OffHeapCodeGenerator.createEvaluationEngine(parsedQuery, plan);
+            return;
+        }
+
+        if (mode == EngineMode.VECTORIZED) {
+            VectorizedCodeGenerator.createEvaluationEngine(parsedQuery, plan);
+            return;
+        }
+
+        createGroupState(parsedQuery, plan);
+
+        TypeSpec.Builder entityBuilder = TypeSpec.classBuilder(ENGINE_NAME).addModifiers(Modifier.PUBLIC);
         TypeName compositeType = ClassName.get(PACKAGE, COMPOSITE_ENTITY_NAME);
+        TypeName groupStateType = ClassName.get(PACKAGE, GROUP_STATE_NAME);
         ParameterizedTypeName mfTableType = null;
+        Class<?> mapType = null;
+        String methodCall = "";
+        String capacity = "";
 
         if (parsedQuery.getOrderByAttributes().isEmpty()) {
             ClassName map = ClassName.get(UTILS_PACKAGE, "Map");
-            ClassName integer = ClassName.get("java.lang", "Integer");
-            mfTableType = ParameterizedTypeName.get(map, integer, compositeType);
+            // Keyed by the grouping attributes, as dense dictionary ids collide
+            // too often to key by hash code alone
+            mfTableType = ParameterizedTypeName.get(map, groupStateType, groupStateType);
+            mapType = HashMap.class;
+            methodCall = ".values()";
+            capacity = String.valueOf(plan.getMapCapacity());
         } else {
             ClassName set = ClassName.get(UTILS_PACKAGE, "Set");
-            mfTableType = ParameterizedTypeName.get(set, compositeType);
+            mfTableType = ParameterizedTypeName.get(set, groupStateType);
+            mapType = TreeSet.class;
         }
 
-        Set<TableInformation> sortedSet = new TreeSet<>();
-        sortedSet.addAll(parsedQuery.getRelations().values());
-
-        entityBuilder.addField(getLogField("EvaluationEngine"));
-        addComputeGroupsMethod(entityBuilder, parsedQuery, compositeType, mfTableType);
-        addStreamTableBlocksMethod(entityBuilder, parsedQuery, compositeType, mfTableType, sortedSet);
-        addMainMethod(entityBuilder, parsedQuery, mfTableType, sortedSet);
-        addDisplayResultMethod(entityBuilder, parsedQuery, compositeType, mfTableType);
+        entityBuilder.addField(getLogField(ENGINE_NAME));
+        // Holds the grouping attributes of the scanned row to look up its group
+        entityBuilder.addField(FieldSpec.builder(groupStateType, "PROBE")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T()", groupStateType).build());
+        addComputeGroupsMethod(entityBuilder, parsedQuery, compositeType, groupStateType, mfTableType, plan);
+        if (plan.isSharded()) {
+            addShardMethods(entityBuilder, parsedQuery, compositeType);
+        }
+        addStreamTableBlocksMethod(entityBuilder, parsedQuery, compositeType, mfTableType, plan);
+        addMainMethod(entityBuilder, parsedQuery,
+                CodeBlock.of("$T mfTable = new $T<>($L)", mfTableType, mapType, capacity),
+                CodeBlock.builder().build(), plan);
+        addDisplayResultMethod(entityBuilder, parsedQuery, mfTableType, CodeBlock.builder()
+                .beginControlFlow("for ($T value : mfTable$L)", groupStateType, methodCall).build(), true);
 
         createAndCompileJavaFile(entityBuilder.build());
     }
 
+    /**
+     * Adds the shard evaluated by a worker process and the check whether a row
+     * belongs to a group of that shard. Groups are assigned to shards by the hash
+     * of their grouping attributes, dictionary encoded attributes are hashed as
+     * strings as every process assigns its own ids.
+     *
+     * @param entityBuilder
+     * @param parsedQuery
+     * @param compositeType
+     */
+    private static void addShardMethods(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            TypeName compositeType) {
+        entityBuilder.addField(FieldSpec.builder(int.class, "shard").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .build());
+        entityBuilder.addField(FieldSpec.builder(int.class, "shards").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .initializer("1").build());
+
+        List<CodeBlock> attributes = new ArrayList<>();
+        for (String groupingAttribute : parsedQuery.getGroupingAttributes()) {
+            String getter = CommonUtils.firstLetterToUpper(groupingAttribute, "get", "");
+            attributes.add(parsedQuery.getEncodedFields().contains(groupingAttribute)
+                    ? CodeBlock.of("$L.decode(row.$L())", DICTIONARY, getter)
+                    : CodeBlock.of("row.$L()", getter));
+        }
+
+        entityBuilder.addMethod(MethodSpec.methodBuilder("isOwned").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(boolean.class).addParameter(compositeType, "row")
+                .addStatement("return $T.floorMod($T.hash($L), shards) == shard", Math.class, Objects.class,
+                        CodeBlock.join(attributes, ", "))
+                .build());
+    }
+
+    /**
+     * Returns the engine generated for the query, the engine of the properties
+     * file if it can evaluate the query, else the default engine. The default
+     * engine is replaced by the off-heap engine if only the records of the
+     * latter are estimated to fit into the memory budget. The number of worker
+     * processes of the properties file is recorded in the plan.
+     *
+     * @param parsedQuery
+     * @param plan
+     * @return EngineMode
+     */
+    public static EngineMode resolveEngineMode(ParsedQuery parsedQuery, QueryPlan plan) {
+        Properties properties = ReadWrite.readProperties(CommonUtils.DB_PROPERTIES);
+        plan.setShards(ShardedExecution.getShards(properties));
+        EngineMode mode = EngineMode.fromProperties(properties);
+
+        if (mode == EngineMode.OFF_HEAP && !RecordLayout.isSupported(parsedQuery)) {
+            LOG.warning("Query uses data types that can not be stored off-heap. Using default engine.");
+            return EngineMode.DEFAULT;
+        }
+
+        if (mode == EngineMode.VECTORIZED && !VectorizedCodeGenerator.isSupported(parsedQuery)) {
+            LOG.warning("Query can not be evaluated by the vectorized engine. Using default engine.");
+            return EngineMode.DEFAULT;
+        }
+
+        if (mode != EngineMode.DEFAULT && plan.isSharded()) {
+            LOG.warning("Sharded evaluation sends groups as objects. Using default engine.");
+            return EngineMode.DEFAULT;
+        }
+
+        if (mode == EngineMode.DEFAULT && !plan.isSharded() && RecordLayout.isSupported(parsedQuery)) {
+            RecordLayout layout = RecordLayout.of(parsedQuery);
+            long budget = MemoryBudget.getLimit();
+            if (plan.getEstimatedBytes(layout.estimateGroupBytes(EngineMode.DEFAULT)) > budget
+                    && plan.getEstimatedBytes(layout.estimateGroupBytes(EngineMode.OFF_HEAP)) <= budget) {
+                LOG.warning("Groups are estimated to exceed the memory budget on the heap. Using off-heap engine.");
+                return EngineMode.OFF_HEAP;
+            }
+        }
+
+        return mode;
+    }
+
     private static void generateEntity(String classsuffix, TableInformation information) {
         String tableName = information.getTableName();
         String generatedClassName = CommonUtils.toCamelCase(tableName, true, false, classsuffix);
@@ -247,7 +677,7 @@ public class CodeGenerator {
             entityBuilder.addMethod(createGetter(attributeName, dataType));
         }
 
-        entityBuilder.addMethod(createAttributeSetter(colmnDataTypeMap));
+        entityBuilder.addMethod(createAttributeSetter(colmnDataTypeMap, information));
         information.setClassName(generatedClassName);
 
         createAndCompileJavaFile(entityBuilder.build());
@@ -258,16 +688,25 @@ public class CodeGenerator {
                 .addModifiers(Modifier.PUBLIC).returns(dataTypeClass).addStatement("return $L", attributeName).build();
     }
 
-    private static MethodSpec createAttributeSetter(Map<String, Class<?>> colmnDataTypeMap) {
+    private static MethodSpec createAttributeSetter(Map<String, Class<?>> colmnDataTypeMap,
+            TableInformation information) {
         MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("setAttributes").addModifiers(Modifier.PUBLIC)
-                .returns(void.class).addParameter(String.class, "col").addParameter(Object.class, "val")
-                .beginControlFlow("switch(col)");
+                .returns(void.class).addParameter(String.class, "col").addParameter(RelationCursor.class, "cursor")
+                .addParameter(int.class, "column").addParameter(StringDictionary.class, "dictionary")
+                .addException(SQLException.class).beginControlFlow("switch(col)");
 
+        // Each column is read with the getter of its type
         for (Entry<String, Class<?>> entrySet : colmnDataTypeMap.entrySet()) {
             String variableName = CommonUtils.toCamelCase(entrySet.getKey(), false);
-            methodSpecBuilder.addCode("case $S:\n", variableName)
-                    .addStatement(INDENT + "this.$L = ($T) val", variableName, entrySet.getValue())
-                    .addStatement("break");
+            methodSpecBuilder.addCode("case $S:\n", variableName);
+            if (information.isEncoded(entrySet.getKey())) {
+                methodSpecBuilder.addStatement(INDENT + "this.$L = dictionary.encode(cursor.getString(column))",
+                        variableName);
+            } else {
+                methodSpecBuilder.addStatement(INDENT + "this.$L = cursor.$L(column)", variableName,
+                        information.getColumnType(entrySet.getKey()).getCursorGetter());
+            }
+            methodSpecBuilder.addStatement("break");
         }
 
         return methodSpecBuilder.addCode("default:\n")
@@ -275,16 +714,17 @@ public class CodeGenerator {
                 .endControlFlow().build();
     }
 
-    private static FieldSpec getLogField(String className) {
+    static FieldSpec getLogField(String className) {
         return FieldSpec.builder(Logger.class, "LOG").addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
                 .initializer("$T.getLogger($N.class.getCanonicalName())", Logger.class, className).build();
     }
 
-    private static void addToStringMethod(TypeSpec.Builder entity, Map<String, Class<?>> allFields,
-            List<String> projections, List<String> headers) {
+    static void addToStringMethod(TypeSpec.Builder entity, Map<String, Class<?>> allFields,
+            List<String> projections, List<String> headers, CodeBlock rowPrologue, Set<String> encodedFields,
+            Map<String, ColumnType> temporalFields) {
         MethodSpec.Builder rowString = MethodSpec.methodBuilder("getRowString").addModifiers(Modifier.PUBLIC)
                 .returns(String.class).addParameter(int.class, "lineNumber").addParameter(boolean.class, "isCsv")
-                .addStatement("StringBuilder builder = new StringBuilder(System.lineSeparator())")
+                .addCode(rowPrologue).addStatement("StringBuilder builder = new StringBuilder(System.lineSeparator())")
                 .beginControlFlow(IS_CSV).addStatement("builder.append(lineNumber).append(\",\")");
 
         MethodSpec.Builder headerString = MethodSpec.methodBuilder("getHeaderString").addModifiers(Modifier.PUBLIC)
@@ -304,6 +744,19 @@ public class CodeGenerator {
             String header = headers.get(index);
             Class<?> dataType = allFields.getOrDefault(projection, String.class);
 
+            // Encoded strings are decoded only here, when the result is printed
+            if (encodedFields.contains(projection)) {
+                projection = String.format("%s.decode(%s)", DICTIONARY, projection);
+                dataType = String.class;
+            }
+
+            // Dates and timestamps are printed as text, not as numbers
+            if (temporalFields.containsKey(projection)) {
+                String format = temporalFields.get(projection) == ColumnType.DATE ? "formatDate" : "formatTimestamp";
+                projection = String.format("CommonUtils.%s(%s)", format, projection);
+                dataType = String.class;
+            }
+
             if (Double.class.isAssignableFrom(dataType) || projection.split("[-+*/]").length > 1) {
                 rowString.addStatement("builder.append($T.DECIMAL_FORMAT.format(($T) $L)).append(\",\")",
                         CommonUtils.class, double.class, projection);
@@ -369,8 +822,31 @@ public class CodeGenerator {
         entity.addMethod(equals.build());
     }
 
-    private static void addCompareToMetod(TypeSpec.Builder entity, TypeName compositeType,
-            List<String> orderByAttributes, int orderMultiplier) {
+    /**
+     * Returns the getters groups are ordered by, the order by attributes followed
+     * by the other grouping attributes. Groups that agree on the order by
+     * attributes are thereby still distinct in the TreeSet of the MF-Table.
+     *
+     * @param parsedQuery
+     * @return getters, empty if the query has no order by
+     */
+    static List<String> getSortAttributes(ParsedQuery parsedQuery) {
+        List<String> sortAttributes = new ArrayList<>(parsedQuery.getOrderByAttributes());
+        if (sortAttributes.isEmpty()) {
+            return sortAttributes;
+        }
+
+        for (String groupingAttribute : parsedQuery.getGroupingAttributes()) {
+            String getter = CommonUtils.firstLetterToUpper(groupingAttribute, "get", "");
+            if (!sortAttributes.contains(getter)) {
+                sortAttributes.add(getter);
+            }
+        }
+        return sortAttributes;
+    }
+
+    static void addCompareToMetod(TypeSpec.Builder entity, TypeName compositeType,
+            List<String> orderByAttributes, int orderMultiplier, Set<String> encodedFields) {
         if (orderByAttributes.isEmpty()) {
             return;
         }
@@ -379,14 +855,14 @@ public class CodeGenerator {
 
         MethodSpec.Builder compareTo = MethodSpec.methodBuilder("compareTo").addModifiers(Modifier.PUBLIC)
                 .addParameter(compositeType, "otherEntity").returns(int.class).addAnnotation(Override.class)
-                .addCode("int comparison = $T.comparing(CompositeEntity::$L)", Comparator.class,
-                        orderByAttributes.get(0))
+                .addCode("int comparison = $T.comparing($L)", Comparator.class,
+                        getSortKey(compositeType, orderByAttributes.get(0), encodedFields))
                 .addCode("$L$L$L", System.lineSeparator(), INDENT, INDENT);
 
         int index = 1;
         for (; index < orderByAttributes.size(); index++) {
-            compareTo.addCode(".thenComparing(CompositeEntity::$L)", orderByAttributes.get(index)).addCode("$L$L$L",
-                    System.lineSeparator(), INDENT, INDENT);
+            compareTo.addCode(".thenComparing($L)", getSortKey(compositeType, orderByAttributes.get(index),
+                    encodedFields)).addCode("$L$L$L", System.lineSeparator(), INDENT, INDENT);
         }
 
         compareTo.addCode(".compare(this, otherEntity);").addCode("$Lreturn comparison * $L;$L", System.lineSeparator(),
@@ -395,12 +871,20 @@ public class CodeGenerator {
         entity.addMethod(compareTo.build());
     }
 
-    private static void addFieldsAndConstructor(TypeSpec.Builder entity, TypeName compositeType,
-            Map<String, Class<?>> allFields, Map<String, TableInformation> relationsMap,
-            Map<String, GroupingInformation> groups) {
-
-        MethodSpec.Builder constructor = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC);
+    /**
+     * Returns the key extractor of an order by attribute. Encoded strings are
+     * ordered by their value, not by their id.
+     */
+    private static CodeBlock getSortKey(TypeName compositeType, String getter, Set<String> encodedFields) {
+        String field = Character.toLowerCase(getter.charAt(3)) + getter.substring(4);
+        if (!encodedFields.contains(field)) {
+            return CodeBlock.of("$T::$L", compositeType, getter);
+        }
+        return CodeBlock.of("($T entity) -> $L.decode(entity.$L())", compositeType, DICTIONARY, getter);
+    }
 
+    private static void addFieldsAndConstructor(TypeSpec.Builder entity,
+            Map<String, TableInformation> relationsMap) {
         for (Entry<String, TableInformation> relations : relationsMap.entrySet()) {
             Map<String, Class<?>> columnData = relations.getValue().getRequiredColumns();
             for (Entry<String, Class<?>> columns : columnData.entrySet()) {
@@ -409,28 +893,12 @@ public class CodeGenerator {
 
                 entity.addField(FieldSpec.builder(dataType, attributeName).addModifiers(Modifier.PRIVATE).build());
                 entity.addMethod(createGetter(attributeName, dataType));
-
-                allFields.put(attributeName, dataType);
             }
             TypeName typeName = ClassName.get(PACKAGE, relations.getValue().getClassName());
             entity.addMethod(createCompositeAttributeSetter(columnData, typeName, relations.getKey()));
-            constructor.addParameter(typeName, relations.getKey()).addStatement("setAttributes_$L($L)",
-                    relations.getKey(), relations.getKey());
         }
 
-        entity.addMethod(constructor.build());
-
-        for (Entry<String, GroupingInformation> group : groups.entrySet()) {
-            Map<String, Class<?>> variables = new HashMap<>();
-            for (String attributeName : group.getValue().getAggregates()) {
-                Class<?> dataType = resolveDataTypeOfAggregate(attributeName, relationsMap);
-                entity.addField(createAggregateField(attributeName, dataType));
-                entity.addMethod(createGetter(attributeName, dataType));
-                variables.put(attributeName, dataType);
-                allFields.put(attributeName, dataType);
-            }
-            entity.addMethod(createAggregateSetter(variables, compositeType, "_" + group.getKey(), group.getValue()));
-        }
+        entity.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC).build());
     }
 
     private static FieldSpec createAggregateField(String attributeName, Class<?> dataType) {
@@ -467,12 +935,14 @@ public class CodeGenerator {
     }
 
     private static MethodSpec createAggregateSetter(Map<String, Class<?>> colmnDataTypeMap, TypeName compositeType,
-            String tableSuffix, GroupingInformation groupingInformation) {
+            String tableSuffix, GroupingInformation groupingInformation, boolean analyze) {
         MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("incrementAggregates_" + tableSuffix)
-                .addModifiers(Modifier.PUBLIC).returns(void.class).addParameter(compositeType, NEW_ROW);
+                .addModifiers(Modifier.PUBLIC).returns(analyze ? boolean.class : void.class)
+                .addParameter(compositeType, NEW_ROW);
 
-        if (groupingInformation.getBoundryConditions() != null) {
-            methodSpecBuilder.beginControlFlow("if ($L)", groupingInformation.getBoundryConditions());
+        Expression boundry = groupingInformation.getBoundryExpression();
+        if (boundry != null) {
+            methodSpecBuilder.beginControlFlow("if ($L)", boundry.toJava(true, true));
         }
 
         List<CodeBlock> averageBlocks = new ArrayList<>();
@@ -487,13 +957,63 @@ public class CodeGenerator {
             methodSpecBuilder.addCode(block);
         }
 
-        if (groupingInformation.getBoundryConditions() != null) {
-            methodSpecBuilder.endControlFlow();
+        if (boundry != null) {
+            methodSpecBuilder.addCode(returnMatch(analyze, true)).endControlFlow();
+            methodSpecBuilder.addCode(returnMatch(analyze, false));
+        } else {
+            methodSpecBuilder.addCode(returnMatch(analyze, true));
         }
 
         return methodSpecBuilder.build();
     }
 
+    /**
+     * Returns whether the row matched the grouping variable from an aggregate
+     * update of an analyzed engine, so that the engine can count the matches.
+     */
+    static CodeBlock returnMatch(boolean analyze, boolean matched) {
+        return analyze ? CodeBlock.builder().addStatement("return $L", matched).build() : CodeBlock.builder().build();
+    }
+
+    /**
+     * Adds the call of the aggregate update of a grouping variable. An analyzed
+     * engine counts the evaluation of the such that condition and the match.
+     *
+     * @param methodSpecBuilder
+     * @param parsedQuery
+     * @param plan
+     * @param group             variable holding the group
+     * @param groupName         grouping variable
+     */
+    static void addAggregateUpdate(MethodSpec.Builder methodSpecBuilder, ParsedQuery parsedQuery, QueryPlan plan,
+            String group, String groupName) {
+        if (!plan.isAnalyze()) {
+            methodSpecBuilder.addStatement("$L.incrementAggregates__$L(newRow)", group, groupName);
+            return;
+        }
+
+        int counter = getCounterIndex(parsedQuery, groupName);
+        methodSpecBuilder.addStatement("COUNTERS.evaluated($L, 1)", counter)
+                .beginControlFlow("if ($L.incrementAggregates__$L(newRow))", group, groupName)
+                .addStatement("COUNTERS.matched($L)", counter).endControlFlow();
+    }
+
+    /**
+     * Returns the index of the grouping variable in the counters of an analyzed
+     * engine.
+     */
+    static int getCounterIndex(ParsedQuery parsedQuery, String groupName) {
+        return new ArrayList<>(new TreeSet<>(parsedQuery.getGroups().keySet())).indexOf(groupName);
+    }
+
+    /**
+     * Returns the statement, or an empty block if the engine is not analyzed.
+     */
+    static CodeBlock countStatement(QueryPlan plan, String format, Object... args) {
+        return plan.isAnalyze() ? CodeBlock.builder().addStatement(format, args).build()
+                : CodeBlock.builder().build();
+    }
+
     private static CodeBlock processElement(Entry<String, Class<?>> entrySet, Builder methodSpecBuilder) {
         String[] components = extractComponents(entrySet.getKey());
         String aggregate = components[2];
@@ -537,14 +1057,19 @@ public class CodeGenerator {
         return null;
     }
 
-    private static Class<?> resolveDataTypeOfAggregate(String attributeName, Map<String, TableInformation> relations) {
+    static Class<?> resolveDataTypeOfAggregate(String attributeName, Map<String, TableInformation> relations) {
         String[] components = extractComponents(attributeName);
         String aggregate = components[2];
 
-        if (aggregate.equalsIgnoreCase(COUNT) || aggregate.equalsIgnoreCase(SUM)) {
+        if (aggregate.equalsIgnoreCase(COUNT)) {
             return Long.class;
         }
 
+        if (aggregate.equalsIgnoreCase(SUM)) {
+            Class<?> columnType = relations.get(components[0]).getRequiredColumns().get(components[1]);
+            return Double.class.equals(columnType) ? Double.class : Long.class;
+        }
+
         if (aggregate.equals(AVG)) {
             return Double.class;
         }
@@ -559,58 +1084,187 @@ public class CodeGenerator {
         entityBuilder.addField(
                 FieldSpec.builder(int.class, "blockSize").addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
 
-        entityBuilder.addField(FieldSpec
-                .builder(ParameterizedTypeName.get(Map.class, String.class, ResultSetMetaData.class), "metadatas")
+        entityBuilder.addField(
+                FieldSpec.builder(int.class, "prefetchBlocks").addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
+
+        entityBuilder.addField(
+                FieldSpec.builder(boolean.class, "copyScan").addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
+
+        entityBuilder.addField(FieldSpec.builder(SnapshotStore.class, "snapshots")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
+
+        entityBuilder.addField(FieldSpec.builder(PartitionedScan.class, "partitions")
                 .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
 
         entityBuilder.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
                 .addStatement("this.credentials = $T.readProperties($T.DB_PROPERTIES)", ReadWrite.class,
                         CommonUtils.class)
                 .addStatement("this.blockSize = Integer.parseInt(credentials.getProperty(\"blockSize\"))")
-                .addStatement("this.metadatas = new $T<>()", HashMap.class).build());
+                .addStatement("this.prefetchBlocks = Integer.parseInt(credentials.getProperty(\"prefetchBlocks\", $S))",
+                        DEFAULT_PREFETCH_BLOCKS)
+                .addStatement("this.copyScan = Boolean.parseBoolean(credentials.getProperty(\"copyScan\", $S))",
+                        DEFAULT_COPY_SCAN)
+                .addStatement("this.snapshots = new $T(credentials)", SnapshotStore.class)
+                .addStatement("this.partitions = new $T(credentials)", PartitionedScan.class).build());
     }
 
-    private static void addMethods(TypeSpec.Builder entityBuilder) {
+    private static void addMethods(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery) {
+        // The driver only streams rows with a fetch size inside a transaction,
+        // else a scan reads the whole table before its first row is returned
         entityBuilder.addMethod(MethodSpec.methodBuilder("getConnection").addModifiers(Modifier.PUBLIC)
                 .returns(Connection.class).addException(SQLException.class)
-                .addStatement("return $T.getConnection(credentials.getProperty(\"url\"), credentials)",
-                        DriverManager.class)
-                .build());
+                .addStatement("$T connection = $T.getConnection(credentials.getProperty(\"url\"), credentials)",
+                        Connection.class, DriverManager.class)
+                .addStatement("connection.setAutoCommit(false)").addStatement("return connection").build());
 
         entityBuilder.addMethod(MethodSpec.methodBuilder("getPreparedStatement").addModifiers(Modifier.PUBLIC)
                 .addParameter(Connection.class, "connection").addParameter(String.class, "tableName")
                 .returns(PreparedStatement.class).addException(SQLException.class)
-                .addStatement("return connection.prepareStatement(String.format($S, tableName))", "select * from %s")
+                .addStatement("$T statement = connection.prepareStatement(String.format($S, tableName))",
+                        PreparedStatement.class, SCAN_QUERY)
+                .addStatement("statement.setFetchSize($T.FETCH_ROWS)", PartitionedScan.class)
+                .addStatement("return statement").build());
+
+        addColumnsMethod(entityBuilder, parsedQuery);
+
+        // Reads from an up to date snapshot if there is one, else from the database,
+        // a large table through several connections, fetching the next blocks
+        // while the current one is evaluated
+        entityBuilder.addMethod(MethodSpec.methodBuilder("openCursor").addModifiers(Modifier.PUBLIC)
+                .addParameter(Connection.class, "connection").addParameter(String.class, "tableName")
+                .addParameter(ZoneMapFilter.class, "filter").returns(RelationCursor.class)
+                .addException(SQLException.class)
+                .addStatement("$T cursor = snapshots.open(connection, tableName, filter)", RelationCursor.class)
+                .beginControlFlow("if (cursor == null)")
+                .addStatement("$T columns = copyScan ? getColumns(tableName) : null",
+                        ParameterizedTypeName.get(List.class, String.class))
+                .addStatement("cursor = partitions.open(connection, tableName, columns, filter, blockSize + 1, "
+                        + "prefetchBlocks)")
+                .endControlFlow()
+                .beginControlFlow("if (cursor == null)")
+                .addStatement("cursor = new $T(getPreparedStatement(connection, tableName))", ResultSetCursor.class)
+                .beginControlFlow("if (prefetchBlocks > 0)")
+                .addStatement("cursor = new $T(cursor, blockSize + 1, prefetchBlocks, \"prefetch-\" + tableName)",
+                        PrefetchingCursor.class)
+                .endControlFlow().endControlFlow().addStatement("return cursor").build());
+
+        entityBuilder.addMethod(MethodSpec.methodBuilder("close").addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC).addStatement("partitions.close()").build());
+    }
+
+    /**
+     * Adds the method returning the columns the query reads from a table, the
+     * columns of all its aliases.
+     *
+     * @param entityBuilder
+     * @param parsedQuery
+     */
+    private static void addColumnsMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery) {
+        Map<String, Set<String>> tableColumns = new TreeMap<>();
+        for (TableInformation information : parsedQuery.getRelations().values()) {
+            tableColumns.computeIfAbsent(information.getTableName(), tableName -> new TreeSet<>())
+                    .addAll(information.getRequiredColumns().keySet());
+        }
+
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("getColumns").addModifiers(Modifier.PUBLIC)
+                .addParameter(String.class, "tableName")
+                .returns(ParameterizedTypeName.get(List.class, String.class)).beginControlFlow("switch (tableName)");
+        for (Entry<String, Set<String>> entry : tableColumns.entrySet()) {
+            CodeBlock columns = entry.getValue().stream().map(column -> CodeBlock.of("$S", column))
+                    .collect(CodeBlock.joining(", "));
+            methodSpecBuilder.addCode("case $S:\n", entry.getKey())
+                    .addStatement(INDENT + "return $T.asList($L)", Arrays.class, columns);
+        }
+        methodSpecBuilder.addCode("default:\n")
+                .addStatement(INDENT + "return $T.emptyList()", Collections.class).endControlFlow();
+        entityBuilder.addMethod(methodSpecBuilder.build());
+    }
+
+    private static void addFileFieldsAndMethods(TypeSpec.Builder entityBuilder) {
+        entityBuilder.addField(FieldSpec.builder(Properties.class, "credentials")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
+
+        entityBuilder.addField(
+                FieldSpec.builder(int.class, "blockSize").addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
+
+        entityBuilder.addField(FieldSpec.builder(FlatFileStore.class, "files")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
+
+        entityBuilder.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addStatement("this.credentials = $T.readProperties($T.DB_PROPERTIES)", ReadWrite.class,
+                        CommonUtils.class)
+                .addStatement("this.blockSize = Integer.parseInt(credentials.getProperty(\"blockSize\"))")
+                .addStatement("this.files = new $T(credentials)", FlatFileStore.class).build());
+
+        // Tables are read from files, so no connection is needed
+        entityBuilder.addMethod(MethodSpec.methodBuilder("getConnection").addModifiers(Modifier.PUBLIC)
+                .returns(Connection.class).addStatement("return null").build());
+
+        entityBuilder.addMethod(MethodSpec.methodBuilder("openCursor").addModifiers(Modifier.PUBLIC)
+                .addParameter(Connection.class, "connection").addParameter(String.class, "tableName")
+                .addParameter(ZoneMapFilter.class, "filter").returns(RelationCursor.class)
+                .addException(SQLException.class).addStatement("return files.open(tableName)").build());
+
+        // Files are closed along with their cursors, the tables they were read into are released
+        entityBuilder.addMethod(MethodSpec.methodBuilder("close").addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC).addStatement("files.close()").build());
+    }
+
+    /**
+     * Adds the method wrapping a cursor so that the statistics of the columns
+     * are collected while it is read.
+     *
+     * @param entityBuilder
+     */
+    private static void addProfileMethod(TypeSpec.Builder entityBuilder) {
+        entityBuilder.addField(FieldSpec.builder(StatisticsStore.class, "statistics")
+                .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .initializer("new $T($T.readProperties($T.DB_PROPERTIES))", StatisticsStore.class, ReadWrite.class,
+                        CommonUtils.class)
                 .build());
 
-        entityBuilder.addMethod(MethodSpec.methodBuilder("addMetadata").addModifiers(Modifier.PUBLIC)
-                .addParameter(String.class, "tableName").addParameter(ResultSet.class, "resultSet")
-                .addException(SQLException.class).returns(void.class)
-                .beginControlFlow("if(!metadatas.containsKey(tableName))")
-                .addStatement("metadatas.put(tableName, resultSet.getMetaData())").endControlFlow().build());
+        entityBuilder.addMethod(MethodSpec.methodBuilder("profile").addModifiers(Modifier.PUBLIC)
+                .addParameter(RelationCursor.class, "cursor").addParameter(String.class, "tableName")
+                .returns(RelationCursor.class).addStatement("return statistics.profile(cursor, tableName)").build());
     }
 
     private static void addReadRowMethods(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery) {
         ClassName list = ClassName.get(UTILS_PACKAGE, "List");
 
+        entityBuilder.addMethod(MethodSpec.methodBuilder("getBlockSize").addModifiers(Modifier.PUBLIC)
+                .returns(int.class).addStatement("return blockSize").build());
+
+        // The entities are compiled before the dictionary is generated, so it is passed to them
+        String dictionary = parsedQuery.getEncodedFields().isEmpty() ? "null" : DICTIONARY;
         for (Entry<String, TableInformation> entrySet : parsedQuery.getRelations().entrySet()) {
             String className = entrySet.getValue().getClassName();
             ClassName generatedClassName = ClassName.get(PACKAGE, className);
             TypeName listOfGeneratedClass = ParameterizedTypeName.get(list, generatedClassName);
 
+            String bufferName = Character.toLowerCase(className.charAt(0)) + className.substring(1) + "Rows";
+
+            // Row objects are refilled block after block instead of being created
+            // per row
+            entityBuilder.addField(FieldSpec.builder(listOfGeneratedClass, bufferName)
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL).initializer("new $T<>()", ArrayList.class)
+                    .build());
+
             CodeBlock rowsLogic = CodeBlock.builder()
-                    .addStatement("$T rows = new $T<>()", listOfGeneratedClass, ArrayList.class)
-                    .addStatement("$T meta = metadatas.get($S)", ResultSetMetaData.class,
-                            entrySet.getValue().getTableName())
-                    .beginControlFlow("while (rows.size() <= blockSize && resultSet.next())")
-                    .addStatement("$T row = new $T()", generatedClassName, generatedClassName)
-                    .beginControlFlow("for (int i = 1; i <= meta.getColumnCount(); i++)")
-                    .addStatement("row.setAttributes($N, $N)", "meta.getColumnName(i)", "resultSet.getObject(i)")
-                    .endControlFlow().addStatement("rows.add(row)").endControlFlow().addStatement("return rows")
+                    .addStatement("$T event = new $T()", FlightEvents.BlockFetch.class, FlightEvents.BlockFetch.class)
+                    .addStatement("event.begin()").addStatement("int size = 0")
+                    .beginControlFlow("while (size <= blockSize && cursor.next())")
+                    .beginControlFlow("if (size == $L.size())", bufferName)
+                    .addStatement("$L.add(new $T())", bufferName, generatedClassName).endControlFlow()
+                    .addStatement("$T row = $L.get(size++)", generatedClassName, bufferName)
+                    .beginControlFlow("for (int i = 1; i <= cursor.getColumnCount(); i++)")
+                    .addStatement("row.setAttributes($N, cursor, i, $L)", "cursor.getColumnName(i)", dictionary)
+                    .endControlFlow().endControlFlow()
+                    .addStatement("event.record($S, size)", entrySet.getValue().getTableName())
+                    .addStatement("return $L.subList(0, size)", bufferName)
                     .build();
 
             entityBuilder.addMethod(MethodSpec.methodBuilder(String.format("get%sRows", className))
-                    .addModifiers(Modifier.PUBLIC).addParameter(ResultSet.class, "resultSet").returns(void.class)
+                    .addModifiers(Modifier.PUBLIC).addParameter(RelationCursor.class, "cursor").returns(void.class)
                     .addException(SQLException.class).addCode(rowsLogic).returns(listOfGeneratedClass).build());
         }
     }
@@ -621,7 +1275,7 @@ public class CodeGenerator {
      * @param attributeName
      * @return returns {tableAlias, columnName, aggregateName, groupingVariable}
      */
-    private static String[] extractComponents(String attributeName) {
+    static String[] extractComponents(String attributeName) {
         String[] components = attributeName.split("_");
 
         if (components[0].matches(AGGREGATE_REGEX)) {
@@ -636,7 +1290,7 @@ public class CodeGenerator {
      *
      * @param typeSpec
      */
-    private static void createAndCompileJavaFile(TypeSpec typeSpec) {
+    static void createAndCompileJavaFile(TypeSpec typeSpec) {
         try {
             JavaFile.builder(PACKAGE, typeSpec).skipJavaLangImports(true).indent(INDENT).build().writeTo(SOURCE);
 
@@ -645,7 +1299,13 @@ public class CodeGenerator {
             Iterable<? extends JavaFileObject> compilationUnits = FILE_MANAGER
                     .getJavaFileObjectsFromStrings(Arrays.asList(GENERATED_SOURCE + typeSpec.name + ".java"));
 
-            if (!COMPILER.getTask(null, FILE_MANAGER, DIGNOSTIC, null, null, compilationUnits).call()) {
+            PhaseMetrics compilation = RunMetrics.begin("compilation");
+            FlightEvents.Compilation event = new FlightEvents.Compilation();
+            event.begin();
+            boolean compiled = COMPILER.getTask(null, FILE_MANAGER, DIGNOSTIC, null, null, compilationUnits).call();
+            event.record(typeSpec.name);
+            compilation.end();
+            if (!compiled) {
                 logDignosticReports();
             }
         } catch (IOException e) {
@@ -663,99 +1323,342 @@ public class CodeGenerator {
         CommonUtils.exit(1);
     }
 
-    private static void addMainMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
-            ParameterizedTypeName mfTableType, Set<TableInformation> sortedSet) {
-        Class<?> mapType = parsedQuery.getOrderByAttributes().isEmpty() ? HashMap.class : TreeSet.class;
-
-        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("main")
-                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(void.class)
-                .addParameter(ArrayTypeName.of(String.class), "args")
-                .addStatement("DataAccessObject dao = new DataAccessObject()")
-                .addStatement("$T mfTable = new $T<>()", mfTableType, mapType);
+    static void addMainMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            CodeBlock mfTableDeclaration, CodeBlock cleanup, QueryPlan plan) {
+        Set<TableInformation> sortedSet = plan.getScanOrder();
+        List<Integer> executionUnits = new ArrayList<>();
+        executionUnits.add(0);
+        executionUnits.addAll(parsedQuery.getExecutionGroups().keySet());
 
-        StringBuilder methodCallTemplate = new StringBuilder("streamTableBlocks(dao, mfTable, %d");
-        String metaDataCallTemplate = "dao.addMetadata(\"%s\", %s);";
-        StringBuilder metaDataCalls = new StringBuilder();
+        if (plan.isAnalyze()) {
+            addCounterFields(entityBuilder, parsedQuery, plan, Collections.max(executionUnits) + 1);
+        }
 
-        String statementTemplate = "$T %s = dao.getPreparedStatement(connection, \"%s\");";
-        String statementNameTemplate = "statement_%s";
-        List<Class<?>> toImportInParent = new ArrayList<>();
+        long groupBytes = RecordLayout.of(parsedQuery).estimateGroupBytes(plan.getEngineMode());
+        long estimatedBytes = plan.getEstimatedBytes(groupBytes);
+        addMemoryFields(entityBuilder, groupBytes);
 
-        String resultSetTemplate = "$T %s = %s.executeQuery();";
-        String resultSetNameTemplate = "resultSet_%s";
-        List<Class<?>> toImportInUnit = new ArrayList<>();
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("main")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC).returns(void.class)
+                .addParameter(ArrayTypeName.of(String.class), "args");
+
+        int parameterCount = parsedQuery.getParameterCount();
+        if (parameterCount > 0) {
+            // The values follow the first argument, else the values bound before are used
+            methodSpecBuilder.beginControlFlow("if (args != null && args.length > $L)", parameterCount)
+                    .addStatement("$L.bind((Object[]) $T.copyOfRange(args, 1, $L))", COMPOSITE_ENTITY_NAME,
+                            Arrays.class, parameterCount + 1)
+                    .endControlFlow().beginControlFlow("if (!$L.isBound())", COMPOSITE_ENTITY_NAME)
+                    .addStatement("LOG.log($T.SEVERE, $S)", Level.class, "The parameters of the query are not bound.")
+                    .addStatement("$T.exit(1)", CommonUtils.class).endControlFlow();
+        }
 
-        StringBuilder parentTryBlock = new StringBuilder("try ($T connection = dao.getConnection();");
-        toImportInParent.add(Connection.class);
+        boolean isEncoded = !parsedQuery.getEncodedFields().isEmpty();
+        if (isEncoded) {
+            methodSpecBuilder.addStatement("$L.newDictionary()", COMPOSITE_ENTITY_NAME);
+        }
 
+        // The reservation is released however the query ends
+        methodSpecBuilder.beginControlFlow("try");
+        boolean isSharded = plan.isSharded();
+        if (!isSharded) {
+            methodSpecBuilder.addCode(admission(CodeBlock.of("$LL", estimatedBytes)));
+        }
+        methodSpecBuilder.addStatement(mfTableDeclaration);
+
+        StringBuilder methodCallTemplate = new StringBuilder("streamTableBlocks(dao, mfTable, %1$d");
+        String cursorTemplate = "$T %1$s = dao.openCursor(connection, \"%2$s\", getFilter_%3$s(%%1$d));";
+        // The first scan also collects the statistics of the columns it reads
+        String profiledTemplate = "$T %1$s = dao.profile(dao.openCursor(connection, \"%2$s\", getFilter_%3$s(%%1$d)), \"%2$s\");";
+        if (isSharded) {
+            // Every worker reads the whole relation, one of them collects the statistics
+            profiledTemplate = "$T %1$s = shard == 0"
+                    + " ? dao.profile(dao.openCursor(connection, \"%2$s\", getFilter_%3$s(%%1$d)), \"%2$s\")"
+                    + " : dao.openCursor(connection, \"%2$s\", getFilter_%3$s(%%1$d));";
+        }
         StringBuilder unitTryBlock = new StringBuilder("try (");
+        StringBuilder profiledTryBlock = new StringBuilder("try (");
+        List<Class<?>> toImportInUnit = new ArrayList<>();
 
         for (TableInformation entry : sortedSet) {
-            String statementName = String.format(statementNameTemplate, entry.getAlias());
-            String statement = String.format(statementTemplate, statementName, entry.getTableName());
-            toImportInParent.add(PreparedStatement.class);
-
-            String resultSetName = String.format(resultSetNameTemplate, entry.getAlias());
-            String resultSet = String.format(resultSetTemplate, resultSetName, statementName);
-            toImportInUnit.add(ResultSet.class);
-            methodCallTemplate.append(",").append(resultSetName);
-            metaDataCalls.append(String.format(metaDataCallTemplate, entry.getTableName(), resultSetName))
-                    .append(System.lineSeparator());
-
-            parentTryBlock.append(System.lineSeparator()).append(INDENT).append(INDENT).append(statement);
-            unitTryBlock.append(resultSet).append(System.lineSeparator()).append(INDENT).append(INDENT);
+            String cursorName = "cursor_" + entry.getAlias();
+            unitTryBlock.append(String.format(cursorTemplate, cursorName, entry.getTableName(), entry.getAlias()))
+                    .append(System.lineSeparator()).append(INDENT).append(INDENT);
+            profiledTryBlock
+                    .append(String.format(profiledTemplate, cursorName, entry.getTableName(), entry.getAlias()))
+                    .append(System.lineSeparator()).append(INDENT).append(INDENT);
+            toImportInUnit.add(RelationCursor.class);
+            methodCallTemplate.append(", ").append(cursorName);
         }
 
         methodCallTemplate.append(");").append(System.lineSeparator());
 
-        String parent = parentTryBlock.substring(0, parentTryBlock.lastIndexOf(";")) + ")";
-        String unit = unitTryBlock.substring(0, unitTryBlock.lastIndexOf(";")) + ")";
+        CodeBlock.Builder rowsRead = CodeBlock.builder();
+        for (TableInformation entry : sortedSet) {
+            rowsRead.addStatement("phase.addRows(cursor_$L.getRowsRead())", entry.getAlias());
+        }
 
-        Class<?>[] parentImport = toImportInParent.toArray(new Class<?>[0]);
+        String unit = unitTryBlock.substring(0, unitTryBlock.lastIndexOf(";")) + ")";
+        String profiledUnit = profiledTryBlock.substring(0, profiledTryBlock.lastIndexOf(";")) + ")";
         Class<?>[] unitImport = toImportInUnit.toArray(new Class<?>[0]);
 
-        CodeBlock.Builder parentBlock = CodeBlock.builder().beginControlFlow(parent, parentImport)
-                .beginControlFlow(unit, unitImport).add(metaDataCalls.toString())
-                .add(String.format(methodCallTemplate.toString(), 0)).endControlFlow().add(System.lineSeparator());
-
-        for (Integer executionUnit : parsedQuery.getExecutionGroups().keySet()) {
-            parentBlock.beginControlFlow(unit, unitImport)
-                    .add(String.format(methodCallTemplate.toString(), executionUnit)).endControlFlow()
-                    .add(System.lineSeparator());
+        CodeBlock.Builder parentBlock = CodeBlock.builder().addStatement("$T phase", PhaseMetrics.class)
+                .addStatement("$T passEvent", FlightEvents.Pass.class)
+                .beginControlFlow("try ($L dao = new $L(); $T connection = dao.getConnection())", DAO_NAME, DAO_NAME,
+                        Connection.class);
+
+        for (Integer executionUnit : executionUnits) {
+            parentBlock.addStatement("phase = $T.begin($S)", RunMetrics.class, "pass " + executionUnit)
+                    .addStatement("passEvent = $T.start($L)", FlightEvents.Pass.class, executionUnit)
+                    .add(countStatement(plan, "COUNTERS.startPass()"))
+                    .beginControlFlow(String.format(executionUnit == 0 ? profiledUnit : unit, executionUnit),
+                            unitImport)
+                    .add(String.format(methodCallTemplate.toString(), executionUnit)).add(rowsRead.build())
+                    .endControlFlow().add(countStatement(plan, "COUNTERS.endPass($L)", executionUnit))
+                    .addStatement("phase.end(mfTable.size())")
+                    .addStatement("passEvent.record(phase.getRows(), mfTable.size())");
+            if (executionUnit == 0) {
+                parentBlock.addStatement("checkMemory(mfTable.size())")
+                        .add(countStatement(plan, "COUNTERS.groupsCreated(mfTable.size())"));
+            }
+            parentBlock.add(System.lineSeparator());
         }
 
         parentBlock.nextControlFlow("catch ($T e)", SQLException.class)
                 .addStatement("LOG.log($T.SEVERE, \"Could not execute query.\", e)", Level.class)
                 .addStatement("$T.exit(1)", CommonUtils.class).endControlFlow();
 
-        methodSpecBuilder.addCode(parentBlock.build());
+        if (isSharded) {
+            addShardedExecution(methodSpecBuilder, parsedQuery, parentBlock.build(), estimatedBytes,
+                    plan.getShards());
+        } else {
+            methodSpecBuilder.addCode(parentBlock.build());
+        }
+        addFilterMethods(entityBuilder, parsedQuery, sortedSet);
 
         methodSpecBuilder.addCode(System.lineSeparator()).addStatement("String csvFileName = null")
                 .beginControlFlow("if (args == null || args.length == 0 || !args[0].equals(\"noCsv\"))")
                 .addStatement("csvFileName = $T.getCsvFileName()", ReadWrite.class).endControlFlow()
-                .addStatement("displayResult(mfTable, csvFileName)");
+                .addStatement("$T output = $T.begin($S)", PhaseMetrics.class, RunMetrics.class, "output")
+                .addStatement("displayResult(mfTable, csvFileName)").addStatement("output.end(mfTable.size())")
+                .addCode(countStatement(plan, "System.out.println(PLAN + COUNTERS.report())")).addCode(cleanup)
+                .nextControlFlow("finally").addStatement("MEMORY.release()");
+        if (isEncoded) {
+            methodSpecBuilder.addStatement("$L = null", DICTIONARY);
+        }
+        methodSpecBuilder.endControlFlow();
 
         entityBuilder.addMethod(methodSpecBuilder.build());
     }
 
-    private static void addDisplayResultMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
-            TypeName compositeType, ParameterizedTypeName mfTableType) {
-        String methodCall = parsedQuery.getOrderByAttributes().isEmpty() ? ".values()" : "";
+    /**
+     * Adds the account of the MF-Table in the memory budget and the check that
+     * ends the query once its groups exceed the budget. The check throws an
+     * IllegalStateException, which closes the cursors and connections on its
+     * way to the caller of the engine; the main method releases the
+     * reservation.
+     *
+     * @param entityBuilder
+     * @param groupBytes    estimated bytes of a group
+     */
+    private static void addMemoryFields(TypeSpec.Builder entityBuilder, long groupBytes) {
+        entityBuilder.addField(FieldSpec.builder(MemoryBudget.class, "MEMORY")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T($S, $LL)", MemoryBudget.class, ENGINE_NAME, groupBytes).build());
+
+        entityBuilder.addMethod(MethodSpec.methodBuilder("checkMemory").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(void.class).addParameter(int.class, "groups").beginControlFlow("if (!MEMORY.track(groups))")
+                .addStatement("throw new $T($S + MEMORY)", IllegalStateException.class,
+                        "The groups exceed the memory budget: ")
+                .endControlFlow().build());
+    }
+
+    /**
+     * Returns the statements rejecting the query if the estimated bytes of its
+     * groups do not fit into what the running queries leave of the memory
+     * budget. The query is rejected with an IllegalStateException, so that the
+     * other queries of the process keep running.
+     */
+    private static CodeBlock admission(CodeBlock estimatedBytes) {
+        return CodeBlock.builder().beginControlFlow("if (!MEMORY.admit($L))", estimatedBytes)
+                .addStatement("throw new $T($S + MEMORY)", IllegalStateException.class,
+                        "The groups are estimated to exceed the memory budget: ")
+                .endControlFlow().build();
+    }
+
+    /**
+     * Adds the evaluation by worker processes to the main method. Started as a
+     * worker, the engine evaluates the passes for the groups of its shard and
+     * sends them to the coordinator. Else it is the coordinator, which starts the
+     * workers and collects their groups into the MF-Table before the result is
+     * displayed.
+     *
+     * @param methodSpecBuilder
+     * @param parsedQuery
+     * @param passes            evaluation of all passes
+     * @param estimatedBytes    estimated bytes of all groups
+     * @param shards            number of worker processes
+     */
+    private static void addShardedExecution(MethodSpec.Builder methodSpecBuilder, ParsedQuery parsedQuery,
+            CodeBlock passes, long estimatedBytes, int shards) {
+        int parameterCount = parsedQuery.getParameterCount();
+        CodeBlock parameters = parameterCount > 0 ? CodeBlock.of("$L.getParameters()", COMPOSITE_ENTITY_NAME)
+                : CodeBlock.of("new String[0]");
+        boolean isMap = parsedQuery.getOrderByAttributes().isEmpty();
+        CodeBlock addGroup = isMap
+                ? CodeBlock.of("values -> {$L group = new $L(values); mfTable.put(group, group); "
+                        + "checkMemory(mfTable.size());}", GROUP_STATE_NAME, GROUP_STATE_NAME)
+                : CodeBlock.of("values -> {mfTable.add(new $L(values)); checkMemory(mfTable.size());}",
+                        GROUP_STATE_NAME);
+
+        // Worker arguments follow the parameters of the query
+        methodSpecBuilder
+                .beginControlFlow("if (args != null && args.length > $L && args[0].equals($T.WORKER))",
+                        parameterCount + 4, ShardedExecution.class)
+                .addStatement("shard = Integer.parseInt(args[$L])", parameterCount + 1)
+                .addStatement("shards = Integer.parseInt(args[$L])", parameterCount + 2)
+                // A worker holds the groups of its shard only
+                .addCode(admission(CodeBlock.of("$LL / shards", estimatedBytes))).addCode(passes)
+                .addStatement("$T.send(Integer.parseInt(args[$L]), args[$L], shard, mfTable$L, $L::toValues)",
+                        ShardedExecution.class, parameterCount + 3, parameterCount + 4, isMap ? ".values()" : "",
+                        GROUP_STATE_NAME)
+                .addStatement("return").endControlFlow()
+                .addCode(System.lineSeparator()).addCode(admission(CodeBlock.of("$LL", estimatedBytes)))
+                .addStatement("$T collection = $T.begin($S)", PhaseMetrics.class, RunMetrics.class, "shards")
+                .addStatement("$T.collect($L.class, $L, $L, $L)", ShardedExecution.class, ENGINE_NAME, shards,
+                        parameters, addGroup)
+                .addStatement("collection.end(mfTable.size())");
+    }
+
+    /**
+     * Adds the explained plan and the counters of an analyzed engine. The
+     * counters know the relations in scan order and the grouping variables in
+     * the order of getCounterIndex.
+     */
+    private static void addCounterFields(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery, QueryPlan plan,
+            int passes) {
+        List<String> relations = new ArrayList<>();
+        for (TableInformation information : plan.getScanOrder()) {
+            relations.add(information.getAlias());
+        }
+        List<String> groups = new ArrayList<>(new TreeSet<>(parsedQuery.getGroups().keySet()));
+
+        entityBuilder.addField(FieldSpec.builder(String.class, "PLAN")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$S", PlanExplainer.explain(parsedQuery, plan)).build());
+        entityBuilder.addField(FieldSpec.builder(ExecutionCounters.class, "COUNTERS")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T($L, new String[] { $L }, new String[] { $L })", ExecutionCounters.class, passes,
+                        toLiterals(relations), toLiterals(groups))
+                .build());
+    }
+
+    private static CodeBlock toLiterals(List<String> values) {
+        List<CodeBlock> literals = new ArrayList<>();
+        for (String value : values) {
+            literals.add(CodeBlock.of("$S", value));
+        }
+        return CodeBlock.join(literals, ", ");
+    }
+
+    /**
+     * Creates a method per relation returning the zone map filter for a scan of
+     * that relation. Blocks are skipped if they can not satisfy the where clause
+     * or, after the first scan, the such that conditions of every grouping
+     * variable evaluated in that scan.
+     *
+     * @param entityBuilder
+     * @param parsedQuery
+     * @param sortedSet
+     */
+    private static void addFilterMethods(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            Set<TableInformation> sortedSet) {
+        for (TableInformation entry : sortedSet) {
+            String alias = entry.getAlias();
+            MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("getFilter_" + alias)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(ZoneMapFilter.class)
+                    .addParameter(int.class, "groupNumber")
+                    .addStatement("$T filter = new $T()", ZoneMapFilter.class, ZoneMapFilter.class);
+
+            CodeBlock wherePredicates = getPredicateArguments(parsedQuery, parsedQuery.getWherePredicates(), alias);
+            if (!wherePredicates.isEmpty()) {
+                methodSpecBuilder.addStatement("filter.require($L)", wherePredicates);
+            }
+
+            for (Entry<Integer, Set<String>> executionGroup : parsedQuery.getExecutionGroups().entrySet()) {
+                List<CodeBlock> alternatives = new ArrayList<>();
+                for (String group : executionGroup.getValue()) {
+                    GroupingInformation information = parsedQuery.getGroups().get(group);
+                    CodeBlock groupPredicates = getPredicateArguments(parsedQuery, information.getPredicates(), alias);
+                    if (groupPredicates.isEmpty()) {
+                        alternatives.clear();
+                        break;
+                    }
+                    alternatives.add(groupPredicates);
+                }
+
+                if (alternatives.isEmpty()) {
+                    continue;
+                }
+
+                methodSpecBuilder.beginControlFlow("if (groupNumber == $L)", executionGroup.getKey());
+                for (CodeBlock alternative : alternatives) {
+                    methodSpecBuilder.addStatement("filter.addAlternative($L)", alternative);
+                }
+                methodSpecBuilder.endControlFlow();
+            }
+
+            entityBuilder.addMethod(methodSpecBuilder.addStatement("return filter").build());
+        }
+    }
+
+    /**
+     * Returns the predicates of the relation as arguments of the zone map filter.
+     * A predicate on a parameter is created with the bound value. Dates and
+     * timestamps are held as numbers and can not be compared with the bounds of a
+     * block, so their parameters are left out.
+     */
+    private static CodeBlock getPredicateArguments(ParsedQuery parsedQuery, List<ColumnPredicate> predicates,
+            String alias) {
+        List<CodeBlock> arguments = new ArrayList<>();
+        for (ColumnPredicate predicate : predicates) {
+            if (!predicate.getAlias().equals(alias)) {
+                continue;
+            }
+
+            if (predicate.getParameter() != null) {
+                ColumnType parameterType = parsedQuery.getParameterTypes().get(predicate.getParameter());
+                if (!parameterType.isTemporal()) {
+                    arguments.add(CodeBlock.of("new $T($S, $S, $S, String.valueOf($L.$L), $L)",
+                            ColumnPredicate.class, predicate.getAlias(), predicate.getColumn(),
+                            predicate.getOperator(), COMPOSITE_ENTITY_NAME, predicate.getParameter(),
+                            parameterType == ColumnType.TEXT));
+                }
+            } else {
+                arguments.add(CodeBlock.of("new $T($S, $S, $S, $S, $L)", ColumnPredicate.class, predicate.getAlias(),
+                        predicate.getColumn(), predicate.getOperator(), predicate.getValue(), predicate.isString()));
+            }
+        }
+        return CodeBlock.join(arguments, ", ");
+    }
+
+    static void addDisplayResultMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            TypeName mfTableType, CodeBlock loopHeader, boolean groupNullable) {
         MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("displayResult")
                 .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(void.class).addParameter(mfTableType, MF_TABLE)
                 .addParameter(String.class, "csvFileName").addStatement("StringBuilder result = new StringBuilder()")
                 .addStatement("String header = $S", "").addStatement("String rowSeparator = $S", "")
                 .addStatement("boolean isCsv = csvFileName != null && !csvFileName.isEmpty()")
-                .addStatement("int lineNumber = 0")
-                .beginControlFlow("for ($T value : mfTable$L)", compositeType, methodCall)
+                .addStatement("int lineNumber = 0").addCode(loopHeader)
                 .beginControlFlow("if (lineNumber == 0)").addStatement("header = value.getHeaderString(isCsv)")
                 .addStatement("rowSeparator = isCsv ? $S : $T.getRowSeparator(header.length())", "", CommonUtils.class)
                 .addStatement("result.append(rowSeparator + header + rowSeparator)").addStatement("lineNumber++")
                 .endControlFlow();
 
-        if (parsedQuery.getHavingCondition() != null) {
-            methodSpecBuilder.beginControlFlow("if (!($L))", parsedQuery.getHavingCondition()).addStatement("continue")
-                    .endControlFlow();
+        if (parsedQuery.getHavingExpression() != null) {
+            methodSpecBuilder
+                    .beginControlFlow("if (!($L))", parsedQuery.getHavingExpression().toJava(true, groupNullable))
+                    .addStatement("continue").endControlFlow();
         }
         methodSpecBuilder.addStatement("result.append(value.getRowString(lineNumber, isCsv) + rowSeparator)")
                 .addStatement("lineNumber++").endControlFlow();
@@ -771,8 +1674,8 @@ public class CodeGenerator {
         entityBuilder.addMethod(methodSpecBuilder.build());
     }
 
-    private static void addStreamTableBlocksMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
-            TypeName compositeType, ParameterizedTypeName map, Set<TableInformation> sortedSet) {
+    static void addStreamTableBlocksMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            TypeName compositeType, TypeName map, QueryPlan plan) {
         MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("streamTableBlocks")
                 .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(void.class)
                 .addParameter(ClassName.get(PACKAGE, DAO_NAME), "dao").addParameter(map, MF_TABLE)
@@ -780,33 +1683,48 @@ public class CodeGenerator {
                 .addStatement("$T.requireNonNull(dao, \"DAO must not be null\")", Objects.class)
                 .addStatement("$T.requireNonNull(mfTable, \"MF Table must not be null\")", Objects.class);
 
-        String parameterTemplate = "resultSet_%s";
+        String parameterTemplate = "cursor_%s";
         String listTemplate = "rows_%s";
         int loopCount = 0;
 
-        for (TableInformation entry : sortedSet) {
+        methodSpecBuilder.addStatement("$T newRow = new $T()", compositeType, compositeType);
+
+        for (TableInformation entry : plan.getScanOrder()) {
             String parameterName = String.format(parameterTemplate, entry.getAlias());
             String listName = String.format(listTemplate, entry.getAlias());
             TypeName className = ClassName.get(PACKAGE, entry.getClassName());
-            methodSpecBuilder.addParameter(ResultSet.class, parameterName)
+            methodSpecBuilder.addParameter(RelationCursor.class, parameterName)
                     .addStatement("$T<$T> $L", List.class, className, listName)
                     .beginControlFlow("while (!($L = dao.get$LRows($L)).isEmpty())", listName, entry.getClassName(),
                             parameterName)
-                    .beginControlFlow("for($T $L : $L)", className, entry.getAlias(), listName);
+                    .addCode(countStatement(plan, "COUNTERS.fetched(groupNumber, $L, $L.size())", loopCount / 2,
+                            listName));
+            if (loopCount == 0) {
+                methodSpecBuilder.addCode(countStatement(plan, "long blockStart = System.nanoTime()"));
+            }
+            methodSpecBuilder.beginControlFlow("for($T $L : $L)", className, entry.getAlias(), listName)
+                    .addStatement("newRow.setAttributes_$L($L)", entry.getAlias(), entry.getAlias());
             loopCount += 2;
         }
 
-        methodSpecBuilder.addStatement("$T newRow = new $T($L)", compositeType, compositeType,
-                String.join(", ", parsedQuery.getRelations().keySet()));
-
-        if (parsedQuery.getSelectConditions() != null) {
-            methodSpecBuilder.beginControlFlow("if($L)", parsedQuery.getSelectConditions())
+        if (parsedQuery.getSelectExpression() != null) {
+            methodSpecBuilder.beginControlFlow("if($L)", parsedQuery.getSelectExpression().toJava(true, true))
+                    .addCode(countStatement(plan, "COUNTERS.selected(groupNumber, 1)"))
                     .addStatement("computeGroups(mfTable, newRow, groupNumber)").endControlFlow();
         } else {
-            methodSpecBuilder.addStatement("computeGroups(mfTable, newRow, groupNumber)");
+            methodSpecBuilder.addCode(countStatement(plan, "COUNTERS.selected(groupNumber, 1)"))
+                    .addStatement("computeGroups(mfTable, newRow, groupNumber)");
         }
 
         while (loopCount > 0) {
+            if (loopCount == 1) {
+                // Only the first pass creates groups, they are accounted after
+                // every block so that the MF-Table stops growing at the budget
+                methodSpecBuilder.beginControlFlow("if (groupNumber == 0)")
+                        .addStatement("checkMemory(mfTable.size())").endControlFlow();
+                methodSpecBuilder.addCode(
+                        countStatement(plan, "COUNTERS.block(groupNumber, System.nanoTime() - blockStart)"));
+            }
             methodSpecBuilder.endControlFlow();
             loopCount--;
         }
@@ -816,52 +1734,81 @@ public class CodeGenerator {
     }
 
     private static void addComputeGroupsMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
-            TypeName compositeType, ParameterizedTypeName mfTableType) {
+            TypeName compositeType, TypeName groupStateType, ParameterizedTypeName mfTableType, QueryPlan plan) {
         MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("computeGroups")
                 .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(void.class).addParameter(mfTableType, MF_TABLE)
                 .addParameter(compositeType, NEW_ROW).addParameter(int.class, "groupNumber")
                 .beginControlFlow("if (groupNumber == 0)");
+        String loopHeader;
+
+        if (plan.isSharded()) {
+            // The groups of other shards are created by the other workers
+            methodSpecBuilder.beginControlFlow("if (!isOwned(newRow))").addStatement("return").endControlFlow();
+        }
 
         if (parsedQuery.getOrderByAttributes().isEmpty()) {
+            methodSpecBuilder.addStatement("PROBE.copyFrom(newRow)")
+                    .addStatement("$T value = mfTable.get(PROBE)", groupStateType)
+                    .beginControlFlow("if (value == null)").addStatement("value = new $T(newRow)", groupStateType)
+                    .addStatement("mfTable.put(value, value)").endControlFlow();
             if (parsedQuery.getGroups().containsKey("0")) {
-                methodSpecBuilder.addStatement("$T value = mfTable.computeIfAbsent(newRow.hashCode(), k -> newRow)",
-                        compositeType).addStatement("value.incrementAggregates__0(newRow)");
-            } else {
-                methodSpecBuilder.addStatement("mfTable.computeIfAbsent(newRow.hashCode(), k -> newRow)");
+                addAggregateUpdate(methodSpecBuilder, parsedQuery, plan, "value", "0");
             }
-
-            methodSpecBuilder.addStatement("return").endControlFlow().addCode(System.lineSeparator())
-                    .beginControlFlow("for ($T group : mfTable.values())", compositeType);
+            loopHeader = "for ($T group : mfTable.values())";
         } else {
-            methodSpecBuilder.beginControlFlow("if(!mfTable.contains($L))", NEW_ROW).addStatement("mfTable.add(newRow)")
-                    .endControlFlow();
+            methodSpecBuilder.addStatement("PROBE.copyFrom(newRow)").beginControlFlow("if(!mfTable.contains(PROBE))")
+                    .addStatement("mfTable.add(new $T(newRow))", groupStateType).endControlFlow();
             if (parsedQuery.getGroups().containsKey("0")) {
-                methodSpecBuilder.beginControlFlow("for ($T group : mfTable)", compositeType)
-                        .addStatement("value.incrementAggregates__0(newRow)").endControlFlow();
+                methodSpecBuilder.beginControlFlow("for ($T group : mfTable)", groupStateType);
+                addAggregateUpdate(methodSpecBuilder, parsedQuery, plan, "group", "0");
+                methodSpecBuilder.endControlFlow();
             }
-
-            methodSpecBuilder.addStatement("return").endControlFlow().addCode(System.lineSeparator())
-                    .beginControlFlow("for ($T group : mfTable)", compositeType);
+            loopHeader = "for ($T group : mfTable)";
         }
 
-        String methodStub = "group.incrementAggregates__%s(newRow)";
+        methodSpecBuilder.addStatement("return").endControlFlow().addCode(System.lineSeparator());
 
-        if (parsedQuery.getExecutionGroups().size() == 1) {
-            for (String group : parsedQuery.getExecutionGroups().get(1)) {
-                methodSpecBuilder.addStatement(String.format(methodStub, group));
-            }
-            entityBuilder.addMethod(methodSpecBuilder.endControlFlow().build());
-            return;
-        }
+        boolean isSinglePass = parsedQuery.getExecutionGroups().size() == 1;
 
         for (Entry<Integer, Set<String>> entry : parsedQuery.getExecutionGroups().entrySet()) {
-            methodSpecBuilder.beginControlFlow("if (groupNumber == $L)", entry.getKey());
+            if (!isSinglePass) {
+                methodSpecBuilder.beginControlFlow("if (groupNumber == $L)", entry.getKey());
+            }
+
+            List<String> scannedGroups = new ArrayList<>();
+            List<String> probedGroups = new ArrayList<>();
             for (String group : entry.getValue()) {
-                methodSpecBuilder.addStatement(String.format(methodStub, group));
+                if (plan.isProbed(group)) {
+                    probedGroups.add(group);
+                } else {
+                    scannedGroups.add(group);
+                }
+            }
+
+            // Only the group with the grouping attributes of the row can match
+            if (!probedGroups.isEmpty()) {
+                methodSpecBuilder.addStatement("PROBE.copyFrom(newRow)")
+                        .addStatement("$T match = mfTable.get(PROBE)", groupStateType)
+                        .beginControlFlow("if (match != null)");
+                for (String group : probedGroups) {
+                    addAggregateUpdate(methodSpecBuilder, parsedQuery, plan, "match", group);
+                }
+                methodSpecBuilder.endControlFlow();
+            }
+
+            if (!scannedGroups.isEmpty()) {
+                methodSpecBuilder.beginControlFlow(loopHeader, groupStateType);
+                for (String group : scannedGroups) {
+                    addAggregateUpdate(methodSpecBuilder, parsedQuery, plan, "group", group);
+                }
+                methodSpecBuilder.endControlFlow();
+            }
+
+            if (!isSinglePass) {
+                methodSpecBuilder.endControlFlow();
             }
-            methodSpecBuilder.endControlFlow();
         }
-        entityBuilder.addMethod(methodSpecBuilder.endControlFlow().build());
+        entityBuilder.addMethod(methodSpecBuilder.build());
 
     }
 }
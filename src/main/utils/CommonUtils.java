@@ -1,6 +1,10 @@
 package main.utils;
 
 import java.text.DecimalFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.logging.Logger;
 
 /**
@@ -21,7 +25,10 @@ public class CommonUtils {
 
     public static final String ROW_NUM_FORMAT = "|%1$3.3s|";
 
-    public static final String DB_PROPERTIES = "./resources/database.properties";
+    // Another properties file can be given with -DpropertiesFile=<path>, e.g. by
+    // the benchmarks
+    public static final String DB_PROPERTIES = System.getProperty("propertiesFile",
+            "./resources/database.properties");
 
     private CommonUtils() {
         // Private constructor to prevent object creation of this class.
@@ -175,6 +182,31 @@ public class CommonUtils {
         return candidate;
     }
 
+    /**
+     * Converts a date stored as the number of days since 1970-01-01 to ISO text.
+     *
+     * @param epochDay
+     * @return date or null
+     */
+    public static String formatDate(Integer epochDay) {
+        return epochDay == null ? null : LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    /**
+     * Converts a timestamp stored as the number of milliseconds since 1970-01-01
+     * UTC to ISO text.
+     *
+     * @param epochMillis
+     * @return timestamp or null
+     */
+    public static String formatTimestamp(Long epochMillis) {
+        if (epochMillis == null) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC).toString().replace('T',
+                ' ');
+    }
+
     /**
      * Generate a row separator string.
      *
@@ -0,0 +1,258 @@
+package main.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import main.parser.GroupingInformation;
+import main.parser.ParsedQuery;
+import main.parser.SqlNode;
+import main.parser.TableInformation;
+
+/**
+ * Decides which string columns are carried as dictionary ids instead of strings.
+ * A string column is encoded if it is a grouping attribute or is compared for
+ * equality, and it is only ever compared for equality with other encoded columns
+ * or string constants. Columns compared with parameters stay strings, as their
+ * values are only bound at execution. Encoded columns are stored as Integer in
+ * the generated classes, so that group keys, hashing and conditions work on
+ * ids. Every run of the engine encodes the values in a StringDictionary of its
+ * own and decodes them through it when results are printed or ordered.
+ *
+ * @author R&B
+ *
+ */
+public class DictionaryEncoding {
+
+    private static final String CONSTANT_PREFIX = "ENCODED_";
+
+    private DictionaryEncoding() {
+        // Private constructor to prevent object creation
+    }
+
+    /**
+     * Encodes the eligible string columns of the query. Must be called after the
+     * data types of the columns are known and before any class is generated.
+     *
+     * @param parsedQuery
+     */
+    public static void apply(ParsedQuery parsedQuery) {
+        List<SqlNode> conditions = getConditions(parsedQuery);
+        Set<String> stringColumns = getStringColumns(parsedQuery);
+
+        Set<String> candidates = new HashSet<>();
+        for (String attribute : parsedQuery.getGroupingAttributes()) {
+            if (stringColumns.contains(attribute)) {
+                candidates.add(attribute);
+            }
+        }
+
+        // Comparisons for equality of fields and string constants, and the
+        // fields used in any other way
+        List<SqlNode.Comparison> equalities = new ArrayList<>();
+        Set<String> otherUses = new HashSet<>();
+        for (SqlNode condition : conditions) {
+            collectComparisons(condition, equalities, otherUses);
+        }
+
+        // Pairs of fields compared for equality, a null element is a constant.
+        List<String[]> pairs = new ArrayList<>();
+        for (SqlNode.Comparison equality : equalities) {
+            String[] pair = { ParsedQuery.toField(equality.getLhs()), ParsedQuery.toField(equality.getRhs()) };
+            for (String field : pair) {
+                if (stringColumns.contains(field)) {
+                    candidates.add(field);
+                }
+            }
+            pairs.add(pair);
+        }
+
+        removeNonEqualityUses(candidates, otherUses, parsedQuery);
+
+        // Both sides of a comparison must agree on the representation.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (String[] pair : pairs) {
+                boolean first = pair[0] == null || isEncoded(pair[0], candidates);
+                boolean second = pair[1] == null || isEncoded(pair[1], candidates);
+                if (first != second) {
+                    changed |= candidates.remove(baseColumn(pair[0])) | candidates.remove(baseColumn(pair[1]));
+                }
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        encodeColumns(parsedQuery, candidates);
+        encodeConstants(parsedQuery, equalities);
+    }
+
+    private static List<SqlNode> getConditions(ParsedQuery parsedQuery) {
+        List<SqlNode> conditions = new ArrayList<>();
+        if (parsedQuery.getStatement().getWhereCondition() != null) {
+            conditions.add(parsedQuery.getStatement().getWhereCondition());
+        }
+        if (parsedQuery.getStatement().getHavingCondition() != null) {
+            conditions.add(parsedQuery.getStatement().getHavingCondition());
+        }
+        for (GroupingInformation group : parsedQuery.getGroups().values()) {
+            conditions.addAll(group.getBoundryConditions());
+        }
+        return conditions;
+    }
+
+    /**
+     * Splits the comparisons of a condition into those for equality of fields
+     * and string constants, and the fields used by all other comparisons.
+     */
+    private static void collectComparisons(SqlNode condition, List<SqlNode.Comparison> equalities,
+            Set<String> otherUses) {
+        if (condition instanceof SqlNode.Logical) {
+            for (SqlNode operand : ((SqlNode.Logical) condition).getOperands()) {
+                collectComparisons(operand, equalities, otherUses);
+            }
+            return;
+        }
+
+        SqlNode.Comparison comparison = (SqlNode.Comparison) condition;
+        boolean isEquality = comparison.getOperator().equals("=") || comparison.getOperator().equals("!=")
+                || comparison.getOperator().equals("<>");
+        if (isEquality && isOperand(comparison.getLhs()) && isOperand(comparison.getRhs())) {
+            equalities.add(comparison);
+        } else {
+            collectFields(comparison, otherUses);
+        }
+    }
+
+    private static boolean isOperand(SqlNode value) {
+        return ParsedQuery.toField(value) != null || isStringConstant(value);
+    }
+
+    private static boolean isStringConstant(SqlNode value) {
+        return value instanceof SqlNode.Constant && ((SqlNode.Constant) value).isString();
+    }
+
+    private static void collectFields(SqlNode value, Set<String> fields) {
+        if (ParsedQuery.toField(value) != null) {
+            fields.add(ParsedQuery.toField(value));
+        } else if (value instanceof SqlNode.Comparison) {
+            collectFields(((SqlNode.Comparison) value).getLhs(), fields);
+            collectFields(((SqlNode.Comparison) value).getRhs(), fields);
+        } else if (value instanceof SqlNode.Arithmetic) {
+            collectFields(((SqlNode.Arithmetic) value).getLhs(), fields);
+            collectFields(((SqlNode.Arithmetic) value).getRhs(), fields);
+        }
+    }
+
+    private static Set<String> getStringColumns(ParsedQuery parsedQuery) {
+        Set<String> stringColumns = new HashSet<>();
+        for (Entry<String, TableInformation> relation : parsedQuery.getRelations().entrySet()) {
+            for (Entry<String, Class<?>> column : relation.getValue().getRequiredColumns().entrySet()) {
+                if (String.class.equals(column.getValue())) {
+                    stringColumns.add(CommonUtils.append(column.getKey(), "", relation.getKey(), "_"));
+                }
+            }
+        }
+        return stringColumns;
+    }
+
+    /**
+     * Drops columns that are used in any way other than an equality comparison,
+     * or that are aggregated by anything but count.
+     */
+    private static void removeNonEqualityUses(Set<String> candidates, Set<String> otherUses,
+            ParsedQuery parsedQuery) {
+        for (String field : otherUses) {
+            candidates.remove(baseColumn(field));
+        }
+
+        for (GroupingInformation group : parsedQuery.getGroups().values()) {
+            for (String aggregate : group.getAggregates()) {
+                String[] components = CodeGenerator.extractComponents(aggregate);
+                if (!components[2].isEmpty() && !components[2].equals(CodeGenerator.COUNT)) {
+                    candidates.remove(CommonUtils.append(components[1], "", components[0], "_"));
+                }
+            }
+        }
+    }
+
+    private static void encodeColumns(ParsedQuery parsedQuery, Set<String> columns) {
+        for (Entry<String, TableInformation> relation : parsedQuery.getRelations().entrySet()) {
+            for (String column : new ArrayList<>(relation.getValue().getRequiredColumns().keySet())) {
+                String field = CommonUtils.append(column, "", relation.getKey(), "_");
+                if (columns.contains(field)) {
+                    relation.getValue().encodeColumn(column);
+                    parsedQuery.addEncodedField(field);
+                }
+            }
+        }
+
+        // Plain values of encoded columns copied by grouping variables
+        for (GroupingInformation group : parsedQuery.getGroups().values()) {
+            for (String aggregate : group.getAggregates()) {
+                if (isEncoded(aggregate, columns)) {
+                    parsedQuery.addEncodedField(aggregate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Declares a constant holding the id of every string constant compared with
+     * an encoded column. The conditions read the constants declared in the
+     * composite entity instead of the strings.
+     */
+    private static void encodeConstants(ParsedQuery parsedQuery, List<SqlNode.Comparison> equalities) {
+        Map<String, String> constants = new LinkedHashMap<>();
+        Map<String, String> names = new HashMap<>();
+
+        for (SqlNode.Comparison equality : equalities) {
+            encodeOperand(equality.getLhs(), equality.getRhs(), parsedQuery, constants, names);
+            encodeOperand(equality.getRhs(), equality.getLhs(), parsedQuery, constants, names);
+        }
+
+        for (Entry<String, String> constant : constants.entrySet()) {
+            parsedQuery.addEncodedConstant(constant.getKey(), constant.getValue());
+        }
+    }
+
+    private static void encodeOperand(SqlNode operand, SqlNode otherOperand, ParsedQuery parsedQuery,
+            Map<String, String> constants, Map<String, String> names) {
+        if (!isStringConstant(operand)
+                || !parsedQuery.getEncodedFields().contains(ParsedQuery.toField(otherOperand))) {
+            return;
+        }
+
+        String value = ((SqlNode.Constant) operand).getValue();
+        String name = names.computeIfAbsent(value, k -> CONSTANT_PREFIX + names.size());
+        constants.put(name, value);
+    }
+
+    /**
+     * Returns the column field of a column or of a plain value copied from the
+     * column by a grouping variable, e.g. cust_S for cust_S_x.
+     */
+    private static String baseColumn(String field) {
+        if (field == null) {
+            return null;
+        }
+
+        String[] components = field.split("_");
+        if (components.length != 3 || components[0].matches(CodeGenerator.AGGREGATE_REGEX)) {
+            return field;
+        }
+        return CommonUtils.append(components[0], "", components[1], "_");
+    }
+
+    private static boolean isEncoded(String field, Set<String> columns) {
+        return columns.contains(field) || columns.contains(baseColumn(field));
+    }
+}
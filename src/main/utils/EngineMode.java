@@ -0,0 +1,63 @@
+package main.utils;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The evaluation engine variants that can be generated. The mode is read from
+ * the "engineMode" property of the properties file.
+ *
+ * @author R&B
+ *
+ */
+public enum EngineMode {
+
+    /**
+     * MF-Table of GroupState objects held in a java collection.
+     */
+    DEFAULT("default"),
+
+    /**
+     * MF-Table of fixed width records stored in off-heap memory owned by the
+     * query.
+     */
+    OFF_HEAP("offHeap"),
+
+    /**
+     * MF-Table of off-heap records updated a block of rows at a time from
+     * primitive column arrays.
+     */
+    VECTORIZED("vectorized");
+
+    private static final Logger LOG = Logger.getLogger(EngineMode.class.getCanonicalName());
+
+    private final String propertyValue;
+
+    private EngineMode(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    public String getPropertyValue() {
+        return propertyValue;
+    }
+
+    /**
+     * Resolves the engine mode from the properties. Defaults to DEFAULT if the
+     * property is missing or unknown.
+     *
+     * @param properties
+     * @return EngineMode
+     */
+    public static EngineMode fromProperties(Properties properties) {
+        String value = properties.getProperty("engineMode", DEFAULT.propertyValue).trim();
+        for (EngineMode mode : values()) {
+            if (mode.propertyValue.equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+
+        LOG.log(Level.WARNING, "Unknown engine mode \"{0}\". Using default.", value);
+        return DEFAULT;
+    }
+}
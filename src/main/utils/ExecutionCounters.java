@@ -0,0 +1,134 @@
+package main.utils;
+
+import java.util.Locale;
+
+/**
+ * Counts what an evaluation engine generated with the analyze option does: the
+ * rows fetched per relation and the rows passing the where clause per pass, the
+ * such that evaluations and matches per grouping variable, the groups created
+ * and the wall time per pass and per block. Relations and grouping variables
+ * are identified by their index in the arrays passed to the constructor.
+ *
+ * @author R&B
+ *
+ */
+public class ExecutionCounters {
+
+    private static final String LINE_FEED = System.lineSeparator();
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String[] relations;
+
+    private final String[] groups;
+
+    private final long[][] fetchedRows;
+
+    private final long[] selectedRows;
+
+    private final long[] passNanos;
+
+    private final long[] blocks;
+
+    private final long[] blockNanos;
+
+    private final long[] maxBlockNanos;
+
+    private final long[] evaluations;
+
+    private final long[] matches;
+
+    private long groupsCreated;
+
+    private long passStart;
+
+    public ExecutionCounters(int passes, String[] relations, String[] groups) {
+        this.relations = relations;
+        this.groups = groups;
+        this.fetchedRows = new long[passes][relations.length];
+        this.selectedRows = new long[passes];
+        this.passNanos = new long[passes];
+        this.blocks = new long[passes];
+        this.blockNanos = new long[passes];
+        this.maxBlockNanos = new long[passes];
+        this.evaluations = new long[groups.length];
+        this.matches = new long[groups.length];
+    }
+
+    public void startPass() {
+        passStart = System.nanoTime();
+    }
+
+    public void endPass(int pass) {
+        passNanos[pass] += System.nanoTime() - passStart;
+    }
+
+    public void fetched(int pass, int relation, int rows) {
+        fetchedRows[pass][relation] += rows;
+    }
+
+    public void selected(int pass, int rows) {
+        selectedRows[pass] += rows;
+    }
+
+    public void block(int pass, long nanos) {
+        blocks[pass]++;
+        blockNanos[pass] += nanos;
+        maxBlockNanos[pass] = Math.max(maxBlockNanos[pass], nanos);
+    }
+
+    public void evaluated(int group, long count) {
+        evaluations[group] += count;
+    }
+
+    public void matched(int group) {
+        matches[group]++;
+    }
+
+    public void matched(int group, long count) {
+        matches[group] += count;
+    }
+
+    public void groupsCreated(long count) {
+        groupsCreated = count;
+    }
+
+    /**
+     * Describes the counts in the layout of the explained plan.
+     *
+     * @return report
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("Execution:").append(LINE_FEED);
+
+        for (int pass = 0; pass < passNanos.length; pass++) {
+            if (passNanos[pass] == 0 && blocks[pass] == 0) {
+                continue;
+            }
+
+            report.append("  Pass ").append(pass).append(": ").append(millis(passNanos[pass])).append(LINE_FEED);
+            for (int relation = 0; relation < relations.length; relation++) {
+                report.append("    ").append(fetchedRows[pass][relation]).append(" rows fetched from ")
+                        .append(relations[relation]).append(LINE_FEED);
+            }
+            report.append("    ").append(selectedRows[pass]).append(" rows passed the where clause")
+                    .append(LINE_FEED);
+            if (blocks[pass] > 0) {
+                report.append("    ").append(blocks[pass]).append(" blocks, ")
+                        .append(millis(blockNanos[pass] / blocks[pass])).append(" average, ")
+                        .append(millis(maxBlockNanos[pass])).append(" maximum per block").append(LINE_FEED);
+            }
+        }
+
+        report.append("  Groups created: ").append(groupsCreated).append(LINE_FEED);
+        for (int group = 0; group < groups.length; group++) {
+            report.append("  Grouping variable ").append(groups[group]).append(": ").append(evaluations[group])
+                    .append(" evaluations, ").append(matches[group]).append(" matches").append(LINE_FEED);
+        }
+        return report.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,131 @@
+package main.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events of a run, so that the samples of a recording can
+ * be attributed to the parsing, the code generation, the compilation, the
+ * passes of the evaluation engine and the blocks fetched. The events are only
+ * committed while a recording has them enabled, otherwise creating and ending
+ * them costs next to nothing.
+ *
+ * @author R&B
+ *
+ */
+public class FlightEvents {
+
+    private static final String CATEGORY = "EMF";
+
+    private FlightEvents() {
+        // Private constructor to prevent object creation
+    }
+
+    @Name("emf.QueryParse")
+    @Label("Query Parse")
+    @Category({ CATEGORY, "Planning" })
+    public static class QueryParse extends Event {
+
+        @Label("Relations")
+        int relations;
+
+        @Label("Grouping Variables")
+        int groupingVariables;
+
+        public void record(int relations, int groupingVariables) {
+            if (shouldCommit()) {
+                this.relations = relations;
+                this.groupingVariables = groupingVariables;
+                commit();
+            }
+        }
+    }
+
+    @Name("emf.CodeGeneration")
+    @Label("Code Generation")
+    @Description("A create step of the code generator, including the compilation of its classes")
+    @Category({ CATEGORY, "Planning" })
+    public static class CodeGeneration extends Event {
+
+        @Label("Step")
+        String step;
+
+        public void record(String step) {
+            if (shouldCommit()) {
+                this.step = step;
+                commit();
+            }
+        }
+    }
+
+    @Name("emf.Compilation")
+    @Label("Compilation")
+    @Category({ CATEGORY, "Planning" })
+    public static class Compilation extends Event {
+
+        @Label("Class Name")
+        String className;
+
+        public void record(String className) {
+            if (shouldCommit()) {
+                this.className = className;
+                commit();
+            }
+        }
+    }
+
+    @Name("emf.Pass")
+    @Label("Pass")
+    @Description("A scan of the relations by the evaluation engine")
+    @Category({ CATEGORY, "Execution" })
+    public static class Pass extends Event {
+
+        @Label("Pass")
+        int pass;
+
+        @Label("Rows Read")
+        long rows;
+
+        @Label("Groups")
+        long groups;
+
+        public static Pass start(int pass) {
+            Pass event = new Pass();
+            event.pass = pass;
+            event.begin();
+            return event;
+        }
+
+        public void record(long rows, long groups) {
+            if (shouldCommit()) {
+                this.rows = rows;
+                this.groups = groups;
+                commit();
+            }
+        }
+    }
+
+    @Name("emf.BlockFetch")
+    @Label("Block Fetch")
+    @Description("A block of rows read from a cursor, the duration is the fetch time")
+    @Category({ CATEGORY, "Execution" })
+    public static class BlockFetch extends Event {
+
+        @Label("Table")
+        String table;
+
+        @Label("Rows")
+        int rows;
+
+        public void record(String table, int rows) {
+            if (shouldCommit()) {
+                this.table = table;
+                this.rows = rows;
+                commit();
+            }
+        }
+    }
+}
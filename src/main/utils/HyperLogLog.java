@@ -0,0 +1,86 @@
+package main.utils;
+
+/**
+ * Estimates the number of distinct values seen with a fixed amount of memory.
+ * Every value is hashed to 64 bits, the first bits select one of 4096
+ * registers and the register keeps the longest run of leading zeros seen in
+ * the remaining bits. The standard error of the estimate is about 1.6%.
+ *
+ * @author R&B
+ *
+ */
+public class HyperLogLog {
+
+    private static final int PRECISION = 12;
+
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        registers = new byte[REGISTERS];
+    }
+
+    /**
+     * Adds a value. Equal values of the same type have the same hash, an
+     * Integer and a Long of the same value count as one value.
+     *
+     * @param value not null
+     */
+    public void add(Object value) {
+        long bits;
+        if (value instanceof Double) {
+            bits = Double.doubleToLongBits((Double) value);
+        } else if (value instanceof Number) {
+            bits = ((Number) value).longValue();
+        } else {
+            // String caches its hash code, so repeated values are not rehashed
+            bits = value.hashCode();
+        }
+        addHash(mix(bits));
+    }
+
+    private void addHash(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values. Small counts are
+     * estimated from the number of empty registers, which is more accurate
+     * while most registers are empty.
+     *
+     * @return estimate
+     */
+    public double estimate() {
+        double sum = 0;
+        int empty = 0;
+        for (byte rank : registers) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                empty++;
+            }
+        }
+
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && empty > 0) {
+            return REGISTERS * Math.log((double) REGISTERS / empty);
+        }
+        return estimate;
+    }
+
+    // Finalizer of MurmurHash3, spreads similar values over all bits
+    private static long mix(long bits) {
+        bits ^= bits >>> 33;
+        bits *= 0xff51afd7ed558ccdL;
+        bits ^= bits >>> 33;
+        bits *= 0xc4ceb9fe1a85ec53L;
+        bits ^= bits >>> 33;
+        return bits;
+    }
+}
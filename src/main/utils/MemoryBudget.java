@@ -0,0 +1,184 @@
+package main.utils;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import main.readwrite.ReadWrite;
+
+/**
+ * Accounts the memory held by the MF-Tables and the cached tables of all
+ * queries running in the process against one budget. A query is admitted with
+ * the bytes estimated for its groups, which are reserved until it releases
+ * them, so that concurrent queries only see what is left. While the query runs
+ * the reservation grows with the groups actually created and fails once the
+ * budget is used up.
+ *
+ * The budget is given in MB by the "memoryBudget" property, 0 for three
+ * quarters of the maximum heap. A worker process is given its share of the
+ * budget with -DmemoryBudget=&lt;bytes&gt;.
+ *
+ * @author R&B
+ *
+ */
+public class MemoryBudget {
+
+    public static final String BUDGET_PROPERTY = "memoryBudget";
+
+    private static final String DEFAULT_BUDGET = "0";
+
+    private static final long BYTES_PER_MB = 1 << 20;
+
+    // Grown in steps, so that a growing MF-Table rarely touches the shared count
+    private static final long RESERVATION_STEP = 1 << 20;
+
+    private static final AtomicLong RESERVED = new AtomicLong();
+
+    private static final AtomicLong PEAK = new AtomicLong();
+
+    private static final long LIMIT = readLimit();
+
+    private final String name;
+
+    private final long groupBytes;
+
+    private long reserved;
+
+    private long used;
+
+    /**
+     * Creates the account of a query or cache, holding no memory yet.
+     *
+     * @param name       name of the query or cache in messages
+     * @param groupBytes estimated bytes of a group, 0 for a cache
+     */
+    public MemoryBudget(String name, long groupBytes) {
+        this.name = name;
+        this.groupBytes = groupBytes;
+    }
+
+    private static long readLimit() {
+        String share = System.getProperty(BUDGET_PROPERTY);
+        if (share != null) {
+            return Long.parseLong(share);
+        }
+
+        Properties properties = ReadWrite.readProperties(CommonUtils.DB_PROPERTIES);
+        long megabytes = Long.parseLong(properties.getProperty(BUDGET_PROPERTY, DEFAULT_BUDGET));
+        return megabytes > 0 ? megabytes * BYTES_PER_MB : Runtime.getRuntime().maxMemory() / 4 * 3;
+    }
+
+    /**
+     * Returns the bytes all queries of the process may hold together.
+     *
+     * @return budget
+     */
+    public static long getLimit() {
+        return LIMIT;
+    }
+
+    /**
+     * Returns the bytes reserved by all queries of the process.
+     *
+     * @return reserved bytes
+     */
+    public static long getReservedBytes() {
+        return RESERVED.get();
+    }
+
+    /**
+     * Returns the most bytes reserved by all queries of the process at once.
+     *
+     * @return peak reserved bytes
+     */
+    public static long getPeakBytes() {
+        return PEAK.get();
+    }
+
+    private static boolean reserveShared(long bytes) {
+        long current;
+        do {
+            current = RESERVED.get();
+            if (current + bytes > LIMIT) {
+                return false;
+            }
+        } while (!RESERVED.compareAndSet(current, current + bytes));
+        PEAK.accumulateAndGet(current + bytes, Math::max);
+        return true;
+    }
+
+    /**
+     * Admits the query if its estimated bytes fit into what the other queries
+     * leave of the budget, and reserves them.
+     *
+     * @param estimatedBytes
+     * @return true if admitted
+     */
+    public boolean admit(long estimatedBytes) {
+        return grow(estimatedBytes, 0);
+    }
+
+    /**
+     * Accounts the groups of the MF-Table, reserving more of the budget when
+     * they need more bytes than reserved so far.
+     *
+     * @param groups groups held by the query
+     * @return false if the groups exceed the budget
+     */
+    public boolean track(long groups) {
+        return reserve(groups * groupBytes);
+    }
+
+    /**
+     * Makes sure at least the given bytes are reserved for the query.
+     *
+     * @param bytes bytes held by the query
+     * @return false if they exceed the budget
+     */
+    public boolean reserve(long bytes) {
+        if (!grow(bytes, RESERVATION_STEP)) {
+            return false;
+        }
+        used = Math.max(used, bytes);
+        return true;
+    }
+
+    private boolean grow(long bytes, long step) {
+        if (bytes <= reserved) {
+            return true;
+        }
+
+        long missing = bytes - reserved;
+        if (step > 0 && reserveShared(missing + step)) {
+            reserved += missing + step;
+            return true;
+        }
+        if (reserveShared(missing)) {
+            reserved += missing;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hands the reserved bytes back to the budget.
+     */
+    public void release() {
+        RESERVED.addAndGet(-reserved);
+        reserved = 0;
+    }
+
+    /**
+     * Returns the most bytes the query has held so far.
+     *
+     * @return bytes
+     */
+    public long getUsedBytes() {
+        return used;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s holds %d MB, %d of %d MB reserved by all queries", name, used / BYTES_PER_MB,
+                RESERVED.get() / BYTES_PER_MB, LIMIT / BYTES_PER_MB);
+    }
+}
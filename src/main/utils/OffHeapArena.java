@@ -0,0 +1,125 @@
+package main.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Owns the off-heap memory of a single query. Group records of a fixed size are
+ * carved out of large direct memory slabs, so the garbage collector only sees a
+ * handful of slab objects irrespective of the number of groups. All slabs are
+ * released together when the arena is closed.
+ *
+ * @author R&B
+ *
+ */
+public class OffHeapArena implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(OffHeapArena.class.getCanonicalName());
+
+    private static final int SLAB_SIZE = 1 << 20;
+
+    // Frees direct buffers eagerly. Resolved once as it is not part of the public
+    // API.
+    private static final Method INVOKE_CLEANER;
+
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.log(Level.CONFIG, "Direct buffers will be released by the garbage collector.", e);
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final int recordSize;
+
+    private final int recordsPerSlab;
+
+    private final List<ByteBuffer> slabs;
+
+    private final StringDictionary dictionary;
+
+    private int size;
+
+    public OffHeapArena(int recordSize) {
+        this.recordSize = recordSize;
+        this.recordsPerSlab = Math.max(1, SLAB_SIZE / recordSize);
+        this.slabs = new ArrayList<>();
+        this.dictionary = new StringDictionary();
+    }
+
+    /**
+     * Reserves a zero filled record and returns its index.
+     *
+     * @return record index
+     */
+    public int allocate() {
+        if (size == slabs.size() * recordsPerSlab) {
+            slabs.add(ByteBuffer.allocateDirect(recordsPerSlab * recordSize).order(ByteOrder.nativeOrder()));
+        }
+        return size++;
+    }
+
+    public ByteBuffer slab(int record) {
+        return slabs.get(record / recordsPerSlab);
+    }
+
+    public int offset(int record) {
+        return (record % recordsPerSlab) * recordSize;
+    }
+
+    public int encode(String value) {
+        return dictionary.encode(value);
+    }
+
+    public String decode(int id) {
+        return dictionary.decode(id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getAllocatedBytes() {
+        return (long) slabs.size() * recordsPerSlab * recordSize;
+    }
+
+    /**
+     * Releases all slabs in one shot. The arena must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        for (ByteBuffer slab : slabs) {
+            release(slab);
+        }
+        slabs.clear();
+        size = 0;
+    }
+
+    private static void release(ByteBuffer slab) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, slab);
+        } catch (ReflectiveOperationException e) {
+            LOG.log(Level.CONFIG, "Could not release direct buffer.", e);
+        }
+    }
+}
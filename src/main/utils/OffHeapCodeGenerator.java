@@ -0,0 +1,570 @@
+package main.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import main.parser.Expression;
+import main.parser.GroupingInformation;
+import main.parser.ParsedQuery;
+
+/**
+ * Generates an evaluation engine that keeps the MF-Table in off-heap memory. A
+ * fixed width record layout is computed from the grouping attributes and the
+ * aggregates. The generated GroupRecord class is a flyweight that reads and
+ * updates one record at a time and the generated OffHeapMFTable indexes the
+ * records by their grouping attributes. All records belong to an arena that is
+ * freed when the query completes.
+ *
+ * @author R&B
+ *
+ */
+public class OffHeapCodeGenerator {
+
+    static final String RECORD_NAME = "GroupRecord";
+
+    static final String TABLE_NAME = "OffHeapMFTable";
+
+    private static final String OFFSET_SUFFIX = "_OFFSET";
+
+    private OffHeapCodeGenerator() {
+        // Private constructor to prevent object creation
+    }
+
+    /**
+     * Creates the GroupRecord, OffHeapMFTable and EvaluationEngine classes. The
+     * entities, CompositeEntity and DataAccessObject must have been created
+     * before.
+     *
+     * @param parsedQuery
+     * @param plan
+     */
+    public static void createEvaluationEngine(ParsedQuery parsedQuery, QueryPlan plan) {
+        RecordLayout layout = RecordLayout.of(parsedQuery);
+        TypeName compositeType = ClassName.get(CodeGenerator.PACKAGE, CodeGenerator.COMPOSITE_ENTITY_NAME);
+        ClassName recordType = ClassName.get(CodeGenerator.PACKAGE, RECORD_NAME);
+        ClassName tableType = ClassName.get(CodeGenerator.PACKAGE, TABLE_NAME);
+
+        createGroupRecord(parsedQuery, layout, compositeType, recordType, plan.isAnalyze());
+        createMFTable(parsedQuery, layout, compositeType, recordType, plan);
+
+        TypeSpec.Builder entityBuilder = TypeSpec.classBuilder(CodeGenerator.ENGINE_NAME)
+                .addModifiers(Modifier.PUBLIC);
+        entityBuilder.addField(CodeGenerator.getLogField(CodeGenerator.ENGINE_NAME));
+        addComputeGroupsMethod(entityBuilder, parsedQuery, compositeType, recordType, tableType, plan);
+        CodeGenerator.addStreamTableBlocksMethod(entityBuilder, parsedQuery, compositeType, tableType, plan);
+        CodeGenerator.addMainMethod(entityBuilder, parsedQuery, CodeBlock.of("$T mfTable = new $T()", tableType,
+                tableType), CodeBlock.builder().addStatement("mfTable.close()").build(), plan);
+        CodeGenerator.addDisplayResultMethod(entityBuilder, parsedQuery, tableType,
+                CodeBlock.builder().addStatement("$T value = mfTable.cursor()", recordType)
+                        .beginControlFlow("for (int record : mfTable.records())")
+                        .addStatement("value.position(record)").build(), true);
+
+        CodeGenerator.createAndCompileJavaFile(entityBuilder.build());
+    }
+
+    static void createGroupRecord(ParsedQuery parsedQuery, RecordLayout layout, TypeName compositeType,
+            ClassName recordType, boolean analyze) {
+        TypeSpec.Builder entity = TypeSpec.classBuilder(RECORD_NAME).addModifiers(Modifier.PUBLIC);
+
+        entity.addField(FieldSpec.builder(int.class, "RECORD_SIZE")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$L", layout.getRecordSize()).build());
+
+        for (String slot : layout.getSlots().keySet()) {
+            entity.addField(FieldSpec.builder(int.class, offsetName(slot))
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$L", layout.getOffset(slot)).build());
+        }
+
+        entity.addField(FieldSpec.builder(OffHeapArena.class, "arena").addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .build());
+        entity.addField(FieldSpec.builder(ByteBuffer.class, "buffer").addModifiers(Modifier.PRIVATE).build());
+        entity.addField(FieldSpec.builder(int.class, "base").addModifiers(Modifier.PRIVATE).build());
+
+        entity.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addParameter(OffHeapArena.class, "arena").addStatement("this.arena = arena").build());
+
+        entity.addMethod(MethodSpec.methodBuilder("position").addModifiers(Modifier.PUBLIC).returns(void.class)
+                .addParameter(int.class, "record").addStatement("this.buffer = arena.slab(record)")
+                .addStatement("this.base = arena.offset(record)").build());
+
+        for (Entry<String, Class<?>> slot : layout.getSlots().entrySet()) {
+            entity.addMethod(createSlotGetter(slot.getKey(), slot.getValue(), layout.getNullBit(slot.getKey())));
+            if (!isHeaderSlot(slot.getKey())) {
+                entity.addMethod(createSlotSetter(slot.getKey(), slot.getValue()));
+            }
+        }
+
+        if (!layout.getNullableSlots().isEmpty()) {
+            entity.addMethod(MethodSpec.methodBuilder("setNull").addModifiers(Modifier.PUBLIC).returns(void.class)
+                    .addParameter(int.class, "bit").addStatement("buffer.putInt(base + $L, $L() | bit)",
+                            offsetName(RecordLayout.NULLS_SLOT), getter(RecordLayout.NULLS_SLOT))
+                    .build());
+        }
+
+        addKeyMethods(entity, layout, compositeType);
+
+        for (Entry<String, GroupingInformation> group : parsedQuery.getGroups().entrySet()) {
+            entity.addMethod(
+                    createAggregateUpdater(group.getKey(), group.getValue(), layout, compositeType, analyze));
+        }
+
+        CodeBlock.Builder prologue = CodeBlock.builder();
+        for (Entry<String, Class<?>> slot : layout.getSlots().entrySet()) {
+            if (!isHeaderSlot(slot.getKey())) {
+                prologue.addStatement("$T $L = $L()", slotType(slot.getValue(), layout.getNullBit(slot.getKey())),
+                        slot.getKey(), getter(slot.getKey()));
+            }
+        }
+
+        CodeGenerator.addCompareToMetod(entity, recordType, CodeGenerator.getSortAttributes(parsedQuery),
+                parsedQuery.getOrderMultiplier(), parsedQuery.getEncodedFields());
+        CodeGenerator.addToStringMethod(entity, layout.getSlots(), parsedQuery.getProjections(),
+                parsedQuery.getHeaders(), prologue.build(), parsedQuery.getEncodedFields(),
+                parsedQuery.getTemporalFields());
+
+        CodeGenerator.createAndCompileJavaFile(entity.build());
+    }
+
+    /**
+     * Creates the getter of a slot. A column that may be null returns its boxed
+     * value, null when its bit is set in the null mask.
+     */
+    private static MethodSpec createSlotGetter(String slot, Class<?> dataType, int nullBit) {
+        MethodSpec.Builder getter = MethodSpec.methodBuilder(getter(slot)).addModifiers(Modifier.PUBLIC)
+                .returns(slotType(dataType, nullBit));
+
+        if (String.class.equals(dataType)) {
+            return getter.addStatement("return arena.decode(buffer.getInt(base + $L))", offsetName(slot)).build();
+        }
+
+        if (nullBit != 0) {
+            getter.beginControlFlow("if (($L() & $L) != 0)", getter(RecordLayout.NULLS_SLOT), nullBit)
+                    .addStatement("return null").endControlFlow();
+        }
+
+        return getter.addStatement("return buffer.get$L(base + $L)", accessor(dataType), offsetName(slot)).build();
+    }
+
+    private static MethodSpec createSlotSetter(String slot, Class<?> dataType) {
+        MethodSpec.Builder setter = MethodSpec.methodBuilder(CommonUtils.firstLetterToUpper(slot, "set", ""))
+                .addModifiers(Modifier.PUBLIC).returns(void.class).addParameter(javaType(dataType), "value");
+
+        if (String.class.equals(dataType)) {
+            return setter.addStatement("buffer.putInt(base + $L, arena.encode(value))", offsetName(slot)).build();
+        }
+
+        return setter.addStatement("buffer.put$L(base + $L, value)", accessor(dataType), offsetName(slot)).build();
+    }
+
+    /**
+     * Adds the methods used by the MF-Table to initialize and compare the raw key
+     * values of a record. String keys are compared by their dictionary ids, the
+     * other keys by their value and their bits of the null mask.
+     */
+    private static void addKeyMethods(TypeSpec.Builder entity, RecordLayout layout, TypeName compositeType) {
+        MethodSpec.Builder initialize = MethodSpec.methodBuilder("initialize").addModifiers(Modifier.PUBLIC)
+                .returns(void.class).addParameter(int.class, RecordLayout.HASH_SLOT)
+                .addStatement("buffer.putInt(base + $L, hash)", offsetName(RecordLayout.HASH_SLOT));
+
+        MethodSpec.Builder matches = MethodSpec.methodBuilder("matches").addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class).addParameter(int.class, RecordLayout.HASH_SLOT);
+
+        MethodSpec.Builder keyEquals = MethodSpec.methodBuilder("keyEquals").addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class).addParameter(compositeType, CodeGenerator.NEW_ROW);
+
+        List<String> rawComparisons = new ArrayList<>();
+        rawComparisons.add(String.format("buffer.getInt(base + %s) == hash", offsetName(RecordLayout.HASH_SLOT)));
+        List<CodeBlock> keyComparisons = new ArrayList<>();
+
+        if (!layout.getNullableSlots().isEmpty()) {
+            String nullsSlot = RecordLayout.NULLS_SLOT;
+            initialize.addParameter(int.class, nullsSlot).addStatement("buffer.putInt(base + $L, $L)",
+                    offsetName(nullsSlot), nullsSlot);
+            matches.addParameter(int.class, nullsSlot);
+            rawComparisons.add(String.format("(buffer.getInt(base + %s) & %d) == %s", offsetName(nullsSlot),
+                    getKeyNullMask(layout), nullsSlot));
+        }
+
+        for (String slot : layout.getKeySlots()) {
+            Class<?> dataType = layout.getSlots().get(slot);
+            String rawAccessor = String.format("buffer.get%s(base + %s)", accessor(dataType), offsetName(slot));
+
+            initialize.addParameter(rawType(dataType), slot).addStatement("buffer.put$L(base + $L, $L)",
+                    accessor(dataType), offsetName(slot), slot);
+            matches.addParameter(rawType(dataType), slot);
+
+            if (Double.class.equals(dataType)) {
+                rawComparisons.add(String.format("Double.compare(%s, %s) == 0", rawAccessor, slot));
+            } else {
+                rawComparisons.add(String.format("%s == %s", rawAccessor, slot));
+            }
+            keyComparisons.add(CodeBlock.of("$T.equals($L(), newRow.$L())", Objects.class, getter(slot),
+                    getter(slot)));
+        }
+
+        matches.addStatement("return $L", String.join(" && ", rawComparisons));
+        keyEquals.addStatement("return $L", CodeBlock.join(keyComparisons, " && "));
+
+        entity.addMethod(initialize.build());
+        entity.addMethod(matches.build());
+        entity.addMethod(keyEquals.build());
+    }
+
+    private static MethodSpec createAggregateUpdater(String groupName, GroupingInformation group,
+            RecordLayout layout, TypeName compositeType, boolean analyze) {
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("incrementAggregates__" + groupName)
+                .addModifiers(Modifier.PUBLIC).returns(analyze ? boolean.class : void.class)
+                .addParameter(compositeType, CodeGenerator.NEW_ROW);
+
+        Expression boundry = group.getBoundryExpression();
+        boolean hasConditions = boundry != null;
+
+        if (hasConditions) {
+            methodSpecBuilder.beginControlFlow("if ($L)", boundry.toJava(true, true));
+        }
+
+        List<CodeBlock> averageBlocks = new ArrayList<>();
+        for (String aggregate : group.getAggregates()) {
+            String[] components = CodeGenerator.extractComponents(aggregate);
+            String function = components[2];
+            String variableName = CommonUtils.append(components[1], "", components[0], "_");
+            String rowValue = CommonUtils.firstLetterToUpper(variableName, "newRow.get", "()");
+            String setter = CommonUtils.firstLetterToUpper(aggregate, "set", "");
+            boolean isString = String.class.equals(layout.getSlots().get(aggregate));
+
+            if (function.equalsIgnoreCase(CodeGenerator.SUM)) {
+                methodSpecBuilder.addStatement("$L($L() + $L)", setter, getter(aggregate), rowValue);
+            } else if (function.equalsIgnoreCase(CodeGenerator.COUNT)) {
+                methodSpecBuilder.addStatement("$L($L() + 1)", setter, getter(aggregate));
+            } else if (function.equalsIgnoreCase(CodeGenerator.MAX) || function.equalsIgnoreCase(CodeGenerator.MIN)) {
+                methodSpecBuilder.addStatement("$L($L.$L($L(), $L))", setter,
+                        isString ? CommonUtils.class.getSimpleName() : "Math", function.toLowerCase(),
+                        getter(aggregate), rowValue);
+            } else if (function.equalsIgnoreCase(CodeGenerator.AVG)) {
+                String sumName = CommonUtils.append(variableName, CodeGenerator.SUM, components[3], "_");
+                String countName = CommonUtils.append(variableName, CodeGenerator.COUNT, components[3], "_");
+                averageBlocks.add(CodeBlock.builder().addStatement("$L((double) $L() / $L())", setter,
+                        getter(sumName), getter(countName)).build());
+            } else {
+                methodSpecBuilder.addStatement("$L($L)", setter, rowValue);
+            }
+        }
+
+        for (CodeBlock block : averageBlocks) {
+            methodSpecBuilder.addCode(block);
+        }
+
+        if (hasConditions) {
+            methodSpecBuilder.addCode(CodeGenerator.returnMatch(analyze, true)).endControlFlow();
+            methodSpecBuilder.addCode(CodeGenerator.returnMatch(analyze, false));
+        } else {
+            methodSpecBuilder.addCode(CodeGenerator.returnMatch(analyze, true));
+        }
+
+        return methodSpecBuilder.build();
+    }
+
+    static void createMFTable(ParsedQuery parsedQuery, RecordLayout layout, TypeName compositeType,
+            ClassName recordType, QueryPlan plan) {
+        TypeSpec.Builder entity = TypeSpec.classBuilder(TABLE_NAME).addModifiers(Modifier.PUBLIC)
+                .addSuperinterface(AutoCloseable.class);
+
+        entity.addField(FieldSpec.builder(int.class, "INITIAL_CAPACITY")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$L", plan.getBucketCount()).build());
+        entity.addField(FieldSpec.builder(OffHeapArena.class, "arena").addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .build());
+        entity.addField(FieldSpec.builder(recordType, "probe").addModifiers(Modifier.PRIVATE, Modifier.FINAL).build());
+        entity.addField(FieldSpec.builder(recordType, "cursor").addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                .build());
+        // Open addressing index holding record index + 1, 0 marks an empty bucket
+        entity.addField(FieldSpec.builder(int[].class, "buckets").addModifiers(Modifier.PRIVATE).build());
+
+        entity.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addStatement("this.arena = new $T($T.RECORD_SIZE)", OffHeapArena.class, recordType)
+                .addStatement("this.probe = new $T(arena)", recordType)
+                .addStatement("this.cursor = new $T(arena)", recordType)
+                .addStatement("this.buckets = new int[INITIAL_CAPACITY]").build());
+
+        boolean hasNulls = !layout.getNullableSlots().isEmpty();
+        MethodSpec.Builder findOrInsertRow = MethodSpec.methodBuilder("findOrInsert").addModifiers(Modifier.PUBLIC)
+                .returns(int.class).addParameter(compositeType, CodeGenerator.NEW_ROW);
+        List<String> rowValues = new ArrayList<>();
+        List<String> rawValues = new ArrayList<>();
+        if (hasNulls) {
+            findOrInsertRow.addStatement("int nulls = 0");
+            rowValues.add(RecordLayout.NULLS_SLOT);
+            rawValues.add("0");
+        }
+
+        // Takes the key values directly, so that it can also be called for rows
+        // that are not held in a CompositeEntity. Null keys are only passed by the
+        // rows of a CompositeEntity, in the null mask.
+        String keyMethod = hasNulls ? "findOrInsertKey" : "findOrInsert";
+        MethodSpec.Builder findOrInsert = MethodSpec.methodBuilder(keyMethod)
+                .addModifiers(hasNulls ? Modifier.PRIVATE : Modifier.PUBLIC).returns(int.class);
+        List<ParameterSpec> keyParameters = new ArrayList<>();
+        List<String> keyArguments = new ArrayList<>();
+        keyArguments.add(RecordLayout.HASH_SLOT);
+
+        if (hasNulls) {
+            findOrInsert.addParameter(int.class, RecordLayout.NULLS_SLOT).addStatement("int hash = nulls");
+            keyArguments.add(RecordLayout.NULLS_SLOT);
+        } else {
+            findOrInsert.addStatement("int hash = 0");
+        }
+
+        for (String slot : layout.getKeySlots()) {
+            Class<?> dataType = layout.getSlots().get(slot);
+            String keyValue = slot + "Value";
+            int nullBit = layout.getNullBit(slot);
+            if (nullBit != 0) {
+                findOrInsertRow.addStatement("$T $L = $L", dataType, slot,
+                        CommonUtils.firstLetterToUpper(slot, "newRow.get", "()"));
+                findOrInsertRow.beginControlFlow("if ($L == null)", slot).addStatement("nulls |= $L", nullBit)
+                        .endControlFlow();
+                rowValues.add(String.format("%s == null ? 0 : %s", slot, slot));
+            } else {
+                rowValues.add(CommonUtils.firstLetterToUpper(slot, "newRow.get", "()"));
+            }
+            rawValues.add(keyValue);
+            keyParameters.add(ParameterSpec.builder(javaType(dataType), keyValue).build());
+            findOrInsert.addParameter(keyParameters.get(keyParameters.size() - 1));
+
+            if (String.class.equals(dataType)) {
+                findOrInsert.addStatement("int $L = arena.encode($L)", slot, keyValue)
+                        .addStatement("hash = 31 * hash + $L", slot);
+            } else if (Integer.class.equals(dataType)) {
+                findOrInsert.addStatement("int $L = $L", slot, keyValue).addStatement("hash = 31 * hash + $L", slot);
+            } else {
+                findOrInsert.addStatement("$T $L = $L", rawType(dataType), slot, keyValue)
+                        .addStatement("hash = 31 * hash + $T.hashCode($L)", dataType, slot);
+            }
+            keyArguments.add(slot);
+        }
+
+        // Columns other than the grouping attributes read from the group keep the
+        // values of the first row of the group
+        List<String> groupColumns = new ArrayList<>();
+        for (String column : RecordLayout.getGroupColumns(parsedQuery).keySet()) {
+            if (!layout.getKeySlots().contains(column)) {
+                groupColumns.add(column);
+            }
+        }
+
+        if (groupColumns.isEmpty()) {
+            findOrInsertRow.addStatement("return $L($L)", keyMethod, String.join(", ", rowValues));
+        } else {
+            findOrInsertRow.addStatement("int groups = arena.size()")
+                    .addStatement("int record = $L($L)", keyMethod, String.join(", ", rowValues))
+                    .beginControlFlow("if (arena.size() > groups)").addStatement("probe.position(record)");
+            for (String column : groupColumns) {
+                String rowValue = CommonUtils.firstLetterToUpper(column, "newRow.get", "()");
+                String setter = CommonUtils.firstLetterToUpper(column, "probe.set", "");
+                int nullBit = layout.getNullBit(column);
+                if (nullBit != 0) {
+                    findOrInsertRow.beginControlFlow("if ($L == null)", rowValue)
+                            .addStatement("probe.setNull($L)", nullBit).nextControlFlow("else")
+                            .addStatement("$L($L)", setter, rowValue).endControlFlow();
+                } else {
+                    findOrInsertRow.addStatement("$L($L)", setter, rowValue);
+                }
+            }
+            findOrInsertRow.endControlFlow().addStatement("return record");
+        }
+        entity.addMethod(findOrInsertRow.build());
+
+        if (hasNulls) {
+            entity.addMethod(MethodSpec.methodBuilder("findOrInsert").addModifiers(Modifier.PUBLIC)
+                    .returns(int.class).addParameters(keyParameters)
+                    .addStatement("return $L($L)", keyMethod, String.join(", ", rawValues)).build());
+        }
+
+        String arguments = String.join(", ", keyArguments);
+
+        findOrInsert.addStatement("hash ^= hash >>> 16").addStatement("int mask = buckets.length - 1")
+                .addStatement("int index = hash & mask").beginControlFlow("while (buckets[index] != 0)")
+                .addStatement("int record = buckets[index] - 1").addStatement("probe.position(record)")
+                .beginControlFlow("if (probe.matches($L))", arguments).addStatement("return record").endControlFlow()
+                .addStatement("index = (index + 1) & mask").endControlFlow()
+                .addStatement("int record = arena.allocate()").addStatement("probe.position(record)")
+                .addStatement("probe.initialize($L)", arguments).addStatement("buckets[index] = record + 1")
+                .beginControlFlow("if (arena.size() * 2 > buckets.length)").addStatement("rehash()").endControlFlow()
+                .addStatement("return record");
+        entity.addMethod(findOrInsert.build());
+
+        entity.addMethod(MethodSpec.methodBuilder("rehash").addModifiers(Modifier.PRIVATE).returns(void.class)
+                .addStatement("int[] newBuckets = new int[buckets.length * 2]")
+                .addStatement("int mask = newBuckets.length - 1")
+                .beginControlFlow("for (int record = 0; record < arena.size(); record++)")
+                .addStatement("probe.position(record)").addStatement("int index = probe.getHash() & mask")
+                .beginControlFlow("while (newBuckets[index] != 0)").addStatement("index = (index + 1) & mask")
+                .endControlFlow().addStatement("newBuckets[index] = record + 1").endControlFlow()
+                .addStatement("buckets = newBuckets").build());
+
+        MethodSpec.Builder records = MethodSpec.methodBuilder("records").addModifiers(Modifier.PUBLIC)
+                .returns(int[].class).addStatement("int[] records = new int[arena.size()]");
+
+        if (parsedQuery.getOrderByAttributes().isEmpty()) {
+            records.beginControlFlow("for (int record = 0; record < records.length; record++)")
+                    .addStatement("records[record] = record").endControlFlow();
+        } else {
+            records.addStatement("Integer[] order = new Integer[records.length]")
+                    .beginControlFlow("for (int record = 0; record < order.length; record++)")
+                    .addStatement("order[record] = record").endControlFlow()
+                    .addStatement("$T left = new $T(arena)", recordType, recordType)
+                    .addStatement("$T right = new $T(arena)", recordType, recordType)
+                    .addCode("$T.sort(order, (first, second) -> {$>\n", Arrays.class)
+                    .addStatement("left.position(first)").addStatement("right.position(second)")
+                    .addStatement("return left.compareTo(right)").addCode("$<});\n")
+                    .beginControlFlow("for (int index = 0; index < order.length; index++)")
+                    .addStatement("records[index] = order[index]").endControlFlow();
+        }
+        entity.addMethod(records.addStatement("return records").build());
+
+        entity.addMethod(MethodSpec.methodBuilder("size").addModifiers(Modifier.PUBLIC).returns(int.class)
+                .addStatement("return arena.size()").build());
+
+        entity.addMethod(MethodSpec.methodBuilder("cursor").addModifiers(Modifier.PUBLIC).returns(recordType)
+                .addStatement("return cursor").build());
+
+        entity.addMethod(MethodSpec.methodBuilder("getAllocatedBytes").addModifiers(Modifier.PUBLIC)
+                .returns(long.class).addStatement("return arena.getAllocatedBytes() + buckets.length * 4L").build());
+
+        entity.addMethod(MethodSpec.methodBuilder("close").addModifiers(Modifier.PUBLIC).addAnnotation(Override.class)
+                .returns(void.class).addStatement("arena.close()").build());
+
+        CodeGenerator.createAndCompileJavaFile(entity.build());
+    }
+
+    private static void addComputeGroupsMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            TypeName compositeType, TypeName recordType, TypeName tableType, QueryPlan plan) {
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("computeGroups")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(void.class)
+                .addParameter(tableType, CodeGenerator.MF_TABLE).addParameter(compositeType, CodeGenerator.NEW_ROW)
+                .addParameter(int.class, "groupNumber").addStatement("$T group = mfTable.cursor()", recordType)
+                .beginControlFlow("if (groupNumber == 0)");
+
+        if (parsedQuery.getGroups().containsKey("0")) {
+            methodSpecBuilder.addStatement("group.position(mfTable.findOrInsert(newRow))");
+            CodeGenerator.addAggregateUpdate(methodSpecBuilder, parsedQuery, plan, "group", "0");
+        } else {
+            methodSpecBuilder.addStatement("mfTable.findOrInsert(newRow)");
+        }
+
+        methodSpecBuilder.addStatement("return").endControlFlow().addCode(System.lineSeparator());
+
+        for (Entry<Integer, Set<String>> entry : parsedQuery.getExecutionGroups().entrySet()) {
+            methodSpecBuilder.beginControlFlow("if (groupNumber == $L)", entry.getKey());
+
+            List<String> scannedGroups = new ArrayList<>();
+            List<String> probedGroups = new ArrayList<>();
+            for (String group : entry.getValue()) {
+                if (plan.isProbed(group)) {
+                    probedGroups.add(group);
+                } else {
+                    scannedGroups.add(group);
+                }
+            }
+
+            // Rows of later scans passed the where clause in the first scan, so the
+            // group of the row exists and findOrInsert only finds it
+            if (!probedGroups.isEmpty()) {
+                methodSpecBuilder.addStatement("group.position(mfTable.findOrInsert(newRow))");
+                for (String group : probedGroups) {
+                    CodeGenerator.addAggregateUpdate(methodSpecBuilder, parsedQuery, plan, "group", group);
+                }
+            }
+
+            if (!scannedGroups.isEmpty()) {
+                methodSpecBuilder.beginControlFlow("for (int record = 0; record < mfTable.size(); record++)")
+                        .addStatement("group.position(record)");
+                for (String group : scannedGroups) {
+                    CodeGenerator.addAggregateUpdate(methodSpecBuilder, parsedQuery, plan, "group", group);
+                }
+                methodSpecBuilder.endControlFlow();
+            }
+            methodSpecBuilder.endControlFlow();
+        }
+
+        entityBuilder.addMethod(methodSpecBuilder.build());
+    }
+
+    private static boolean isHeaderSlot(String slot) {
+        return RecordLayout.HASH_SLOT.equals(slot) || RecordLayout.NULLS_SLOT.equals(slot);
+    }
+
+    /**
+     * Returns the bits of the null mask that belong to the grouping attributes.
+     */
+    private static int getKeyNullMask(RecordLayout layout) {
+        int mask = 0;
+        for (String slot : layout.getKeySlots()) {
+            mask |= layout.getNullBit(slot);
+        }
+        return mask;
+    }
+
+    private static String offsetName(String slot) {
+        return slot.toUpperCase() + OFFSET_SUFFIX;
+    }
+
+    static String getter(String slot) {
+        return CommonUtils.firstLetterToUpper(slot, "get", "");
+    }
+
+    private static String accessor(Class<?> dataType) {
+        if (Long.class.equals(dataType)) {
+            return "Long";
+        }
+
+        if (Double.class.equals(dataType)) {
+            return "Double";
+        }
+
+        return "Int";
+    }
+
+    /**
+     * The type returned by the getters of a slot.
+     */
+    static TypeName javaType(Class<?> dataType) {
+        if (String.class.equals(dataType)) {
+            return TypeName.get(String.class);
+        }
+        return TypeName.get(dataType).unbox();
+    }
+
+    /**
+     * The type returned by the getters of a slot that may hold null.
+     */
+    private static TypeName slotType(Class<?> dataType, int nullBit) {
+        return nullBit != 0 ? TypeName.get(dataType) : javaType(dataType);
+    }
+
+    /**
+     * The type stored in a slot. Strings are stored as dictionary ids.
+     */
+    private static TypeName rawType(Class<?> dataType) {
+        if (String.class.equals(dataType)) {
+            return TypeName.INT;
+        }
+        return TypeName.get(dataType).unbox();
+    }
+}
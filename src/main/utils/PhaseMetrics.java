@@ -0,0 +1,129 @@
+package main.utils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Accumulates the wall time, the bytes allocated by the running thread, the
+ * garbage collection time of the process and the rows and groups of one phase
+ * of a run. A phase run several times, e.g. the compilation of every generated
+ * class, adds up its invocations. The allocated bytes are -1 where the JVM does
+ * not count allocations per thread.
+ *
+ * @author R&B
+ *
+ */
+public class PhaseMetrics implements PhaseMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String name;
+
+    private long invocations;
+
+    private long wallNanos;
+
+    private long allocatedBytes;
+
+    private long gcMillis;
+
+    private long rows;
+
+    private long groups;
+
+    private long startNanos;
+
+    private long startAllocated;
+
+    private long startGc;
+
+    PhaseMetrics(String name) {
+        this.name = name;
+    }
+
+    void start() {
+        startAllocated = allocatedBytes();
+        startGc = gcMillis();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends an invocation of the phase.
+     */
+    public void end() {
+        wallNanos += System.nanoTime() - startNanos;
+        gcMillis += gcMillis() - startGc;
+        allocatedBytes = startAllocated < 0 ? -1 : allocatedBytes + allocatedBytes() - startAllocated;
+        invocations++;
+    }
+
+    /**
+     * Ends an invocation of the phase that left the given number of groups in
+     * the MF-Table.
+     *
+     * @param groups
+     */
+    public void end(long groups) {
+        this.groups = groups;
+        end();
+    }
+
+    public void addRows(long rows) {
+        this.rows += rows;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getInvocations() {
+        return invocations;
+    }
+
+    @Override
+    public double getWallMillis() {
+        return wallNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    @Override
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public long getGroups() {
+        return groups;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
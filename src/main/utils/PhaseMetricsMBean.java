@@ -0,0 +1,25 @@
+package main.utils;
+
+/**
+ * Management interface of the metrics of one phase of a run, published on the
+ * platform MBean server under "main.utils:type=Phase,name=&lt;phase&gt;".
+ *
+ * @author R&B
+ *
+ */
+public interface PhaseMetricsMBean {
+
+    String getName();
+
+    long getInvocations();
+
+    double getWallMillis();
+
+    long getAllocatedBytes();
+
+    long getGcMillis();
+
+    long getRows();
+
+    long getGroups();
+}
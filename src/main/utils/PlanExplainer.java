@@ -0,0 +1,206 @@
+package main.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import main.database.DataSource;
+import main.database.FlatFileStore;
+import main.parser.ColumnPredicate;
+import main.parser.GroupingInformation;
+import main.parser.ParsedQuery;
+import main.parser.TableInformation;
+import main.readwrite.ReadWrite;
+
+/**
+ * Describes how the generated evaluation engine runs a query: the engine and
+ * its MF-Table, the scans of the relations with what is read and which blocks
+ * can be skipped, and per pass the grouping variables evaluated with the
+ * estimated rows, groups and such that evaluations. The cost of a pass is
+ * estimated as the rows read plus the such that conditions evaluated.
+ *
+ * @author R&B
+ *
+ */
+public class PlanExplainer {
+
+    private static final String LINE_FEED = System.lineSeparator();
+
+    private static final String INDENT = "  ";
+
+    private PlanExplainer() {
+        // Private constructor to prevent object creation
+    }
+
+    /**
+     * Explains the plan of the query. The metadata of the tables must have been
+     * resolved before.
+     *
+     * @param parsedQuery
+     * @param plan
+     * @return description of the plan
+     */
+    public static String explain(ParsedQuery parsedQuery, QueryPlan plan) {
+        Properties properties = ReadWrite.readProperties(CommonUtils.DB_PROPERTIES);
+        EngineMode mode = CodeGenerator.resolveEngineMode(parsedQuery, plan);
+        StringBuilder explanation = new StringBuilder();
+
+        explanation.append("Engine: ").append(mode.getPropertyValue()).append(LINE_FEED);
+        explanation.append("MF-Table: ").append(describeMFTable(parsedQuery, plan, mode, properties))
+                .append(LINE_FEED);
+        explanation.append("Grouping attributes: ").append(String.join(", ", parsedQuery.getGroupingAttributes()))
+                .append(", estimated ").append(Math.round(plan.getEstimatedGroups())).append(" groups")
+                .append(LINE_FEED);
+        long groupBytes = RecordLayout.of(parsedQuery).estimateGroupBytes(mode);
+        explanation.append("Memory: estimated ").append(groupBytes).append(" bytes per group, ")
+                .append(toMegabytes(plan.getEstimatedBytes(groupBytes))).append(" MB of a budget of ")
+                .append(toMegabytes(MemoryBudget.getLimit())).append(" MB").append(LINE_FEED);
+
+        explanation.append("Scan order:").append(LINE_FEED);
+        DataSource dataSource = DataSource.fromProperties(properties);
+        for (TableInformation information : plan.getScanOrder()) {
+            explanation.append(INDENT).append(information.getAlias()).append(": ")
+                    .append(describeSource(information, dataSource, properties)).append(", ")
+                    .append(information.getNumberOfRows()).append(" rows, estimated ")
+                    .append(Math.round(plan.getEstimatedRows(information))).append(" after where")
+                    .append(LINE_FEED);
+        }
+
+        double rows = 1;
+        double readRows = 0;
+        for (TableInformation information : plan.getScanOrder()) {
+            rows *= plan.getEstimatedRows(information);
+            readRows += information.getNumberOfRows();
+        }
+
+        double totalCost = 0;
+        List<Integer> passes = new ArrayList<>();
+        passes.add(0);
+        passes.addAll(parsedQuery.getExecutionGroups().keySet());
+
+        for (Integer pass : passes) {
+            explanation.append("Pass ").append(pass).append(":").append(LINE_FEED);
+            if (dataSource == DataSource.DATABASE) {
+                appendBlockFilters(explanation, parsedQuery, plan.getScanOrder(), pass);
+            }
+
+            double evaluations = 0;
+            if (pass == 0) {
+                explanation.append(INDENT).append("creates the groups of ").append(Math.round(rows))
+                        .append(" rows").append(LINE_FEED);
+                evaluations = rows;
+            } else {
+                for (String group : parsedQuery.getExecutionGroups().get(pass)) {
+                    GroupingInformation information = parsedQuery.getGroups().get(group);
+                    boolean probed = mode != EngineMode.VECTORIZED && plan.isProbed(group);
+                    double groupEvaluations = rows * (probed ? 1 : plan.getEstimatedGroups());
+                    evaluations += groupEvaluations;
+
+                    explanation.append(INDENT).append("grouping variable ").append(group).append(probed
+                            ? ": looks up the group of every row"
+                            : ": compares every row with every group").append(", estimated ")
+                            .append(Math.round(groupEvaluations)).append(" evaluations")
+                            .append(LINE_FEED);
+                    explanation.append(INDENT).append(INDENT).append("such that ")
+                            .append(information.getBoundryExpression() != null
+                                    ? information.getBoundryExpression().toJava(true, true)
+                                    : "true")
+                            .append(LINE_FEED);
+                }
+            }
+
+            double cost = readRows + evaluations;
+            totalCost += cost;
+            explanation.append(INDENT).append("estimated cost ").append(Math.round(cost)).append(LINE_FEED);
+        }
+
+        explanation.append("Estimated total cost: ").append(Math.round(totalCost)).append(LINE_FEED);
+        return explanation.toString();
+    }
+
+    private static long toMegabytes(long bytes) {
+        return (bytes + (1 << 20) - 1) >> 20;
+    }
+
+    private static String describeMFTable(ParsedQuery parsedQuery, QueryPlan plan, EngineMode mode,
+            Properties properties) {
+        List<String> orderBy = new ArrayList<>();
+        for (String getter : parsedQuery.getOrderByAttributes()) {
+            orderBy.add(Character.toLowerCase(getter.charAt(3)) + getter.substring(4));
+        }
+        String ordering = orderBy.isEmpty() ? "" : ", sorted by " + String.join(", ", orderBy) + " when displayed";
+
+        switch (mode) {
+            case OFF_HEAP:
+                return "off-heap records in a hash table of " + plan.getBucketCount() + " buckets" + ordering;
+            case VECTORIZED:
+                return "off-heap records in a hash table of " + plan.getBucketCount()
+                        + " buckets, updated in blocks of " + properties.getProperty("blockSize") + " rows" + ordering;
+            default:
+                if (orderBy.isEmpty()) {
+                    return "HashMap of GroupState with an initial capacity of " + plan.getMapCapacity();
+                }
+                return "TreeSet of GroupState ordered by " + String.join(", ", orderBy);
+        }
+    }
+
+    private static String describeSource(TableInformation information, DataSource dataSource,
+            Properties properties) {
+        if (dataSource == DataSource.FILE) {
+            return "file " + new FlatFileStore(properties).getPath(information.getTableName());
+        }
+        return "\"" + String.format(CodeGenerator.SCAN_QUERY, information.getTableName())
+                + "\" or its snapshot if up to date";
+    }
+
+    /**
+     * Lists the predicates that let a scan skip blocks of a snapshot, as checked
+     * by the zone map filters of the generated engine. Files and the database
+     * are always read in full.
+     */
+    private static void appendBlockFilters(StringBuilder explanation, ParsedQuery parsedQuery,
+            Set<TableInformation> scanOrder, int pass) {
+        for (TableInformation information : scanOrder) {
+            String alias = information.getAlias();
+            List<String> filters = new ArrayList<>();
+
+            List<ColumnPredicate> required = getPredicates(parsedQuery.getWherePredicates(), alias);
+            if (!required.isEmpty()) {
+                filters.add("all of " + required);
+            }
+
+            if (pass > 0) {
+                List<List<ColumnPredicate>> alternatives = new ArrayList<>();
+                for (String group : parsedQuery.getExecutionGroups().get(pass)) {
+                    List<ColumnPredicate> predicates = getPredicates(
+                            parsedQuery.getGroups().get(group).getPredicates(), alias);
+                    if (predicates.isEmpty()) {
+                        alternatives.clear();
+                        break;
+                    }
+                    alternatives.add(predicates);
+                }
+
+                if (!alternatives.isEmpty()) {
+                    filters.add("any of " + alternatives);
+                }
+            }
+
+            if (!filters.isEmpty()) {
+                explanation.append(INDENT).append("skips snapshot blocks of ").append(alias).append(" not matching ")
+                        .append(String.join(" and ", filters)).append(LINE_FEED);
+            }
+        }
+    }
+
+    private static List<ColumnPredicate> getPredicates(List<ColumnPredicate> predicates, String alias) {
+        List<ColumnPredicate> matching = new ArrayList<>();
+        for (ColumnPredicate predicate : predicates) {
+            if (predicate.getAlias().equals(alias)) {
+                matching.add(predicate);
+            }
+        }
+        return matching;
+    }
+}
@@ -0,0 +1,308 @@
+package main.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import main.parser.ColumnPredicate;
+import main.parser.ColumnStatistics;
+import main.parser.Expression;
+import main.parser.GroupingInformation;
+import main.parser.ParsedQuery;
+import main.parser.TableInformation;
+
+/**
+ * Decides how the evaluation engine scans the relations and stores the groups
+ * from estimates of the row and group counts. The estimates use the row counts
+ * and column statistics of the tables: the selectivity of the where clause
+ * gives the rows of a relation that reach the MF-Table and the number of
+ * distinct values of the grouping attributes gives the number of groups.
+ * Columns without statistics are estimated like PostgreSQL does, with 200
+ * distinct values and a third of the rows passing a range comparison. Range
+ * comparisons on columns with a known minimum and maximum interpolate between
+ * them.
+ *
+ * @author R&B
+ *
+ */
+public class QueryPlan {
+
+    private static final Logger LOG = Logger.getLogger(QueryPlan.class.getCanonicalName());
+
+    private static final double DEFAULT_DISTINCT = 200;
+
+    private static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+
+    private static final double DEFAULT_ROWS = 1000;
+
+    // Below this many groups scanning every group costs less than a lookup
+    private static final double PROBE_THRESHOLD = 16;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final Map<String, Double> estimatedRows;
+
+    private final Set<TableInformation> scanOrder;
+
+    private final Set<String> probedGroups;
+
+    private double estimatedGroups;
+
+    private boolean analyze;
+
+    private EngineMode engineMode = EngineMode.DEFAULT;
+
+    private int shards = 1;
+
+    private QueryPlan() {
+        estimatedRows = new HashMap<>();
+        scanOrder = new LinkedHashSet<>();
+        probedGroups = new HashSet<>();
+    }
+
+    /**
+     * Plans the evaluation of the query. The metadata of the tables must have
+     * been populated before.
+     *
+     * @param parsedQuery
+     * @return plan
+     */
+    public static QueryPlan of(ParsedQuery parsedQuery) {
+        QueryPlan plan = new QueryPlan();
+
+        for (TableInformation information : parsedQuery.getRelations().values()) {
+            double rows = information.getNumberOfRows() > 0 ? information.getNumberOfRows() : DEFAULT_ROWS;
+            for (ColumnPredicate predicate : parsedQuery.getWherePredicates()) {
+                if (predicate.getAlias().equals(information.getAlias())) {
+                    rows *= estimateSelectivity(information, predicate);
+                }
+            }
+            plan.estimatedRows.put(information.getAlias(), Math.max(1, rows));
+        }
+
+        // The largest relation drives the outer loop as before, now by the rows
+        // left after the where clause
+        List<TableInformation> relations = new ArrayList<>(parsedQuery.getRelations().values());
+        relations.sort(Comparator.comparing((TableInformation information) -> plan.getEstimatedRows(information))
+                .reversed().thenComparing(TableInformation::getAlias));
+        plan.scanOrder.addAll(relations);
+
+        plan.estimatedGroups = estimateGroups(parsedQuery, plan);
+
+        if (parsedQuery.getOrderByAttributes().isEmpty() && plan.estimatedGroups >= PROBE_THRESHOLD) {
+            for (GroupingInformation group : parsedQuery.getGroups().values()) {
+                if (!group.getName().equals("0") && isKeyedByGroupingAttributes(parsedQuery, group)) {
+                    plan.probedGroups.add(group.getName());
+                }
+            }
+        }
+
+        LOG.log(Level.CONFIG, "Estimated {0} groups, scan order {1}, probed grouping variables {2}",
+                new Object[] { Math.round(plan.estimatedGroups), plan.getScanAliases(), plan.probedGroups });
+        return plan;
+    }
+
+    private static double estimateSelectivity(TableInformation information, ColumnPredicate predicate) {
+        ColumnStatistics statistics = information.getStatistics(predicate.getColumn());
+        double rows = Math.max(1, information.getNumberOfRows());
+        double equality = statistics != null ? statistics.estimateEquality(predicate.getValue(), rows)
+                : 1 / DEFAULT_DISTINCT;
+
+        // The value of a parameter is not known before execution
+        if (predicate.getParameter() != null) {
+            equality = statistics != null ? 1 / statistics.estimateDistinct(rows) : 1 / DEFAULT_DISTINCT;
+            return predicate.getOperator().equals("=") ? equality
+                    : predicate.getOperator().equals("!=") ? 1 - equality : DEFAULT_RANGE_SELECTIVITY;
+        }
+
+        switch (predicate.getOperator()) {
+            case "=":
+                return equality;
+            case "!=":
+                return Math.max(0, 1 - equality - (statistics != null ? statistics.getNullFraction() : 0));
+            default:
+                double range = statistics != null && !predicate.isString()
+                        ? statistics.estimateRange(predicate.getOperator(), Double.parseDouble(predicate.getValue()))
+                        : -1;
+                return range >= 0 ? range : DEFAULT_RANGE_SELECTIVITY;
+        }
+    }
+
+    /**
+     * Multiplies the distinct values of the grouping attributes. A relation can
+     * not produce more groups than rows pass its where clause.
+     */
+    private static double estimateGroups(ParsedQuery parsedQuery, QueryPlan plan) {
+        Map<String, Double> groupsPerRelation = new HashMap<>();
+
+        for (String attribute : parsedQuery.getGroupingAttributes()) {
+            int separator = attribute.lastIndexOf('_');
+            String alias = attribute.substring(separator + 1);
+            TableInformation information = parsedQuery.getRelations().get(alias);
+            ColumnStatistics statistics = information.getStatistics(attribute.substring(0, separator));
+
+            double rows = Math.max(1, information.getNumberOfRows());
+            double distinct = statistics != null ? statistics.estimateDistinct(rows) : DEFAULT_DISTINCT;
+            groupsPerRelation.merge(alias, distinct, (first, second) -> first * second);
+        }
+
+        double groups = 1;
+        for (Entry<String, Double> relation : groupsPerRelation.entrySet()) {
+            groups *= Math.min(relation.getValue(), plan.estimatedRows.get(relation.getKey()));
+        }
+        return groups;
+    }
+
+    /**
+     * Checks whether the such that condition requires every grouping attribute
+     * of the group to equal the same column of the row. Only the group with the
+     * grouping attributes of the row can then be updated by the row.
+     */
+    private static boolean isKeyedByGroupingAttributes(ParsedQuery parsedQuery, GroupingInformation group) {
+        if (!group.isConjunctive()) {
+            return false;
+        }
+
+        Expression conditions = group.getBoundryExpression();
+        if (conditions == null) {
+            return false;
+        }
+
+        for (String attribute : parsedQuery.getGroupingAttributes()) {
+            if (!conditions.requiresEquality(attribute)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public double getEstimatedRows(TableInformation information) {
+        return estimatedRows.get(information.getAlias());
+    }
+
+    public double getEstimatedGroups() {
+        return estimatedGroups;
+    }
+
+    /**
+     * Estimates the bytes of the MF-Table holding the estimated groups.
+     *
+     * @param groupBytes estimated bytes of a group, see RecordLayout
+     * @return bytes
+     */
+    public long getEstimatedBytes(long groupBytes) {
+        return (long) Math.ceil(estimatedGroups) * groupBytes;
+    }
+
+    /**
+     * Makes the generated evaluation engine count rows, evaluations and time and
+     * report them with the plan. Without it the engine has no counters at all.
+     *
+     * @param analyze
+     */
+    public void setAnalyze(boolean analyze) {
+        this.analyze = analyze;
+    }
+
+    public boolean isAnalyze() {
+        return analyze;
+    }
+
+    /**
+     * Records the engine generated for the query, which decides how much memory
+     * a group takes.
+     *
+     * @param engineMode
+     */
+    public void setEngineMode(EngineMode engineMode) {
+        this.engineMode = engineMode;
+    }
+
+    public EngineMode getEngineMode() {
+        return engineMode;
+    }
+
+    /**
+     * Records the number of worker processes evaluating the query, see
+     * ShardedExecution.
+     *
+     * @param shards
+     */
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns true if the query is evaluated by several worker processes.
+     *
+     * @return boolean
+     */
+    public boolean isSharded() {
+        return shards > 1;
+    }
+
+    /**
+     * Returns the relations in the sequence in which they are scanned by the
+     * nested loops of the evaluation engine.
+     *
+     * @return relations in scan order
+     */
+    public Set<TableInformation> getScanOrder() {
+        return scanOrder;
+    }
+
+    private List<String> getScanAliases() {
+        List<String> aliases = new ArrayList<>();
+        for (TableInformation information : scanOrder) {
+            aliases.add(information.getAlias());
+        }
+        return aliases;
+    }
+
+    /**
+     * Checks whether the groups updated by the grouping variable are looked up
+     * by the grouping attributes of the row instead of scanning every group.
+     *
+     * @param group
+     * @return true if probed
+     */
+    public boolean isProbed(String group) {
+        return probedGroups.contains(group);
+    }
+
+    /**
+     * Returns the initial capacity of a hash map holding the estimated groups
+     * without resizing.
+     *
+     * @return capacity
+     */
+    public int getMapCapacity() {
+        return (int) Math.min(MAX_CAPACITY, Math.max(16, estimatedGroups / 0.75 + 1));
+    }
+
+    /**
+     * Returns the initial number of buckets of an open addressing table kept at
+     * most half full, a power of two.
+     *
+     * @return buckets
+     */
+    public int getBucketCount() {
+        int buckets = 16;
+        while (buckets < MAX_CAPACITY && buckets < estimatedGroups * 2) {
+            buckets <<= 1;
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,260 @@
+package main.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import main.parser.GroupingInformation;
+import main.parser.ParsedQuery;
+import main.parser.TableInformation;
+
+/**
+ * Describes the fixed width layout of a group record. The record holds the
+ * grouping attributes, the columns read from the group once it exists and the
+ * aggregates of all grouping variables. Strings are stored as dictionary ids,
+ * with id 0 for null. Null values of the other columns are marked in a bit mask.
+ *
+ * @author R&B
+ *
+ */
+public class RecordLayout {
+
+    public static final String HASH_SLOT = "hash";
+
+    public static final String NULLS_SLOT = "nulls";
+
+    private static final Pattern EXPRESSION_SPLIT = Pattern.compile("[-+*/()\\s]+");
+
+    // Object header and reference sizes of a heap with compressed references
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int REFERENCE = 4;
+
+    // A boxed Integer, Long or Double
+    private static final int BOXED_VALUE = 16;
+
+    // A HashMap node with its share of the table, or a TreeMap entry
+    private static final int MAP_ENTRY = 40;
+
+    // The buckets of the off-heap MF-Table are at most half full
+    private static final int BUCKETS_PER_RECORD = 2;
+
+    private final Map<String, Class<?>> slots;
+
+    private final Map<String, Integer> offsets;
+
+    private final List<String> keySlots;
+
+    private final List<String> nullableSlots;
+
+    private int recordSize;
+
+    private RecordLayout() {
+        slots = new LinkedHashMap<>();
+        offsets = new LinkedHashMap<>();
+        keySlots = new ArrayList<>();
+        nullableSlots = new ArrayList<>();
+    }
+
+    /**
+     * Computes the layout from the grouping attributes and the aggregates of the
+     * grouping variables. Eight byte slots are placed before four byte slots so
+     * that every slot is naturally aligned.
+     *
+     * @param parsedQuery
+     * @return layout
+     */
+    public static RecordLayout of(ParsedQuery parsedQuery) {
+        RecordLayout layout = new RecordLayout();
+        Map<String, Class<?>> columns = getGroupColumns(parsedQuery);
+        Map<String, Class<?>> fields = new LinkedHashMap<>(columns);
+
+        for (GroupingInformation group : parsedQuery.getGroups().values()) {
+            for (String aggregate : group.getAggregates()) {
+                fields.put(aggregate, CodeGenerator.resolveDataTypeOfAggregate(aggregate, parsedQuery.getRelations()));
+            }
+        }
+
+        layout.keySlots.addAll(parsedQuery.getGroupingAttributes());
+        for (Entry<String, Class<?>> column : columns.entrySet()) {
+            if (!String.class.equals(column.getValue())) {
+                layout.nullableSlots.add(column.getKey());
+            }
+        }
+
+        layout.slots.put(HASH_SLOT, Integer.class);
+        if (!layout.nullableSlots.isEmpty()) {
+            layout.slots.put(NULLS_SLOT, Integer.class);
+        }
+        layout.slots.putAll(fields);
+
+        int offset = 0;
+        for (int width : new int[] { 8, 4 }) {
+            for (Entry<String, Class<?>> slot : layout.slots.entrySet()) {
+                if (widthOf(slot.getValue()) == width) {
+                    layout.offsets.put(slot.getKey(), offset);
+                    offset += width;
+                }
+            }
+        }
+
+        layout.recordSize = (offset + 7) & ~7;
+        return layout;
+    }
+
+    /**
+     * Checks whether every value of the group record can be stored in a fixed
+     * width slot and the null bits of its columns fit into the mask.
+     *
+     * @param parsedQuery
+     * @return true if supported
+     */
+    public static boolean isSupported(ParsedQuery parsedQuery) {
+        for (TableInformation information : parsedQuery.getRelations().values()) {
+            for (Class<?> dataType : information.getRequiredColumns().values()) {
+                if (widthOf(dataType) == 0) {
+                    return false;
+                }
+            }
+        }
+
+        int nullableColumns = 0;
+        for (Class<?> dataType : getGroupColumns(parsedQuery).values()) {
+            if (!String.class.equals(dataType)) {
+                nullableColumns++;
+            }
+        }
+        return nullableColumns <= Integer.SIZE;
+    }
+
+    /**
+     * Returns the number of bytes needed to store the data type or 0 if the type
+     * can not be stored in a slot.
+     *
+     * @param dataType
+     * @return width
+     */
+    public static int widthOf(Class<?> dataType) {
+        if (Long.class.equals(dataType) || Double.class.equals(dataType)) {
+            return 8;
+        }
+
+        if (Integer.class.equals(dataType) || String.class.equals(dataType)) {
+            return 4;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Finds the grouping attributes and all other columns that are read from the
+     * group rather than the scanned row. These are columns used in projections,
+     * order by, having and on the group side of such that conditions.
+     *
+     * @param parsedQuery
+     * @return column names and their data types
+     */
+    public static Map<String, Class<?>> getGroupColumns(ParsedQuery parsedQuery) {
+        Map<String, Class<?>> allColumns = new LinkedHashMap<>();
+        for (Entry<String, TableInformation> relation : parsedQuery.getRelations().entrySet()) {
+            for (Entry<String, Class<?>> column : relation.getValue().getRequiredColumns().entrySet()) {
+                allColumns.put(CommonUtils.append(column.getKey(), "", relation.getKey(), "_"), column.getValue());
+            }
+        }
+
+        Set<String> projectionTokens = new HashSet<>();
+        for (String projection : parsedQuery.getProjections()) {
+            projectionTokens.addAll(Arrays.asList(EXPRESSION_SPLIT.split(projection.trim())));
+        }
+
+        Set<String> groupSideFields = new HashSet<>();
+        for (GroupingInformation group : parsedQuery.getGroups().values()) {
+            if (group.getBoundryExpression() != null) {
+                groupSideFields.addAll(group.getBoundryExpression().getFields(false));
+            }
+        }
+        if (parsedQuery.getHavingExpression() != null) {
+            groupSideFields.addAll(parsedQuery.getHavingExpression().getFields(false));
+        }
+
+        Map<String, Class<?>> groupColumns = new LinkedHashMap<>();
+        for (String attribute : parsedQuery.getGroupingAttributes()) {
+            groupColumns.put(attribute, allColumns.get(attribute));
+        }
+
+        for (Entry<String, Class<?>> column : allColumns.entrySet()) {
+            String getter = CommonUtils.firstLetterToUpper(column.getKey(), "get", "");
+            if (projectionTokens.contains(column.getKey()) || groupSideFields.contains(column.getKey())
+                    || parsedQuery.getOrderByAttributes().contains(getter)) {
+                groupColumns.putIfAbsent(column.getKey(), column.getValue());
+            }
+        }
+
+        return groupColumns;
+    }
+
+    /**
+     * Estimates the bytes a group takes in the MF-Table of the engine. Off-heap
+     * a group is its record and its buckets. On the heap it is a GroupState
+     * with a reference and a boxed value per field, and its entry of the map or
+     * tree.
+     *
+     * @param mode
+     * @return bytes per group
+     */
+    public long estimateGroupBytes(EngineMode mode) {
+        if (mode != EngineMode.DEFAULT) {
+            return recordSize + BUCKETS_PER_RECORD * (long) Integer.BYTES;
+        }
+
+        // Every slot but the hash and the null mask is a field
+        int fields = slots.size() - (nullableSlots.isEmpty() ? 1 : 2);
+        long groupState = (OBJECT_HEADER + fields * REFERENCE + 7) & ~7;
+        return groupState + (long) fields * BOXED_VALUE + MAP_ENTRY;
+    }
+
+    public Map<String, Class<?>> getSlots() {
+        return Collections.unmodifiableMap(slots);
+    }
+
+    public int getOffset(String slot) {
+        return offsets.get(slot);
+    }
+
+    public List<String> getKeySlots() {
+        return keySlots;
+    }
+
+    /**
+     * Returns the columns that are not strings and mark their null values in the
+     * null mask.
+     *
+     * @return slots in the order of their bits
+     */
+    public List<String> getNullableSlots() {
+        return nullableSlots;
+    }
+
+    /**
+     * Returns the bit of the null mask that marks a null value of the slot, or 0
+     * if the slot never holds null.
+     *
+     * @param slot
+     * @return bit
+     */
+    public int getNullBit(String slot) {
+        int index = nullableSlots.indexOf(slot);
+        return index < 0 ? 0 : 1 << index;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+}
@@ -0,0 +1,170 @@
+package main.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import main.parser.ParsedQuery;
+import main.parser.TableInformation;
+import main.readwrite.ReadWrite;
+
+/**
+ * Records the phases of a run: the metadata lookup, the generation of every
+ * class, the compilation, every pass of the evaluation engine and the output.
+ * Every phase is published as an MBean while the application runs and the run
+ * is written as a JSON report to the "metricsDirectory" directory, one file per
+ * query. The generation phases include the compilation of the classes they
+ * generate, which is also reported as a phase of its own.
+ *
+ * @author R&B
+ *
+ */
+public class RunMetrics {
+
+    private static final Logger LOG = Logger.getLogger(RunMetrics.class.getCanonicalName());
+
+    private static final String DOMAIN = "main.utils:type=Phase,name=";
+
+    private static final String DEFAULT_DIRECTORY = "./metrics";
+
+    private static final Map<String, PhaseMetrics> PHASES = new LinkedHashMap<>();
+
+    private static final long STARTED = System.currentTimeMillis();
+
+    private RunMetrics() {
+        // Private constructor to prevent object creation
+    }
+
+    /**
+     * Starts an invocation of the phase, registering its MBean on the first
+     * invocation.
+     *
+     * @param name
+     * @return metrics of the phase, to be ended by the caller
+     */
+    public static synchronized PhaseMetrics begin(String name) {
+        PhaseMetrics phase = PHASES.get(name);
+        if (phase == null) {
+            phase = new PhaseMetrics(name);
+            PHASES.put(name, phase);
+            register(phase);
+        }
+        phase.start();
+        return phase;
+    }
+
+    /**
+     * Returns the phases recorded so far in the order they were first run.
+     *
+     * @return phases
+     */
+    public static synchronized List<PhaseMetrics> getPhases() {
+        return new ArrayList<>(PHASES.values());
+    }
+
+    private static void register(PhaseMetrics phase) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ObjectName.quote(phase.getName()));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(phase, objectName);
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Could not register the metrics of " + phase.getName(), e);
+        }
+    }
+
+    /**
+     * Writes the phases recorded so far as a JSON report. A failure is logged
+     * and does not stop the application.
+     *
+     * @param parsedQuery
+     * @param engineMode  engine generated for the query, see
+     *                    CodeGenerator.resolveEngineMode
+     */
+    public static synchronized void writeReport(ParsedQuery parsedQuery, EngineMode engineMode) {
+        Properties properties = ReadWrite.readProperties(CommonUtils.DB_PROPERTIES);
+        Path directory = Paths.get(properties.getProperty("metricsDirectory", DEFAULT_DIRECTORY));
+        Path path = directory.resolve("run-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(STARTED))
+                + ".json");
+
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                writer.write(toJson(parsedQuery, engineMode, properties));
+            }
+            LOG.log(Level.FINE, "Wrote run report {0}", path);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Could not write run report " + path, e);
+        }
+    }
+
+    private static String toJson(ParsedQuery parsedQuery, EngineMode engineMode, Properties properties) {
+        List<String> tables = new ArrayList<>();
+        for (TableInformation information : parsedQuery.getRelations().values()) {
+            tables.add(quote(information.getTableName()));
+        }
+        List<String> projections = new ArrayList<>();
+        for (String projection : parsedQuery.getProjections()) {
+            projections.add(quote(projection));
+        }
+
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"started\": ").append(STARTED).append(",\n");
+        json.append("  \"wallMillis\": ").append(System.currentTimeMillis() - STARTED).append(",\n");
+        json.append("  \"engineMode\": ").append(quote(engineMode.getPropertyValue())).append(",\n");
+        json.append("  \"dataSource\": ").append(quote(properties.getProperty("dataSource", "database")))
+                .append(",\n");
+        json.append("  \"memoryBudgetBytes\": ").append(MemoryBudget.getLimit()).append(",\n");
+        json.append("  \"peakReservedBytes\": ").append(MemoryBudget.getPeakBytes()).append(",\n");
+        json.append("  \"tables\": [").append(String.join(", ", tables)).append("],\n");
+        json.append("  \"projections\": [").append(String.join(", ", projections)).append("],\n");
+        json.append("  \"phases\": [");
+
+        String separator = "\n";
+        for (PhaseMetrics phase : PHASES.values()) {
+            json.append(separator).append("    {\"name\": ").append(quote(phase.getName()))
+                    .append(", \"invocations\": ").append(phase.getInvocations())
+                    .append(", \"wallMillis\": ").append(String.format(Locale.ROOT, "%.3f", phase.getWallMillis()))
+                    .append(", \"allocatedBytes\": ").append(phase.getAllocatedBytes())
+                    .append(", \"gcMillis\": ").append(phase.getGcMillis())
+                    .append(", \"rows\": ").append(phase.getRows())
+                    .append(", \"groups\": ").append(phase.getGroups()).append("}");
+            separator = ",\n";
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
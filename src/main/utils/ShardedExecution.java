@@ -0,0 +1,252 @@
+package main.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates a query in several processes on the same host. The coordinator
+ * starts one worker process per shard running the generated engine. Every
+ * worker reads the whole input, keeps only the groups whose grouping attributes
+ * hash to its shard and evaluates all passes for them. The workers connect back
+ * to the coordinator over the loopback interface and send their groups, which
+ * the coordinator collects into its MF-Table to apply having and order by and
+ * print the result.
+ *
+ * Worker arguments: "worker", the parameters of the query, shard, shards, the
+ * port of the coordinator and the token of the run. A worker sends the token
+ * before its groups, the coordinator closes connections of any other process
+ * without reading objects from them and only accepts the classes of group
+ * values from the workers.
+ *
+ * @author R&B
+ *
+ */
+public class ShardedExecution {
+
+    private static final Logger LOG = Logger.getLogger(ShardedExecution.class.getCanonicalName());
+
+    public static final String WORKER = "worker";
+
+    private static final String DEFAULT_SHARDS = "1";
+
+    private static final int ACCEPT_TIMEOUT_MILLIS = 1000;
+
+    // A worker sends its token as soon as it is connected
+    private static final int TOKEN_TIMEOUT_MILLIS = 10000;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Classes of the values of groups and their superclasses
+    private static final Set<Class<?>> VALUE_CLASSES = new HashSet<>(Arrays.asList(Object[].class, String.class,
+            Number.class, Integer.class, Long.class, Double.class, Float.class, Short.class, Byte.class,
+            java.util.Date.class, Date.class, Time.class, Timestamp.class));
+
+    private ShardedExecution() {
+        // Private constructor to prevent object creation of this class.
+    }
+
+    /**
+     * Returns the number of worker processes given by the "shards" property, 1
+     * to evaluate queries in a single process.
+     *
+     * @param properties
+     * @return shards
+     */
+    public static int getShards(Properties properties) {
+        return Integer.parseInt(properties.getProperty("shards", DEFAULT_SHARDS));
+    }
+
+    /**
+     * Starts a worker process per shard and passes the values of every group sent
+     * back to the consumer. Returns once all workers have sent their groups and
+     * exited.
+     *
+     * @param engine     class of the generated engine
+     * @param shards
+     * @param parameters values of the parameters of the query
+     * @param groups     consumer of the values of the groups
+     */
+    public static void collect(Class<?> engine, int shards, String[] parameters, Consumer<Object[]> groups) {
+        List<Process> workers = new ArrayList<>();
+        String token = new BigInteger(128, RANDOM).toString(16);
+        try (ServerSocket server = new ServerSocket(0, shards, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+            for (int shard = 0; shard < shards; shard++) {
+                workers.add(start(engine, parameters, shard, shards, server.getLocalPort(), token));
+            }
+
+            boolean[] received = new boolean[shards];
+            int count = 0;
+            while (count < shards) {
+                try (Socket socket = accept(server, workers)) {
+                    ObjectInputStream input = authenticate(socket, token);
+                    if (input == null) {
+                        continue;
+                    }
+
+                    int shard = input.readInt();
+                    if (shard < 0 || shard >= shards || received[shard]) {
+                        throw new IOException("Unexpected groups of shard " + shard);
+                    }
+                    received[shard] = true;
+                    count++;
+
+                    Object[] values;
+                    while ((values = (Object[]) input.readObject()) != null) {
+                        groups.accept(values);
+                    }
+                }
+            }
+
+            for (Process worker : workers) {
+                if (worker.waitFor() != 0) {
+                    throw new IOException("Worker exited with " + worker.exitValue());
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            LOG.log(Level.SEVERE, "Could not collect the groups of the workers.", e);
+            workers.forEach(Process::destroy);
+            CommonUtils.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.forEach(Process::destroy);
+            CommonUtils.exit(1);
+        } catch (RuntimeException e) {
+            // Thrown by the consumer, e.g. once the groups exceed the memory budget
+            workers.forEach(Process::destroy);
+            throw e;
+        }
+    }
+
+    private static Process start(Class<?> engine, String[] parameters, int shard, int shards, int port,
+            String token) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-DpropertiesFile=" + CommonUtils.DB_PROPERTIES);
+        // The workers run at the same time, each may hold its share of the budget
+        command.add("-D" + MemoryBudget.BUDGET_PROPERTY + "=" + MemoryBudget.getLimit() / shards);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(engine.getName());
+        command.add(WORKER);
+        command.addAll(Arrays.asList(parameters));
+        command.add(String.valueOf(shard));
+        command.add(String.valueOf(shards));
+        command.add(String.valueOf(port));
+        command.add(token);
+
+        // The workers log to the same console, the result is printed by the
+        // coordinator
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    /**
+     * Waits for the next worker to connect, failing if a worker exits without
+     * connecting.
+     */
+    private static Socket accept(ServerSocket server, List<Process> workers) throws IOException {
+        while (true) {
+            try {
+                return server.accept();
+            } catch (SocketTimeoutException e) {
+                for (Process worker : workers) {
+                    if (!worker.isAlive() && worker.exitValue() != 0) {
+                        throw new IOException("Worker exited with " + worker.exitValue(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the token a connection sends first. Returns the stream of the groups
+     * of a worker, limited to the classes of group values, or null if the
+     * connection is not from a worker of this run.
+     */
+    private static ObjectInputStream authenticate(Socket socket, String token) throws IOException {
+        ObjectInputStream input;
+        String sent;
+        try {
+            socket.setSoTimeout(TOKEN_TIMEOUT_MILLIS);
+            input = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            sent = input.readUTF();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Closed a connection that sent no token.", e);
+            return null;
+        }
+
+        if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), sent.getBytes(StandardCharsets.UTF_8))) {
+            LOG.warning("Closed a connection that sent a wrong token.");
+            return null;
+        }
+
+        socket.setSoTimeout(0);
+        input.setObjectInputFilter(ShardedExecution::filterValues);
+        return input;
+    }
+
+    private static ObjectInputFilter.Status filterValues(ObjectInputFilter.FilterInfo info) {
+        if (info.serialClass() == null) {
+            return ObjectInputFilter.Status.UNDECIDED;
+        }
+        return VALUE_CLASSES.contains(info.serialClass()) ? ObjectInputFilter.Status.ALLOWED
+                : ObjectInputFilter.Status.REJECTED;
+    }
+
+    /**
+     * Sends the groups of a worker to the coordinator.
+     *
+     * @param <T>    type of the groups
+     * @param port   port of the coordinator
+     * @param token  token of the run, given to the worker by the coordinator
+     * @param shard
+     * @param groups
+     * @param values returns the values of a group
+     */
+    public static <T> void send(int port, String token, int shard, Collection<T> groups,
+            Function<T, Object[]> values) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                ObjectOutputStream output = new ObjectOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream()))) {
+            output.writeUTF(token);
+            output.writeInt(shard);
+            for (T group : groups) {
+                output.writeObject(values.apply(group));
+                // Groups are not referenced again, the stream need not remember them
+                output.reset();
+            }
+            output.writeObject(null);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Could not send the groups to the coordinator.", e);
+            CommonUtils.exit(1);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package main.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps strings to dense integer ids and back. The id 0 is reserved for null so
+ * that zero initialized memory decodes to a missing value. Strings may be
+ * encoded from several threads. Decoding takes no lock, it reads the string
+ * from an array that is replaced by a larger copy when full, so that ordering
+ * groups by their encoded strings costs no more than by plain strings.
+ *
+ * @author R&B
+ *
+ */
+public class StringDictionary {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, Integer> ids;
+
+    // A string is stored before its id is published in ids
+    private volatile String[] values;
+
+    private int size;
+
+    /**
+     * Creates a dictionary holding the given strings, which take the ids from 1
+     * in their order.
+     *
+     * @param constants distinct strings
+     */
+    public StringDictionary(String... constants) {
+        ids = new ConcurrentHashMap<>();
+        values = new String[Math.max(INITIAL_CAPACITY, constants.length + 1)];
+        size = 1;
+        for (String constant : constants) {
+            encode(constant);
+        }
+    }
+
+    /**
+     * Returns the id of the string, assigning the next free id if the string has
+     * not been seen before.
+     *
+     * @param value
+     * @return id
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return 0;
+        }
+
+        Integer id = ids.get(value);
+        return id != null ? id : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = size;
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size++] = value;
+            values = current;
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the string of an id returned by encode.
+     *
+     * @param id
+     * @return string or null for the id 0
+     */
+    public String decode(int id) {
+        return values[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,494 @@
+package main.utils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import main.database.RelationCursor;
+import main.parser.Expression;
+import main.parser.GroupingInformation;
+import main.parser.ParsedQuery;
+import main.parser.TableInformation;
+
+/**
+ * Generates an evaluation engine that processes a block of rows at a time. The
+ * rows of a block are read into one primitive array per column, the where
+ * clause is evaluated into a selection vector of the matching row positions and
+ * the aggregates of a group are updated in a tight loop over the selected rows.
+ * No object is created per row. Groups are held in the same off-heap records as
+ * in the off-heap engine.
+ *
+ * @author R&B
+ *
+ */
+public class VectorizedCodeGenerator {
+
+    private static final String BLOCK_SUFFIX = "Block";
+
+    private static final String GROUP_PREFIX = "group";
+
+    private VectorizedCodeGenerator() {
+        // Private constructor to prevent object creation
+    }
+
+    /**
+     * Checks whether the query can be evaluated by the vectorized engine. The
+     * engine scans a single relation and every column must fit in a primitive
+     * array or a string array.
+     *
+     * @param parsedQuery
+     * @return true if supported
+     */
+    public static boolean isSupported(ParsedQuery parsedQuery) {
+        return parsedQuery.getRelations().size() == 1 && RecordLayout.isSupported(parsedQuery);
+    }
+
+    /**
+     * Creates the column block, GroupRecord, OffHeapMFTable and EvaluationEngine
+     * classes. The entities, CompositeEntity and DataAccessObject must have been
+     * created before.
+     *
+     * @param parsedQuery
+     * @param plan
+     */
+    public static void createEvaluationEngine(ParsedQuery parsedQuery, QueryPlan plan) {
+        RecordLayout layout = RecordLayout.of(parsedQuery);
+        TypeName compositeType = ClassName.get(CodeGenerator.PACKAGE, CodeGenerator.COMPOSITE_ENTITY_NAME);
+        ClassName recordType = ClassName.get(CodeGenerator.PACKAGE, OffHeapCodeGenerator.RECORD_NAME);
+        ClassName tableType = ClassName.get(CodeGenerator.PACKAGE, OffHeapCodeGenerator.TABLE_NAME);
+
+        OffHeapCodeGenerator.createGroupRecord(parsedQuery, layout, compositeType, recordType, false);
+        OffHeapCodeGenerator.createMFTable(parsedQuery, layout, compositeType, recordType, plan);
+
+        TableInformation relation = plan.getScanOrder().iterator().next();
+        ClassName blockType = ClassName.get(CodeGenerator.PACKAGE, relation.getClassName() + BLOCK_SUFFIX);
+        Map<String, Class<?>> rowFields = getRowFields(relation);
+
+        createColumnBlock(relation, blockType);
+
+        TypeSpec.Builder entityBuilder = TypeSpec.classBuilder(CodeGenerator.ENGINE_NAME)
+                .addModifiers(Modifier.PUBLIC);
+
+        entityBuilder.addField(CodeGenerator.getLogField(CodeGenerator.ENGINE_NAME));
+        addStreamTableBlocksMethod(entityBuilder, parsedQuery, relation, recordType, tableType, blockType, plan);
+        addSelectMethod(entityBuilder, parsedQuery, rowFields, blockType);
+        addBuildGroupsMethod(entityBuilder, parsedQuery, layout, rowFields, recordType, tableType, blockType, plan);
+
+        for (Entry<Integer, Set<String>> entry : parsedQuery.getExecutionGroups().entrySet()) {
+            for (String group : entry.getValue()) {
+                addUpdateMethod(entityBuilder, group, parsedQuery.getGroups().get(group), layout, rowFields,
+                        recordType, blockType, plan.isAnalyze() ? CodeGenerator.getCounterIndex(parsedQuery, group)
+                                : -1);
+            }
+        }
+
+        CodeGenerator.addMainMethod(entityBuilder, parsedQuery, CodeBlock.of("$T mfTable = new $T()", tableType,
+                tableType), CodeBlock.builder().addStatement("mfTable.close()").build(), plan);
+        CodeGenerator.addDisplayResultMethod(entityBuilder, parsedQuery, tableType,
+                CodeBlock.builder().addStatement("$T value = mfTable.cursor()", recordType)
+                        .beginControlFlow("for (int record : mfTable.records())")
+                        .addStatement("value.position(record)").build(), true);
+
+        CodeGenerator.createAndCompileJavaFile(entityBuilder.build());
+    }
+
+    /**
+     * Creates a class holding one block of rows of the relation as column arrays.
+     * Encoded strings are stored as dictionary ids. The positions of the columns
+     * in the cursor are resolved once, when the block is created.
+     *
+     * @param relation
+     * @param blockType
+     */
+    private static void createColumnBlock(TableInformation relation, ClassName blockType) {
+        TypeSpec.Builder entity = TypeSpec.classBuilder(blockType.simpleName()).addModifiers(Modifier.PUBLIC);
+
+        entity.addField(FieldSpec.builder(int.class, "size").addModifiers(Modifier.PUBLIC).build());
+
+        MethodSpec.Builder constructor = MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC)
+                .addParameter(RelationCursor.class, "cursor").addParameter(int.class, "capacity")
+                .addException(SQLException.class);
+
+        MethodSpec.Builder read = MethodSpec.methodBuilder("read").addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class).addParameter(RelationCursor.class, "cursor").addException(SQLException.class)
+                .addStatement("$T event = new $T()", FlightEvents.BlockFetch.class, FlightEvents.BlockFetch.class)
+                .addStatement("event.begin()").addStatement("size = 0");
+
+        String firstArray = null;
+        CodeBlock.Builder readRow = CodeBlock.builder();
+
+        for (Entry<String, Class<?>> column : relation.getRequiredColumns().entrySet()) {
+            String arrayName = CommonUtils.toCamelCase(column.getKey(), false);
+            String positionName = arrayName + "Column";
+            Class<?> dataType = column.getValue();
+            firstArray = firstArray == null ? arrayName : firstArray;
+
+            entity.addField(FieldSpec.builder(arrayType(dataType), arrayName)
+                    .addModifiers(Modifier.PUBLIC, Modifier.FINAL).build());
+            entity.addField(FieldSpec.builder(int.class, positionName).addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                    .build());
+
+            constructor.addStatement("this.$L = new $T[capacity]", arrayName, elementType(dataType))
+                    .addStatement("this.$L = findColumn(cursor, $S)", positionName, arrayName);
+
+            String cursorGetter = relation.getColumnType(column.getKey()).getCursorGetter();
+            if (relation.isEncoded(column.getKey())) {
+                readRow.addStatement("$L[size] = $L.encode(cursor.getString($L))", arrayName,
+                        CodeGenerator.DICTIONARY, positionName);
+            } else if (String.class.equals(dataType)) {
+                readRow.addStatement("$L[size] = cursor.getString($L)", arrayName, positionName);
+            } else {
+                readRow.addStatement("$L[size] = ($T) notNull(cursor.$L($L), $S)", arrayName, dataType, cursorGetter,
+                        positionName, arrayName);
+            }
+        }
+
+        read.beginControlFlow("while (size < $L.length && cursor.next())", firstArray).addCode(readRow.build())
+                .addStatement("size++").endControlFlow()
+                .addStatement("event.record($S, size)", relation.getTableName()).addStatement("return size > 0");
+
+        entity.addMethod(constructor.build());
+        entity.addMethod(read.build());
+
+        entity.addMethod(MethodSpec.methodBuilder("findColumn").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(int.class).addParameter(RelationCursor.class, "cursor").addParameter(String.class, "name")
+                .addException(SQLException.class)
+                .beginControlFlow("for (int i = 1; i <= cursor.getColumnCount(); i++)")
+                .beginControlFlow("if (cursor.getColumnName(i).equals(name))").addStatement("return i")
+                .endControlFlow().endControlFlow()
+                .addStatement("throw new $T(\"Column not found : \" + name)", SQLException.class).build());
+
+        // Primitive arrays have no room for nulls
+        entity.addMethod(MethodSpec.methodBuilder("notNull").addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(Object.class).addParameter(Object.class, "value").addParameter(String.class, "name")
+                .addException(SQLException.class).beginControlFlow("if (value == null)")
+                .addStatement("throw new $T(\"Null values are not supported in column : \" + name)",
+                        SQLException.class)
+                .endControlFlow().addStatement("return value").build());
+
+        CodeGenerator.createAndCompileJavaFile(entity.build());
+    }
+
+    private static void addStreamTableBlocksMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            TableInformation relation, TypeName recordType, TypeName tableType, TypeName blockType, QueryPlan plan) {
+        String cursorName = "cursor_" + relation.getAlias();
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("streamTableBlocks")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(void.class)
+                .addParameter(ClassName.get(CodeGenerator.PACKAGE, CodeGenerator.DAO_NAME), "dao")
+                .addParameter(tableType, CodeGenerator.MF_TABLE).addParameter(int.class, "groupNumber")
+                .addParameter(RelationCursor.class, cursorName).addException(SQLException.class)
+                .addStatement("$T.requireNonNull(dao, \"DAO must not be null\")", Objects.class)
+                .addStatement("$T.requireNonNull(mfTable, \"MF Table must not be null\")", Objects.class)
+                .addStatement("$T block = new $T($L, dao.getBlockSize())", blockType, blockType, cursorName)
+                .addStatement("int[] selection = new int[dao.getBlockSize()]")
+                .addStatement("$T group = mfTable.cursor()", recordType)
+                .beginControlFlow("while (block.read($L))", cursorName)
+                .addCode(CodeGenerator.countStatement(plan, "long blockStart = System.nanoTime()"))
+                .addStatement("int selected = select(block, selection)")
+                .addCode(CodeGenerator.countStatement(plan, "COUNTERS.fetched(groupNumber, 0, block.size)"))
+                .addCode(CodeGenerator.countStatement(plan, "COUNTERS.selected(groupNumber, selected)"))
+                .beginControlFlow("if (groupNumber == 0)")
+                .addStatement("buildGroups(mfTable, block, selection, selected)")
+                .addStatement("checkMemory(mfTable.size())")
+                .addCode(CodeGenerator.countStatement(plan,
+                        "COUNTERS.block(groupNumber, System.nanoTime() - blockStart)"))
+                .addStatement("continue").endControlFlow().addCode(System.lineSeparator())
+                .beginControlFlow("for (int record = 0; record < mfTable.size(); record++)")
+                .addStatement("group.position(record)");
+
+        for (Entry<Integer, Set<String>> entry : parsedQuery.getExecutionGroups().entrySet()) {
+            methodSpecBuilder.beginControlFlow("if (groupNumber == $L)", entry.getKey());
+            for (String group : entry.getValue()) {
+                methodSpecBuilder.addStatement("update__$L(group, block, selection, selected)", group);
+            }
+            methodSpecBuilder.endControlFlow();
+        }
+
+        entityBuilder.addMethod(methodSpecBuilder.endControlFlow()
+                .addCode(CodeGenerator.countStatement(plan,
+                        "COUNTERS.block(groupNumber, System.nanoTime() - blockStart)"))
+                .endControlFlow().build());
+    }
+
+    /**
+     * Evaluates the where clause for every row of the block and stores the
+     * positions of the matching rows in the selection vector.
+     */
+    private static void addSelectMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            Map<String, Class<?>> rowFields, TypeName blockType) {
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("select")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(int.class).addParameter(blockType, "block")
+                .addParameter(int[].class, "selection");
+
+        if (parsedQuery.getSelectExpression() == null) {
+            entityBuilder.addMethod(methodSpecBuilder.beginControlFlow("for (int row = 0; row < block.size; row++)")
+                    .addStatement("selection[row] = row").endControlFlow().addStatement("return block.size")
+                    .build());
+            return;
+        }
+
+        Set<String> usedRowFields = new LinkedHashSet<>();
+        String condition = toBlockJava(parsedQuery.getSelectExpression(), usedRowFields, new LinkedHashSet<>());
+
+        addRowArrays(methodSpecBuilder, usedRowFields, rowFields);
+        entityBuilder.addMethod(methodSpecBuilder.addStatement("int selected = 0")
+                .beginControlFlow("for (int row = 0; row < block.size; row++)")
+                .beginControlFlow("if ($L)", condition).addStatement("selection[selected++] = row").endControlFlow()
+                .endControlFlow().addStatement("return selected").build());
+    }
+
+    /**
+     * Finds or inserts the group of every selected row and updates the aggregates
+     * of grouping variable 0, which only sees the rows of its own group.
+     */
+    private static void addBuildGroupsMethod(TypeSpec.Builder entityBuilder, ParsedQuery parsedQuery,
+            RecordLayout layout, Map<String, Class<?>> rowFields, TypeName recordType, TypeName tableType,
+            TypeName blockType, QueryPlan plan) {
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("buildGroups")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(void.class)
+                .addParameter(tableType, CodeGenerator.MF_TABLE).addParameter(blockType, "block")
+                .addParameter(int[].class, "selection").addParameter(int.class, "selected");
+
+        Set<String> usedRowFields = new LinkedHashSet<>(layout.getKeySlots());
+        List<String> keyValues = new ArrayList<>();
+        for (String key : layout.getKeySlots()) {
+            keyValues.add(key + "[row]");
+        }
+
+        // Columns other than the grouping attributes read from the group keep the
+        // values of the first row of the group
+        List<String> groupColumns = new ArrayList<>();
+        for (String column : RecordLayout.getGroupColumns(parsedQuery).keySet()) {
+            if (!layout.getKeySlots().contains(column)) {
+                groupColumns.add(column);
+                usedRowFields.add(column);
+            }
+        }
+
+        GroupingInformation groupZero = parsedQuery.getGroups().get("0");
+        CodeBlock.Builder updates = CodeBlock.builder();
+        if (groupZero != null) {
+            List<CodeBlock> averageBlocks = new ArrayList<>();
+            for (String aggregate : groupZero.getAggregates()) {
+                String rowValue = useRowField(aggregate, usedRowFields) + "[row]";
+                String getter = OffHeapCodeGenerator.getter(aggregate) + "()";
+                String setter = CommonUtils.firstLetterToUpper(aggregate, "group.set", "");
+
+                CodeBlock update = getAggregateUpdate(aggregate, "group." + getter, rowValue, layout);
+                if (isAverage(aggregate)) {
+                    averageBlocks.add(CodeBlock.builder().addStatement("$L($L)", setter, update).build());
+                } else {
+                    updates.addStatement("$L($L)", setter, update);
+                }
+            }
+            averageBlocks.forEach(updates::add);
+            updates.add(CodeGenerator.countStatement(plan, "COUNTERS.evaluated($L, 1)",
+                    CodeGenerator.getCounterIndex(parsedQuery, "0")))
+                    .add(CodeGenerator.countStatement(plan, "COUNTERS.matched($L)",
+                            CodeGenerator.getCounterIndex(parsedQuery, "0")));
+        }
+
+        addRowArrays(methodSpecBuilder, usedRowFields, rowFields);
+        methodSpecBuilder.addStatement("$T group = mfTable.cursor()", recordType)
+                .beginControlFlow("for (int i = 0; i < selected; i++)").addStatement("int row = selection[i]");
+
+        if (groupColumns.isEmpty()) {
+            methodSpecBuilder.addStatement("group.position(mfTable.findOrInsert($L))", String.join(", ", keyValues));
+        } else {
+            methodSpecBuilder.addStatement("int groups = mfTable.size()")
+                    .addStatement("group.position(mfTable.findOrInsert($L))", String.join(", ", keyValues))
+                    .beginControlFlow("if (mfTable.size() > groups)");
+            for (String column : groupColumns) {
+                methodSpecBuilder.addStatement("$L($L[row])", CommonUtils.firstLetterToUpper(column, "group.set", ""),
+                        column);
+            }
+            methodSpecBuilder.endControlFlow();
+        }
+
+        entityBuilder.addMethod(methodSpecBuilder.addCode(updates.build()).endControlFlow().build());
+    }
+
+    /**
+     * Updates the aggregates of one grouping variable for the current group from
+     * all selected rows of the block. The group side values of the such that
+     * conditions and the aggregates are held in local variables while looping
+     * over the rows and are written back to the group record once per block.
+     * The counter is the index of the grouping variable in the counters of an
+     * analyzed engine, or -1.
+     */
+    private static void addUpdateMethod(TypeSpec.Builder entityBuilder, String groupName, GroupingInformation group,
+            RecordLayout layout, Map<String, Class<?>> rowFields, TypeName recordType, TypeName blockType,
+            int counter) {
+        MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("update__" + groupName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC).returns(void.class).addParameter(recordType, "group")
+                .addParameter(blockType, "block").addParameter(int[].class, "selection")
+                .addParameter(int.class, "selected");
+
+        Set<String> usedRowFields = new LinkedHashSet<>();
+        Set<String> usedGroupFields = new LinkedHashSet<>();
+        String condition = toBlockJava(group.getBoundryExpression(), usedRowFields, usedGroupFields);
+
+        CodeBlock.Builder locals = CodeBlock.builder();
+        CodeBlock.Builder loopBody = CodeBlock.builder();
+        CodeBlock.Builder writeBack = CodeBlock.builder();
+        List<CodeBlock> averageBlocks = new ArrayList<>();
+
+        for (String aggregate : group.getAggregates()) {
+            String setter = CommonUtils.firstLetterToUpper(aggregate, "group.set", "");
+
+            if (isAverage(aggregate)) {
+                String[] components = CodeGenerator.extractComponents(aggregate);
+                String variableName = CommonUtils.append(components[1], "", components[0], "_");
+                String sumName = CommonUtils.append(variableName, CodeGenerator.SUM, components[3], "_");
+                String countName = CommonUtils.append(variableName, CodeGenerator.COUNT, components[3], "_");
+                averageBlocks.add(CodeBlock.builder().beginControlFlow("if ($L > 0)", countName)
+                        .addStatement("$L((double) $L / $L)", setter, sumName, countName).endControlFlow().build());
+                continue;
+            }
+
+            String rowField = useRowField(aggregate, usedRowFields);
+            locals.addStatement("$T $L = group.$L()", OffHeapCodeGenerator.javaType(layout.getSlots().get(aggregate)),
+                    aggregate, OffHeapCodeGenerator.getter(aggregate));
+            loopBody.addStatement("$L = $L", aggregate, getAggregateUpdate(aggregate, aggregate, rowField + "[row]",
+                    layout));
+            writeBack.addStatement("$L($L)", setter, aggregate);
+        }
+        averageBlocks.forEach(writeBack::add);
+
+        addRowArrays(methodSpecBuilder, usedRowFields, rowFields);
+        for (String field : usedGroupFields) {
+            methodSpecBuilder.addStatement("$T $L = group.$L()",
+                    OffHeapCodeGenerator.javaType(layout.getSlots().get(field)), groupLocal(field),
+                    OffHeapCodeGenerator.getter(field));
+        }
+
+        if (counter >= 0) {
+            methodSpecBuilder.addStatement("COUNTERS.evaluated($L, selected)", counter);
+            loopBody.addStatement("COUNTERS.matched($L)", counter);
+        }
+
+        methodSpecBuilder.addCode(locals.build()).beginControlFlow("for (int i = 0; i < selected; i++)")
+                .addStatement("int row = selection[i]");
+
+        if (condition.isEmpty()) {
+            methodSpecBuilder.addCode(loopBody.build());
+        } else {
+            methodSpecBuilder.beginControlFlow("if ($L)", condition).addCode(loopBody.build()).endControlFlow();
+        }
+
+        entityBuilder.addMethod(methodSpecBuilder.endControlFlow().addCode(writeBack.build()).build());
+    }
+
+    private static CodeBlock getAggregateUpdate(String aggregate, String current, String rowValue,
+            RecordLayout layout) {
+        String[] components = CodeGenerator.extractComponents(aggregate);
+        String function = components[2];
+
+        if (function.equalsIgnoreCase(CodeGenerator.SUM)) {
+            return CodeBlock.of("$L + $L", current, rowValue);
+        }
+
+        if (function.equalsIgnoreCase(CodeGenerator.COUNT)) {
+            return CodeBlock.of("$L + 1", current);
+        }
+
+        if (function.equalsIgnoreCase(CodeGenerator.MAX) || function.equalsIgnoreCase(CodeGenerator.MIN)) {
+            boolean isString = String.class.equals(layout.getSlots().get(aggregate));
+            return CodeBlock.of("$L.$L($L, $L)", isString ? CommonUtils.class.getSimpleName() : "Math",
+                    function.toLowerCase(), current, rowValue);
+        }
+
+        if (function.equalsIgnoreCase(CodeGenerator.AVG)) {
+            String variableName = CommonUtils.append(components[1], "", components[0], "_");
+            String sumName = CommonUtils.append(variableName, CodeGenerator.SUM, components[3], "_");
+            String countName = CommonUtils.append(variableName, CodeGenerator.COUNT, components[3], "_");
+            return CodeBlock.of("(double) group.$L() / group.$L()", OffHeapCodeGenerator.getter(sumName),
+                    OffHeapCodeGenerator.getter(countName));
+        }
+
+        return CodeBlock.of("$L", rowValue);
+    }
+
+    /**
+     * Generates a condition that reads the scanned row from an element of the
+     * column arrays and the group from local variables. Returns an empty string
+     * for no condition.
+     */
+    private static String toBlockJava(Expression condition, Set<String> usedRowFields,
+            Set<String> usedGroupFields) {
+        if (condition == null) {
+            return "";
+        }
+
+        usedRowFields.addAll(condition.getFields(true));
+        usedGroupFields.addAll(condition.getFields(false));
+        return condition.renameGetters((field, rowSide) -> rowSide ? field + "[row]" : groupLocal(field))
+                .toJava(false, false);
+    }
+
+    private static void addRowArrays(MethodSpec.Builder methodSpecBuilder, Set<String> usedRowFields,
+            Map<String, Class<?>> rowFields) {
+        for (String field : usedRowFields) {
+            String column = field.substring(0, field.lastIndexOf('_'));
+            methodSpecBuilder.addStatement("$T $L = block.$L", arrayType(rowFields.get(field)), field,
+                    CommonUtils.toCamelCase(column, false));
+        }
+    }
+
+    /**
+     * Maps the CompositeEntity field names of the columns of the relation to their
+     * data types.
+     */
+    private static Map<String, Class<?>> getRowFields(TableInformation relation) {
+        Map<String, Class<?>> rowFields = new LinkedHashMap<>();
+        for (Entry<String, Class<?>> column : relation.getRequiredColumns().entrySet()) {
+            rowFields.put(CommonUtils.append(column.getKey(), "", relation.getAlias(), "_"), column.getValue());
+        }
+        return rowFields;
+    }
+
+    /**
+     * Returns the field aggregated by the aggregate. The column array is only
+     * needed if the aggregate reads the value of the field.
+     */
+    private static String useRowField(String aggregate, Set<String> usedRowFields) {
+        String[] components = CodeGenerator.extractComponents(aggregate);
+        String rowField = CommonUtils.append(components[1], "", components[0], "_");
+        if (!components[2].equalsIgnoreCase(CodeGenerator.COUNT)) {
+            usedRowFields.add(rowField);
+        }
+        return rowField;
+    }
+
+    private static boolean isAverage(String aggregate) {
+        return CodeGenerator.extractComponents(aggregate)[2].equalsIgnoreCase(CodeGenerator.AVG);
+    }
+
+    private static String groupLocal(String field) {
+        return CommonUtils.firstLetterToUpper(field, GROUP_PREFIX, "");
+    }
+
+    private static TypeName elementType(Class<?> dataType) {
+        return OffHeapCodeGenerator.javaType(dataType);
+    }
+
+    private static TypeName arrayType(Class<?> dataType) {
+        return ArrayTypeName.of(elementType(dataType));
+    }
+}
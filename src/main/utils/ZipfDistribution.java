@@ -0,0 +1,51 @@
+package main.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks from 0 to size - 1 where rank k is drawn with a probability
+ * proportional to 1 / (k + 1)^exponent. An exponent of 0 draws every rank
+ * equally often, the larger the exponent the more the first ranks dominate.
+ * The cumulative probabilities are computed once, a draw is a binary search.
+ *
+ * @author R&B
+ *
+ */
+public class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    public ZipfDistribution(int size, double exponent) {
+        if (size < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Size must be positive and exponent not negative");
+        }
+
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+
+    /**
+     * Draws a rank.
+     *
+     * @param random
+     * @return rank from 0 to size - 1
+     */
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        // Not found returns -(insertion point) - 1, the first rank whose
+        // cumulative probability exceeds the drawn value
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+}
@@ -1,12 +1,25 @@
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
 import main.database.MetaDataAccessObject;
 import main.parser.ParsedQuery;
+import main.parser.SqlStatement;
 import main.readwrite.ReadWrite;
 import main.utils.CodeGenerator;
+import main.utils.OffHeapCodeGenerator;
+import main.utils.QueryPlan;
 
 public class ParserTest {
 
@@ -22,6 +35,8 @@ public class ParserTest {
 
     public static final String NO_AGGREGATES_SQL = "./resources/NoAggs.sql";
 
+    public static final String OTHER_MONTHS_SQL = "./resources/OtherMonths.sql";
+
     @Test
     public void parseSQLTest() throws Exception {
         String sql = "select S.cust,avg(S.quant),avg(x.S.quant),avg(y.S.quant),sum(z.S.quant)/count(z.S.quant)"
@@ -44,7 +59,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -76,7 +91,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -99,7 +114,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -122,7 +137,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -145,7 +160,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -168,7 +183,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -191,7 +206,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -214,7 +229,7 @@ public class ParserTest {
 
         CodeGenerator.createDataAccessObject(parsedQuery);
 
-        CodeGenerator.createEvaluationEngine(parsedQuery);
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
 
         Class<?> clazz = Class.forName("main.generated.EvaluationEngine");
 
@@ -222,4 +237,84 @@ public class ParserTest {
 
         method.invoke(null, (Object) new String[] { "noCsv" });
     }
+
+    /**
+     * The regex parser failed on this query, the syntax tree keeps every clause.
+     */
+    @Test
+    public void parseOtherMonthsSql() {
+        ParsedQuery parsedQuery = ReadWrite.readSQLFromFile(OTHER_MONTHS_SQL);
+        SqlStatement statement = parsedQuery.getStatement();
+
+        assertEquals(Arrays.asList("cust_S", "prod_S", "month_S", "avg_quant_S_x", "count_quant_S_z"),
+                parsedQuery.getProjections());
+        assertEquals(Arrays.asList("CUST", "PROD", "MONTH", "AVG", "COUNT"), parsedQuery.getHeaders());
+        assertEquals(Arrays.asList("cust_S", "prod_S"), parsedQuery.getGroupingAttributes());
+        assertEquals(2, statement.getSuchThatConditions().size());
+        assertEquals("z.S.cust != S.cust and z.S.month = S.month", statement.getSuchThatConditions().get(1).toString());
+        assertEquals("avg(x.S.quant) > 100 and count(z.S.quant) > 0", statement.getHavingCondition().toString());
+        assertEquals(Arrays.asList("getCust_S"), parsedQuery.getOrderByAttributes());
+        assertEquals(-1, parsedQuery.getOrderMultiplier());
+        assertEquals(1, parsedQuery.getGroups().get("x").getBoundryConditions().size());
+        assertTrue(parsedQuery.getGroups().get("z").getAggregates().contains("count_quant_S_z"));
+        assertEquals(new HashSet<>(Arrays.asList("x", "z")), parsedQuery.getExecutionGroups().get(1));
+    }
+
+    @Test
+    public void otherMonthsOffHeapSql() throws Exception {
+        ParsedQuery parsedQuery = ReadWrite.readSQLFromFile(OTHER_MONTHS_SQL);
+
+        MetaDataAccessObject dao = new MetaDataAccessObject();
+
+        CodeGenerator.cleanDirectory();
+
+        CodeGenerator.createEntities(parsedQuery, dao);
+
+        CodeGenerator.createCompositeEntity(parsedQuery);
+
+        CodeGenerator.createDataAccessObject(parsedQuery);
+
+        CodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
+
+        String heapResult = runEngine();
+
+        // Columns read from the group other than the grouping attributes keep the
+        // values of the first row of the group off-heap as well
+        OffHeapCodeGenerator.createEvaluationEngine(parsedQuery, QueryPlan.of(parsedQuery));
+
+        String offHeapResult = runEngine();
+
+        assertTrue(heapResult.contains("|"));
+        assertEquals(heapResult, offHeapResult);
+    }
+
+    /**
+     * Runs the generated engine in a class loader of its own, as another engine
+     * may have been loaded before, and returns what it prints.
+     */
+    private static String runEngine() throws Exception {
+        URL[] target = { new File("./target/").toURI().toURL() };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+
+        try (URLClassLoader loader = new URLClassLoader(target, ParserTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (!name.startsWith("main.generated.")) {
+                    return super.loadClass(name, resolve);
+                }
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> clazz = findLoadedClass(name);
+                    return clazz != null ? clazz : findClass(name);
+                }
+            }
+        }) {
+            Method method = loader.loadClass("main.generated.EvaluationEngine").getMethod("main", String[].class);
+            System.setOut(new PrintStream(output, true));
+            method.invoke(null, (Object) new String[] { "noCsv" });
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString();
+    }
 }
@@ -0,0 +1,162 @@
+package main.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class CopyCursorTest {
+
+    private static final String[] NAMES = { "quant", "id", "price", "sdate", "stime", "cust" };
+
+    private static final byte[] TYPES = { CopyBlock.INT, CopyBlock.LONG, CopyBlock.DOUBLE, CopyBlock.DATE,
+            CopyBlock.TIMESTAMP, CopyBlock.TEXT };
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream output = new DataOutputStream(bytes);
+
+    private void writeHeader() throws IOException {
+        output.write("PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1));
+        output.writeInt(0);
+        output.writeInt(4);
+        output.writeInt(0);
+    }
+
+    private void writeRow(Integer quant, long id, double price, int days, long micros, String cust)
+            throws IOException {
+        output.writeShort(TYPES.length);
+        if (quant == null) {
+            output.writeInt(-1);
+        } else {
+            output.writeInt(Integer.BYTES);
+            output.writeInt(quant);
+        }
+        output.writeInt(Long.BYTES);
+        output.writeLong(id);
+        output.writeInt(Double.BYTES);
+        output.writeDouble(price);
+        output.writeInt(Integer.BYTES);
+        output.writeInt(days);
+        output.writeInt(Long.BYTES);
+        output.writeLong(micros);
+        byte[] text = cust.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(text.length);
+        output.write(text);
+    }
+
+    private DataInputStream input() throws SQLException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        CopyCursor.readHeader(input);
+        return input;
+    }
+
+    private static CopyBlock readRow(DataInputStream input, CopyBlock block) throws IOException {
+        block.read(input, input.readShort());
+        return block;
+    }
+
+    @Test
+    public void decodesEveryType() throws Exception {
+        writeHeader();
+        // Dates and timestamps count from 2000-01-01
+        writeRow(42, 12345678901L, 2.5, -1, 1500000L, "Knuth");
+        CopyBlock block = readRow(input(), new CopyBlock(NAMES, TYPES, 1));
+
+        assertTrue(block.next());
+        assertEquals(Integer.valueOf(42), block.getInteger(1));
+        assertEquals(Long.valueOf(42), block.getLong(1));
+        assertEquals(Double.valueOf(42), block.getDouble(1));
+        assertEquals(Long.valueOf(12345678901L), block.getObject(2));
+        assertEquals(Double.valueOf(2.5), block.getDouble(3));
+        assertEquals(Integer.valueOf((int) LocalDate.of(1999, 12, 31).toEpochDay()), block.getEpochDay(4));
+        assertEquals(Date.valueOf("1999-12-31"), block.getObject(4));
+        assertEquals(Long.valueOf(946684801500L), block.getEpochMillis(5));
+        assertEquals("2000-01-01 00:00:01.5", block.getString(5));
+        assertEquals("Knuth", block.getString(6));
+        assertFalse(block.next());
+    }
+
+    @Test
+    public void readsNullsAndWholeSeconds() throws Exception {
+        writeHeader();
+        writeRow(null, 1, 0, 0, 2000000L, "");
+        CopyBlock block = readRow(input(), new CopyBlock(NAMES, TYPES, 1));
+
+        assertTrue(block.next());
+        assertNull(block.getObject(1));
+        assertNull(block.getInteger(1));
+        assertNull(block.getLong(1));
+        assertEquals("2000-01-01 00:00:02", block.getString(5));
+        assertEquals("", block.getString(6));
+    }
+
+    @Test
+    public void copiesRowsIntoLargerBlock() throws Exception {
+        writeHeader();
+        writeRow(1, 1, 1, 0, 0, "a much longer name than the next");
+        writeRow(2, 2, 2, 0, 0, "Sam");
+        writeRow(3, 3, 3, 0, 0, "Helen");
+        output.writeShort(-1);
+
+        DataInputStream input = input();
+        CopyBlock row = new CopyBlock(NAMES, TYPES, 1);
+        CopyBlock rows = new CopyBlock(NAMES, TYPES, 2);
+        while (!rows.isFull()) {
+            row.clear();
+            readRow(input, row).next();
+            rows.add(row);
+        }
+
+        // The rows are kept when the row they were copied from is reused
+        row.clear();
+        readRow(input, row).next();
+        assertEquals("Helen", row.getString(6));
+        assertEquals(-1, input.readShort());
+
+        rows.moveTo(1);
+        assertEquals("Sam", rows.getString(6));
+        assertEquals(Integer.valueOf(2), rows.getInteger(1));
+        rows.moveTo(0);
+        assertEquals("a much longer name than the next", rows.getString(6));
+        assertEquals(Double.valueOf(1), rows.getDouble(3));
+
+        rows.clear();
+        assertFalse(rows.isFull());
+        assertFalse(rows.next());
+    }
+
+    @Test
+    public void rejectsOtherFormats() {
+        bytes.write('x');
+        try {
+            input();
+            fail("Read header of text copy");
+        } catch (SQLException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        bytes.reset();
+        byte[] text = "PGCOPY\nxxxxxxxxxxxx".getBytes(StandardCharsets.ISO_8859_1);
+        bytes.write(text, 0, text.length);
+        try {
+            input();
+            fail("Read header of text copy");
+        } catch (SQLException e) {
+            assertEquals("Unexpected start of binary copy.", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package main.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FlatFileChunkTest {
+
+    private static final byte[] SALES_TYPES = { SnapshotFile.STRING, SnapshotFile.INT, SnapshotFile.LONG,
+            SnapshotFile.DOUBLE };
+
+    private static FlatFileChunk parse(String records, byte... types) {
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        return new FlatFileChunk(buffer, 100, types).parse();
+    }
+
+    @Test
+    public void parsesUnquotedFields() {
+        FlatFileChunk chunk = parse("Sam,5,12345678901,2.5\r\nHelen,-7,+3,0.125\n", SALES_TYPES);
+
+        assertEquals(2, chunk.getRows());
+        assertEquals("Sam", ((String[]) chunk.getColumn(0))[0]);
+        assertEquals("Helen", ((String[]) chunk.getColumn(0))[1]);
+        assertEquals(-7, ((int[]) chunk.getColumn(1))[1]);
+        assertEquals(12345678901L, ((long[]) chunk.getColumn(2))[0]);
+        assertEquals(3L, ((long[]) chunk.getColumn(2))[1]);
+        assertEquals(2.5, ((double[]) chunk.getColumn(3))[0], 0);
+        assertEquals(0.125, ((double[]) chunk.getColumn(3))[1], 0);
+    }
+
+    @Test
+    public void parsesQuotedFieldsByColumnType() {
+        FlatFileChunk chunk = parse("\"Sam\",\"5\",\"42\",\"1.5\"\n\"a \"\"b\"\", c\",\" 6 \",7,8\n", SALES_TYPES);
+
+        assertEquals(2, chunk.getRows());
+        assertArrayEquals(new int[] { 5, 6 }, Arrays.copyOf((int[]) chunk.getColumn(1), 2));
+        assertEquals(42L, ((long[]) chunk.getColumn(2))[0]);
+        assertEquals(1.5, ((double[]) chunk.getColumn(3))[0], 0);
+        assertEquals("a \"b\", c", ((String[]) chunk.getColumn(0))[1]);
+    }
+
+    @Test
+    public void readsEmptyAndMissingFieldsAsNull() {
+        FlatFileChunk chunk = parse(",,\"\",\n\"\"\n", SALES_TYPES);
+
+        assertEquals(2, chunk.getRows());
+        assertTrue(chunk.getNulls(0).get(0));
+        assertTrue(chunk.getNulls(1).get(0));
+        assertTrue(chunk.getNulls(2).get(0));
+        assertTrue(chunk.getNulls(3).get(0));
+
+        // A quoted empty string is a value, the missing fields are null
+        assertFalse(chunk.getNulls(0).get(1));
+        assertEquals("", ((String[]) chunk.getColumn(0))[1]);
+        assertTrue(chunk.getNulls(1).get(1));
+        assertTrue(chunk.getNulls(3).get(1));
+    }
+
+    @Test
+    public void keepsLargeDoubles() {
+        FlatFileChunk chunk = parse("1234567890.1234567\n1e3\n", SnapshotFile.DOUBLE);
+
+        assertEquals(1234567890.1234567, ((double[]) chunk.getColumn(0))[0], 0);
+        assertEquals(1000, ((double[]) chunk.getColumn(0))[1], 0);
+    }
+
+    @Test
+    public void rejectsIntegerOverflow() {
+        assertInvalid("Sam,1,1,1\nSam,2147483648,1,1\n",
+                "Invalid integer \"2147483648\" in column 2 of the row at byte 110");
+        assertInvalid("Sam,\"-2147483649\",1,1\n",
+                "Invalid integer \"-2147483649\" in column 2 of the row at byte 100");
+        assertInvalid("Sam,1,9223372036854775808,1\n", "Invalid bigint \"9223372036854775808\" in column 3");
+    }
+
+    @Test
+    public void rejectsMalformedNumbers() {
+        assertInvalid("Sam,12a,1,1\n", "Invalid integer \"12a\" in column 2");
+        assertInvalid("Sam,-,1,1\n", "Invalid integer \"-\" in column 2");
+        assertInvalid("Sam,1,1,\"x\"\n", "Invalid double \"x\" in column 4");
+    }
+
+    private static void assertInvalid(String records, String message) {
+        try {
+            parse(records, SALES_TYPES);
+            fail("Parsed " + records);
+        } catch (NumberFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    @Test
+    public void readsBoundaryIntegers() {
+        FlatFileChunk chunk = parse("2147483647\n-2147483648\n", SnapshotFile.INT);
+
+        assertEquals(Integer.MAX_VALUE, ((int[]) chunk.getColumn(0))[0]);
+        assertEquals(Integer.MIN_VALUE, ((int[]) chunk.getColumn(0))[1]);
+    }
+}
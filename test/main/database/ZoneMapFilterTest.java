@@ -0,0 +1,83 @@
+package main.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import main.parser.ColumnPredicate;
+
+public class ZoneMapFilterTest {
+
+    private final SnapshotFile file = new SnapshotFile(Paths.get("sales.snapshot"));
+
+    private final SnapshotBlock early = block(1990, 1995, "CT", "NJ");
+
+    private final SnapshotBlock late = block(1996, 2000, "NY", "NY");
+
+    public ZoneMapFilterTest() {
+        file.addColumn("year", SnapshotFile.INT);
+        file.addColumn("state", SnapshotFile.STRING);
+    }
+
+    private static SnapshotBlock block(int minYear, int maxYear, String minState, String maxState) {
+        SnapshotBlock block = new SnapshotBlock(0, 0, 10, 2);
+        block.setColumn(0, 0, -1, 0, minYear, maxYear);
+        block.setColumn(1, 0, -1, 0, minState, maxState);
+        return block;
+    }
+
+    private static ColumnPredicate year(String operator, int value) {
+        return new ColumnPredicate("S", "year", operator, String.valueOf(value), false);
+    }
+
+    private static ColumnPredicate state(String operator, String value) {
+        return new ColumnPredicate("S", "state", operator, value, true);
+    }
+
+    @Test
+    public void skipsBlocksFailingRequiredPredicate() {
+        ZoneMapFilter filter = new ZoneMapFilter().require(year(">=", 1996), state("=", "NY"));
+
+        assertFalse(filter.mayMatch(file, early));
+        assertTrue(filter.mayMatch(file, late));
+        assertTrue(new ZoneMapFilter().mayMatch(file, early));
+    }
+
+    @Test
+    public void readsBlocksMatchingAnyAlternative() {
+        ZoneMapFilter filter = new ZoneMapFilter().addAlternative(state("=", "CT"))
+                .addAlternative(year("=", 2000), state("=", "NY"));
+
+        assertTrue(filter.mayMatch(file, early));
+        assertTrue(filter.mayMatch(file, late));
+
+        filter = new ZoneMapFilter().require(year("<", 1996)).addAlternative(state("=", "TX"))
+                .addAlternative(year("=", 1980));
+        assertFalse(filter.mayMatch(file, early));
+        assertFalse(filter.mayMatch(file, late));
+    }
+
+    @Test
+    public void ignoresColumnsMissingFromSnapshot() {
+        ZoneMapFilter filter = new ZoneMapFilter()
+                .require(new ColumnPredicate("S", "month", "=", "13", false));
+
+        assertTrue(filter.mayMatch(file, early));
+    }
+
+    @Test
+    public void writesExactPredicatesAsSql() {
+        ZoneMapFilter filter = new ZoneMapFilter().require(year(">=", 1996)).addAlternative(state("=", "NY"))
+                .addAlternative(year("=", 2000));
+
+        assertEquals("(year >= 1996) and ((state = 'NY') or (year = 2000))", filter.toSql(predicate -> true));
+        // An alternative left without conditions admits every row
+        assertEquals("(year >= 1996)", filter.toSql(predicate -> !predicate.isString()));
+        assertNull(filter.toSql(predicate -> false));
+    }
+}
@@ -0,0 +1,82 @@
+package main.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ColumnPredicateTest {
+
+    private static ColumnPredicate year(String operator, int value) {
+        return new ColumnPredicate("S", "year", operator, String.valueOf(value), false);
+    }
+
+    private static ColumnPredicate state(String operator, String value) {
+        return new ColumnPredicate("S", "state", operator, value, true);
+    }
+
+    @Test
+    public void matchesRangesContainingValue() {
+        assertTrue(year("=", 1997).mayMatch(1990, 2000, false));
+        assertTrue(year("=", 1997).mayMatch(1997, 1997, false));
+        assertFalse(year("=", 1997).mayMatch(1998, 2000, false));
+        assertFalse(year("=", 1997).mayMatch(1990, 1996, false));
+
+        // Bounds of other numeric types compare by value
+        assertTrue(year("=", 1997).mayMatch(1997L, 1997.0, false));
+    }
+
+    @Test
+    public void matchesRangesByOperator() {
+        assertFalse(year("<", 1997).mayMatch(1997, 2000, false));
+        assertTrue(year("<=", 1997).mayMatch(1997, 2000, false));
+        assertFalse(year(">", 1997).mayMatch(1990, 1997, false));
+        assertTrue(year(">=", 1997).mayMatch(1990, 1997, false));
+        assertTrue(year(">", 1997).mayMatch(1990, 2000, false));
+    }
+
+    @Test
+    public void matchesInequalityWithNulls() {
+        ColumnPredicate predicate = year("<>", 1997);
+        assertEquals("!=", predicate.getOperator());
+
+        assertFalse(predicate.mayMatch(1997, 1997, false));
+        assertTrue(predicate.mayMatch(1996, 1997, false));
+        // Null differs from every constant
+        assertTrue(predicate.mayMatch(1997, 1997, true));
+        assertTrue(predicate.mayMatch(null, null, true));
+
+        // A block of nulls only matches no other comparison
+        assertFalse(year("=", 1997).mayMatch(null, null, true));
+    }
+
+    @Test
+    public void comparesStrings() {
+        assertFalse(state("=", "NY").mayMatch("CT", "NJ", false));
+        assertTrue(state("=", "NY").mayMatch("CT", "NY", false));
+        assertTrue(state(">", "CT").mayMatch("CT", "NJ", false));
+
+        // Bounds of another type can not skip the range
+        assertTrue(state("=", "NY").mayMatch(1, 2, false));
+        assertTrue(year("=", 1997).mayMatch("CT", "NJ", false));
+    }
+
+    @Test
+    public void writesSql() {
+        assertEquals("year >= 1997", year(">=", 1997).toSql());
+        assertEquals("(year <> 1997 or year is null)", year("!=", 1997).toSql());
+        assertEquals("state = 'O''Hare'", state("=", "O'Hare").toSql());
+        assertEquals("S.state=\"NY\"", state("=", "NY").toString());
+    }
+
+    @Test
+    public void namesParameter() {
+        ColumnPredicate predicate = new ColumnPredicate("S", "year", "<>", "PARAMETER_1");
+        assertEquals("PARAMETER_1", predicate.getParameter());
+        assertEquals("?", predicate.getValue());
+        assertEquals("!=", predicate.getOperator());
+        assertNull(year("=", 1997).getParameter());
+    }
+}
@@ -0,0 +1,123 @@
+package main.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ExpressionBuilderTest {
+
+    private final Map<String, Class<?>> columnTypes = new HashMap<>();
+
+    private final Map<String, Class<?>> aggregateTypes = new HashMap<>();
+
+    private final Set<String> encodedFields = new HashSet<>();
+
+    private final Map<String, String> encodedConstants = new HashMap<>();
+
+    private final Map<String, ColumnType> temporalFields = new HashMap<>();
+
+    private final Map<String, ColumnType> parameterTypes = new HashMap<>();
+
+    public ExpressionBuilderTest() {
+        columnTypes.put("cust_S", String.class);
+        columnTypes.put("state_S", String.class);
+        columnTypes.put("quant_S", Integer.class);
+        columnTypes.put("month_S", Integer.class);
+        columnTypes.put("sdate_S", Integer.class);
+        aggregateTypes.put("avg_quant_S_x", Double.class);
+        temporalFields.put("sdate_S", ColumnType.DATE);
+    }
+
+    private SqlStatement parse(String clauses) {
+        return new SqlParser("select S.cust from sales S " + clauses).parse();
+    }
+
+    private ExpressionBuilder builder() {
+        // Dictionary ids and aggregates are never null
+        Set<String> nonNullFields = new HashSet<>(encodedFields);
+        nonNullFields.addAll(aggregateTypes.keySet());
+        return new ExpressionBuilder(columnTypes, aggregateTypes, nonNullFields, encodedFields, encodedConstants,
+                temporalFields, parameterTypes);
+    }
+
+    @Test
+    public void buildsWhereCondition() {
+        SqlNode where = parse("where S.quant > 10 and (S.state = 'NY' or S.month <> S.quant - 1)")
+                .getWhereCondition();
+        Expression expression = builder().build(where, ExpressionBuilder.ROW_PREFIX, ExpressionBuilder.ROW_PREFIX);
+
+        assertEquals("(newRow.getQuant_S() != null && (int) newRow.getQuant_S() > 10)"
+                + " && (\"NY\".equals(newRow.getState_S())"
+                + " || (newRow.getMonth_S() == null || (int) newRow.getMonth_S() != (newRow.getQuant_S() - 1)))",
+                expression.toJava(true, true));
+        assertEquals("((int) newRow.getQuant_S() > 10) && (\"NY\".equals(newRow.getState_S())"
+                + " || ((int) newRow.getMonth_S() != (newRow.getQuant_S() - 1)))", expression.toJava(false, false));
+        assertEquals(new HashSet<>(Arrays.asList("quant_S", "state_S", "month_S")), expression.getFields(true));
+        assertTrue(expression.getFields(false).isEmpty());
+    }
+
+    @Test
+    public void readsSuchThatRightSideFromGroup() {
+        encodedFields.add("cust_S");
+        columnTypes.put("cust_S", Integer.class);
+        SqlStatement statement = parse("group by S.cust ; x such that x.S.cust = S.cust"
+                + " and x.S.quant > avg(x.S.quant), x.S.month = S.month");
+        Expression expression = builder().buildAll(statement.getSuchThatConditions(), ExpressionBuilder.ROW_PREFIX,
+                ExpressionBuilder.GROUP_PREFIX);
+
+        // Dictionary ids are compared without a null check, nullable values of
+        // the same type with Objects.equals
+        assertEquals("(((int) newRow.getCust_S() == (int) getCust_S())"
+                + " && (newRow.getQuant_S() != null && (int) newRow.getQuant_S() > (double) getAvg_quant_S_x()))"
+                + " && (Objects.equals(newRow.getMonth_S(), getMonth_S()))", expression.toJava(true, true));
+        assertEquals(new HashSet<>(Arrays.asList("cust_S", "avg_quant_S_x", "month_S")),
+                expression.getFields(false));
+        assertTrue(expression.requiresEquality("cust_S"));
+        assertTrue(expression.requiresEquality("month_S"));
+        assertFalse(expression.requiresEquality("quant_S"));
+
+        String block = expression.renameGetters((field, rowSide) -> rowSide ? field + "[row]" : "group_" + field)
+                .toJava(false, false);
+        assertEquals("(((int) cust_S[row] == (int) group_cust_S)"
+                + " && ((int) quant_S[row] > (double) group_avg_quant_S_x))"
+                + " && (((int) month_S[row] == (int) group_month_S))", block);
+        assertNull(builder().buildAll(Collections.emptyList(), ExpressionBuilder.ROW_PREFIX,
+                ExpressionBuilder.GROUP_PREFIX));
+    }
+
+    @Test
+    public void convertsConstantsToFieldRepresentation() {
+        encodedFields.add("state_S");
+        columnTypes.put("state_S", Integer.class);
+        encodedConstants.put("ENCODED_0", "NY");
+        parameterTypes.put("PARAMETER_1", ColumnType.INTEGER);
+        SqlNode where = parse("where S.state != 'NY' and S.sdate >= '1970-01-11' and S.quant < ?")
+                .getWhereCondition();
+
+        assertEquals("((int) newRow.getState_S() != CompositeEntity.ENCODED_0) && ((int) newRow.getSdate_S() >= 10)"
+                + " && ((int) newRow.getQuant_S() < CompositeEntity.PARAMETER_1)",
+                builder().build(where, ExpressionBuilder.ROW_PREFIX, ExpressionBuilder.ROW_PREFIX)
+                        .toJava(false, false));
+    }
+
+    @Test
+    public void readsHavingFromMfTableValue() {
+        SqlNode having = parse("group by S.cust ; x such that x.S.cust = S.cust having avg(x.S.quant) > 10.5")
+                .getHavingCondition();
+        Expression expression = builder().build(having, ExpressionBuilder.VALUE_PREFIX,
+                ExpressionBuilder.VALUE_PREFIX);
+
+        assertEquals("((double) value.getAvg_quant_S_x() > 10.5)", expression.toJava(true, true));
+        assertEquals(Collections.singleton("avg_quant_S_x"), expression.getFields(false));
+    }
+}
@@ -0,0 +1,133 @@
+package main.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import main.parser.SqlLexer.Token;
+import main.parser.SqlLexer.TokenType;
+
+public class SqlParserTest {
+
+    private static List<TokenType> types(String sql) {
+        List<TokenType> types = new ArrayList<>();
+        for (Token token : SqlLexer.tokenize(sql)) {
+            types.add(token.getType());
+        }
+        return types;
+    }
+
+    @Test
+    public void tokenizesQuery() {
+        String sql = "x.S.quant>=12.5 and S.state<>'NY', ?;";
+        List<Token> tokens = SqlLexer.tokenize(sql);
+
+        assertEquals(Arrays.asList(TokenType.WORD, TokenType.DOT, TokenType.WORD, TokenType.DOT, TokenType.WORD,
+                TokenType.OPERATOR, TokenType.NUMBER, TokenType.WORD, TokenType.WORD, TokenType.DOT, TokenType.WORD,
+                TokenType.OPERATOR, TokenType.STRING, TokenType.COMMA, TokenType.PARAMETER, TokenType.SEMICOLON,
+                TokenType.END), types(sql));
+        assertEquals(">=", tokens.get(5).getText());
+        assertEquals("12.5", tokens.get(6).getText());
+        assertEquals(9, tokens.get(5).getPosition());
+        assertEquals("'NY'", tokens.get(12).getText());
+    }
+
+    @Test
+    public void separatesNumberFromDot() {
+        assertEquals(Arrays.asList(TokenType.NUMBER, TokenType.DOT, TokenType.WORD, TokenType.END), types("1.x"));
+        assertEquals(Arrays.asList(TokenType.OPERATOR, TokenType.NUMBER, TokenType.END), types("!=3"));
+    }
+
+    @Test
+    public void rejectsInvalidTokens() {
+        assertInvalid("select S.cust from sales S where S.state = \"NY", "Unterminated string at 43");
+        assertInvalid("select S.cust from sales S where S.month ! 1", "Unexpected \"!\" at 41");
+        assertInvalid("select S.cust from sales S where S.month = #", "Unexpected \"#\" at 43");
+    }
+
+    @Test
+    public void parsesEveryClause() {
+        SqlStatement statement = new SqlParser("select S.cust as CUST, avg(x.S.quant) from sales S"
+                + " where S.year = 1997 group by S.cust ; x such that x.S.cust = S.cust and x.S.quant > ?"
+                + " having avg(x.S.quant) > 10 order by S.cust desc").parse();
+
+        assertEquals(2, statement.getProjections().size());
+        assertEquals("CUST", statement.getProjections().get(0).getHeader());
+        assertNull(statement.getProjections().get(1).getHeader());
+        assertEquals("avg(x.S.quant)", statement.getProjections().get(1).getValue().toString());
+        assertEquals("sales", statement.getRelations().get(0).getTableName());
+        assertEquals("S", statement.getRelations().get(0).getAlias());
+        assertEquals("S.year = 1997", statement.getWhereCondition().toString());
+        assertEquals(Arrays.asList("x"), statement.getGroupingVariables());
+        assertEquals("x.S.cust = S.cust and x.S.quant > ?", statement.getSuchThatConditions().get(0).toString());
+        assertEquals("avg(x.S.quant) > 10", statement.getHavingCondition().toString());
+        assertEquals("S.cust", statement.getOrderByValues().get(0).toString());
+        assertTrue(statement.isDescending());
+        assertEquals(1, statement.getParameterCount());
+    }
+
+    @Test
+    public void keepsPrecedenceAndBrackets() {
+        SqlStatement statement = new SqlParser("select S.cust from sales S where (S.quant + 1) * 2 > S.month - -3"
+                + " and (S.state = 'NY' or S.state = \"NJ\") group by S.cust").parse();
+
+        SqlNode.Logical where = (SqlNode.Logical) statement.getWhereCondition();
+        assertFalse(where.isBracketed());
+        assertEquals(Arrays.asList("and"), where.getOperators());
+        assertEquals("((S.quant + 1) * 2) > (S.month - -3)", where.getOperands().get(0).toString());
+
+        SqlNode.Logical disjunction = (SqlNode.Logical) where.getOperands().get(1);
+        assertTrue(disjunction.isBracketed());
+        assertEquals(Arrays.asList("or"), disjunction.getOperators());
+        SqlNode.Constant constant = (SqlNode.Constant) ((SqlNode.Comparison) disjunction.getOperands().get(0))
+                .getRhs();
+        assertTrue(constant.isString());
+        assertEquals("NY", constant.getValue());
+        assertEquals("\"NY\"", constant.toJava());
+    }
+
+    @Test
+    public void splitsSuchThatConditionsByComma() {
+        SqlStatement statement = new SqlParser("select S.cust from sales S group by S.cust; x, y"
+                + " such that x.S.cust = S.cust, y.S.cust <> S.cust;").parse();
+
+        assertEquals(Arrays.asList("x", "y"), statement.getGroupingVariables());
+        assertEquals(2, statement.getSuchThatConditions().size());
+        assertEquals("y.S.cust <> S.cust", statement.getSuchThatConditions().get(1).toString());
+        assertFalse(statement.isDescending());
+    }
+
+    @Test
+    public void reportsSyntaxErrorPosition() {
+        assertInvalidQuery("select S.cust from sales S where S.year 1997", "Comparison operator expected at 40");
+        assertInvalidQuery("select cust from sales S", "Column qualified with its table alias expected at 12");
+        assertInvalidQuery("select S.cust from sales S order by S.cust limit 1", "End of query expected at 43");
+        assertInvalidQuery("select S.cust from sales S where", "Value expected at 32, found end of query");
+    }
+
+    private static void assertInvalid(String sql, String message) {
+        try {
+            SqlLexer.tokenize(sql);
+            fail("Tokenized " + sql);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static void assertInvalidQuery(String sql, String message) {
+        try {
+            new SqlParser(sql).parse();
+            fail("Parsed " + sql);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+}
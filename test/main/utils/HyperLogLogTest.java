@@ -0,0 +1,42 @@
+package main.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void estimatesNothingWhenEmpty() {
+        assertEquals(0, new HyperLogLog().estimate(), 0);
+    }
+
+    @Test
+    public void countsRepeatedValuesOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 10000; i++) {
+            sketch.add("customer " + (i % 100));
+        }
+        assertEquals(100, sketch.estimate(), 3);
+    }
+
+    @Test
+    public void countsIntegerAndLongOfSameValueOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(i);
+            sketch.add((long) i);
+        }
+        assertEquals(1000, sketch.estimate(), 30);
+    }
+
+    @Test
+    public void estimatesLargeCountsWithinFewPercent() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1000000; i++) {
+            sketch.add(i * 0.5);
+        }
+        // The standard error is about 1.6%, five of them are allowed
+        assertEquals(1000000, sketch.estimate(), 80000);
+    }
+}
@@ -0,0 +1,79 @@
+package main.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MemoryBudgetTest {
+
+    private static final long STEP = 1 << 20;
+
+    private final long limit = MemoryBudget.getLimit();
+
+    // Other tests of the process may still hold parts of the budget
+    private final long reservedBefore = MemoryBudget.getReservedBytes();
+
+    private final MemoryBudget query = new MemoryBudget("query", 1000);
+
+    private final MemoryBudget other = new MemoryBudget("other", 1000);
+
+    @After
+    public void release() {
+        query.release();
+        other.release();
+    }
+
+    private long reserved() {
+        return MemoryBudget.getReservedBytes() - reservedBefore;
+    }
+
+    @Test
+    public void admitsWhatOtherQueriesLeave() {
+        long free = limit - reservedBefore;
+        assertTrue(query.admit(free / 2));
+        assertEquals(free / 2, reserved());
+
+        assertFalse(other.admit(free - free / 2 + 1));
+        assertEquals(free / 2, reserved());
+        assertTrue(other.admit(free - free / 2));
+        assertEquals(free, reserved());
+
+        query.release();
+        assertEquals(free - free / 2, reserved());
+        // Releasing twice hands nothing back
+        query.release();
+        assertEquals(free - free / 2, reserved());
+    }
+
+    @Test
+    public void reservesGroupsInSteps() {
+        assertTrue(query.track(10));
+        assertEquals(10000 + STEP, reserved());
+        assertEquals(10000, query.getUsedBytes());
+
+        // Groups within the step reserve no more
+        assertTrue(query.track(1000));
+        assertEquals(10000 + STEP, reserved());
+        assertEquals(1000000, query.getUsedBytes());
+        assertTrue(MemoryBudget.getPeakBytes() >= MemoryBudget.getReservedBytes());
+    }
+
+    @Test
+    public void failsOnceGroupsExceedBudget() {
+        long free = limit - reservedBefore;
+        assertTrue(query.track(10));
+
+        // The step is left out when only the groups fit
+        long fitting = (free - STEP / 2) / 1000;
+        assertTrue(query.track(fitting));
+        assertEquals(fitting * 1000, reserved());
+
+        assertFalse(query.track(free / 1000 + 1));
+        assertEquals(fitting * 1000, reserved());
+        assertEquals(fitting * 1000, query.getUsedBytes());
+        assertFalse(other.reserve(free - fitting * 1000 + 1));
+    }
+}